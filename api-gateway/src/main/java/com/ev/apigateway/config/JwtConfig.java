@@ -0,0 +1,30 @@
+package com.ev.apigateway.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * JWT verification configuration for the API Gateway
+ * - Verifies token signatures locally against the auth service's JWK set
+ * - The JWK set is fetched once and cached; it is only fetched again when a token names an unknown key
+ */
+@Configuration
+public class JwtConfig {
+
+    @Value("${security.jwt.jwk-set-uri:lb://auth-service/oauth2/jwks}")
+    private String jwkSetUri;
+
+    /**
+     * Creates a JWT decoder that checks signatures and timestamps without calling the auth service per token
+     */
+    @Bean
+    public ReactiveJwtDecoder reactiveJwtDecoder(WebClient.Builder loadBalancedWebClientBuilder) {
+        return NimbusReactiveJwtDecoder.withJwkSetUri(jwkSetUri)
+                .webClient(loadBalancedWebClientBuilder.build())
+                .build();
+    }
+}
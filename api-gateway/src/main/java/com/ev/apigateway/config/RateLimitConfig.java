@@ -0,0 +1,79 @@
+package com.ev.apigateway.config;
+
+import com.ev.apigateway.service.OcpiTokenCacheService;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Rate limiting configuration for the API Gateway
+ * - Resolves who a request is limited as: OCPI party, API key, tenant, user or client address
+ * - Keys have the form "tier/identity"; the tier selects the rate multiplier applied by the AdaptiveRateLimiter
+ */
+@Configuration
+public class RateLimitConfig {
+
+    public static final String API_KEY_HEADER = "X-API-Key";
+    private static final String OCPI_TOKEN_PREFIX = "Token ";
+
+    /**
+     * Creates the key resolver used by the RequestRateLimiter filter
+     */
+    @Bean
+    public KeyResolver tenantKeyResolver(OcpiTokenCacheService ocpiTokenCacheService) {
+        return exchange -> {
+            ServerHttpRequest request = exchange.getRequest();
+
+            String authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+            if (authorization != null && authorization.startsWith(OCPI_TOKEN_PREFIX)) {
+                String token = authorization.substring(OCPI_TOKEN_PREFIX.length());
+                String party = ocpiTokenCacheService.partyOf(token);
+                return Mono.just(party != null ? "partner/ocpi:" + party : "partner/ocpi-token:" + digest(token));
+            }
+
+            String apiKey = request.getHeaders().getFirst(API_KEY_HEADER);
+            if (apiKey != null) {
+                return Mono.just("standard/api-key:" + digest(apiKey));
+            }
+
+            return exchange.getPrincipal()
+                    .map(principal -> {
+                        if (principal instanceof JwtAuthenticationToken jwtAuthentication) {
+                            String tier = jwtAuthentication.getToken().getClaimAsString("tier");
+                            String tenant = jwtAuthentication.getToken().getClaimAsString("organization_id");
+                            return (tier != null ? tier : "standard") + "/"
+                                    + (tenant != null ? "tenant:" + tenant : "user:" + principal.getName());
+                        }
+                        return "standard/user:" + principal.getName();
+                    })
+                    .switchIfEmpty(Mono.fromSupplier(() -> "anonymous/ip:" + clientAddress(request)));
+        };
+    }
+
+    private static String clientAddress(ServerHttpRequest request) {
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        if (remoteAddress == null || remoteAddress.getAddress() == null) {
+            return "unknown";
+        }
+        return remoteAddress.getAddress().getHostAddress();
+    }
+
+    private static String digest(String secret) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(secret.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -18,6 +18,7 @@ import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
@@ -102,6 +103,22 @@ public class RedisConfig {
         return new ReactiveRedisTemplate<>(reactiveRedisConnectionFactory, context);
     }
 
+    /**
+     * Creates a reactive Redis template for string keys and raw byte values,
+     * used for encoded responses in the response cache
+     */
+    @Bean
+    public ReactiveRedisTemplate<String, byte[]> responseCacheRedisTemplate(
+            ReactiveRedisConnectionFactory reactiveRedisConnectionFactory) {
+        
+        RedisSerializationContext<String, byte[]> context = RedisSerializationContext
+                .<String, byte[]>newSerializationContext(new StringRedisSerializer())
+                .value(RedisSerializer.byteArray())
+                .build();
+        
+        return new ReactiveRedisTemplate<>(reactiveRedisConnectionFactory, context);
+    }
+
     /**
      * Creates a standard Redis connection factory for the cache manager
      */
@@ -16,6 +16,8 @@ import java.util.Map;
  * Configuration for route-specific caching
  * - Defines which routes should be cached and their TTLs
  * - Sets up metadata for the GlobalCacheFilter to use
+ * - The backends behind these routes all require a login, so none is marked "cachePublic" and
+ *   their cached responses are only served to authenticated requests
  */
 @Configuration
 public class RouteCacheConfig {
@@ -39,7 +41,7 @@ public class RouteCacheConfig {
                     .retry(config -> config.setRetries(3)
                                           .setStatuses(HttpStatus.INTERNAL_SERVER_ERROR, HttpStatus.SERVICE_UNAVAILABLE))
                 )
-                .metadata(getCacheMetadata(300)) // 5 minutes TTL
+                .metadata(hedged(getCacheMetadata(300))) // 5 minutes TTL
                 .uri("lb://station-service")
             )
             // Station status API - short cache to maintain freshness
@@ -51,7 +53,7 @@ public class RouteCacheConfig {
                     .retry(config -> config.setRetries(2)
                                           .setStatuses(HttpStatus.INTERNAL_SERVER_ERROR, HttpStatus.SERVICE_UNAVAILABLE))
                 )
-                .metadata(getCacheMetadata(30)) // 30 seconds TTL
+                .metadata(hedged(getCacheMetadata(30))) // 30 seconds TTL
                 .uri("lb://station-service")
             )
             // User service - cache user profiles
@@ -63,15 +65,15 @@ public class RouteCacheConfig {
                     .retry(config -> config.setRetries(3)
                                           .setStatuses(HttpStatus.INTERNAL_SERVER_ERROR, HttpStatus.SERVICE_UNAVAILABLE))
                 )
-                .metadata(getCacheMetadata(600)) // 10 minutes TTL
+                .metadata(hedged(getPerUserCacheMetadata(600))) // 10 minutes TTL, cached per user
                 .uri("lb://user-service")
             )
-            // Billing service - cache billing plans
+            // Billing service - cache billing plans and their tariffs
             .route("billing-service-plans", r -> r
-                .path("/api/billing/plans")
+                .path("/api/billing/plans", "/api/billing/plans/**")
                 .and()
                 .method(HttpMethod.GET)
-                .metadata(getCacheMetadata(1800)) // 30 minutes TTL
+                .metadata(hedged(getCacheMetadata(1800))) // 30 minutes TTL
                 .uri("lb://billing-service")
             )
             // Analytics endpoints - higher TTL for heavier queries
@@ -94,4 +96,21 @@ public class RouteCacheConfig {
         metadata.put("cacheTtl", ttlSeconds);
         return metadata;
     }
+    
+    /**
+     * Create cache metadata for routes whose responses differ per user
+     */
+    private Map<String, Object> getPerUserCacheMetadata(int ttlSeconds) {
+        Map<String, Object> metadata = getCacheMetadata(ttlSeconds);
+        metadata.put("cachePerUser", true);
+        return metadata;
+    }
+
+    /**
+     * Mark a read-only route for hedging by the HedgingFilter
+     */
+    private Map<String, Object> hedged(Map<String, Object> metadata) {
+        metadata.put("hedge", true);
+        return metadata;
+    }
 } 
\ No newline at end of file
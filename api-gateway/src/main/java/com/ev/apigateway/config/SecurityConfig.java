@@ -1,10 +1,21 @@
 package com.ev.apigateway.config;
 
+import com.ev.apigateway.controller.LiveEventWebSocketHandler;
+import com.ev.apigateway.service.JwtCacheService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+import org.springframework.security.oauth2.server.resource.authentication.ReactiveJwtAuthenticationConverterAdapter;
+import org.springframework.security.oauth2.server.resource.web.server.authentication.ServerBearerTokenAuthenticationConverter;
 import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.ServerAuthenticationConverter;
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatchers;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.reactive.CorsConfigurationSource;
 import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
@@ -17,8 +28,39 @@ import java.util.List;
  */
 @Configuration
 @EnableWebFluxSecurity
+@EnableReactiveMethodSecurity
 public class SecurityConfig {
 
+    private static final String LIVE_EVENTS_PATH = "/api-gateway/live/**";
+
+    /**
+     * Security for the live event streams, which the gateway serves itself rather than routing
+     * - Requires a valid JWT, verified through the JwtCacheService like routed requests
+     * - Maps the token's roles claim to ROLE_ authorities; the endpoints limit non-admins to their own events
+     * - Browsers cannot set headers on a WebSocket handshake, so the WebSocket endpoint also takes
+     *   the token from the access_token query parameter
+     */
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public SecurityWebFilterChain liveEventSecurityWebFilterChain(ServerHttpSecurity http, JwtCacheService jwtCacheService) {
+        return http
+                .securityMatcher(ServerWebExchangeMatchers.pathMatchers(LIVE_EVENTS_PATH))
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .cors(corsSpec -> corsSpec.configurationSource(corsConfigurationSource()))
+                .authorizeExchange(exchanges -> exchanges
+                        .pathMatchers(LIVE_EVENTS_PATH).authenticated()
+                )
+                .oauth2ResourceServer(oauth2 -> oauth2
+                        .bearerTokenConverter(liveEventBearerTokenConverter())
+                        .jwt(jwt -> jwt
+                                .jwtDecoder(jwtCacheService::getVerifiedJwt)
+                                .jwtAuthenticationConverter(rolesAuthenticationConverter()))
+                )
+                .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable)
+                .formLogin(ServerHttpSecurity.FormLoginSpec::disable)
+                .build();
+    }
+
     /**
      * Security configuration for the API Gateway
      * - Disables security features for development and easier Swagger access
@@ -33,6 +75,8 @@ public class SecurityConfig {
                         // Explicitly allow Swagger UI and API docs endpoints
                         .pathMatchers("/v3/api-docs/**", "/swagger-ui/**", "/webjars/swagger-ui/**", 
                                      "/api/auth-swagger/**", "/api/*/v3/api-docs/**").permitAll()
+                        // Served by liveEventSecurityWebFilterChain; never open them here
+                        .pathMatchers(LIVE_EVENTS_PATH).authenticated()
                         // Allow all requests for development and Swagger access
                         .anyExchange().permitAll()
                 )
@@ -41,6 +85,31 @@ public class SecurityConfig {
                 .build();
     }
 
+    /**
+     * Takes the bearer token from the Authorization header, or from the query on the WebSocket handshake
+     */
+    private ServerAuthenticationConverter liveEventBearerTokenConverter() {
+        ServerBearerTokenAuthenticationConverter headerConverter = new ServerBearerTokenAuthenticationConverter();
+        ServerBearerTokenAuthenticationConverter queryConverter = new ServerBearerTokenAuthenticationConverter();
+        queryConverter.setAllowUriQueryParameter(true);
+        return exchange -> LiveEventWebSocketHandler.PATH.equals(exchange.getRequest().getPath().value())
+                ? queryConverter.convert(exchange)
+                : headerConverter.convert(exchange);
+    }
+
+    /**
+     * Converts the auth service's roles claim, e.g. ["ADMIN"], to ROLE_ authorities
+     */
+    private ReactiveJwtAuthenticationConverterAdapter rolesAuthenticationConverter() {
+        JwtGrantedAuthoritiesConverter grantedAuthoritiesConverter = new JwtGrantedAuthoritiesConverter();
+        grantedAuthoritiesConverter.setAuthoritiesClaimName("roles");
+        grantedAuthoritiesConverter.setAuthorityPrefix("ROLE_");
+
+        JwtAuthenticationConverter jwtAuthenticationConverter = new JwtAuthenticationConverter();
+        jwtAuthenticationConverter.setJwtGrantedAuthoritiesConverter(grantedAuthoritiesConverter);
+        return new ReactiveJwtAuthenticationConverterAdapter(jwtAuthenticationConverter);
+    }
+
     /**
      * CORS configuration for the API Gateway
      */
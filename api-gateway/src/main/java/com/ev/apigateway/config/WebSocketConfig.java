@@ -0,0 +1,28 @@
+package com.ev.apigateway.config;
+
+import com.ev.apigateway.controller.LiveEventWebSocketHandler;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
+
+import java.util.Map;
+
+/**
+ * WebSocket configuration for the API Gateway
+ * - Serves the live event stream from the gateway itself, ahead of the route handler mapping
+ */
+@Configuration
+public class WebSocketConfig {
+
+    /**
+     * Maps the live event WebSocket endpoint to its handler
+     */
+    @Bean
+    public HandlerMapping liveEventWebSocketMapping(LiveEventWebSocketHandler liveEventWebSocketHandler) {
+        return new SimpleUrlHandlerMapping(
+                Map.of(LiveEventWebSocketHandler.PATH, liveEventWebSocketHandler),
+                Ordered.HIGHEST_PRECEDENCE);
+    }
+}
@@ -1,6 +1,8 @@
 package com.ev.apigateway.controller;
 
 import com.ev.apigateway.service.CacheStatisticsService;
+import com.ev.apigateway.service.JwtCacheService;
+import com.ev.apigateway.service.ResponseCacheService;
 import com.ev.apigateway.service.RouteDefinitionCacheService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,6 +15,7 @@ import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -31,15 +34,21 @@ public class CacheManagementController {
 
     private final ReactiveRedisTemplate<String, Object> redisTemplate;
     private final CacheStatisticsService cacheStatisticsService;
+    private final ResponseCacheService responseCacheService;
+    private final JwtCacheService jwtCacheService;
     private final ApplicationContext applicationContext;
 
     @Autowired
     public CacheManagementController(
             ReactiveRedisTemplate<String, Object> redisTemplate,
             CacheStatisticsService cacheStatisticsService,
+            ResponseCacheService responseCacheService,
+            JwtCacheService jwtCacheService,
             ApplicationContext applicationContext) {
         this.redisTemplate = redisTemplate;
         this.cacheStatisticsService = cacheStatisticsService;
+        this.responseCacheService = responseCacheService;
+        this.jwtCacheService = jwtCacheService;
         this.applicationContext = applicationContext;
     }
 
@@ -93,6 +102,9 @@ public class CacheManagementController {
         errorMap.put("status", "error");
         errorMap.put("message", "Failed to clear caches");
         
+        // Other instances drop their in-process responses as they expire
+        responseCacheService.invalidateLocal();
+        
         return redisTemplate.getConnectionFactory().getReactiveConnection()
                 .serverCommands().flushAll()
                 .thenReturn(ResponseEntity.ok(successMap))
@@ -109,6 +121,10 @@ public class CacheManagementController {
         String keyPattern = "api-gateway:" + cachePrefix + "*";
         ScanOptions options = ScanOptions.scanOptions().match(keyPattern).build();
         
+        if ("response".startsWith(cachePrefix) || cachePrefix.startsWith("response")) {
+            responseCacheService.invalidateLocal();
+        }
+        
         Map<String, Object> emptyMap = new HashMap<>();
         emptyMap.put("status", "success");
         emptyMap.put("message", "No keys found with prefix: " + cachePrefix);
@@ -137,6 +153,24 @@ public class CacheManagementController {
                 });
     }
 
+    /**
+     * Revoke a JWT on all gateway instances
+     * @param tokenId The token's jti claim, or "sha256:" followed by the hex digest of the token
+     * @param expiresAt The token's expiry in epoch seconds; the revocation is kept until then
+     */
+    @PostMapping("/jwt/revoke")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Mono<ResponseEntity<Map<String, Object>>> revokeJwt(@RequestParam String tokenId,
+                                                               @RequestParam long expiresAt) {
+        return jwtCacheService.revoke(tokenId, Instant.ofEpochSecond(expiresAt))
+                .map(result -> {
+                    Map<String, Object> responseMap = new HashMap<>();
+                    responseMap.put("status", result ? "success" : "error");
+                    responseMap.put("message", result ? "Token revoked" : "Failed to store token revocation");
+                    return ResponseEntity.ok(responseMap);
+                });
+    }
+
     /**
      * Refresh routes cache
      */
@@ -0,0 +1,43 @@
+package com.ev.apigateway.controller;
+
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+
+import java.security.Principal;
+
+/**
+ * Scopes live event subscriptions to what the subscriber may see
+ * - Admins may stream all events or any user's events
+ * - Other users only receive their own charging session events; the token subject is their user ID.
+ *   Station status events are not scoped to a user and reach every subscriber
+ */
+final class LiveEventAccess {
+
+    private static final String ADMIN_AUTHORITY = "ROLE_ADMIN";
+
+    private LiveEventAccess() {
+    }
+
+    /**
+     * Get the user ID filter charging session events are subscribed with
+     * @param principal The authenticated subscriber
+     * @param requestedUserId User ID filter from the request; null for all users
+     * @return The requested filter for admins, otherwise the subscriber's own user ID
+     * @throws AccessDeniedException If a non-admin asks for another user's events
+     */
+    static String userIdFilter(Principal principal, String requestedUserId) {
+        if (isAdmin(principal)) {
+            return requestedUserId;
+        }
+        if (requestedUserId != null && !requestedUserId.equals(principal.getName())) {
+            throw new AccessDeniedException("Live events of other users are only available to admins");
+        }
+        return principal.getName();
+    }
+
+    private static boolean isAdmin(Principal principal) {
+        return principal instanceof Authentication authentication
+                && authentication.getAuthorities().stream()
+                        .anyMatch(authority -> ADMIN_AUTHORITY.equals(authority.getAuthority()));
+    }
+}
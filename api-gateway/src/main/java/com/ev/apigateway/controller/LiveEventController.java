@@ -0,0 +1,66 @@
+package com.ev.apigateway.controller;
+
+import com.ev.apigateway.service.LiveEventHub;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Controller streaming live events to dashboards as server-sent events
+ * - Replaces polling the station and session REST endpoints
+ * - Filters by event type, stations and user; see LiveEventWebSocketHandler for the WebSocket variant
+ * - Requires authentication; non-admins only receive their own charging session events
+ */
+@RestController
+@RequestMapping("/api-gateway/live")
+@RequiredArgsConstructor
+@Slf4j
+public class LiveEventController {
+
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+
+    private final LiveEventHub liveEventHub;
+
+    /**
+     * Stream live events
+     * @param types Comma-separated event types (STATION_STATUS, CHARGING_SESSION); all if absent
+     * @param stationIds Comma-separated station IDs, e.g. all stations of a CPO; all if absent
+     * @param userId User whose charging sessions to stream; all if absent. Non-admins always get their own.
+     * @param principal The authenticated subscriber
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("isAuthenticated()")
+    public Flux<ServerSentEvent<Map<String, Object>>> streamEvents(
+            @RequestParam(required = false) Set<String> types,
+            @RequestParam(required = false) Set<String> stationIds,
+            @RequestParam(required = false) String userId,
+            Principal principal) {
+        Flux<ServerSentEvent<Map<String, Object>>> events = liveEventHub
+                .subscribe(orEmpty(types), orEmpty(stationIds), LiveEventAccess.userIdFilter(principal, userId))
+                .map(event -> ServerSentEvent.<Map<String, Object>>builder(event.getData())
+                        .event(event.getType())
+                        .build());
+
+        // Comments keep idle connections open through proxies
+        Flux<ServerSentEvent<Map<String, Object>>> heartbeats = Flux.interval(HEARTBEAT_INTERVAL)
+                .map(tick -> ServerSentEvent.<Map<String, Object>>builder().comment("heartbeat").build());
+
+        return Flux.merge(events, heartbeats);
+    }
+
+    private static Set<String> orEmpty(Set<String> values) {
+        return values != null ? values : Set.of();
+    }
+}
@@ -0,0 +1,93 @@
+package com.ev.apigateway.controller;
+
+import com.ev.apigateway.service.LiveEvent;
+import com.ev.apigateway.service.LiveEventHub;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * WebSocket handler streaming live events to dashboards
+ * - Filters are taken from the handshake query: types, stationIds and userId, as for the SSE endpoint
+ * - Each event is sent as one JSON text message
+ * - The handshake must be authenticated; non-admins only receive their own charging session events,
+ *   and asking for another user's events closes the session with a policy violation
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LiveEventWebSocketHandler implements WebSocketHandler {
+
+    public static final String PATH = "/api-gateway/live/ws";
+
+    private final LiveEventHub liveEventHub;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public Mono<Void> handle(WebSocketSession session) {
+        MultiValueMap<String, String> query = UriComponentsBuilder.fromUri(session.getHandshakeInfo().getUri())
+                .build()
+                .getQueryParams();
+
+        return session.getHandshakeInfo().getPrincipal()
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(principal -> {
+                    // The security filter chain rejects unauthenticated handshakes; this only guards against misconfiguration
+                    if (principal.isEmpty()) {
+                        return session.close(CloseStatus.POLICY_VIOLATION);
+                    }
+                    String userId;
+                    try {
+                        userId = LiveEventAccess.userIdFilter(principal.get(), query.getFirst("userId"));
+                    } catch (AccessDeniedException e) {
+                        log.debug("Closing live event session {}: {}", session.getId(), e.getMessage());
+                        return session.close(CloseStatus.POLICY_VIOLATION);
+                    }
+
+                    Mono<Void> outbound = session.send(liveEventHub
+                            .subscribe(values(query.get("types")), values(query.get("stationIds")), userId)
+                            .map(event -> session.textMessage(toJson(event))));
+
+                    // Incoming messages are ignored; the session ends when the client closes it
+                    Mono<Void> inbound = session.receive().then();
+
+                    return Mono.firstWithSignal(outbound, inbound);
+                })
+                .doFinally(signal -> log.debug("Live event session {} closed", session.getId()));
+    }
+
+    private String toJson(LiveEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event.getData());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unserializable live event", e);
+        }
+    }
+
+    private static Set<String> values(List<String> params) {
+        if (params == null) {
+            return Set.of();
+        }
+        return params.stream()
+                .flatMap(param -> Arrays.stream(param.split(",")))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+}
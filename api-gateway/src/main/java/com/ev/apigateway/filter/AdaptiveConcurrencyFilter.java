@@ -0,0 +1,192 @@
+package com.ev.apigateway.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.RouteToRequestUrlFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * Filter limiting concurrent upstream calls per route on this instance
+ * - The limit adapts Vegas-style: it grows while latency stays near the lowest seen, and shrinks as
+ *   the estimated queue at the backend grows or when calls fail
+ * - Requests over the limit are rejected at once with 503 and Retry-After instead of waiting
+ * - Exposes the limit, in-flight calls, estimated backend queue and rejections through Micrometer
+ */
+@Component
+@Slf4j
+public class AdaptiveConcurrencyFilter implements GlobalFilter, Ordered {
+
+    // Estimated queued requests below which the limit grows, and above which it shrinks
+    private static final int QUEUE_ALPHA = 3;
+    private static final int QUEUE_BETA = 6;
+    private static final double FAILURE_BACKOFF = 0.9;
+
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int minRttResetSamples;
+
+    private final ConcurrentMap<String, RouteLimiter> limiters = new ConcurrentHashMap<>();
+
+    public AdaptiveConcurrencyFilter(MeterRegistry meterRegistry,
+                                     @Value("${concurrency.enabled:true}") boolean enabled,
+                                     @Value("${concurrency.initial-limit:20}") int initialLimit,
+                                     @Value("${concurrency.min-limit:4}") int minLimit,
+                                     @Value("${concurrency.max-limit:500}") int maxLimit,
+                                     @Value("${concurrency.min-rtt-reset-samples:1000}") int minRttResetSamples) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.minRttResetSamples = minRttResetSamples;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        if (!enabled || route == null) {
+            return chain.filter(exchange);
+        }
+
+        RouteLimiter limiter = limiter(route.getId());
+        if (!limiter.tryAcquire()) {
+            limiter.shed.increment();
+            log.debug("Shedding request to route {} at concurrency limit {}", route.getId(), limiter.getLimit());
+            exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+            return exchange.getResponse().setComplete();
+        }
+
+        long startedAtNanos = System.nanoTime();
+        return chain.filter(exchange)
+                .doFinally(signal -> {
+                    HttpStatusCode status = exchange.getResponse().getStatusCode();
+                    boolean failed = signal == SignalType.ON_ERROR || (status != null && status.is5xxServerError());
+                    // Cancelled calls say nothing about the backend
+                    limiter.release(System.nanoTime() - startedAtNanos, failed, signal == SignalType.CANCEL);
+                });
+    }
+
+    private RouteLimiter limiter(String routeId) {
+        RouteLimiter limiter = limiters.get(routeId);
+        if (limiter != null) {
+            return limiter;
+        }
+        return limiters.computeIfAbsent(routeId, this::registerLimiter);
+    }
+
+    private RouteLimiter registerLimiter(String routeId) {
+        RouteLimiter limiter = new RouteLimiter(meterRegistry, routeId);
+        Gauge.builder("gateway.concurrency.limit", limiter, RouteLimiter::getLimit)
+                .description("Current concurrency limit")
+                .tag("route", routeId)
+                .register(meterRegistry);
+        Gauge.builder("gateway.concurrency.inflight", limiter, l -> l.inFlight.get())
+                .description("Upstream calls in flight")
+                .tag("route", routeId)
+                .register(meterRegistry);
+        Gauge.builder("gateway.concurrency.queue", limiter, RouteLimiter::getEstimatedQueue)
+                .description("Estimated requests queued at the backend")
+                .tag("route", routeId)
+                .register(meterRegistry);
+        return limiter;
+    }
+
+    @Override
+    public int getOrder() {
+        // After the response cache and route filters such as rate limiting, just before the upstream call
+        return RouteToRequestUrlFilter.ROUTE_TO_URL_FILTER_ORDER + 1;
+    }
+
+    /**
+     * Concurrency limit and in-flight count of one route
+     */
+    private class RouteLimiter {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final Counter shed;
+        private volatile double limit = initialLimit;
+        private volatile double estimatedQueue;
+        private long minRttNanos = Long.MAX_VALUE;
+        private int samples;
+
+        RouteLimiter(MeterRegistry meterRegistry, String routeId) {
+            this.shed = Counter.builder("gateway.concurrency.shed")
+                    .description("Requests rejected at the concurrency limit")
+                    .tag("route", routeId)
+                    .register(meterRegistry);
+        }
+
+        boolean tryAcquire() {
+            while (true) {
+                int current = inFlight.get();
+                if (current >= (int) limit) {
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release(long rttNanos, boolean failed, boolean cancelled) {
+            int inFlightAtEnd = inFlight.getAndDecrement();
+            if (!cancelled) {
+                update(rttNanos, failed, inFlightAtEnd);
+            }
+        }
+
+        private synchronized void update(long rttNanos, boolean failed, int inFlightAtEnd) {
+            // Forget the lowest latency now and then, so the limit follows backends that got slower for good
+            if (++samples >= minRttResetSamples) {
+                samples = 0;
+                minRttNanos = rttNanos;
+            }
+            minRttNanos = Math.min(minRttNanos, rttNanos);
+
+            double newLimit = limit;
+            if (failed) {
+                newLimit = limit * FAILURE_BACKOFF;
+            } else if (inFlightAtEnd * 2 >= limit) {
+                // Only adjust when the limit is actually being used
+                estimatedQueue = limit * (1 - (double) minRttNanos / rttNanos);
+                if (estimatedQueue < QUEUE_ALPHA) {
+                    newLimit = limit + 1;
+                } else if (estimatedQueue > QUEUE_BETA) {
+                    newLimit = limit - 1;
+                }
+            }
+            limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        }
+
+        double getLimit() {
+            return limit;
+        }
+
+        double getEstimatedQueue() {
+            return estimatedQueue;
+        }
+    }
+}
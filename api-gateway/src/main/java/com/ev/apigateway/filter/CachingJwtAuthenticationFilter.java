@@ -7,91 +7,88 @@ import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.core.Ordered;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.server.reactive.ServerHttpRequest;
-import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.ReactiveSecurityContextHolder;
-import org.springframework.security.core.context.SecurityContextImpl;
-import org.springframework.security.oauth2.jwt.Jwt;
-import org.springframework.security.oauth2.jwt.JwtDecoder;
-import org.springframework.security.oauth2.server.resource.BearerTokenAuthenticationToken;
-import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.ReactiveJwtAuthenticationConverterAdapter;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
-import reactor.util.context.Context;
+
+import java.util.Optional;
 
 /**
  * Filter for caching JWT token authentication
  * - Intercepts requests to extract JWT tokens
- * - Checks Redis cache for pre-validated tokens
- * - Falls back to normal JWT validation if not in cache
- * - Stores validated tokens in cache
- * 
- * NOTE: Currently disabled until proper ReactiveAuthenticationManager is configured
+ * - Verifies them through the JwtCacheService, which only checks a signature the first time a token is seen
+ * - Rejects invalid, expired and revoked tokens with 401
+ * - Exposes the authenticated principal to the rest of the filter chain
  */
-// @Component - Temporarily disabled until ReactiveAuthenticationManager is properly configured
+@Component
 @RequiredArgsConstructor
 @Slf4j
 public class CachingJwtAuthenticationFilter implements GlobalFilter, Ordered {
 
-    private final ReactiveAuthenticationManager authenticationManager;
-    private final JwtDecoder jwtDecoder;
+    private static final String BEARER_PREFIX = "Bearer ";
+
     private final JwtCacheService jwtCacheService;
+    private final ReactiveJwtAuthenticationConverterAdapter authenticationConverter =
+            new ReactiveJwtAuthenticationConverterAdapter(new JwtAuthenticationConverter());
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
         String authHeader = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
 
         // Skip if no Authorization header
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+        if (authHeader == null || !authHeader.startsWith(BEARER_PREFIX)) {
             return chain.filter(exchange);
         }
 
-        String token = authHeader.substring(7);
-        
-        return authenticateWithCache(token)
-                .switchIfEmpty(authenticateWithProvider(token))
-                .flatMap(authentication -> 
-                    chain.filter(exchange)
-                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication))
-                );
+        String token = authHeader.substring(BEARER_PREFIX.length());
+
+        return jwtCacheService.getVerifiedJwt(token)
+                .flatMap(authenticationConverter::convert)
+                .map(authentication -> authenticated(exchange, authentication))
+                .onErrorResume(JwtException.class, e -> {
+                    log.debug("Rejected JWT: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(authenticated -> authenticated
+                        .map(a -> chain.filter(a.exchange)
+                                .contextWrite(ReactiveSecurityContextHolder.withAuthentication(a.authentication)))
+                        .orElseGet(() -> unauthorized(exchange)));
     }
 
-    /**
-     * Try to authenticate using cached JWT token
-     */
-    private Mono<Authentication> authenticateWithCache(String token) {
-        return jwtCacheService.getCachedJwt(token)
-                .flatMap(jwt -> {
-                    log.debug("Using cached JWT token");
-                    BearerTokenAuthenticationToken authToken = new BearerTokenAuthenticationToken(token);
-                    return authenticationManager.authenticate(authToken);
-                });
+    private AuthenticatedExchange authenticated(ServerWebExchange exchange, Authentication authentication) {
+        ServerWebExchange mutated = exchange.mutate()
+                .principal(Mono.just(authentication))
+                .build();
+        return new AuthenticatedExchange(mutated, authentication);
     }
 
-    /**
-     * Authenticate with the authentication manager and cache the result
-     */
-    private Mono<Authentication> authenticateWithProvider(String token) {
-        log.debug("JWT token not in cache, authenticating with provider");
-        BearerTokenAuthenticationToken authToken = new BearerTokenAuthenticationToken(token);
-        
-        return authenticationManager.authenticate(authToken)
-                .flatMap(authentication -> {
-                    // Extract JWT from the authentication
-                    if (authentication.getCredentials() instanceof Jwt jwt) {
-                        // Cache the successful JWT validation
-                        return jwtCacheService.cacheJwt(token, jwt)
-                                .thenReturn(authentication);
-                    }
-                    return Mono.just(authentication);
-                });
+    private Mono<Void> unauthorized(ServerWebExchange exchange) {
+        exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
+        exchange.getResponse().getHeaders().set(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+        return exchange.getResponse().setComplete();
     }
 
     @Override
     public int getOrder() {
-        // Run after security filter but before route filters
-        return -1;
+        // Run before the response cache, whose per-user keys need the principal
+        return -100;
+    }
+
+    private static class AuthenticatedExchange {
+        private final ServerWebExchange exchange;
+        private final Authentication authentication;
+
+        AuthenticatedExchange(ServerWebExchange exchange, Authentication authentication) {
+            this.exchange = exchange;
+            this.authentication = authentication;
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,48 @@
+package com.ev.apigateway.filter;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.server.reactive.AbstractServerHttpResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Response that is not connected to any client.
+ * Used to run a background cache refresh through the filter chain; the body is read and discarded
+ * once a decorator in front of it has captured it.
+ */
+class DetachedServerHttpResponse extends AbstractServerHttpResponse {
+
+    DetachedServerHttpResponse(DataBufferFactory dataBufferFactory) {
+        super(dataBufferFactory);
+    }
+
+    @Override
+    public <T> T getNativeResponse() {
+        throw new IllegalStateException("A detached response has no native response");
+    }
+
+    @Override
+    protected Mono<Void> writeWithInternal(Publisher<? extends DataBuffer> body) {
+        return Flux.from(body).doOnNext(DataBufferUtils::release).then();
+    }
+
+    @Override
+    protected Mono<Void> writeAndFlushWithInternal(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+        return Flux.from(body).concatMap(this::writeWithInternal).then();
+    }
+
+    @Override
+    protected void applyStatusCode() {
+    }
+
+    @Override
+    protected void applyHeaders() {
+    }
+
+    @Override
+    protected void applyCookies() {
+    }
+}
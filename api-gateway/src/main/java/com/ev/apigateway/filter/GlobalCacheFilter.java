@@ -1,27 +1,66 @@
 package com.ev.apigateway.filter;
 
 import com.ev.apigateway.service.CacheStatisticsService;
+import com.ev.apigateway.service.CachedResponse;
+import com.ev.apigateway.service.ResponseCacheService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
 import org.springframework.cloud.gateway.route.Route;
 import org.springframework.core.Ordered;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
 
 /**
  * Global filter for caching responses in API Gateway
- * - Uses Redis to cache responses for routes with 'cache' attribute
+ * - Caches GET responses for routes with 'cache' metadata in the two-tier ResponseCacheService
+ * - Hits are written straight from the cache without calling the downstream service
+ * - Misses capture status, headers and body through a response decorator
+ * - Keys include the request headers responses vary by, and the principal on per-user routes
+ * - Only authenticated requests read or fill the cache, unless a route is marked public, since the
+ *   backends behind cached routes require a login and anonymous requests must reach them to be refused
+ * - Concurrent misses for one key share a single upstream call (single-flight); requests with
+ *   Cache-Control: no-cache always make their own call, whose response still refreshes the cache
+ * - Expired entries are served stale while one background refresh runs, and fresh entries
+ *   are refreshed early with a probability that rises towards expiry, so keys rarely expire under load
+ * - Cached entries carry a strong ETag; requests whose If-None-Match matches get 304 without a body
+ * - Large compressible bodies are gzip-compressed once when captured and sent compressed to clients accepting gzip
  * - Configurable TTL based on route metadata
  * - Tracks cache hit/miss statistics
  */
@@ -30,57 +69,207 @@ import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.G
 @Slf4j
 public class GlobalCacheFilter implements GlobalFilter, Ordered {
 
-    private final ReactiveRedisTemplate<String, Object> redisTemplate;
+    private final ResponseCacheService responseCacheService;
     private final CacheStatisticsService cacheStatisticsService;
-    
+
     private static final String CACHE_TYPE = "response-cache";
     private static final String CACHE_KEY_PREFIX = "api-gateway:response:";
     private static final Duration DEFAULT_CACHE_TTL = Duration.ofMinutes(5);
-    
+    private static final String CACHE_STATUS_HEADER = "X-Cache";
+    private static final String GZIP = "gzip";
+
     // Metadata attribute names
     private static final String CACHE_ENABLED_ATTR = "cache";
     private static final String CACHE_TTL_ATTR = "cacheTtl";
+    private static final String CACHE_PER_USER_ATTR = "cachePerUser";
+    private static final String CACHE_PUBLIC_ATTR = "cachePublic";
+
+    // Response headers that describe the connection or the client rather than the content
+    private static final Set<String> UNCACHED_HEADERS = Set.of(
+            "connection", "keep-alive", "transfer-encoding", "content-length", "date",
+            "set-cookie", "x-cache", "age");
+
+    // Request headers that make the upstream answer depend on what the client already holds
+    private static final List<String> CONDITIONAL_HEADERS = List.of(
+            HttpHeaders.IF_NONE_MATCH, HttpHeaders.IF_MODIFIED_SINCE, HttpHeaders.IF_MATCH,
+            HttpHeaders.IF_UNMODIFIED_SINCE, HttpHeaders.IF_RANGE);
+
+    // Request headers that select between representations of a resource
+    @Value("${cache.response.vary-headers:Accept,Accept-Encoding,Accept-Language}")
+    private List<String> varyHeaders;
+
+    @Value("${cache.response.max-body-bytes:1048576}")
+    private int maxBodyBytes;
+
+    // How long an expired entry may still be served while it is refreshed
+    @Value("${cache.response.stale-while-revalidate-seconds:60}")
+    private long staleWhileRevalidateSeconds;
+
+    // Higher values start early refreshes sooner; 0 disables them
+    @Value("${cache.response.early-refresh-beta:1.0}")
+    private double earlyRefreshBeta;
+
+    // Requests waiting on another request's upstream call give up and go upstream themselves after this
+    @Value("${cache.response.coalesce-timeout-ms:5000}")
+    private long coalesceTimeoutMillis;
+
+    // Smaller bodies are not worth compressing
+    @Value("${cache.response.compression-min-bytes:1024}")
+    private int compressionMinBytes;
+
+    @Value("${cache.response.compressible-types:application/json,application/*+json,application/xml,text/*}")
+    private List<MediaType> compressibleTypes;
+
+    // Upstream calls in flight per cache key; they publish the response they capture, or complete empty
+    private final ConcurrentMap<String, Sinks.One<CachedResponse>> inFlight = new ConcurrentHashMap<>();
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
         Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
-        
+
         // Skip non-cacheable routes
-        if (route == null || !shouldCache(route)) {
+        if (route == null || !shouldCache(route) || exchange.getRequest().getMethod() != HttpMethod.GET) {
             return chain.filter(exchange);
         }
-        
-        ServerHttpRequest request = exchange.getRequest();
-        String cacheKey = generateCacheKey(request);
-        
-        // Try to get from cache first
-        return getCachedResponse(cacheKey)
-                .flatMap(cachedResponse -> {
-                    log.debug("Cache hit for: {}", cacheKey);
+
+        return generateCacheKey(exchange, route)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(cacheKey -> cacheKey.isPresent()
+                        ? filterCached(exchange, chain, route, cacheKey.get())
+                        : chain.filter(exchange));
+    }
+
+    private Mono<Void> filterCached(ServerWebExchange exchange, GatewayFilterChain chain, Route route, String cacheKey) {
+        long startedAtNanos = System.nanoTime();
+
+        // Clients asking for a fresh copy get their own upstream call rather than sharing one that may have
+        // started before their request; the response still refreshes the cache
+        boolean bypass = exchange.getRequest().getHeaders().getCacheControl() != null
+                && exchange.getRequest().getHeaders().getCacheControl().contains("no-cache");
+        if (bypass) {
+            log.debug("Cache bypassed for: {}", cacheKey);
+            cacheStatisticsService.recordCacheMiss(CACHE_TYPE);
+            return fetch(exchange, chain, route, cacheKey, Sinks.one(), startedAtNanos);
+        }
+
+        return responseCacheService.get(cacheKey)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(hit -> {
+                    if (!hit.isPresent()) {
+                        return fetchCoalesced(exchange, chain, route, cacheKey, startedAtNanos);
+                    }
+
+                    CachedResponse cachedResponse = hit.get();
+                    long now = System.currentTimeMillis();
                     cacheStatisticsService.recordCacheHit(CACHE_TYPE);
-                    // Process the cached response
-                    return chain.filter(exchange);
-                })
-                .switchIfEmpty(
-                    // Cache miss - proceed with the request chain but capture and cache the response
-                    chain.filter(exchange)
-                        .then(Mono.defer(() -> {
-                            log.debug("Cache miss for: {}", cacheKey);
-                            cacheStatisticsService.recordCacheMiss(CACHE_TYPE);
-                            
-                            // Extract response data
-                            ServerHttpResponse response = exchange.getResponse();
-                            
-                            // Only cache successful responses
-                            if (response.getStatusCode() != null && response.getStatusCode().is2xxSuccessful()) {
-                                // Cache the response
-                                Duration ttl = getCacheTtl(route);
-                                cacheResponse(cacheKey, "cached-response", ttl).subscribe();
-                            }
-                            
-                            return Mono.empty();
-                        }))
-                );
+
+                    if (!cachedResponse.isFresh(now)) {
+                        log.debug("Serving stale response for: {}", cacheKey);
+                        refreshInBackground(exchange, chain, route, cacheKey);
+                        return recorded(writeCachedResponse(exchange, cachedResponse, "STALE"),
+                                route, "STALE", startedAtNanos, cachedResponse.getBody().length);
+                    }
+                    if (shouldRefreshEarly(cachedResponse, now)) {
+                        log.debug("Refreshing early for: {}", cacheKey);
+                        refreshInBackground(exchange, chain, route, cacheKey);
+                    }
+                    log.debug("Cache hit for: {}", cacheKey);
+                    return recorded(writeCachedResponse(exchange, cachedResponse, "HIT"),
+                            route, "HIT", startedAtNanos, cachedResponse.getBody().length);
+                });
+    }
+
+    /**
+     * Handle a miss with one upstream call per key; concurrent requests for the key wait for its response
+     */
+    private Mono<Void> fetchCoalesced(ServerWebExchange exchange, GatewayFilterChain chain, Route route,
+                                      String cacheKey, long startedAtNanos) {
+        Sinks.One<CachedResponse> sink = Sinks.one();
+        Sinks.One<CachedResponse> leader = inFlight.putIfAbsent(cacheKey, sink);
+
+        if (leader != null) {
+            log.debug("Joining in-flight request for: {}", cacheKey);
+            return leader.asMono()
+                    .timeout(Duration.ofMillis(coalesceTimeoutMillis), Mono.empty())
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty())
+                    .flatMap(shared -> {
+                        if (shared.isPresent()) {
+                            cacheStatisticsService.recordCacheHit(CACHE_TYPE);
+                            return recorded(writeCachedResponse(exchange, shared.get(), "COALESCED"),
+                                    route, "COALESCED", startedAtNanos, shared.get().getBody().length);
+                        }
+                        // The leader's response could not be shared
+                        cacheStatisticsService.recordCacheMiss(CACHE_TYPE);
+                        return recorded(chain.filter(exchange), route, "MISS", startedAtNanos, -1);
+                    });
+        }
+
+        log.debug("Cache miss for: {}", cacheKey);
+        cacheStatisticsService.recordCacheMiss(CACHE_TYPE);
+        return fetch(exchange, chain, route, cacheKey, sink, startedAtNanos);
+    }
+
+    /**
+     * Call upstream for the client, storing the response under the key and publishing it to the sink
+     */
+    private Mono<Void> fetch(ServerWebExchange exchange, GatewayFilterChain chain, Route route, String cacheKey,
+                             Sinks.One<CachedResponse> sink, long startedAtNanos) {
+        CachingResponseDecorator response = new CachingResponseDecorator(
+                exchange.getResponse(), exchange.getRequest(), cacheKey, getCacheTtl(route), sink);
+        return chain.filter(exchange.mutate().response(response).build())
+                .doFinally(signal -> {
+                    completeFlight(cacheKey, sink);
+                    cacheStatisticsService.recordResponse(route.getId(), "MISS",
+                            System.nanoTime() - startedAtNanos, response.capturedBytes);
+                });
+    }
+
+    private Mono<Void> recorded(Mono<Void> write, Route route, String cacheStatus, long startedAtNanos, int payloadBytes) {
+        return write.doFinally(signal -> cacheStatisticsService.recordResponse(route.getId(), cacheStatus,
+                System.nanoTime() - startedAtNanos, payloadBytes));
+    }
+
+    /**
+     * Refresh an entry through the filter chain without a client, unless a refresh for the key is already running
+     */
+    private void refreshInBackground(ServerWebExchange exchange, GatewayFilterChain chain, Route route, String cacheKey) {
+        Sinks.One<CachedResponse> sink = Sinks.one();
+        if (inFlight.putIfAbsent(cacheKey, sink) != null) {
+            return;
+        }
+
+        // Without the client's validators, so the upstream answers with the full body rather than 304
+        ServerHttpRequest request = exchange.getRequest().mutate()
+                .headers(headers -> CONDITIONAL_HEADERS.forEach(headers::remove))
+                .build();
+        DetachedServerHttpResponse detached = new DetachedServerHttpResponse(exchange.getResponse().bufferFactory());
+        CachingResponseDecorator response =
+                new CachingResponseDecorator(detached, request, cacheKey, getCacheTtl(route), sink);
+        chain.filter(exchange.mutate().request(request).response(response).build())
+                .doFinally(signal -> completeFlight(cacheKey, sink))
+                .subscribe(null, e -> log.warn("Background refresh failed for {}: {}", cacheKey, e.getMessage()));
+    }
+
+    private void completeFlight(String cacheKey, Sinks.One<CachedResponse> sink) {
+        // Waiting requests fall back to their own upstream call if nothing was captured
+        sink.tryEmitEmpty();
+        inFlight.remove(cacheKey, sink);
+    }
+
+    /**
+     * Probabilistic early expiration: refresh before expiry with a probability that grows as expiry
+     * nears and with how long the upstream call takes, so refreshes of a hot key are spread out
+     */
+    private boolean shouldRefreshEarly(CachedResponse cachedResponse, long now) {
+        if (earlyRefreshBeta <= 0) {
+            return false;
+        }
+        double headStartMillis = -cachedResponse.getFetchMillis() * earlyRefreshBeta
+                * Math.log(1.0 - ThreadLocalRandom.current().nextDouble());
+        return now + headStartMillis >= cachedResponse.getExpiresAtMillis();
     }
 
     /**
@@ -91,7 +280,25 @@ public class GlobalCacheFilter implements GlobalFilter, Ordered {
                 .map(value -> Boolean.parseBoolean(value.toString()))
                 .orElse(false);
     }
-    
+
+    /**
+     * Check if a route returns different content for each user
+     */
+    private boolean isPerUser(Route route) {
+        return Optional.ofNullable(route.getMetadata().get(CACHE_PER_USER_ATTR))
+                .map(value -> Boolean.parseBoolean(value.toString()))
+                .orElse(false);
+    }
+
+    /**
+     * Check if a route's backend serves anonymous requests, so its cache may be shared with them
+     */
+    private boolean isPublic(Route route) {
+        return Optional.ofNullable(route.getMetadata().get(CACHE_PUBLIC_ATTR))
+                .map(value -> Boolean.parseBoolean(value.toString()))
+                .orElse(false);
+    }
+
     /**
      * Get the cache TTL from route metadata or use default
      */
@@ -100,47 +307,221 @@ public class GlobalCacheFilter implements GlobalFilter, Ordered {
                 .map(value -> Duration.ofSeconds(Long.parseLong(value.toString())))
                 .orElse(DEFAULT_CACHE_TTL);
     }
-    
+
+    /**
+     * Generate a unique cache key based on the request.
+     * Empty without an authenticated principal, unless the route is public; such requests are not cached.
+     */
+    private Mono<String> generateCacheKey(ServerWebExchange exchange, Route route) {
+        ServerHttpRequest request = exchange.getRequest();
+        StringBuilder key = new StringBuilder(request.getPath().value());
+        if (request.getURI().getRawQuery() != null) {
+            key.append('?').append(request.getURI().getRawQuery());
+        }
+        for (String header : varyHeaders) {
+            key.append('\n').append(header).append('=')
+                    .append(String.join(",", request.getHeaders().getOrEmpty(header)));
+        }
+
+        String prefix = CACHE_KEY_PREFIX + route.getId() + ":";
+        if (isPublic(route) && !isPerUser(route)) {
+            return Mono.just(prefix + digest(key.toString()));
+        }
+        Mono<Principal> principal = exchange.getPrincipal()
+                .filter(p -> !(p instanceof Authentication authentication)
+                        || (authentication.isAuthenticated() && !(authentication instanceof AnonymousAuthenticationToken)));
+        if (!isPerUser(route)) {
+            return principal.map(p -> prefix + digest(key.toString()));
+        }
+        return principal.map(p -> prefix + digest(key + "\nprincipal=" + p.getName()));
+    }
+
+    private String digest(String key) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     /**
-     * Generate a unique cache key based on the request
+     * Write a cached response without calling the downstream service
      */
-    private String generateCacheKey(ServerHttpRequest request) {
-        String path = request.getPath().value();
-        String query = request.getURI().getQuery() != null ? request.getURI().getQuery() : "";
-        return CACHE_KEY_PREFIX + path + ":" + query;
+    private Mono<Void> writeCachedResponse(ServerWebExchange exchange, CachedResponse cached, String cacheStatus) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatusCode.valueOf(cached.getStatus()));
+        response.getHeaders().putAll(cached.getHeaders());
+        response.getHeaders().set(HttpHeaders.AGE,
+                Long.toString((System.currentTimeMillis() - cached.getStoredAtMillis()) / 1000));
+        response.getHeaders().set(CACHE_STATUS_HEADER, cacheStatus);
+        return writeRepresentation(exchange.getRequest(), response, cached);
     }
-    
+
     /**
-     * Get cached response from Redis
+     * Write the body of a captured response in the form the request asks for:
+     * 304 if the client already holds it, gzip-compressed if the client accepts that, otherwise as is
      */
-    private Mono<String> getCachedResponse(String cacheKey) {
-        return redisTemplate.opsForValue()
-                .get(cacheKey)
-                .cast(String.class)
-                .onErrorResume(e -> {
-                    log.error("Error retrieving cached response: {}", e.getMessage());
-                    return Mono.empty();
-                });
+    private Mono<Void> writeRepresentation(ServerHttpRequest request, ServerHttpResponse response, CachedResponse cached) {
+        HttpHeaders headers = response.getHeaders();
+        boolean gzip = cached.getGzipBody() != null && acceptsGzip(request);
+        String etag = gzip ? cached.getGzipEtag() : cached.getEtag();
+        headers.setETag(etag);
+        headers.remove(HttpHeaders.TRANSFER_ENCODING);
+        if (cached.getGzipBody() != null
+                && headers.getVary().stream().noneMatch(HttpHeaders.ACCEPT_ENCODING::equalsIgnoreCase)) {
+            List<String> vary = new ArrayList<>(headers.getVary());
+            vary.add(HttpHeaders.ACCEPT_ENCODING);
+            headers.setVary(vary);
+        }
+
+        if (matchesIfNoneMatch(request, etag)) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            headers.remove(HttpHeaders.CONTENT_TYPE);
+            return response.setComplete();
+        }
+
+        byte[] body = gzip ? cached.getGzipBody() : cached.getBody();
+        if (gzip) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, GZIP);
+        }
+        headers.setContentLength(body.length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+    }
+
+    private boolean acceptsGzip(ServerHttpRequest request) {
+        return request.getHeaders().getOrEmpty(HttpHeaders.ACCEPT_ENCODING).stream()
+                .flatMap(value -> Arrays.stream(value.split(",")))
+                .map(coding -> coding.trim().toLowerCase())
+                .anyMatch(coding -> coding.equals(GZIP) || (coding.startsWith(GZIP + ";") && !coding.endsWith("q=0")));
     }
-    
+
     /**
-     * Cache a response in Redis
+     * Weak comparison as required for If-None-Match
      */
-    private Mono<Boolean> cacheResponse(String cacheKey, String response, Duration ttl) {
-        return redisTemplate.opsForValue()
-                .set(cacheKey, response, ttl)
-                .doOnSuccess(result -> 
-                    log.debug("Cached response at key: {}, TTL: {} seconds", cacheKey, ttl.getSeconds())
-                )
-                .onErrorResume(e -> {
-                    log.error("Error caching response: {}", e.getMessage());
-                    return Mono.just(false);
-                });
+    private boolean matchesIfNoneMatch(ServerHttpRequest request, String etag) {
+        List<String> ifNoneMatch = request.getHeaders().getIfNoneMatch();
+        String opaqueTag = stripWeak(etag);
+        return ifNoneMatch.stream().anyMatch(tag -> tag.equals("*") || stripWeak(tag).equals(opaqueTag));
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    /**
+     * Check if a captured body should be stored with a compressed copy
+     */
+    private boolean isCompressible(HttpHeaders headers, int bodyBytes) {
+        if (bodyBytes < compressionMinBytes || headers.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            return false;
+        }
+        MediaType contentType = headers.getContentType();
+        return contentType != null && compressibleTypes.stream().anyMatch(type -> type.includes(contentType));
+    }
+
+    /**
+     * Check if a downstream response may be stored and shared under its cache key
+     */
+    private boolean isCacheable(ServerHttpResponse response) {
+        HttpHeaders headers = response.getHeaders();
+        if (response.getStatusCode() == null || response.getStatusCode().value() != HttpStatus.OK.value()) {
+            return false;
+        }
+        if (headers.containsKey(HttpHeaders.SET_COOKIE)) {
+            return false;
+        }
+        String cacheControl = headers.getCacheControl();
+        if (cacheControl != null && (cacheControl.contains("no-store") || cacheControl.contains("private"))) {
+            return false;
+        }
+        if (headers.getContentLength() > maxBodyBytes) {
+            return false;
+        }
+        // The key only distinguishes the configured headers
+        for (String vary : headers.getVary()) {
+            if (varyHeaders.stream().noneMatch(vary::equalsIgnoreCase)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private HttpHeaders cacheableHeaders(HttpHeaders headers) {
+        HttpHeaders cached = new HttpHeaders();
+        headers.forEach((name, values) -> {
+            if (!UNCACHED_HEADERS.contains(name.toLowerCase())) {
+                cached.addAll(name, values);
+            }
+        });
+        return cached;
     }
 
     @Override
     public int getOrder() {
-        // Run after routing but before other filters
-        return Ordered.LOWEST_PRECEDENCE - 10;
+        // Run before the response is written so the decorator sees the body
+        return NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1;
+    }
+
+    /**
+     * Captures the downstream response body, stores it once it has been read and
+     * hands it to requests waiting on the same key
+     */
+    private class CachingResponseDecorator extends ServerHttpResponseDecorator {
+
+        private final ServerHttpRequest request;
+        private final String cacheKey;
+        private final Duration ttl;
+        private final Sinks.One<CachedResponse> sink;
+        private final long startedAtMillis = System.currentTimeMillis();
+        // Size of the captured body, or -1 if the response was not captured
+        private volatile int capturedBytes = -1;
+
+        CachingResponseDecorator(ServerHttpResponse delegate, ServerHttpRequest request, String cacheKey,
+                                 Duration ttl, Sinks.One<CachedResponse> sink) {
+            super(delegate);
+            this.request = request;
+            this.cacheKey = cacheKey;
+            this.ttl = ttl;
+            this.sink = sink;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            getDelegate().getHeaders().set(CACHE_STATUS_HEADER, "MISS");
+            if (!isCacheable(getDelegate())) {
+                return super.writeWith(body);
+            }
+
+            return DataBufferUtils.join(Flux.from(body))
+                    .flatMap(joined -> {
+                        byte[] bytes = new byte[joined.readableByteCount()];
+                        joined.read(bytes);
+                        DataBufferUtils.release(joined);
+                        capturedBytes = bytes.length;
+
+                        if (bytes.length > maxBodyBytes) {
+                            return getDelegate().writeWith(Mono.just(bufferFactory().wrap(bytes)));
+                        }
+
+                        HttpHeaders headers = getDelegate().getHeaders();
+                        long now = System.currentTimeMillis();
+                        long expiresAt = now + ttl.toMillis();
+                        CachedResponse response = new CachedResponse(
+                                getDelegate().getStatusCode().value(),
+                                cacheableHeaders(headers),
+                                bytes,
+                                isCompressible(headers, bytes.length) ? CachedResponse.gzip(bytes) : null,
+                                // Keep the downstream service's validator if it sent one
+                                headers.getETag() != null ? headers.getETag() : CachedResponse.strongEtag(bytes),
+                                now, expiresAt, expiresAt + staleWhileRevalidateSeconds * 1000,
+                                now - startedAtMillis);
+                        responseCacheService.put(cacheKey, response).subscribe();
+                        sink.tryEmitValue(response);
+
+                        return writeRepresentation(request, getDelegate(), response);
+                    });
+        }
     }
-} 
\ No newline at end of file
+}
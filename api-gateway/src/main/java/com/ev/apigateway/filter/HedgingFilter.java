@@ -0,0 +1,260 @@
+package com.ev.apigateway.filter;
+
+import com.ev.apigateway.service.RouteLatencyService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.setAlreadyRouted;
+
+/**
+ * Filter hedging slow GET requests on routes marked with the "hedge" metadata
+ * - Sends the request through the load-balanced WebClient; if no response arrives within the route's
+ *   recent latency at the hedging percentile, sends it again, normally reaching another instance
+ * - The first response wins and the other call is cancelled
+ * - Hedges are limited to a share of each route's requests, so a route that is slow everywhere is not
+ *   sent double the load
+ * - A call answering with 5xx leaves the other call to answer; if neither does better, the 5xx is returned
+ * - Routes without latency data yet and calls failing without a response go through the normal routing path
+ * - Request and response headers pass the same HttpHeadersFilters as routed calls, e.g. X-Forwarded-*
+ * - Only primary calls feed the route latency the hedging delay is taken from; answers of hedged calls are
+ *   timed as gateway.hedging.latency, so hedging does not shorten its own delay
+ */
+@Component
+@Slf4j
+public class HedgingFilter implements GlobalFilter, Ordered {
+
+    private static final String HEDGE_ATTR = "hedge";
+    private static final String LOAD_BALANCED_SCHEME = "lb";
+
+    // Headers describing the connection rather than the message
+    private static final Set<String> HOP_BY_HOP_HEADERS = Set.of(
+            "connection", "keep-alive", "transfer-encoding", "te", "trailer", "upgrade",
+            "proxy-authorization", "proxy-authenticate", "host", "content-length");
+
+    private final WebClient webClient;
+    private final ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider;
+    private final RouteLatencyService routeLatencyService;
+    private final MeterRegistry meterRegistry;
+    private final double percentile;
+    private final Duration minDelay;
+    private final double budgetRatio;
+
+    private final ConcurrentMap<String, HedgeBudget> budgets = new ConcurrentHashMap<>();
+
+    // Resolved lazily, like NettyRoutingFilter does, as some header filters depend on the routing filters
+    private volatile List<HttpHeadersFilter> headersFilters;
+
+    public HedgingFilter(WebClient.Builder loadBalancedWebClientBuilder,
+                         ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider,
+                         RouteLatencyService routeLatencyService,
+                         MeterRegistry meterRegistry,
+                         @Value("${hedging.percentile:0.95}") double percentile,
+                         @Value("${hedging.min-delay-ms:20}") long minDelayMillis,
+                         @Value("${hedging.budget-ratio:0.1}") double budgetRatio,
+                         @Value("${hedging.max-body-bytes:1048576}") int maxBodyBytes) {
+        this.webClient = loadBalancedWebClientBuilder.clone()
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(maxBodyBytes))
+                .build();
+        this.headersFiltersProvider = headersFiltersProvider;
+        this.routeLatencyService = routeLatencyService;
+        this.meterRegistry = meterRegistry;
+        this.percentile = percentile;
+        this.minDelay = Duration.ofMillis(minDelayMillis);
+        this.budgetRatio = budgetRatio;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        URI requestUrl = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+        if (route == null || requestUrl == null || !isHedged(route, exchange, requestUrl)) {
+            return chain.filter(exchange);
+        }
+
+        double delayMillis = routeLatencyService.percentileMillis(route.getId(), percentile);
+        if (delayMillis <= 0) {
+            return chain.filter(exchange);
+        }
+        Duration delay = minDelay.compareTo(Duration.ofMillis((long) delayMillis)) > 0
+                ? minDelay : Duration.ofMillis((long) delayMillis);
+
+        HedgeBudget budget = budget(route.getId());
+        budget.onRequest();
+
+        long startedAtNanos = System.nanoTime();
+        AtomicReference<ResponseEntity<byte[]>> serverError = new AtomicReference<>();
+        Mono<ResponseEntity<byte[]>> primary = call(exchange, requestUrl, serverError)
+                .doOnNext(response -> routeLatencyService.record(route.getId(), System.nanoTime() - startedAtNanos));
+        Mono<ResponseEntity<byte[]>> hedge = Mono.delay(delay)
+                .filter(tick -> budget.tryHedge())
+                .flatMap(tick -> {
+                    log.debug("Hedging request to route {} after {} ms", route.getId(), delay.toMillis());
+                    return call(exchange, requestUrl, serverError)
+                            .doOnNext(response -> {
+                                budget.hedgesWon.increment();
+                                budget.hedgedLatency.record(System.nanoTime() - startedAtNanos, TimeUnit.NANOSECONDS);
+                            });
+                });
+
+        return Mono.firstWithValue(primary, hedge)
+                .map(Optional::of)
+                .onErrorResume(e -> {
+                    // No call did better than a 5xx, which is the upstream's answer
+                    if (serverError.get() != null) {
+                        return Mono.just(Optional.of(serverError.get()));
+                    }
+                    // Nothing has been written yet, so the normal routing path can still serve the request
+                    log.debug("Hedged calls to route {} gave no response, routing normally: {}", route.getId(), e.getMessage());
+                    return Mono.just(Optional.empty());
+                })
+                .flatMap(response -> {
+                    if (response.isEmpty()) {
+                        return chain.filter(exchange);
+                    }
+                    setAlreadyRouted(exchange);
+                    return write(exchange, response.get());
+                });
+    }
+
+    private boolean isHedged(Route route, ServerWebExchange exchange, URI requestUrl) {
+        return exchange.getRequest().getMethod() == HttpMethod.GET
+                && LOAD_BALANCED_SCHEME.equals(requestUrl.getScheme())
+                && Optional.ofNullable(route.getMetadata().get(HEDGE_ATTR))
+                        .map(value -> Boolean.parseBoolean(value.toString()))
+                        .orElse(false);
+    }
+
+    /**
+     * Send the request once
+     * @param serverError Receives a 5xx response, which only answers the request if no call does better
+     */
+    private Mono<ResponseEntity<byte[]>> call(ServerWebExchange exchange, URI requestUrl,
+                                              AtomicReference<ResponseEntity<byte[]>> serverError) {
+        HttpHeaders requestHeaders = HttpHeadersFilter.filterRequest(headersFilters(), exchange);
+        return webClient.get()
+                .uri(requestUrl)
+                .headers(headers -> requestHeaders.forEach((name, values) -> {
+                    if (!HOP_BY_HOP_HEADERS.contains(name.toLowerCase())) {
+                        headers.addAll(name, values);
+                    }
+                }))
+                .exchangeToMono(response -> response.toEntity(byte[].class))
+                // A failed call leaves the other one to answer; if both fail without a response, the normal
+                // path and its retries take over
+                .doOnNext(response -> {
+                    if (response.getStatusCode().is5xxServerError()) {
+                        serverError.set(response);
+                    }
+                })
+                .filter(response -> !response.getStatusCode().is5xxServerError());
+    }
+
+    private Mono<Void> write(ServerWebExchange exchange, ResponseEntity<byte[]> upstream) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(upstream.getStatusCode());
+        HttpHeaders responseHeaders = HttpHeadersFilter.filter(headersFilters(), upstream.getHeaders(),
+                exchange, HttpHeadersFilter.Type.RESPONSE);
+        responseHeaders.forEach((name, values) -> {
+            if (!HOP_BY_HOP_HEADERS.contains(name.toLowerCase())) {
+                response.getHeaders().put(name, values);
+            }
+        });
+        byte[] body = upstream.getBody() != null ? upstream.getBody() : new byte[0];
+        response.getHeaders().setContentLength(body.length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+    }
+
+    private List<HttpHeadersFilter> headersFilters() {
+        if (headersFilters == null) {
+            headersFilters = headersFiltersProvider.getIfAvailable(List::of);
+        }
+        return headersFilters;
+    }
+
+    private HedgeBudget budget(String routeId) {
+        HedgeBudget budget = budgets.get(routeId);
+        if (budget != null) {
+            return budget;
+        }
+        return budgets.computeIfAbsent(routeId, HedgeBudget::new);
+    }
+
+    @Override
+    public int getOrder() {
+        // After the request URL is resolved, before the load balancer picks an instance
+        return ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER - 2;
+    }
+
+    /**
+     * Hedging allowance of one route: each request earns a fraction of a hedge, up to a small reserve
+     */
+    private class HedgeBudget {
+
+        private static final double MAX_TOKENS = 10;
+
+        private final Counter hedgesSent;
+        private final Counter hedgesWon;
+        private final Timer hedgedLatency;
+        private double tokens = MAX_TOKENS;
+
+        HedgeBudget(String routeId) {
+            this.hedgesSent = Counter.builder("gateway.hedging.sent")
+                    .description("Hedged requests sent")
+                    .tag("route", routeId)
+                    .register(meterRegistry);
+            this.hedgesWon = Counter.builder("gateway.hedging.won")
+                    .description("Hedged requests that answered first")
+                    .tag("route", routeId)
+                    .register(meterRegistry);
+            this.hedgedLatency = Timer.builder("gateway.hedging.latency")
+                    .description("Time from the primary call to the answer of a hedged call that answered first")
+                    .tag("route", routeId)
+                    .register(meterRegistry);
+        }
+
+        synchronized void onRequest() {
+            tokens = Math.min(MAX_TOKENS, tokens + budgetRatio);
+        }
+
+        boolean tryHedge() {
+            synchronized (this) {
+                if (tokens < 1) {
+                    return false;
+                }
+                tokens -= 1;
+            }
+            hedgesSent.increment();
+            return true;
+        }
+    }
+}
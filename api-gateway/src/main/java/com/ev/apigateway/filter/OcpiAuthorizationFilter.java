@@ -55,15 +55,12 @@ public class OcpiAuthorizationFilter extends AbstractGatewayFilterFactory<OcpiAu
             
             String token = authHeader.substring(TOKEN_PREFIX.length());
             
-            log.info("Validating OCPI token: {}", token);
-            
             return tokenValidationService.validateToken(token)
                 .flatMap(isValid -> {
                     if (isValid) {
-                        log.info("OCPI token validation successful");
                         return chain.filter(exchange);
                     } else {
-                        log.error("OCPI token validation failed");
+                        log.warn("Rejected OCPI request to {} with an invalid token", path);
                         return handleUnauthorized(exchange, "Invalid token");
                     }
                 });
@@ -0,0 +1,42 @@
+package com.ev.apigateway.filter;
+
+import com.ev.apigateway.service.RouteLatencyService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * Filter measuring upstream latency per route
+ * - Runs just before load balancing, so cached responses and rejected requests are not measured
+ */
+@Component
+@RequiredArgsConstructor
+public class RouteLatencyFilter implements GlobalFilter, Ordered {
+
+    private final RouteLatencyService routeLatencyService;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        if (route == null) {
+            return chain.filter(exchange);
+        }
+
+        long startedAtNanos = System.nanoTime();
+        return chain.filter(exchange)
+                .doFinally(signal -> routeLatencyService.record(route.getId(), System.nanoTime() - startedAtNanos));
+    }
+
+    @Override
+    public int getOrder() {
+        return ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER - 1;
+    }
+}
@@ -0,0 +1,252 @@
+package com.ev.apigateway.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.ratelimit.AbstractRateLimiter;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Rate limiter for the RequestRateLimiter filter, deciding locally and agreeing globally through Redis
+ * - Every request is decided by an in-process token bucket per route and key; there is no Redis call per request
+ * - Each instance refills its buckets with its share of the route's rate, based on the number of live instances
+ * - Consumption is reported to Redis once per sync interval; keys that went over the global limit in the
+ *   interval take the excess from their local buckets, in proportion to what each instance let through
+ * - Rates are multiplied per tier (taken from the key, "tier/identity") and shrink while a route's upstream
+ *   p99 latency is above its target, recovering gradually once it is back under
+ */
+@Component("adaptiveRateLimiter")
+@Primary
+@Slf4j
+public class AdaptiveRateLimiter extends AbstractRateLimiter<AdaptiveRateLimiter.Config> {
+
+    public static final String CONFIGURATION_PROPERTY_NAME = "adaptive-rate-limiter";
+
+    private static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+    private static final String REPLENISH_RATE_HEADER = "X-RateLimit-Replenish-Rate";
+    private static final String BURST_CAPACITY_HEADER = "X-RateLimit-Burst-Capacity";
+
+    private static final String KEY_PREFIX = "api-gateway:rate-limit:";
+    private static final String INSTANCES_KEY = KEY_PREFIX + "instances";
+    private static final String DEFAULT_TIER = "standard";
+
+    // Latency adaptation: multiplicative decrease, additive increase
+    private static final double DECREASE_FACTOR = 0.7;
+    private static final double INCREASE_STEP = 0.1;
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final RouteLatencyService routeLatencyService;
+    private final Config defaultConfig;
+    private final Map<String, Double> tierMultipliers;
+    private final double minRateFactor;
+    private final long syncIntervalMillis;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final Cache<String, TokenBucket> buckets;
+    // Current latency factor per route, 1.0 when the route is within its latency target
+    private final ConcurrentMap<String, Double> rateFactors = new ConcurrentHashMap<>();
+    private volatile int liveInstances = 1;
+
+    public AdaptiveRateLimiter(ReactiveStringRedisTemplate redisTemplate,
+                               RouteLatencyService routeLatencyService,
+                               ConfigurationService configurationService,
+                               @Value("${rate-limit.default-replenish-rate:50}") double defaultReplenishRate,
+                               @Value("${rate-limit.default-burst-capacity:100}") double defaultBurstCapacity,
+                               @Value("${rate-limit.default-latency-target-ms:500}") long defaultLatencyTargetMs,
+                               @Value("${rate-limit.tiers:anonymous:0.5,standard:1,partner:2,premium:5}") List<String> tiers,
+                               @Value("${rate-limit.min-rate-factor:0.2}") double minRateFactor,
+                               @Value("${rate-limit.sync-interval-ms:1000}") long syncIntervalMillis,
+                               @Value("${rate-limit.max-buckets:100000}") long maxBuckets) {
+        super(Config.class, CONFIGURATION_PROPERTY_NAME, configurationService);
+        this.redisTemplate = redisTemplate;
+        this.routeLatencyService = routeLatencyService;
+        this.defaultConfig = new Config();
+        this.defaultConfig.setReplenishRate(defaultReplenishRate);
+        this.defaultConfig.setBurstCapacity(defaultBurstCapacity);
+        this.defaultConfig.setLatencyTargetMs(defaultLatencyTargetMs);
+        this.tierMultipliers = tiers.stream()
+                .map(tier -> tier.split(":"))
+                .collect(Collectors.toUnmodifiableMap(tier -> tier[0].trim(), tier -> Double.parseDouble(tier[1].trim())));
+        this.minRateFactor = minRateFactor;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+    }
+
+    @Override
+    public Mono<Response> isAllowed(String routeId, String id) {
+        Config config = getConfig().getOrDefault(routeId, defaultConfig);
+        double share = rateFactors.getOrDefault(routeId, 1.0) * tierMultiplier(id) / liveInstances;
+        double rate = replenishRate(config) * share;
+        double capacity = Math.max(1.0, burstCapacity(config) * share);
+
+        TokenBucket bucket = buckets.get(routeId + '\n' + id, key -> new TokenBucket(capacity));
+        long remaining = bucket.tryConsume(rate, capacity, System.nanoTime());
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put(REMAINING_HEADER, Long.toString(Math.max(remaining, 0)));
+        headers.put(REPLENISH_RATE_HEADER, Long.toString((long) replenishRate(config)));
+        headers.put(BURST_CAPACITY_HEADER, Long.toString((long) burstCapacity(config)));
+        return Mono.just(new Response(remaining >= 0, headers));
+    }
+
+    /**
+     * Reconcile local buckets with the other instances and adapt rates to upstream latency
+     */
+    @Scheduled(fixedDelayString = "${rate-limit.sync-interval-ms:1000}")
+    public void synchronize() {
+        adaptToLatency();
+
+        long now = System.currentTimeMillis();
+        String windowKey = KEY_PREFIX + "window:" + (now / syncIntervalMillis);
+        Duration windowTtl = Duration.ofMillis(syncIntervalMillis * 3);
+
+        Mono<Void> heartbeat = redisTemplate.opsForZSet().add(INSTANCES_KEY, instanceId, now)
+                .then(redisTemplate.opsForZSet().removeRangeByScore(INSTANCES_KEY,
+                        Range.closed(Double.NEGATIVE_INFINITY, (double) (now - syncIntervalMillis * 3))))
+                .then(redisTemplate.opsForZSet().size(INSTANCES_KEY))
+                .doOnNext(count -> liveInstances = (int) Math.max(1, count))
+                .then();
+
+        Mono<Void> reconcile = Flux.fromIterable(buckets.asMap().entrySet())
+                .flatMap(entry -> {
+                    long consumed = entry.getValue().drainConsumed();
+                    if (consumed == 0) {
+                        return Mono.empty();
+                    }
+                    return redisTemplate.opsForHash().increment(windowKey, entry.getKey(), consumed)
+                            .doOnNext(globalCount -> applyGlobalCount(entry.getKey(), entry.getValue(), consumed, globalCount));
+                }, 16)
+                .then(redisTemplate.expire(windowKey, windowTtl))
+                .then();
+
+        heartbeat.then(reconcile)
+                .subscribe(null, e -> log.warn("Rate limit sync failed, deciding locally only: {}", e.getMessage()));
+    }
+
+    /**
+     * Take this instance's part of any global excess in the current window from the local bucket
+     */
+    private void applyGlobalCount(String bucketKey, TokenBucket bucket, long consumed, long globalCount) {
+        int separator = bucketKey.indexOf('\n');
+        String routeId = bucketKey.substring(0, separator);
+        String id = bucketKey.substring(separator + 1);
+        Config config = getConfig().getOrDefault(routeId, defaultConfig);
+
+        double allowed = replenishRate(config) * rateFactors.getOrDefault(routeId, 1.0) * tierMultiplier(id)
+                * syncIntervalMillis / 1000.0;
+        if (globalCount > allowed) {
+            double excess = (globalCount - allowed) * consumed / globalCount;
+            bucket.withdraw(excess);
+            log.debug("Rate limit key {} on route {} over global limit by {}", id, routeId, globalCount - allowed);
+        }
+    }
+
+    private void adaptToLatency() {
+        Set<String> routeIds = new HashSet<>(getConfig().keySet());
+        routeIds.addAll(rateFactors.keySet());
+        for (String routeId : routeIds) {
+            Config config = getConfig().getOrDefault(routeId, defaultConfig);
+            double p99 = routeLatencyService.p99Millis(routeId);
+            double factor = rateFactors.getOrDefault(routeId, 1.0);
+            double adapted = p99 > latencyTargetMs(config)
+                    ? Math.max(minRateFactor, factor * DECREASE_FACTOR)
+                    : Math.min(1.0, factor + INCREASE_STEP);
+            if (adapted != factor) {
+                log.info("Rate factor for route {} now {} (p99 {} ms, target {} ms)",
+                        routeId, String.format("%.2f", adapted), Math.round(p99), latencyTargetMs(config));
+                rateFactors.put(routeId, adapted);
+            }
+        }
+    }
+
+    // Settings a route does not set fall back to the defaults
+
+    private double replenishRate(Config config) {
+        return config.getReplenishRate() > 0 ? config.getReplenishRate() : defaultConfig.getReplenishRate();
+    }
+
+    private double burstCapacity(Config config) {
+        return config.getBurstCapacity() > 0 ? config.getBurstCapacity() : defaultConfig.getBurstCapacity();
+    }
+
+    private long latencyTargetMs(Config config) {
+        return config.getLatencyTargetMs() > 0 ? config.getLatencyTargetMs() : defaultConfig.getLatencyTargetMs();
+    }
+
+    private double tierMultiplier(String id) {
+        int separator = id.indexOf('/');
+        String tier = separator > 0 ? id.substring(0, separator) : DEFAULT_TIER;
+        return tierMultipliers.getOrDefault(tier, tierMultipliers.getOrDefault(DEFAULT_TIER, 1.0));
+    }
+
+    /**
+     * Token bucket for one route and key; contention is limited to requests with the same key
+     */
+    private static final class TokenBucket {
+        private double tokens;
+        private long refilledAtNanos = System.nanoTime();
+        private long consumedSinceSync;
+
+        TokenBucket(double capacity) {
+            this.tokens = capacity;
+        }
+
+        /**
+         * @return Tokens left after taking one, or -1 if the bucket was empty
+         */
+        synchronized long tryConsume(double ratePerSecond, double capacity, long nowNanos) {
+            tokens = Math.min(capacity, tokens + (nowNanos - refilledAtNanos) * ratePerSecond / 1_000_000_000.0);
+            refilledAtNanos = nowNanos;
+            if (tokens < 1.0) {
+                return -1;
+            }
+            tokens -= 1.0;
+            consumedSinceSync++;
+            return (long) tokens;
+        }
+
+        synchronized long drainConsumed() {
+            long consumed = consumedSinceSync;
+            consumedSinceSync = 0;
+            return consumed;
+        }
+
+        synchronized void withdraw(double amount) {
+            tokens -= amount;
+        }
+    }
+
+    /**
+     * Per-route settings, bound from the filter's "adaptive-rate-limiter.*" arguments
+     */
+    @Data
+    public static class Config {
+        // Requests per second allowed per key across all instances, before tier and latency adjustments
+        private double replenishRate;
+        private double burstCapacity;
+        private long latencyTargetMs;
+    }
+}
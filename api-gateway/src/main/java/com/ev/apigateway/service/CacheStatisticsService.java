@@ -1,61 +1,143 @@
 package com.ev.apigateway.service;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.connection.RedisServerCommands;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
-import org.springframework.data.redis.core.ScanOptions;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Service for collecting and reporting Redis cache statistics
- * - Tracks cache hits and misses
- * - Reports memory usage
- * - Provides insights into cache performance
+ * Service for collecting and reporting cache statistics
+ * - Tracks cache hits, misses and evictions in striped counters, registered up front for the known cache types
+ * - Exports them through Micrometer, together with per-route response latency and payload size
+ * - Estimates key counts per cache type from a random sample of Redis keys
+ * - Reports Redis memory usage on request
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class CacheStatisticsService {
 
     private final ReactiveRedisTemplate<String, Object> redisTemplate;
-    
-    // Cache metrics counters
-    private final Map<String, AtomicLong> cacheHits = new ConcurrentHashMap<>();
-    private final Map<String, AtomicLong> cacheMisses = new ConcurrentHashMap<>();
-    
+    private final MeterRegistry meterRegistry;
+    private final int keySampleSize;
+
     // Cache types
     private static final String[] CACHE_TYPES = {
-        "jwt-validation", 
-        "routes", 
-        "user-permissions", 
-        "station-status", 
-        "metrics", 
-        "service-registry"
+        "jwt-validation",
+        "routes",
+        "user-permissions",
+        "station-status",
+        "metrics",
+        "service-registry",
+        "response-cache",
+        "ocpi-tokens"
     };
-    
+
+    // Redis key prefixes of each cache type. Spring caches are stored under "api-gateway:<name>::";
+    // the others use their own key layouts, and caches held only in process have no keys
+    private static final Map<String, List<String>> KEY_PREFIXES = Map.of(
+        "jwt-validation", List.of("api-gateway:jwt-validation::", "api-gateway:jwt:"),
+        "routes", List.of("api-gateway:routes:"),
+        "user-permissions", List.of("api-gateway:user-permissions::"),
+        "station-status", List.of("api-gateway:station-status::"),
+        "metrics", List.of("api-gateway:metrics::"),
+        "service-registry", List.of("api-gateway:service-registry::"),
+        "response-cache", List.of("api-gateway:response:"),
+        "ocpi-tokens", List.of()
+    );
+
+    // Counters for the known cache types; never modified, so lookups take no lock
+    private final Map<String, CacheCounters> knownCaches;
+    // Counters for cache types registered at runtime
+    private final ConcurrentMap<String, CacheCounters> otherCaches = new ConcurrentHashMap<>();
+
+    // Response meters per route and cache status
+    private final ConcurrentMap<String, Timer> responseTimers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, DistributionSummary> payloadSummaries = new ConcurrentHashMap<>();
+
+    public CacheStatisticsService(ReactiveRedisTemplate<String, Object> redisTemplate,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${cache.stats.key-sample-size:200}") int keySampleSize) {
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.keySampleSize = keySampleSize;
+
+        Map<String, CacheCounters> counters = new HashMap<>();
+        for (String cacheType : CACHE_TYPES) {
+            counters.put(cacheType, registerCounters(cacheType));
+        }
+        this.knownCaches = Map.copyOf(counters);
+    }
+
     /**
      * Record a cache hit for a specific cache type
      */
     public void recordCacheHit(String cacheType) {
-        cacheHits.computeIfAbsent(cacheType, k -> new AtomicLong(0)).incrementAndGet();
+        counters(cacheType).hits.increment();
     }
-    
+
     /**
      * Record a cache miss for a specific cache type
      */
     public void recordCacheMiss(String cacheType) {
-        cacheMisses.computeIfAbsent(cacheType, k -> new AtomicLong(0)).incrementAndGet();
+        counters(cacheType).misses.increment();
     }
-    
+
+    /**
+     * Record an entry evicted from an in-process cache
+     */
+    public void recordEviction(String cacheType) {
+        counters(cacheType).evictions.increment();
+    }
+
+    /**
+     * Record a response handled by the response cache
+     * @param routeId The route the request matched
+     * @param cacheStatus How the response was served, as in the X-Cache header
+     * @param durationNanos Time from the cache lookup until the response was written
+     * @param payloadBytes Size of the response body, or a negative value if it is not known
+     */
+    public void recordResponse(String routeId, String cacheStatus, long durationNanos, int payloadBytes) {
+        String timerKey = routeId + '\n' + cacheStatus;
+        Timer timer = responseTimers.get(timerKey);
+        if (timer == null) {
+            timer = responseTimers.computeIfAbsent(timerKey, k -> Timer.builder("gateway.cache.response.latency")
+                    .description("Time to serve responses through the response cache")
+                    .tag("route", routeId)
+                    .tag("cache", cacheStatus)
+                    .register(meterRegistry));
+        }
+        timer.record(durationNanos, TimeUnit.NANOSECONDS);
+
+        if (payloadBytes >= 0) {
+            DistributionSummary summary = payloadSummaries.get(routeId);
+            if (summary == null) {
+                summary = payloadSummaries.computeIfAbsent(routeId, k -> DistributionSummary
+                        .builder("gateway.cache.response.payload")
+                        .description("Size of response bodies served through the response cache")
+                        .baseUnit("bytes")
+                        .tag("route", routeId)
+                        .register(meterRegistry));
+            }
+            summary.record(payloadBytes);
+        }
+    }
+
     /**
      * Get detailed cache statistics for all cache types
      */
@@ -63,31 +145,34 @@ public class CacheStatisticsService {
         return getRedisInfo()
             .map(redisInfo -> {
                 Map<String, Object> stats = new HashMap<>();
-                
+
                 // Add Redis server info
                 stats.put("redisInfo", redisInfo);
-                
+
                 // Add hit/miss statistics for all cache types
                 Map<String, Object> hitMissStats = new HashMap<>();
-                for (String cacheType : CACHE_TYPES) {
+                Map<String, CacheCounters> allCaches = new HashMap<>(knownCaches);
+                allCaches.putAll(otherCaches);
+                allCaches.forEach((cacheType, counters) -> {
                     Map<String, Object> typeStat = new HashMap<>();
-                    long hits = cacheHits.getOrDefault(cacheType, new AtomicLong(0)).get();
-                    long misses = cacheMisses.getOrDefault(cacheType, new AtomicLong(0)).get();
+                    long hits = counters.hitsSinceReset();
+                    long misses = counters.missesSinceReset();
                     long total = hits + misses;
-                    
+
                     typeStat.put("hits", hits);
                     typeStat.put("misses", misses);
                     typeStat.put("total", total);
                     typeStat.put("hitRatio", total > 0 ? (double) hits / total : 0);
-                    
+                    typeStat.put("evictions", counters.evictions.sum());
+
                     hitMissStats.put(cacheType, typeStat);
-                }
+                });
                 stats.put("cacheStats", hitMissStats);
-                
+
                 return stats;
             });
     }
-    
+
     /**
      * Get Redis server information including memory usage
      */
@@ -96,7 +181,7 @@ public class CacheStatisticsService {
             .serverCommands().info()
             .map(info -> {
                 Map<String, Object> redisInfo = new HashMap<>();
-                
+
                 // Extract memory information
                 String infoStr = info.toString();
                 String[] lines = infoStr.split("\r\n");
@@ -117,13 +202,13 @@ public class CacheStatisticsService {
                         redisInfo.put("keyspaceMisses", Long.parseLong(line.split(":")[1]));
                     }
                 }
-                
+
                 // Calculate hit ratio from Redis keyspace stats
                 long keyspaceHits = (long) redisInfo.getOrDefault("keyspaceHits", 0L);
                 long keyspaceMisses = (long) redisInfo.getOrDefault("keyspaceMisses", 0L);
                 long totalKeyspace = keyspaceHits + keyspaceMisses;
                 redisInfo.put("globalHitRatio", totalKeyspace > 0 ? (double) keyspaceHits / totalKeyspace : 0);
-                
+
                 return redisInfo;
             })
             .onErrorResume(e -> {
@@ -134,70 +219,117 @@ public class CacheStatisticsService {
                 return Mono.just(fallback);
             });
     }
-    
+
     /**
-     * Get the number of keys by pattern to analyze cache size
+     * Estimate the number of keys for each cache type.
+     * A fixed number of random keys is sampled and each type's share is scaled to the size of the
+     * database, so the cost does not grow with the keyspace.
      */
     public Mono<Map<String, Long>> getKeyCounts() {
-        Map<String, Long> counts = new HashMap<>();
-        
-        return Mono.just(counts)
-            .flatMap(map -> {
-                // Build a Mono chain to count keys for each cache type
-                Mono<Map<String, Long>> result = Mono.just(map);
-                
-                for (String cacheType : CACHE_TYPES) {
-                    String pattern = "api-gateway:" + cacheType + "*";
-                    result = result.flatMap(m -> 
-                        countKeys(pattern)
-                            .doOnNext(count -> m.put(cacheType, count))
-                            .thenReturn(m)
-                    );
-                }
-                
-                return result;
-            });
-    }
-    
-    /**
-     * Count keys matching a pattern
-     */
-    private Mono<Long> countKeys(String pattern) {
-        ScanOptions options = ScanOptions.scanOptions().match(pattern).build();
-        return redisTemplate.scan(options)
-            .count()
-            .onErrorReturn(0L);
+        Mono<Long> totalKeys = redisTemplate.execute(connection -> connection.serverCommands().dbSize())
+                .next()
+                .defaultIfEmpty(0L);
+
+        return totalKeys.flatMap(total -> {
+            if (total == 0) {
+                return Mono.just(estimateKeyCounts(List.of(), 0));
+            }
+            int samples = (int) Math.min(keySampleSize, total);
+            return Flux.range(0, samples)
+                    .flatMap(i -> redisTemplate.randomKey(), 8)
+                    .collectList()
+                    .map(keys -> estimateKeyCounts(keys, total));
+        })
+        .onErrorResume(e -> {
+            log.error("Error estimating cache key counts: {}", e.getMessage());
+            return Mono.just(new LinkedHashMap<>());
+        });
     }
-    
-    /**
-     * Log cache statistics periodically
-     */
-    @Scheduled(fixedRate = 600000) // Every 10 minutes
-    public void logCacheStatistics() {
-        getCacheStatistics()
-            .flatMap(stats -> {
-                @SuppressWarnings("unchecked")
-                Map<String, Object> redisInfo = (Map<String, Object>) stats.get("redisInfo");
-                
-                log.info("Redis Cache Statistics:");
-                log.info("Memory usage: {}", redisInfo.get("usedMemoryHuman"));
-                log.info("Global hit ratio: {}", redisInfo.get("globalHitRatio"));
-                
-                return getKeyCounts();
-            })
-            .subscribe(keyCounts -> 
-                log.info("Cache key counts: {}", keyCounts)
-            );
+
+    private Map<String, Long> estimateKeyCounts(List<String> sampledKeys, long totalKeys) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (String cacheType : CACHE_TYPES) {
+            List<String> prefixes = KEY_PREFIXES.getOrDefault(cacheType, List.of());
+            long matches = sampledKeys.stream()
+                    .filter(key -> prefixes.stream().anyMatch(key::startsWith))
+                    .count();
+            counts.put(cacheType, sampledKeys.isEmpty() ? 0 : Math.round((double) matches / sampledKeys.size() * totalKeys));
+        }
+        counts.put("total", totalKeys);
+        return counts;
     }
-    
+
     /**
-     * Reset all cache statistics counters
+     * Reset all cache statistics counters.
+     * Exported meters keep counting; only the figures reported by this service start again from zero.
      */
     public Mono<Void> resetStatistics() {
         return Mono.fromRunnable(() -> {
-            cacheHits.clear();
-            cacheMisses.clear();
+            knownCaches.values().forEach(CacheCounters::reset);
+            otherCaches.values().forEach(CacheCounters::reset);
             log.info("Cache statistics reset");
         });
     }
-} 
\ No newline at end of file
+
+    private CacheCounters counters(String cacheType) {
+        CacheCounters counters = knownCaches.get(cacheType);
+        if (counters != null) {
+            return counters;
+        }
+        return otherCaches.computeIfAbsent(cacheType, this::registerCounters);
+    }
+
+    private CacheCounters registerCounters(String cacheType) {
+        CacheCounters counters = new CacheCounters();
+        FunctionCounter.builder("gateway.cache.requests", counters.hits, LongAdder::sum)
+                .description("Cache lookups")
+                .tag("cache", cacheType)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("gateway.cache.requests", counters.misses, LongAdder::sum)
+                .description("Cache lookups")
+                .tag("cache", cacheType)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("gateway.cache.evictions", counters.evictions, LongAdder::sum)
+                .description("Entries evicted from in-process caches")
+                .tag("cache", cacheType)
+                .register(meterRegistry);
+        Gauge.builder("gateway.cache.hit.ratio", counters, CacheCounters::hitRatio)
+                .description("Share of cache lookups that were hits since the last reset")
+                .tag("cache", cacheType)
+                .register(meterRegistry);
+        return counters;
+    }
+
+    /**
+     * Striped counters for one cache type; updates from request threads never wait on each other
+     */
+    private static final class CacheCounters {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+        // Counts at the last reset, subtracted so the adders themselves stay monotonic
+        private volatile long hitsAtReset;
+        private volatile long missesAtReset;
+
+        long hitsSinceReset() {
+            return hits.sum() - hitsAtReset;
+        }
+
+        long missesSinceReset() {
+            return misses.sum() - missesAtReset;
+        }
+
+        double hitRatio() {
+            long hitCount = hitsSinceReset();
+            long total = hitCount + missesSinceReset();
+            return total > 0 ? (double) hitCount / total : 0;
+        }
+
+        void reset() {
+            hitsAtReset = hits.sum();
+            missesAtReset = misses.sum();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.ev.apigateway.service;
+
+import org.springframework.http.HttpHeaders;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A response captured by the GlobalCacheFilter: status, headers and body.
+ * Entries are fresh until expiresAt and may be served stale until staleUntil while they are refreshed.
+ * Each entry carries a strong ETag of its body and, for large compressible bodies, a gzip-compressed
+ * copy that is sent to clients accepting gzip.
+ * Entries are kept decoded in the in-process cache and gzip-encoded in Redis.
+ */
+public final class CachedResponse {
+
+    private static final byte FORMAT_VERSION = 3;
+
+    private final int status;
+    private final HttpHeaders headers;
+    private final byte[] body;
+    private final long storedAtMillis;
+    private final long expiresAtMillis;
+    private final long staleUntilMillis;
+    // Time the upstream call took, which sets how early a refresh is worth starting
+    private final long fetchMillis;
+    // Strong entity tag of the body, quoted
+    private final String etag;
+    // Gzip-compressed body, or null if the body is not worth compressing
+    private final byte[] gzipBody;
+
+    public CachedResponse(int status, HttpHeaders headers, byte[] body, byte[] gzipBody, String etag,
+                          long storedAtMillis, long expiresAtMillis, long staleUntilMillis, long fetchMillis) {
+        this.status = status;
+        this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+        this.body = body;
+        this.gzipBody = gzipBody;
+        this.etag = etag;
+        this.storedAtMillis = storedAtMillis;
+        this.expiresAtMillis = expiresAtMillis;
+        this.staleUntilMillis = staleUntilMillis;
+        this.fetchMillis = fetchMillis;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public byte[] getGzipBody() {
+        return gzipBody;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Entity tag of the gzip-compressed representation, which must differ from the identity one
+     */
+    public String getGzipEtag() {
+        return etag.substring(0, etag.length() - 1) + "-gzip\"";
+    }
+
+    public long getStoredAtMillis() {
+        return storedAtMillis;
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    public long getStaleUntilMillis() {
+        return staleUntilMillis;
+    }
+
+    public long getFetchMillis() {
+        return fetchMillis;
+    }
+
+    public boolean isFresh(long nowMillis) {
+        return nowMillis < expiresAtMillis;
+    }
+
+    /**
+     * Approximate memory held by the entry, used to bound the in-process cache
+     */
+    public int weight() {
+        int weight = 64 + body.length + etag.length() + (gzipBody != null ? gzipBody.length : 0);
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            weight += header.getKey().length();
+            for (String value : header.getValue()) {
+                weight += value.length();
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * Compute a strong entity tag for a body
+     */
+    public static String strongEtag(byte[] body) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(body);
+            return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(hash) + '"';
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Compress a body with gzip
+     */
+    public static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Encode the response as gzip-compressed bytes for Redis.
+     * When a compressed body is held, only that is stored and the plain body is restored from it.
+     */
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 2 + 256);
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeShort(status);
+            out.writeLong(storedAtMillis);
+            out.writeLong(expiresAtMillis);
+            out.writeLong(staleUntilMillis);
+            out.writeLong(fetchMillis);
+            out.writeUTF(etag);
+            out.writeShort(headers.size());
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                out.writeUTF(header.getKey());
+                out.writeShort(header.getValue().size());
+                for (String value : header.getValue()) {
+                    out.writeUTF(value);
+                }
+            }
+            out.writeBoolean(gzipBody != null);
+            byte[] stored = gzipBody != null ? gzipBody : body;
+            out.writeInt(stored.length);
+            out.write(stored);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decode a response encoded by {@link #encode()}
+     *
+     * @return The response, or null if the bytes were written in another format
+     */
+    public static CachedResponse decode(byte[] encoded) {
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(encoded)))) {
+            if (in.readByte() != FORMAT_VERSION) {
+                return null;
+            }
+            int status = in.readUnsignedShort();
+            long storedAtMillis = in.readLong();
+            long expiresAtMillis = in.readLong();
+            long staleUntilMillis = in.readLong();
+            long fetchMillis = in.readLong();
+            String etag = in.readUTF();
+            int headerCount = in.readUnsignedShort();
+            HttpHeaders headers = new HttpHeaders();
+            for (int i = 0; i < headerCount; i++) {
+                String name = in.readUTF();
+                int valueCount = in.readUnsignedShort();
+                for (int j = 0; j < valueCount; j++) {
+                    headers.add(name, in.readUTF());
+                }
+            }
+            boolean compressed = in.readBoolean();
+            byte[] stored = new byte[in.readInt()];
+            in.readFully(stored);
+            byte[] body = compressed ? gunzip(stored) : stored;
+            return new CachedResponse(status, headers, body, compressed ? stored : null, etag,
+                    storedAtMillis, expiresAtMillis, staleUntilMillis, fetchMillis);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -1,162 +1,190 @@
 package com.ev.apigateway.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
- * Service for caching JWT token validation results
- * - Uses Redis to cache JWT tokens with their validation results
- * - Reduces load on authorization server by avoiding repetitive token validation
+ * Service for caching verified JWT tokens
+ * - Verifies tokens locally with the JWK-backed ReactiveJwtDecoder
+ * - Keeps decoded tokens in a bounded in-process cache keyed by the token's SHA-256 digest, until they expire
+ * - Uses Redis only for the revocation list, which is mirrored in memory and refreshed periodically
  * - Records cache hit/miss statistics
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class JwtCacheService {
 
-    private final ReactiveRedisTemplate<String, Object> redisTemplate;
-    private final ObjectMapper objectMapper;
+    private static final String CACHE_TYPE = "jwt-validation";
+    // Sorted set of revoked token IDs, scored by the token's expiry so expired entries can be dropped
+    private static final String REVOKED_KEY = "api-gateway:jwt:revoked";
+    private static final String DIGEST_ID_PREFIX = "sha256:";
+
+    private final ReactiveJwtDecoder jwtDecoder;
+    private final ReactiveStringRedisTemplate redisTemplate;
     private final CacheStatisticsService cacheStatisticsService;
+    private final Cache<String, Jwt> verifiedTokens;
 
-    // Cache prefix for JWT tokens
-    private static final String CACHE_PREFIX = "jwt:";
-    private static final String CACHE_TYPE = "jwt-validation";
+    // Replaced as a whole on every refresh, so lookups never see a partly loaded list
+    private volatile Set<String> revokedTokenIds = Set.of();
 
-    /**
-     * Gets the cached JWT validation result
-     * @param token JWT token string
-     * @return Optional with the JWT if found in cache, empty otherwise
-     */
-    public Mono<Jwt> getCachedJwt(String token) {
-        String cacheKey = CACHE_PREFIX + generateKeyFromToken(token);
-        
-        return redisTemplate.opsForValue()
-                .get(cacheKey)
-                .cast(String.class)
-                .flatMap(cachedValue -> {
-                    try {
-                        // Convert JSON string to Jwt object
-                        Map<String, Object> jwtMap = objectMapper.readValue(cachedValue, Map.class);
-                        return Mono.just(convertMapToJwt(jwtMap));
-                    } catch (JsonProcessingException e) {
-                        log.error("Error deserializing cached JWT: {}", e.getMessage());
-                        return Mono.empty();
-                    }
-                })
-                .doOnSuccess(jwt -> {
-                    if (jwt != null) {
-                        log.debug("JWT cache hit for token: {}", maskToken(token));
-                        cacheStatisticsService.recordCacheHit(CACHE_TYPE);
-                    } else {
-                        log.debug("JWT cache miss for token: {}", maskToken(token));
-                        cacheStatisticsService.recordCacheMiss(CACHE_TYPE);
-                    }
-                })
-                .doOnError(e -> cacheStatisticsService.recordCacheMiss(CACHE_TYPE))
-                .onErrorResume(e -> {
-                    log.error("Error retrieving JWT from cache: {}", e.getMessage());
-                    return Mono.empty();
-                });
+    public JwtCacheService(ReactiveJwtDecoder jwtDecoder,
+                           ReactiveStringRedisTemplate redisTemplate,
+                           CacheStatisticsService cacheStatisticsService,
+                           @Value("${cache.jwt.max-size:100000}") long maxSize,
+                           @Value("${cache.jwt.max-ttl-seconds:3600}") long maxTtlSeconds) {
+        this.jwtDecoder = jwtDecoder;
+        this.redisTemplate = redisTemplate;
+        this.cacheStatisticsService = cacheStatisticsService;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TokenExpiry(Duration.ofSeconds(maxTtlSeconds)))
+                .evictionListener((String key, Jwt jwt, RemovalCause cause) ->
+                        cacheStatisticsService.recordEviction(CACHE_TYPE))
+                .build();
     }
 
     /**
-     * Caches a validated JWT token
+     * Verify a token, from the cache if it was verified before
      * @param token JWT token string
-     * @param jwt Valid JWT object
-     * @return Mono<Boolean> indicating success
+     * @return The decoded JWT; errors with a JwtException if the token is invalid, expired or revoked
      */
-    public Mono<Boolean> cacheJwt(String token, Jwt jwt) {
-        String cacheKey = CACHE_PREFIX + generateKeyFromToken(token);
-        
-        try {
-            // Convert JWT to a JSON string for storage
-            String jwtJson = objectMapper.writeValueAsString(convertJwtToMap(jwt));
-            
-            // Calculate TTL based on JWT expiration (minus 10 seconds for safety)
-            Duration ttl = calculateTtl(jwt);
-            
-            return redisTemplate.opsForValue()
-                    .set(cacheKey, jwtJson, ttl)
-                    .doOnSuccess(result -> 
-                        log.debug("Cached JWT with key {}, expiring in {} seconds", 
-                                maskToken(token), ttl.getSeconds())
-                    )
-                    .onErrorResume(e -> {
-                        log.error("Error caching JWT: {}", e.getMessage());
-                        return Mono.just(false);
-                    });
-        } catch (JsonProcessingException e) {
-            log.error("Error serializing JWT for caching: {}", e.getMessage());
-            return Mono.just(false);
+    public Mono<Jwt> getVerifiedJwt(String token) {
+        String digest = digest(token);
+        Jwt cached = verifiedTokens.getIfPresent(digest);
+
+        Mono<Jwt> verified;
+        if (cached != null) {
+            cacheStatisticsService.recordCacheHit(CACHE_TYPE);
+            verified = Mono.just(cached);
+        } else {
+            cacheStatisticsService.recordCacheMiss(CACHE_TYPE);
+            verified = jwtDecoder.decode(token)
+                    .doOnNext(jwt -> verifiedTokens.put(digest, jwt));
         }
+
+        return verified.flatMap(jwt -> isRevoked(jwt, digest)
+                ? Mono.error(new JwtValidationException("Token has been revoked", List.of()))
+                : Mono.just(jwt));
     }
 
     /**
-     * Generates a deterministic key from the JWT token
-     * Avoids storing the full token as key for security reasons
+     * Revoke a token on all gateway instances until it expires
+     * @param tokenId The token's jti claim, or its SHA-256 digest prefixed with "sha256:"
+     * @param expiresAt When the token expires
      */
-    private String generateKeyFromToken(String token) {
-        // Use only the first 10 chars of hash for the key
-        return Integer.toString(token.hashCode()).replace("-", "m");
+    public Mono<Boolean> revoke(String tokenId, Instant expiresAt) {
+        revokedTokenIds = union(revokedTokenIds, tokenId);
+        return redisTemplate.opsForZSet()
+                .add(REVOKED_KEY, tokenId, expiresAt.getEpochSecond())
+                .onErrorResume(e -> {
+                    log.error("Error storing JWT revocation: {}", e.getMessage());
+                    return Mono.just(false);
+                });
     }
 
     /**
-     * Converts Jwt object to a Map for serialization
+     * Reload the revocation list from Redis, dropping revocations of tokens that have expired anyway
      */
-    private Map<String, Object> convertJwtToMap(Jwt jwt) {
-        Map<String, Object> map = new ConcurrentHashMap<>();
-        map.put("tokenValue", jwt.getTokenValue());
-        map.put("headers", jwt.getHeaders());
-        map.put("claims", jwt.getClaims());
-        map.put("subject", jwt.getSubject());
-        map.put("issuedAt", jwt.getIssuedAt());
-        map.put("expiresAt", jwt.getExpiresAt());
-        map.put("issuer", jwt.getIssuer());
-        map.put("id", jwt.getId());
-        return map;
+    @Scheduled(fixedDelayString = "${cache.jwt.revocation-refresh-ms:5000}")
+    public void refreshRevocations() {
+        double now = Instant.now().getEpochSecond();
+        redisTemplate.opsForZSet()
+                .removeRangeByScore(REVOKED_KEY, Range.closed(Double.NEGATIVE_INFINITY, now))
+                .thenMany(redisTemplate.opsForZSet().range(REVOKED_KEY, Range.closed(0L, -1L)))
+                .collect(Collectors.toUnmodifiableSet())
+                .subscribe(
+                    revoked -> revokedTokenIds = revoked,
+                    e -> log.error("Error refreshing JWT revocations: {}", e.getMessage())
+                );
     }
 
     /**
-     * Converts a Map back to a Jwt object
+     * Drop all verified tokens held by this instance
      */
-    private Jwt convertMapToJwt(Map<String, Object> map) {
-        return Jwt.withTokenValue((String) map.get("tokenValue"))
-                .headers(h -> h.putAll((Map<String, Object>) map.get("headers")))
-                .claims(c -> c.putAll((Map<String, Object>) map.get("claims")))
-                .build();
+    public void invalidateLocal() {
+        verifiedTokens.invalidateAll();
+    }
+
+    private boolean isRevoked(Jwt jwt, String digest) {
+        Set<String> revoked = revokedTokenIds;
+        if (revoked.isEmpty()) {
+            return false;
+        }
+        return (jwt.getId() != null && revoked.contains(jwt.getId())) || revoked.contains(DIGEST_ID_PREFIX + digest);
+    }
+
+    private static Set<String> union(Set<String> set, String element) {
+        return Stream.concat(set.stream(), Stream.of(element))
+                .collect(Collectors.toUnmodifiableSet());
     }
 
     /**
-     * Calculates TTL based on JWT expiration time
-     * Returns 1 minute if expiration can't be determined
+     * SHA-256 digest of the token; the token itself is never used as a key
      */
-    private Duration calculateTtl(Jwt jwt) {
-        if (jwt.getExpiresAt() != null) {
-            Duration ttl = Duration.between(java.time.Instant.now(), jwt.getExpiresAt());
-            // Subtract 10 seconds for safety, minimum of 5 seconds
-            long seconds = Math.max(5, ttl.getSeconds() - 10);
-            return Duration.ofSeconds(seconds);
+    private String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
-        return Duration.ofMinutes(1); // Default 1 minute
     }
 
     /**
-     * Masks token for logging purposes
+     * Keeps each verified token until its exp claim, capped at the maximum TTL
      */
-    private String maskToken(String token) {
-        if (token == null || token.length() < 10) {
-            return "***";
+    private static class TokenExpiry implements Expiry<String, Jwt> {
+
+        private final Duration maxTtl;
+
+        TokenExpiry(Duration maxTtl) {
+            this.maxTtl = maxTtl;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+            if (jwt.getExpiresAt() == null) {
+                return maxTtl.toNanos();
+            }
+            Duration remaining = Duration.between(Instant.now(), jwt.getExpiresAt());
+            if (remaining.isNegative()) {
+                return 0;
+            }
+            return TimeUnit.MILLISECONDS.toNanos(Math.min(remaining.toMillis(), maxTtl.toMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, jwt, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
         }
-        return token.substring(0, 5) + "..." + token.substring(token.length() - 5);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,54 @@
+package com.ev.apigateway.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An event pushed to live dashboards: a station status change or a charging session update.
+ * The data holds only the fields meant for clients.
+ */
+public final class LiveEvent {
+
+    public static final String STATION_STATUS = "STATION_STATUS";
+    public static final String CHARGING_SESSION = "CHARGING_SESSION";
+
+    private final String type;
+    private final String stationId;
+    private final String userId;
+    private final Map<String, Object> data;
+
+    public LiveEvent(String type, String stationId, String userId, Map<String, Object> data) {
+        this.type = type;
+        this.stationId = stationId;
+        this.userId = userId;
+        this.data = Collections.unmodifiableMap(new LinkedHashMap<>(data));
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getStationId() {
+        return stationId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public Map<String, Object> getData() {
+        return data;
+    }
+
+    /**
+     * Check the event against a subscriber's filters; empty filters match everything.
+     * The user filter only scopes charging session events, as station status belongs to no user.
+     */
+    public boolean matches(Set<String> types, Set<String> stationIds, String userIdFilter) {
+        return (types.isEmpty() || types.contains(type))
+                && (stationIds.isEmpty() || stationIds.contains(stationId))
+                && (userIdFilter == null || !CHARGING_SESSION.equals(type) || userIdFilter.equals(userId));
+    }
+}
@@ -0,0 +1,142 @@
+package com.ev.apigateway.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.kafka.receiver.KafkaReceiver;
+import reactor.kafka.receiver.ReceiverOptions;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Hub fanning out station and charging session events from Kafka to live dashboard subscribers
+ * - Consumes the topics with reactor-kafka, once per gateway instance, starting from the latest offset
+ * - Shares one consumer between all subscribers; it runs while anyone is subscribed
+ * - Coalesces status events of the same station within a short window, keeping the latest
+ * - Gives each subscriber a bounded buffer that drops its oldest events when the client falls behind
+ */
+@Service
+@Slf4j
+public class LiveEventHub {
+
+    public static final String STATION_STATUS_TOPIC = "station-status-events";
+    public static final String CHARGING_SESSION_TOPIC = "charging-session-events";
+
+    private final ObjectMapper objectMapper;
+    private final int subscriberBufferSize;
+    private final Flux<LiveEvent> events;
+    private final LongAdder droppedEvents = new LongAdder();
+
+    public LiveEventHub(ObjectMapper objectMapper,
+                        @Value("${spring.kafka.bootstrap-servers}") String bootstrapServers,
+                        @Value("${live-events.coalesce-window-ms:500}") long coalesceWindowMillis,
+                        @Value("${live-events.subscriber-buffer-size:256}") int subscriberBufferSize,
+                        @Value("${live-events.idle-disconnect-seconds:30}") long idleDisconnectSeconds) {
+        this.objectMapper = objectMapper;
+        this.subscriberBufferSize = subscriberBufferSize;
+
+        Map<String, Object> consumerProps = new HashMap<>();
+        consumerProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        // Every instance serves its own subscribers, so each reads all events
+        consumerProps.put(ConsumerConfig.GROUP_ID_CONFIG, "api-gateway-live-" + UUID.randomUUID());
+        consumerProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        consumerProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        consumerProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+
+        ReceiverOptions<String, String> receiverOptions = ReceiverOptions.<String, String>create(consumerProps)
+                .subscription(List.of(STATION_STATUS_TOPIC, CHARGING_SESSION_TOPIC));
+
+        Flux<LiveEvent> received = KafkaReceiver.create(receiverOptions)
+                .receiveAutoAck()
+                .concatMap(Function.identity())
+                .mapNotNull(this::toLiveEvent)
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> log.warn("Live event consumer failed, reconnecting: {}",
+                                signal.failure().getMessage())))
+                .publish()
+                .refCount(1, Duration.ofSeconds(idleDisconnectSeconds));
+
+        Flux<LiveEvent> stationStatus = received
+                .filter(event -> LiveEvent.STATION_STATUS.equals(event.getType()))
+                .window(Duration.ofMillis(coalesceWindowMillis))
+                .concatMap(window -> window
+                        .collectMap(LiveEvent::getStationId, Function.identity(), LinkedHashMap::new)
+                        .flatMapIterable(Map::values));
+        Flux<LiveEvent> chargingSessions = received
+                .filter(event -> LiveEvent.CHARGING_SESSION.equals(event.getType()));
+
+        this.events = Flux.merge(stationStatus, chargingSessions)
+                .publish()
+                .refCount(1, Duration.ofSeconds(idleDisconnectSeconds));
+    }
+
+    /**
+     * Subscribe to live events
+     * @param types Event types to receive; empty for all
+     * @param stationIds Stations to receive events for; empty for all
+     * @param userId User to receive charging session events for; null for all users
+     * @return Events matching the filters, dropping the oldest undelivered ones if the subscriber falls behind
+     */
+    public Flux<LiveEvent> subscribe(Set<String> types, Set<String> stationIds, String userId) {
+        return events
+                .filter(event -> event.matches(types, stationIds, userId))
+                .onBackpressureBuffer(subscriberBufferSize, dropped -> droppedEvents.increment(),
+                        BufferOverflowStrategy.DROP_OLDEST);
+    }
+
+    /**
+     * Number of events dropped for slow subscribers since startup
+     */
+    public long getDroppedEvents() {
+        return droppedEvents.sum();
+    }
+
+    private LiveEvent toLiveEvent(ConsumerRecord<String, String> record) {
+        try {
+            JsonNode node = objectMapper.readTree(record.value());
+            Map<String, Object> data = new LinkedHashMap<>();
+
+            if (STATION_STATUS_TOPIC.equals(record.topic())) {
+                data.put("type", LiveEvent.STATION_STATUS);
+                data.put("stationId", node.path("stationId").asText());
+                data.put("previousStatus", node.path("previousStatus").asText());
+                data.put("newStatus", node.path("newStatus").asText());
+                data.put("reason", node.path("reason").asText());
+                data.put("timestamp", node.path("timestamp").toString());
+                return new LiveEvent(LiveEvent.STATION_STATUS, node.path("stationId").asText(), null, data);
+            }
+
+            // The ID token is left out; it identifies the driver's card
+            data.put("type", LiveEvent.CHARGING_SESSION);
+            data.put("eventType", node.path("eventType").asText());
+            data.put("sessionId", node.path("sessionId").asText());
+            data.put("stationId", node.path("stationId").asText());
+            data.put("connectorId", node.path("connectorId").asText());
+            data.put("userId", node.path("userId").asText());
+            data.put("sessionStatus", node.path("sessionStatus").asText());
+            data.put("energyDeliveredKwh", node.path("energyDeliveredKwh").asText());
+            data.put("timestamp", node.path("timestamp").toString());
+            return new LiveEvent(LiveEvent.CHARGING_SESSION, node.path("stationId").asText(),
+                    node.path("userId").asText(null), data);
+        } catch (Exception e) {
+            log.error("Error processing live event from {}: {}", record.topic(), e.getMessage());
+            return null;
+        }
+    }
+}
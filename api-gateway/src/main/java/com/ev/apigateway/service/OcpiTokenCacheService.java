@@ -0,0 +1,223 @@
+package com.ev.apigateway.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Gateway-side cache of OCPI token validity
+ * - Kept up to date from the token events published by the roaming-service
+ * - Keyed by the SHA-256 digest of the token; raw tokens are neither stored nor logged
+ * - Unknown tokens are cached as invalid for a short time, so repeated bad requests stay local
+ * - Concurrent lookups of the same uncached token share one call to the roaming-service
+ */
+@Service
+@Slf4j
+public class OcpiTokenCacheService {
+
+    public static final String TOKEN_EVENTS_TOPIC = "token-events";
+    private static final String CACHE_TYPE = "ocpi-tokens";
+
+    private final ObjectMapper objectMapper;
+    private final CacheStatisticsService cacheStatisticsService;
+    private final AsyncCache<String, TokenState> tokens;
+
+    public OcpiTokenCacheService(ObjectMapper objectMapper,
+                                 CacheStatisticsService cacheStatisticsService,
+                                 @Value("${cache.ocpi.max-size:50000}") long maxSize,
+                                 @Value("${cache.ocpi.ttl-seconds:300}") long ttlSeconds,
+                                 @Value("${cache.ocpi.negative-ttl-seconds:30}") long negativeTtlSeconds) {
+        this.objectMapper = objectMapper;
+        this.cacheStatisticsService = cacheStatisticsService;
+        this.tokens = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TokenStateExpiry(Duration.ofSeconds(ttlSeconds), Duration.ofSeconds(negativeTtlSeconds)))
+                .evictionListener((String key, TokenState state, RemovalCause cause) ->
+                        cacheStatisticsService.recordEviction(CACHE_TYPE))
+                .buildAsync();
+    }
+
+    /**
+     * Check whether a token is valid, loading it once if it is not cached
+     * @param token The OCPI token
+     * @param loader Asks the roaming-service whether the token is valid; called only on a cache miss
+     * @return Future completing with the token's validity; failed lookups are not cached
+     */
+    public CompletableFuture<Boolean> isValid(String token, Function<String, CompletableFuture<Boolean>> loader) {
+        String digest = digest(token);
+        CompletableFuture<TokenState> cached = tokens.getIfPresent(digest);
+        if (cached != null) {
+            cacheStatisticsService.recordCacheHit(CACHE_TYPE);
+        } else {
+            cacheStatisticsService.recordCacheMiss(CACHE_TYPE);
+            cached = tokens.get(digest, (key, executor) -> loader.apply(token)
+                    .thenApply(valid -> valid ? TokenState.validUntil(null, null) : TokenState.INVALID));
+        }
+        return cached.thenApply(state -> state.isValidAt(System.currentTimeMillis()));
+    }
+
+    /**
+     * Apply a token event from the roaming-service.
+     * Each gateway instance reads all events in its own consumer group, starting from the latest offset.
+     */
+    @KafkaListener(
+        topics = TOKEN_EVENTS_TOPIC,
+        groupId = "api-gateway-ocpi-tokens-${random.uuid}",
+        properties = "auto.offset.reset=latest"
+    )
+    public void consumeTokenEvent(String message) {
+        try {
+            JsonNode event = objectMapper.readTree(message);
+            String tokenValue = event.path("tokenValue").asText(null);
+            if (tokenValue == null) {
+                return;
+            }
+
+            TokenState state = switch (event.path("eventType").asText()) {
+                case "CREATED", "UPDATED", "VALIDATED" -> event.path("revoked").asBoolean()
+                        ? TokenState.REVOKED
+                        : TokenState.validUntil(validUntil(event.path("validUntil")), partyKey(event));
+                case "REVOKED", "DELETED", "EXPIRED" -> TokenState.REVOKED;
+                default -> null;
+            };
+            if (state != null) {
+                tokens.put(digest(tokenValue), CompletableFuture.completedFuture(state));
+                log.debug("Applied OCPI token event {} for token {}",
+                        event.path("eventType").asText(), event.path("tokenId").asText());
+            }
+        } catch (Exception e) {
+            log.error("Error processing OCPI token event: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * The OCPI party a valid token belongs to, if this instance has learned it from a token event
+     * @param token The OCPI token
+     * @return The party as country code and party ID, e.g. "NL-ABC", or null if not known
+     */
+    public String partyOf(String token) {
+        CompletableFuture<TokenState> cached = tokens.getIfPresent(digest(token));
+        if (cached == null || !cached.isDone() || cached.isCompletedExceptionally()) {
+            return null;
+        }
+        TokenState state = cached.join();
+        return state.isValidAt(System.currentTimeMillis()) ? state.partyKey : null;
+    }
+
+    /**
+     * Drop all cached token states held by this instance
+     */
+    public void invalidateLocal() {
+        tokens.synchronous().invalidateAll();
+    }
+
+    private Long validUntil(JsonNode node) throws IOException {
+        if (node.isMissingNode() || node.isNull()) {
+            return null;
+        }
+        // The roaming-service writes local date-times, in the same zone as the gateway
+        LocalDateTime validUntil = objectMapper.treeToValue(node, LocalDateTime.class);
+        return validUntil.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private String partyKey(JsonNode event) {
+        String countryCode = event.path("countryCode").asText(null);
+        String partyId = event.path("partyIdText").asText(null);
+        return countryCode != null && partyId != null ? countryCode + "-" + partyId : null;
+    }
+
+    private String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Validity of a token as last seen by this instance
+     */
+    private static final class TokenState {
+
+        // Unknown to the roaming-service; cached briefly
+        static final TokenState INVALID = new TokenState(false, false, null, null);
+        // Revoked, deleted or expired; cached for the full TTL
+        static final TokenState REVOKED = new TokenState(false, true, null, null);
+
+        private final boolean valid;
+        private final boolean definite;
+        private final Long validUntilMillis;
+        private final String partyKey;
+
+        private TokenState(boolean valid, boolean definite, Long validUntilMillis, String partyKey) {
+            this.valid = valid;
+            this.definite = definite;
+            this.validUntilMillis = validUntilMillis;
+            this.partyKey = partyKey;
+        }
+
+        static TokenState validUntil(Long validUntilMillis, String partyKey) {
+            return new TokenState(true, true, validUntilMillis, partyKey);
+        }
+
+        boolean isValidAt(long nowMillis) {
+            return valid && (validUntilMillis == null || nowMillis < validUntilMillis);
+        }
+    }
+
+    /**
+     * Keeps known tokens for the TTL, but no longer than they are valid, and unknown tokens for the negative TTL
+     */
+    private static class TokenStateExpiry implements Expiry<String, TokenState> {
+
+        private final Duration ttl;
+        private final Duration negativeTtl;
+
+        TokenStateExpiry(Duration ttl, Duration negativeTtl) {
+            this.ttl = ttl;
+            this.negativeTtl = negativeTtl;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, TokenState state, long currentTime) {
+            if (!state.definite) {
+                return negativeTtl.toNanos();
+            }
+            if (state.validUntilMillis == null) {
+                return ttl.toNanos();
+            }
+            long remainingMillis = Math.max(0, state.validUntilMillis - System.currentTimeMillis());
+            return TimeUnit.MILLISECONDS.toNanos(Math.min(remainingMillis, ttl.toMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, TokenState state, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, state, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, TokenState state, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -2,58 +2,65 @@ package com.ev.apigateway.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.HttpStatusCode;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 import reactor.util.retry.Retry;
 
 import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Service to validate OCPI tokens by calling the roaming-service
+ * Service to validate OCPI tokens
+ * - Answers from the OcpiTokenCacheService, which follows the roaming-service's token events
+ * - Calls the roaming-service only for tokens this instance has not seen yet
  */
 @Service
 @Slf4j
 public class OcpiTokenValidationService {
 
-    private final WebClient.Builder webClientBuilder;
+    private final WebClient webClient;
+    private final OcpiTokenCacheService tokenCacheService;
     
     @Autowired
-    public OcpiTokenValidationService(WebClient.Builder webClientBuilder) {
-        this.webClientBuilder = webClientBuilder;
+    public OcpiTokenValidationService(WebClient.Builder webClientBuilder, OcpiTokenCacheService tokenCacheService) {
+        this.webClient = webClientBuilder.build();
+        this.tokenCacheService = tokenCacheService;
     }
     
     /**
-     * Validate an OCPI token with the roaming-service
+     * Validate an OCPI token
      * @param token The token to validate
      * @return Mono<Boolean> indicating if the token is valid
      */
     public Mono<Boolean> validateToken(String token) {
-        return webClientBuilder.build()
-                .get()
+        return Mono.fromFuture(tokenCacheService.isValid(token, this::fetchValidity), true)
+                .onErrorResume(e -> {
+                    log.error("OCPI token validation unavailable: {}", e.getMessage());
+                    return Mono.just(false);
+                });
+    }
+
+    /**
+     * Ask the roaming-service whether a token is valid.
+     * Client errors mean the token is not valid; server and connection errors fail the lookup.
+     */
+    private CompletableFuture<Boolean> fetchValidity(String token) {
+        return webClient.get()
                 .uri("lb://roaming-service/api/internal/tokens/validate?token={token}", token)
-                .retrieve()
-                .onStatus(
-                    statusCode -> statusCode.is4xxClientError(), 
-                    response -> {
-                        log.error("Token validation failed with client error: {}", response.statusCode());
-                        return Mono.just(new RuntimeException("Invalid token"));
+                .exchangeToMono(response -> {
+                    if (response.statusCode().is2xxSuccessful()) {
+                        return response.bodyToMono(TokenValidationResponse.class)
+                                .map(TokenValidationResponse::isValid);
                     }
-                )
-                .onStatus(
-                    statusCode -> statusCode.is5xxServerError(),
-                    response -> {
-                        log.error("Token validation failed with server error: {}", response.statusCode());
-                        return Mono.just(new RuntimeException("Token validation service unavailable"));
+                    if (response.statusCode().is4xxClientError()) {
+                        log.debug("Token validation rejected with client error: {}", response.statusCode());
+                        return response.releaseBody().thenReturn(false);
                     }
-                )
-                .bodyToMono(TokenValidationResponse.class)
-                .map(TokenValidationResponse::isValid)
-                .retryWhen(Retry.fixedDelay(3, Duration.ofMillis(500))
-                    .filter(throwable -> !(throwable instanceof RuntimeException)))
-                .onErrorReturn(false);
+                    return response.createError();
+                })
+                .retryWhen(Retry.backoff(2, Duration.ofMillis(200)))
+                .toFuture();
     }
     
     /**
@@ -70,4 +77,4 @@ public class OcpiTokenValidationService {
             this.valid = valid;
         }
     }
-} 
\ No newline at end of file
+}
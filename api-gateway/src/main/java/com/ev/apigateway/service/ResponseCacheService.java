@@ -0,0 +1,126 @@
+package com.ev.apigateway.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Two-tier store for responses cached by the GlobalCacheFilter
+ * - L1: in-process Caffeine cache (W-TinyLFU eviction), bounded by the bytes it holds
+ * - L2: Redis, shared by all gateway instances, holding gzip-encoded responses
+ * - L2 hits are promoted to L1 for the rest of the entry's lifetime
+ * - Entries are kept until their stale window ends, so expired responses can be served while they refresh
+ */
+@Service
+@Slf4j
+public class ResponseCacheService {
+
+    private static final String CACHE_TYPE = "response-cache";
+
+    private final ReactiveRedisTemplate<String, byte[]> redisTemplate;
+    private final Cache<String, CachedResponse> localCache;
+
+    public ResponseCacheService(
+            ReactiveRedisTemplate<String, byte[]> responseCacheRedisTemplate,
+            CacheStatisticsService cacheStatisticsService,
+            @Value("${cache.response.l1-max-bytes:67108864}") long l1MaxBytes) {
+        this.redisTemplate = responseCacheRedisTemplate;
+        this.localCache = Caffeine.newBuilder()
+                .maximumWeight(l1MaxBytes)
+                .weigher((String key, CachedResponse response) -> response.weight())
+                .expireAfter(new RetentionExpiry())
+                .evictionListener((String key, CachedResponse response, RemovalCause cause) ->
+                        cacheStatisticsService.recordEviction(CACHE_TYPE))
+                .build();
+    }
+
+    /**
+     * Get a cached response, from L1 if present, else from Redis; the response may be stale
+     */
+    public Mono<CachedResponse> get(String cacheKey) {
+        CachedResponse local = localCache.getIfPresent(cacheKey);
+        if (local != null) {
+            return Mono.just(local);
+        }
+
+        return redisTemplate.opsForValue()
+                .get(cacheKey)
+                .mapNotNull(CachedResponse::decode)
+                .filter(response -> response.getStaleUntilMillis() > System.currentTimeMillis())
+                .doOnNext(response -> localCache.put(cacheKey, response))
+                .onErrorResume(e -> {
+                    log.error("Error retrieving cached response: {}", e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Store a response in both tiers until its stale window ends
+     */
+    public Mono<Boolean> put(String cacheKey, CachedResponse response) {
+        Duration ttl = Duration.ofMillis(response.getStaleUntilMillis() - System.currentTimeMillis());
+        if (ttl.isNegative() || ttl.isZero()) {
+            return Mono.just(false);
+        }
+
+        localCache.put(cacheKey, response);
+        return redisTemplate.opsForValue()
+                .set(cacheKey, response.encode(), ttl)
+                .doOnSuccess(result ->
+                    log.debug("Cached response at key: {}, TTL: {} seconds", cacheKey, ttl.getSeconds())
+                )
+                .onErrorResume(e -> {
+                    log.error("Error caching response: {}", e.getMessage());
+                    return Mono.just(false);
+                });
+    }
+
+    /**
+     * Drop all responses held in this instance's L1
+     */
+    public void invalidateLocal() {
+        localCache.invalidateAll();
+    }
+
+    /**
+     * Number of responses held in this instance's L1
+     */
+    public long localSize() {
+        return localCache.estimatedSize();
+    }
+
+    /**
+     * Keeps each L1 entry until the response's stale window ends
+     */
+    private static class RetentionExpiry implements Expiry<String, CachedResponse> {
+
+        @Override
+        public long expireAfterCreate(String key, CachedResponse response, long currentTime) {
+            return remainingNanos(response);
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, CachedResponse response, long currentTime, long currentDuration) {
+            return remainingNanos(response);
+        }
+
+        @Override
+        public long expireAfterRead(String key, CachedResponse response, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        private long remainingNanos(CachedResponse response) {
+            long remainingMillis = response.getStaleUntilMillis() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMillis, 0));
+        }
+    }
+}
@@ -1,49 +1,76 @@
 package com.ev.apigateway.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
 import org.springframework.cloud.gateway.route.RouteDefinition;
 import org.springframework.cloud.gateway.route.RouteDefinitionRepository;
 import org.springframework.context.ApplicationContext;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
 import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 /**
  * Service for caching route definitions in API Gateway
  * - Implements RouteDefinitionRepository for Spring Cloud Gateway
- * - Stores route definitions in Redis cache
- * - Provides fallback to original repository if cache fails
- * - Records cache hit/miss statistics
+ * - Serves route definitions from an immutable in-memory snapshot, so route lookups never touch Redis
+ * - Stores routes saved through the gateway in Redis, shared by all instances
+ * - Rebuilds the snapshot on RefreshRoutesEvent and when another instance announces a change over Redis pub/sub
+ * - Keeps the previous snapshot if a rebuild fails
  */
 @Service
 @Slf4j
 public class RouteDefinitionCacheService implements RouteDefinitionRepository {
 
-    private final ReactiveRedisTemplate<String, Object> redisTemplate;
+    private final ReactiveStringRedisTemplate redisTemplate;
     private final ApplicationContext applicationContext;
+    private final ApplicationEventPublisher eventPublisher;
     private final CacheStatisticsService cacheStatisticsService;
-    
+    private final ObjectMapper objectMapper;
+
     private RouteDefinitionRepository originalRepository;
-    
-    private static final String ROUTE_CACHE_KEY = "api-gateway:routes";
-    private static final Duration ROUTE_CACHE_TTL = Duration.ofHours(1);
+    private Disposable invalidationSubscription;
+
+    // Replaced as a whole, so readers always see one complete route table
+    private volatile List<RouteDefinition> snapshot = List.of();
+
+    // Identifies this instance's own messages on the invalidation channel
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private static final String ROUTES_KEY = "api-gateway:routes:definitions";
+    private static final String INVALIDATION_CHANNEL = "api-gateway:routes:invalidated";
+    private static final Duration STARTUP_LOAD_TIMEOUT = Duration.ofSeconds(5);
     private static final String CACHE_TYPE = "routes";
 
     @Autowired
     public RouteDefinitionCacheService(
-            ReactiveRedisTemplate<String, Object> redisTemplate,
+            ReactiveStringRedisTemplate redisTemplate,
             ApplicationContext applicationContext,
-            CacheStatisticsService cacheStatisticsService) {
+            ApplicationEventPublisher eventPublisher,
+            CacheStatisticsService cacheStatisticsService,
+            ObjectMapper objectMapper) {
         this.redisTemplate = redisTemplate;
         this.applicationContext = applicationContext;
+        this.eventPublisher = eventPublisher;
         this.cacheStatisticsService = cacheStatisticsService;
+        this.objectMapper = objectMapper;
     }
-    
+
     @PostConstruct
     public void init() {
         // Get the original repository after bean creation is complete
@@ -56,137 +83,161 @@ public class RouteDefinitionCacheService implements RouteDefinitionRepository {
                 break;
             }
         }
-        
+
         if (this.originalRepository == null) {
             log.warn("No original RouteDefinitionRepository found, falling back to empty repository");
             this.originalRepository = new EmptyRouteDefinitionRepository();
         }
+
+        // Load the first snapshot before the gateway builds its routes
+        reloadSnapshot()
+                .timeout(STARTUP_LOAD_TIMEOUT)
+                .onErrorResume(e -> {
+                    log.error("Error loading stored route definitions, starting with local routes only: {}", e.getMessage());
+                    return originalRepository.getRouteDefinitions().collectList()
+                            .map(this::swapSnapshot);
+                })
+                .block();
+
+        // Deferred, because creating the listener container connects right away; a failed connection then
+        // reaches the retry instead of failing startup, and the gateway runs on its snapshot meanwhile
+        invalidationSubscription = Flux.defer(() -> redisTemplate.listenToChannel(INVALIDATION_CHANNEL))
+                .doOnError(e -> log.warn("Route invalidation channel unavailable, retrying: {}", e.getMessage()))
+                .map(ReactiveSubscription.Message::getMessage)
+                .filter(sender -> !instanceId.equals(sender))
+                .concatMap(sender -> reloadSnapshot()
+                        .doOnNext(changed -> log.info("Route definitions changed on instance {}", sender))
+                        .onErrorResume(e -> {
+                            log.error("Error reloading route definitions: {}", e.getMessage());
+                            return Mono.empty();
+                        }))
+                .filter(Boolean::booleanValue)
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                .subscribe(changed -> publishRefresh());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (invalidationSubscription != null) {
+            invalidationSubscription.dispose();
+        }
     }
 
     @Override
     public Flux<RouteDefinition> getRouteDefinitions() {
-        // Try to get route definitions from cache first
-        return redisTemplate.opsForList().range(ROUTE_CACHE_KEY, 0, -1)
-                .cast(RouteDefinition.class)
-                .collectList()
-                .flatMapMany(cachedRoutes -> {
-                    if (cachedRoutes.isEmpty()) {
-                        log.debug("Route definitions cache miss, fetching from repository");
-                        cacheStatisticsService.recordCacheMiss(CACHE_TYPE);
-                        return fetchAndCacheRoutes();
-                    } else {
-                        log.debug("Found {} route definitions in cache", cachedRoutes.size());
-                        cacheStatisticsService.recordCacheHit(CACHE_TYPE);
-                        return Flux.fromIterable(cachedRoutes);
-                    }
-                })
-                .onErrorResume(e -> {
-                    log.error("Error retrieving route definitions from cache: {}", e.getMessage());
-                    cacheStatisticsService.recordCacheMiss(CACHE_TYPE);
-                    return fetchAndCacheRoutes();
-                });
+        // Served from the snapshot; loads from Redis are counted as misses by reloadSnapshot
+        cacheStatisticsService.recordCacheHit(CACHE_TYPE);
+        return Flux.fromIterable(snapshot);
     }
 
     @Override
     public Mono<Void> save(Mono<RouteDefinition> route) {
-        if (originalRepository == null) {
-            return Mono.empty();
-        }
-        
-        return originalRepository.save(route)
-                .doOnSuccess(v -> {
-                    // When a route is saved, invalidate the cache
-                    invalidateCache().subscribe();
-                });
+        return route.flatMap(definition -> originalRepository.save(Mono.just(definition))
+                        .then(Mono.fromCallable(() -> objectMapper.writeValueAsString(definition)))
+                        .flatMap(json -> redisTemplate.<String, String>opsForHash()
+                                .put(ROUTES_KEY, definition.getId(), json)))
+                .then(applyChange());
     }
 
     @Override
     public Mono<Void> delete(Mono<String> routeId) {
-        if (originalRepository == null) {
-            return Mono.empty();
-        }
-        
-        return originalRepository.delete(routeId)
-                .doOnSuccess(v -> {
-                    // When a route is deleted, invalidate the cache
-                    invalidateCache().subscribe();
-                });
+        return routeId.flatMap(id -> originalRepository.delete(Mono.just(id))
+                        .onErrorResume(e -> Mono.empty())
+                        .then(redisTemplate.opsForHash().remove(ROUTES_KEY, id)))
+                .then(applyChange());
     }
 
     /**
-     * Fetch routes from original repository and cache them
+     * Rebuild the snapshot when routes are refreshed by anything other than this service
      */
-    private Flux<RouteDefinition> fetchAndCacheRoutes() {
-        if (originalRepository == null) {
-            return Flux.empty();
+    @EventListener
+    public void onRefreshRoutes(RefreshRoutesEvent event) {
+        if (event.getSource() == this) {
+            return;
         }
-        
-        return originalRepository.getRouteDefinitions()
-                .collectList()
-                .doOnNext(routes -> {
-                    // Clear existing cache and add all routes
-                    redisTemplate.delete(ROUTE_CACHE_KEY)
-                            .then(Mono.defer(() -> {
-                                if (!routes.isEmpty()) {
-                                    return redisTemplate.opsForList().rightPushAll(ROUTE_CACHE_KEY, routes.toArray())
-                                            .then(redisTemplate.expire(ROUTE_CACHE_KEY, ROUTE_CACHE_TTL));
-                                }
-                                return Mono.empty();
-                            }))
-                            .doOnSuccess(result -> log.debug("Cached {} route definitions", routes.size()))
-                            .onErrorResume(e -> {
-                                log.error("Error caching route definitions: {}", e.getMessage());
-                                return Mono.empty();
-                            })
-                            .subscribe();
-                })
-                .flatMapMany(Flux::fromIterable);
+        reloadSnapshot()
+                .filter(Boolean::booleanValue)
+                .subscribe(
+                    changed -> publishRefresh(),
+                    e -> log.error("Error reloading route definitions: {}", e.getMessage())
+                );
     }
 
     /**
-     * Invalidate the route cache
+     * Manually refresh the route cache on all instances
      */
-    private Mono<Boolean> invalidateCache() {
-        return redisTemplate.delete(ROUTE_CACHE_KEY)
-                .map(result -> result > 0)
-                .doOnSuccess(result -> log.debug("Route definition cache invalidated"))
+    public Mono<Boolean> refreshCache() {
+        return applyChange()
+                .thenReturn(true)
+                .doOnSuccess(result -> log.info("Route definition cache refreshed manually"))
                 .onErrorResume(e -> {
-                    log.error("Error invalidating route definition cache: {}", e.getMessage());
+                    log.error("Error refreshing route definition cache: {}", e.getMessage());
                     return Mono.just(false);
                 });
     }
 
     /**
-     * Manually refresh the route cache
+     * Rebuild this instance's snapshot, then tell the other instances to rebuild theirs
      */
-    public Mono<Boolean> refreshCache() {
-        if (originalRepository == null) {
-            return Mono.just(false);
-        }
-        
-        return invalidateCache()
-                .then(Mono.defer(() -> 
-                    originalRepository.getRouteDefinitions()
-                        .collectList()
-                        .flatMap(routes -> {
-                            if (!routes.isEmpty()) {
-                                // If routes exist, push them to the cache and set expiration
-                                Object[] routeArray = routes.toArray(new Object[0]);
-                                return redisTemplate.opsForList().rightPushAll(ROUTE_CACHE_KEY, routeArray)
-                                        .flatMap(count -> redisTemplate.expire(ROUTE_CACHE_KEY, ROUTE_CACHE_TTL)
-                                                .thenReturn(count));
-                            }
-                            return Mono.just(0L);
-                        })
-                        .map(count -> count > 0L)
-                ))
-                .doOnSuccess(result -> log.info("Route definition cache refreshed manually"))
-                .onErrorResume(e -> {
-                    log.error("Error refreshing route definition cache: {}", e.getMessage());
-                    return Mono.just(false);
+    private Mono<Void> applyChange() {
+        return reloadSnapshot()
+                .doOnNext(changed -> publishRefresh())
+                .then(redisTemplate.convertAndSend(INVALIDATION_CHANNEL, instanceId))
+                .then();
+    }
+
+    /**
+     * Build a new snapshot from the original repository and the stored routes
+     *
+     * @return Whether the route table changed
+     */
+    private Mono<Boolean> reloadSnapshot() {
+        return Mono.defer(() -> {
+            // Every load reads the stored routes from Redis
+            cacheStatisticsService.recordCacheMiss(CACHE_TYPE);
+            return loadSnapshot();
+        });
+    }
+
+    private Mono<Boolean> loadSnapshot() {
+        Mono<List<RouteDefinition>> localRoutes = originalRepository.getRouteDefinitions().collectList();
+        Mono<List<RouteDefinition>> storedRoutes = redisTemplate.<String, String>opsForHash()
+                .values(ROUTES_KEY)
+                .map(this::readRoute)
+                .collectList();
+
+        return Mono.zip(localRoutes, storedRoutes)
+                .map(routes -> {
+                    // Stored routes replace local routes with the same ID
+                    Map<String, RouteDefinition> byId = new LinkedHashMap<>();
+                    routes.getT1().forEach(route -> byId.put(route.getId(), route));
+                    routes.getT2().forEach(route -> byId.put(route.getId(), route));
+                    return swapSnapshot(List.copyOf(byId.values()));
                 });
     }
-    
+
+    private boolean swapSnapshot(List<RouteDefinition> routes) {
+        List<RouteDefinition> previous = snapshot;
+        snapshot = List.copyOf(routes);
+        if (previous.equals(snapshot)) {
+            return false;
+        }
+        log.debug("Route definition snapshot now holds {} routes", snapshot.size());
+        return true;
+    }
+
+    private void publishRefresh() {
+        eventPublisher.publishEvent(new RefreshRoutesEvent(this));
+    }
+
+    private RouteDefinition readRoute(String json) {
+        try {
+            return objectMapper.readValue(json, RouteDefinition.class);
+        } catch (Exception e) {
+            throw new IllegalStateException("Unreadable stored route definition", e);
+        }
+    }
+
     /**
      * Empty implementation of RouteDefinitionRepository that returns no routes
      * Used as a fallback when no original repository is found
@@ -207,4 +258,4 @@ public class RouteDefinitionCacheService implements RouteDefinitionRepository {
             return Mono.empty();
         }
     }
-} 
\ No newline at end of file
+}
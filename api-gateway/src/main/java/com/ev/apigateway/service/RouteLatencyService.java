@@ -0,0 +1,79 @@
+package com.ev.apigateway.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service tracking upstream latency per route
+ * - Records the time each routed request spends in the backend call
+ * - Keeps the p99 and the hedging percentile over roughly the last minute, used to adapt rate limits
+ *   and to decide when to hedge
+ * - Exported through Micrometer as gateway.route.latency
+ */
+@Service
+public class RouteLatencyService {
+
+    public static final double P99 = 0.99;
+
+    private final MeterRegistry meterRegistry;
+    private final double[] percentiles;
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public RouteLatencyService(MeterRegistry meterRegistry,
+                               @Value("${hedging.percentile:0.95}") double hedgePercentile) {
+        this.meterRegistry = meterRegistry;
+        this.percentiles = hedgePercentile == P99 ? new double[] {P99} : new double[] {hedgePercentile, P99};
+    }
+
+    /**
+     * Record the duration of an upstream call
+     */
+    public void record(String routeId, long durationNanos) {
+        timer(routeId).record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Recent 99th percentile latency of a route in milliseconds, or 0 if nothing was recorded
+     */
+    public double p99Millis(String routeId) {
+        return percentileMillis(routeId, P99);
+    }
+
+    /**
+     * Recent latency of a route at a tracked percentile in milliseconds, or 0 if nothing was recorded
+     */
+    public double percentileMillis(String routeId, double percentile) {
+        Timer timer = timers.get(routeId);
+        if (timer == null) {
+            return 0;
+        }
+        for (ValueAtPercentile value : timer.takeSnapshot().percentileValues()) {
+            if (value.percentile() == percentile) {
+                return value.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return 0;
+    }
+
+    private Timer timer(String routeId) {
+        Timer timer = timers.get(routeId);
+        if (timer != null) {
+            return timer;
+        }
+        return timers.computeIfAbsent(routeId, id -> Timer.builder("gateway.route.latency")
+                .description("Time spent in upstream calls per route")
+                .tag("route", id)
+                .publishPercentiles(percentiles)
+                .distributionStatisticExpiry(Duration.ofMinutes(1))
+                .distributionStatisticBufferLength(3)
+                .register(meterRegistry));
+    }
+}
@@ -0,0 +1,51 @@
+package com.ev.apigateway.controller;
+
+import com.ev.apigateway.service.LiveEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LiveEventAccessTests {
+
+    private static final String USER_ID = "6f1c2a9e-0d4b-4c55-9a43-2f3f1b6f8a10";
+    private static final String OTHER_USER_ID = "0b5e8d31-7c2f-4e0a-8f6d-91a4c3d2e7b9";
+    private static final String STATION_ID = "3d9a7f02-5b6e-4c1d-8e2f-7a0b9c4d6e13";
+
+    @Test
+    void adminsMayStreamAnyUser() {
+        TestingAuthenticationToken admin = new TestingAuthenticationToken(USER_ID, null, "ROLE_ADMIN");
+
+        assertThat(LiveEventAccess.userIdFilter(admin, null)).isNull();
+        assertThat(LiveEventAccess.userIdFilter(admin, OTHER_USER_ID)).isEqualTo(OTHER_USER_ID);
+    }
+
+    @Test
+    void usersOnlyStreamTheirOwnEvents() {
+        TestingAuthenticationToken user = new TestingAuthenticationToken(USER_ID, null, "ROLE_USER");
+
+        assertThat(LiveEventAccess.userIdFilter(user, null)).isEqualTo(USER_ID);
+        assertThat(LiveEventAccess.userIdFilter(user, USER_ID)).isEqualTo(USER_ID);
+        assertThatThrownBy(() -> LiveEventAccess.userIdFilter(user, OTHER_USER_ID))
+                .isInstanceOf(AccessDeniedException.class);
+    }
+
+    @Test
+    void usersReceiveStationStatusButOnlyTheirOwnSessions() {
+        TestingAuthenticationToken user = new TestingAuthenticationToken(USER_ID, null, "ROLE_USER");
+        String userIdFilter = LiveEventAccess.userIdFilter(user, null);
+
+        LiveEvent stationStatus = new LiveEvent(LiveEvent.STATION_STATUS, STATION_ID, null, Map.of("status", "AVAILABLE"));
+        LiveEvent ownSession = new LiveEvent(LiveEvent.CHARGING_SESSION, STATION_ID, USER_ID, Map.of());
+        LiveEvent otherSession = new LiveEvent(LiveEvent.CHARGING_SESSION, STATION_ID, OTHER_USER_ID, Map.of());
+
+        assertThat(stationStatus.matches(Set.of(), Set.of(), userIdFilter)).isTrue();
+        assertThat(ownSession.matches(Set.of(), Set.of(), userIdFilter)).isTrue();
+        assertThat(otherSession.matches(Set.of(), Set.of(), userIdFilter)).isFalse();
+    }
+}
@@ -0,0 +1,45 @@
+package com.ev.billingservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Thread pools for work that runs off the request thread.
+ */
+@Configuration
+public class ExecutorConfig {
+
+    @Value("${billing.invoice.run.threads:4}")
+    private int invoiceRunThreads;
+
+    @Value("${billing.dunning.threads:4}")
+    private int dunningThreads;
+
+    /**
+     * Runs the partitions of a billing run in parallel
+     */
+    @Bean(name = "invoiceRunExecutor")
+    public ThreadPoolTaskExecutor invoiceRunExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(invoiceRunThreads);
+        executor.setMaxPoolSize(invoiceRunThreads);
+        executor.setThreadNamePrefix("invoice-run-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Runs the workers of a dunning run in parallel
+     */
+    @Bean(name = "dunningExecutor")
+    public ThreadPoolTaskExecutor dunningExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(dunningThreads);
+        executor.setMaxPoolSize(dunningThreads);
+        executor.setThreadNamePrefix("dunning-");
+        executor.initialize();
+        return executor;
+    }
+}
@@ -1,5 +1,7 @@
 package com.ev.billingservice.config;
 
+import com.ev.billingservice.dto.event.ChargingSessionEvent;
+import com.ev.billingservice.dto.event.WalletEvent;
 import org.apache.kafka.clients.admin.AdminClientConfig;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
@@ -35,6 +37,9 @@ public class KafkaConfig {
     public static final String CHARGING_SESSION_TOPIC = "charging-session-events";
     public static final String STATION_STATUS_TOPIC = "station-status-events";
     
+    // Wallet payments of invoices, published by the user-service
+    public static final String WALLET_EVENTS_TOPIC = "wallet-events";
+    
     // Billing service topics as producer
     public static final String PAYMENT_EVENTS_TOPIC = "payment-events";
     public static final String INVOICE_EVENTS_TOPIC = "invoice-events";
@@ -84,6 +89,81 @@ public class KafkaConfig {
         return factory;
     }
     
+    /**
+     * Consumer factory for charging session events, which are always deserialized as
+     * {@link ChargingSessionEvent} regardless of the producer's type headers
+     */
+    @Bean
+    public ConsumerFactory<String, ChargingSessionEvent> chargingSessionConsumerFactory() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, BILLING_CONSUMER_GROUP);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.CLIENT_ID_CONFIG, applicationName + "-session-consumer");
+        
+        // Larger polls so each batch covers many sessions
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 500);
+        props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, 1024);
+        props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, 500);
+        
+        props.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, false);
+        props.put(JsonDeserializer.VALUE_DEFAULT_TYPE, ChargingSessionEvent.class.getName());
+        
+        return new DefaultKafkaConsumerFactory<>(props);
+    }
+
+    /**
+     * Batch listener factory for charging session events.
+     * Offsets are committed once per batch, after the whole batch has been applied.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, ChargingSessionEvent> chargingSessionBatchListenerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, ChargingSessionEvent> factory = 
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(chargingSessionConsumerFactory());
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.setConcurrency(3);
+        factory.setCommonErrorHandler(new DefaultErrorHandler(new FixedBackOff(1000L, 3)));
+        
+        return factory;
+    }
+    
+    /**
+     * Consumer factory for wallet events, which are always deserialized as {@link WalletEvent}
+     */
+    @Bean
+    public ConsumerFactory<String, WalletEvent> walletEventConsumerFactory() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, BILLING_CONSUMER_GROUP);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.CLIENT_ID_CONFIG, applicationName + "-wallet-consumer");
+        
+        props.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, false);
+        props.put(JsonDeserializer.VALUE_DEFAULT_TYPE, WalletEvent.class.getName());
+        
+        return new DefaultKafkaConsumerFactory<>(props);
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, WalletEvent> walletEventListenerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, WalletEvent> factory = 
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(walletEventConsumerFactory());
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
+        factory.setConcurrency(3);
+        factory.setCommonErrorHandler(new DefaultErrorHandler(new FixedBackOff(1000L, 3)));
+        
+        return factory;
+    }
+    
     // Producer configuration
     @Bean
     public ProducerFactory<String, Object> producerFactory() {
@@ -95,10 +175,18 @@ public class KafkaConfig {
         
         // Add reliability configurations
         configProps.put(ProducerConfig.ACKS_CONFIG, "all"); // Highest reliability
-        configProps.put(ProducerConfig.RETRIES_CONFIG, 3);  // Retry on errors
         configProps.put(ProducerConfig.RETRY_BACKOFF_MS_CONFIG, 1000); // Retry delay
         configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true); // Prevent duplicates
         
+        // Retry until the delivery timeout; with idempotence, up to 5 in-flight requests keep per-partition order
+        configProps.put(ProducerConfig.RETRIES_CONFIG, Integer.MAX_VALUE);
+        configProps.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, 10000);
+        configProps.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, 30000);
+        configProps.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+        
+        // The outbox relay sends in batches; a short linger lets them share requests
+        configProps.put(ProducerConfig.LINGER_MS_CONFIG, 5);
+        
         return new DefaultKafkaProducerFactory<>(configProps);
     }
 
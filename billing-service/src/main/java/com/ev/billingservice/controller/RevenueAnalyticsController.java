@@ -0,0 +1,40 @@
+package com.ev.billingservice.controller;
+
+import com.ev.billingservice.dto.RevenueRollupDTO;
+import com.ev.billingservice.model.RevenueRollup.Granularity;
+import com.ev.billingservice.service.RevenueAnalyticsService;
+import com.ev.billingservice.service.RevenueAnalyticsService.GroupBy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/billing/analytics")
+@RequiredArgsConstructor
+public class RevenueAnalyticsController {
+    
+    private final RevenueAnalyticsService revenueAnalyticsService;
+    
+    @GetMapping("/revenue")
+    @PreAuthorize("hasAnyRole('ADMIN', 'CPO')")
+    public ResponseEntity<List<RevenueRollupDTO>> getRevenue(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(defaultValue = "DAY") Granularity granularity,
+            @RequestParam(defaultValue = "NONE") GroupBy groupBy) {
+        return ResponseEntity.ok(revenueAnalyticsService.getRevenue(granularity, groupBy, start, end));
+    }
+    
+    @PostMapping("/revenue/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Integer> rebuildRollups(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        return ResponseEntity.ok(revenueAnalyticsService.rebuildRollups(start, end));
+    }
+}
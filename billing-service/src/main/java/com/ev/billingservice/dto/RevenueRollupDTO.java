@@ -0,0 +1,41 @@
+package com.ev.billingservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Revenue and usage of one hour or day in one currency, optionally for a single station, organization or plan
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevenueRollupDTO {
+    
+    private LocalDateTime bucketStart;
+    
+    private UUID stationId;
+    
+    private UUID organizationId;
+    
+    private UUID billingPlanId;
+    
+    private String currency;
+    
+    private long sessionCount;
+    
+    private BigDecimal energyKwh;
+    
+    private BigDecimal revenue;
+    
+    /**
+     * Revenue per kWh, null when no energy was delivered
+     */
+    private BigDecimal averagePricePerKwh;
+}
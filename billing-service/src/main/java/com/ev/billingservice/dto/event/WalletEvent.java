@@ -0,0 +1,57 @@
+package com.ev.billingservice.dto.event;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Event received from user-service when a wallet changes; only the fields needed to record
+ * wallet payments of invoices are mapped
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class WalletEvent {
+    /**
+     * Unique identifier for the event
+     */
+    private UUID eventId;
+    
+    /**
+     * ID of the user
+     */
+    private UUID userId;
+    
+    /**
+     * Type of event (e.g. PAYMENT_COMPLETED, PAYMENT_FAILED)
+     */
+    private String eventType;
+    
+    /**
+     * Timestamp of the event
+     */
+    private LocalDateTime timestamp;
+    
+    /**
+     * Amount paid from the wallet
+     */
+    private BigDecimal amount;
+    
+    /**
+     * ID of the wallet transaction
+     */
+    private UUID transactionId;
+    
+    /**
+     * ID of the invoice the payment settles, if any
+     */
+    private String externalReference;
+}
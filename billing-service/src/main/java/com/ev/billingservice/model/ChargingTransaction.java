@@ -14,7 +14,8 @@ import java.util.UUID;
  * Entity representing a charging transaction
  */
 @Entity
-@Table(name = "charging_transactions")
+@Table(name = "charging_transactions",
+        indexes = @Index(name = "idx_charging_transactions_subscription_invoice", columnList = "subscription_id, invoice_id"))
 @Data
 @Builder
 @NoArgsConstructor
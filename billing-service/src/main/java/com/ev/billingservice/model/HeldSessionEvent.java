@@ -0,0 +1,45 @@
+package com.ev.billingservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Charging session event waiting for its session's transaction to be created.
+ * It is stored in the transaction that claims its event ID, so a claimed event is either applied or held.
+ */
+@Entity
+@Table(name = "held_session_events")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HeldSessionEvent {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "event_id")
+    private UUID eventId;
+    
+    @Column(name = "session_id", nullable = false)
+    private UUID sessionId;
+    
+    /**
+     * The event as JSON
+     */
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+    
+    /**
+     * When the event was first held; retries keep it
+     */
+    @Column(name = "held_since", nullable = false)
+    private LocalDateTime heldSince;
+}
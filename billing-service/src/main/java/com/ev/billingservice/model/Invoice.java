@@ -26,16 +26,22 @@ public class Invoice {
     private UUID id;
     
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "subscription_id", nullable = false, insertable = false, updatable = false)
+    @JoinColumn(name = "subscription_id", insertable = false, updatable = false)
     private Subscription subscription;
     
-    @Column(name = "subscription_id", nullable = false)
+    /**
+     * Subscription the invoice is issued against (null for sessions charged without one)
+     */
+    @Column(name = "subscription_id")
     private UUID subscriptionId;
     
     @Column(name = "user_id", nullable = false)
     private UUID userId;
     
-    @Column(name = "organization_id", nullable = false)
+    /**
+     * Organization being invoiced (null for sessions charged without a subscription)
+     */
+    @Column(name = "organization_id")
     private UUID organizationId;
     
     @Column(name = "invoice_number", nullable = false, unique = true)
@@ -69,6 +75,16 @@ public class Invoice {
     @Column(name = "due_at", nullable = false)
     private LocalDateTime dueAt;
     
+    /**
+     * Last dunning step taken for the invoice (null until it becomes overdue)
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "dunning_stage")
+    private DunningStage dunningStage;
+    
+    @Column(name = "dunning_stage_at")
+    private LocalDateTime dunningStageAt;
+    
     @OneToMany(mappedBy = "invoice", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<InvoiceItem> invoiceItems;
     
@@ -104,4 +120,14 @@ public class Invoice {
         CANCELED,
         REFUNDED
     }
+    
+    /**
+     * Steps taken for an unpaid invoice, in order
+     */
+    public enum DunningStage {
+        OVERDUE,
+        FIRST_REMINDER,
+        FINAL_REMINDER,
+        SUSPENDED
+    }
 } 
\ No newline at end of file
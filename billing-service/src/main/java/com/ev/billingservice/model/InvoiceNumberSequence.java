@@ -0,0 +1,43 @@
+package com.ev.billingservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * Next unallocated invoice number of an organization in a year.
+ * Instances lease blocks of numbers from it, so it is only written once per block.
+ */
+@Entity
+@Table(name = "invoice_number_sequences")
+@IdClass(InvoiceNumberSequence.SequenceKey.class)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceNumberSequence {
+    
+    @Id
+    @Column(name = "organization_id")
+    private UUID organizationId;
+    
+    @Id
+    @Column(name = "year")
+    private int year;
+    
+    @Column(name = "next_value", nullable = false)
+    private long nextValue;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class SequenceKey implements Serializable {
+        private UUID organizationId;
+        private int year;
+    }
+}
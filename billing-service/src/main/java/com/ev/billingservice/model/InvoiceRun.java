@@ -0,0 +1,97 @@
+package com.ev.billingservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A billing run that consolidates completed transactions into invoices.
+ * There is one run per type and cutoff; its counters double as the checkpoint
+ * a restarted run resumes from.
+ */
+@Entity
+@Table(name = "invoice_runs",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"run_type", "cutoff"}))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceRun {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "run_type", nullable = false)
+    private RunType runType;
+    
+    /**
+     * Transactions that ended before this time are invoiced by the run
+     */
+    @Column(nullable = false)
+    private LocalDateTime cutoff;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private RunStatus status;
+    
+    /**
+     * Instance currently executing the run
+     */
+    private String owner;
+    
+    @Column(name = "groups_total", nullable = false)
+    private int groupsTotal;
+    
+    @Column(name = "groups_completed", nullable = false)
+    private int groupsCompleted;
+    
+    @Column(name = "invoices_created", nullable = false)
+    private int invoicesCreated;
+    
+    @Column(name = "transactions_invoiced", nullable = false)
+    private long transactionsInvoiced;
+    
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+    
+    /**
+     * Last time progress was saved
+     */
+    @Column(name = "last_checkpoint_at")
+    private LocalDateTime lastCheckpointAt;
+    
+    /**
+     * Last time the owner reported it is still executing the run; a RUNNING run without recent
+     * heartbeats is considered abandoned. Only written by heartbeat updates, so saving a
+     * checkpoint never overwrites it.
+     */
+    @Column(name = "heartbeat_at", insertable = false, updatable = false)
+    private LocalDateTime heartbeatAt;
+    
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+    
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+    
+    @Version
+    private Long version;
+    
+    public enum RunType {
+        DAILY,
+        MONTHLY
+    }
+    
+    public enum RunStatus {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
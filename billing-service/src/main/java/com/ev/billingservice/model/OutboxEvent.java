@@ -0,0 +1,72 @@
+package com.ev.billingservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * An event waiting to be published to Kafka.
+ * Written in the same transaction as the change it describes and relayed to Kafka afterwards;
+ * events of one aggregate are published in ID order.
+ */
+@Entity
+@Table(name = "outbox_events", indexes = {
+        @Index(name = "idx_outbox_events_aggregate", columnList = "aggregate_id, published_at")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "aggregate_type", nullable = false)
+    private String aggregateType;
+    
+    /**
+     * ID of the payment or invoice the event belongs to; also used as the Kafka key
+     */
+    @Column(name = "aggregate_id", nullable = false)
+    private UUID aggregateId;
+    
+    @Column(nullable = false)
+    private String topic;
+    
+    /**
+     * Class the payload is deserialized to before it is sent
+     */
+    @Column(name = "payload_type", nullable = false)
+    private String payloadType;
+    
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "published_at")
+    private LocalDateTime publishedAt;
+    
+    /**
+     * Relay instance holding the event; other instances leave the aggregate alone until the claim expires
+     */
+    @Column(name = "claimed_by")
+    private String claimedBy;
+    
+    @Column(name = "claimed_until")
+    private LocalDateTime claimedUntil;
+    
+    @Column(nullable = false)
+    private int attempts;
+    
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+}
@@ -0,0 +1,36 @@
+package com.ev.billingservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * ID of a consumed event that has been applied.
+ * The primary key makes applying an event a claim that only one consumer can win.
+ */
+@Entity
+@Table(name = "processed_events")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProcessedEvent {
+    
+    @Id
+    @Column(name = "event_id")
+    private UUID eventId;
+    
+    @Column(name = "processed_at", nullable = false)
+    private LocalDateTime processedAt;
+    
+    /**
+     * Token of the claim that recorded the event
+     */
+    @Column(name = "claim_id")
+    private UUID claimId;
+}
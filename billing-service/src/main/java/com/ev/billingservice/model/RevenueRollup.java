@@ -0,0 +1,85 @@
+package com.ev.billingservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Totals of the charging transactions completed in an hour or a day, per station, organization,
+ * billing plan and currency. Rows are incremented as transactions complete, so reports read
+ * a few rows per bucket instead of every transaction. Transactions without an organization or
+ * plan are counted under the nil UUID, which keeps every key column non-null and unique.
+ */
+@Entity
+@Table(name = "revenue_rollups")
+@IdClass(RevenueRollup.RollupKey.class)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevenueRollup {
+    
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "granularity")
+    private Granularity granularity;
+    
+    /**
+     * Start of the hour or day the transactions ended in
+     */
+    @Id
+    @Column(name = "bucket_start")
+    private LocalDateTime bucketStart;
+    
+    @Id
+    @Column(name = "station_id")
+    private UUID stationId;
+    
+    @Id
+    @Column(name = "organization_id")
+    private UUID organizationId;
+    
+    @Id
+    @Column(name = "billing_plan_id")
+    private UUID billingPlanId;
+    
+    @Id
+    @Column(name = "currency", length = 3)
+    private String currency;
+    
+    @Column(name = "session_count", nullable = false)
+    private long sessionCount;
+    
+    @Column(name = "energy_kwh", nullable = false, precision = 16, scale = 3)
+    private BigDecimal energyKwh;
+    
+    @Column(name = "revenue", nullable = false, precision = 16, scale = 2)
+    private BigDecimal revenue;
+    
+    @Column(name = "duration_seconds", nullable = false)
+    private long durationSeconds;
+    
+    public enum Granularity {
+        HOUR,
+        DAY
+    }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RollupKey implements Serializable {
+        private Granularity granularity;
+        private LocalDateTime bucketStart;
+        private UUID stationId;
+        private UUID organizationId;
+        private UUID billingPlanId;
+        private String currency;
+    }
+}
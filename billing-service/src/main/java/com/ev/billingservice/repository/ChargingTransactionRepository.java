@@ -2,10 +2,16 @@ package com.ev.billingservice.repository;
 
 import com.ev.billingservice.model.ChargingTransaction;
 import com.ev.billingservice.model.TransactionStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -21,6 +27,36 @@ public interface ChargingTransactionRepository extends JpaRepository<ChargingTra
      */
     Optional<ChargingTransaction> findBySessionId(UUID sessionId);
     
+    /**
+     * Find the transactions of several sessions at once
+     */
+    List<ChargingTransaction> findBySessionIdIn(Collection<UUID> sessionIds);
+    
+    /**
+     * Insert pending transactions in one statement, skipping sessions that already have one.
+     * Concurrent inserts for a session are resolved by the unique session ID; the loser inserts nothing.
+     *
+     * @param rows JSON array of objects with the columns id, session_id, user_id, station_id, connector_id,
+     *             start_time, subscription_id and billing_plan_id
+     * @return Number of transactions inserted
+     */
+    @Modifying
+    @Query(value = "INSERT INTO charging_transactions (id, session_id, user_id, station_id, connector_id, status, " +
+            "start_time, energy_delivered_kwh, duration_seconds, subscription_id, billing_plan_id, created_at, updated_at) " +
+            "SELECT r.id, r.session_id, r.user_id, r.station_id, r.connector_id, 'PENDING', " +
+            "r.start_time, 0, 0, r.subscription_id, r.billing_plan_id, ?2, ?2 " +
+            "FROM jsonb_to_recordset(CAST(?1 AS jsonb)) AS r(id uuid, session_id uuid, user_id uuid, station_id uuid, " +
+            "connector_id uuid, start_time timestamp, subscription_id uuid, billing_plan_id uuid) " +
+            "ON CONFLICT (session_id) DO NOTHING", nativeQuery = true)
+    int insertPendingIfAbsent(String rows, LocalDateTime createdAt);
+    
+    /**
+     * Lock a transaction while it is invoiced
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM ChargingTransaction t WHERE t.id = ?1")
+    Optional<ChargingTransaction> findForInvoicing(UUID id);
+    
     /**
      * Find all transactions for a user
      */
@@ -65,4 +101,31 @@ public interface ChargingTransactionRepository extends JpaRepository<ChargingTra
      * Find all completed transactions that are not yet invoiced
      */
     List<ChargingTransaction> findByStatusAndInvoiceIdIsNull(TransactionStatus status);
-} 
\ No newline at end of file
+    
+    /**
+     * Find the subscriptions that have transactions with the given status ended before a time and not yet invoiced
+     */
+    @Query("SELECT DISTINCT t.subscriptionId FROM ChargingTransaction t WHERE t.status = ?1 AND t.invoiceId IS NULL " +
+            "AND t.subscriptionId IS NOT NULL AND t.endTime < ?2")
+    List<UUID> findUninvoicedSubscriptionIds(TransactionStatus status, LocalDateTime endedBefore);
+    
+    /**
+     * Find a chunk of not yet invoiced transactions of the given subscriptions
+     */
+    List<ChargingTransaction> findByStatusAndInvoiceIdIsNullAndSubscriptionIdInAndEndTimeBefore(
+            TransactionStatus status, Collection<UUID> subscriptionIds, LocalDateTime endedBefore, Pageable pageable);
+    
+    /**
+     * Find the users that have transactions without a subscription with the given status ended before a time
+     * and not yet invoiced
+     */
+    @Query("SELECT DISTINCT t.userId FROM ChargingTransaction t WHERE t.status = ?1 AND t.invoiceId IS NULL " +
+            "AND t.subscriptionId IS NULL AND t.endTime < ?2")
+    List<UUID> findUninvoicedUserIdsWithoutSubscription(TransactionStatus status, LocalDateTime endedBefore);
+    
+    /**
+     * Find a chunk of not yet invoiced transactions of a user charged without a subscription
+     */
+    List<ChargingTransaction> findByStatusAndInvoiceIdIsNullAndSubscriptionIdIsNullAndUserIdAndEndTimeBefore(
+            TransactionStatus status, UUID userId, LocalDateTime endedBefore, Pageable pageable);
+}
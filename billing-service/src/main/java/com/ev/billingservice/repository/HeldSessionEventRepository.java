@@ -0,0 +1,37 @@
+package com.ev.billingservice.repository;
+
+import com.ev.billingservice.model.HeldSessionEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface HeldSessionEventRepository extends JpaRepository<HeldSessionEvent, Long> {
+    
+    /**
+     * Lock the held events of the given sessions until the transaction ends.
+     * Rows locked by a concurrent transaction are skipped.
+     *
+     * @param sessionIds Comma-separated session IDs
+     */
+    @Query(value = "SELECT * FROM held_session_events " +
+            "WHERE session_id IN (SELECT CAST(s AS uuid) FROM unnest(string_to_array(?1, ',')) AS s) " +
+            "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<HeldSessionEvent> lockBySessionIds(String sessionIds);
+    
+    /**
+     * Lock held events whose session has a transaction by now, oldest first
+     */
+    @Query(value = "SELECT h.* FROM held_session_events h " +
+            "WHERE EXISTS (SELECT 1 FROM charging_transactions t WHERE t.session_id = h.session_id) " +
+            "ORDER BY h.id LIMIT ?1 FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<HeldSessionEvent> lockReady(int limit);
+    
+    @Modifying
+    @Query("DELETE FROM HeldSessionEvent e WHERE e.heldSince < ?1")
+    int deleteHeldBefore(LocalDateTime heldBefore);
+}
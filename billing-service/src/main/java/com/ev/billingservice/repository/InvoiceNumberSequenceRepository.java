@@ -0,0 +1,30 @@
+package com.ev.billingservice.repository;
+
+import com.ev.billingservice.model.InvoiceNumberSequence;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+@Repository
+public interface InvoiceNumberSequenceRepository
+        extends JpaRepository<InvoiceNumberSequence, InvoiceNumberSequence.SequenceKey> {
+    
+    /**
+     * Atomically reserve the next block of numbers, creating the sequence on first use.
+     * The row stays locked until the transaction ends, so {@link #findNextValue} then reads this lease;
+     * the reserved block is [next value - blockSize, next value - 1].
+     */
+    @Modifying
+    @Query(value = "INSERT INTO invoice_number_sequences (organization_id, year, next_value) " +
+            "VALUES (?1, ?2, 1 + ?3) " +
+            "ON CONFLICT (organization_id, year) " +
+            "DO UPDATE SET next_value = invoice_number_sequences.next_value + ?3", nativeQuery = true)
+    int leaseBlock(UUID organizationId, int year, int blockSize);
+    
+    @Query(value = "SELECT next_value FROM invoice_number_sequences WHERE organization_id = ?1 AND year = ?2",
+            nativeQuery = true)
+    long findNextValue(UUID organizationId, int year);
+}
@@ -1,14 +1,17 @@
 package com.ev.billingservice.repository;
 
 import com.ev.billingservice.model.Invoice;
+import com.ev.billingservice.model.Invoice.DunningStage;
 import com.ev.billingservice.model.Invoice.InvoiceStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -34,4 +37,27 @@ public interface InvoiceRepository extends JpaRepository<Invoice, UUID> {
     
     @Query("SELECT i FROM Invoice i WHERE i.status = 'ISSUED' AND i.dueDate < ?1")
     List<Invoice> findOverdueInvoices(LocalDateTime now);
-} 
\ No newline at end of file
+    
+    /**
+     * Lock a chunk of issued invoices that are past due and not yet in dunning.
+     * Rows locked by a concurrent chunk are skipped, so several workers can run at once.
+     */
+    @Query(value = "SELECT id FROM invoices WHERE status = 'ISSUED' AND dunning_stage IS NULL AND due_date < ?1 " +
+            "LIMIT ?2 FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<UUID> lockOverdueChunk(LocalDateTime dueBefore, int limit);
+    
+    /**
+     * Lock a chunk of overdue invoices that have been in the given dunning stage and are past due long enough
+     */
+    @Query(value = "SELECT id FROM invoices WHERE status = 'OVERDUE' AND dunning_stage = ?1 AND due_date < ?2 " +
+            "LIMIT ?3 FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<UUID> lockDunningChunk(String stage, LocalDateTime dueBefore, int limit);
+    
+    /**
+     * Move locked invoices to an overdue dunning stage
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Invoice i SET i.status = ?2, i.dunningStage = ?3, i.dunningStageAt = ?4, i.updatedAt = ?4 " +
+            "WHERE i.id IN ?1")
+    int moveToDunningStage(Collection<UUID> ids, InvoiceStatus status, DunningStage stage, LocalDateTime now);
+}
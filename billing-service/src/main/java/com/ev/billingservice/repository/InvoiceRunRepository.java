@@ -0,0 +1,47 @@
+package com.ev.billingservice.repository;
+
+import com.ev.billingservice.model.InvoiceRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface InvoiceRunRepository extends JpaRepository<InvoiceRun, UUID> {
+    
+    /**
+     * First key of the advisory locks held while a group is invoiced
+     */
+    int GROUP_LOCK_CLASS = 0x696e76;
+    
+    /**
+     * Lock the run of a type and cutoff for claiming
+     *
+     * @return empty if there is no such run, or another instance is claiming it right now
+     */
+    @Query(value = "SELECT * FROM invoice_runs WHERE run_type = ?1 AND cutoff = ?2 FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    Optional<InvoiceRun> findForClaim(String runType, LocalDateTime cutoff);
+    
+    /**
+     * Report that the owner is still executing the run
+     *
+     * @return 0 if the run has been taken over by another instance
+     */
+    @Modifying
+    @Query(value = "UPDATE invoice_runs SET heartbeat_at = ?3 WHERE id = ?1 AND owner = ?2", nativeQuery = true)
+    int heartbeat(UUID runId, String owner, LocalDateTime heartbeatAt);
+    
+    /**
+     * Take the lock that keeps a group from being invoiced by two instances at once,
+     * released when the transaction ends
+     *
+     * @return false if another instance is invoicing the group right now
+     */
+    @Query(value = "SELECT pg_try_advisory_xact_lock(?1, hashtext(?2))", nativeQuery = true)
+    boolean tryLockGroup(int lockClass, String groupKey);
+}
@@ -0,0 +1,63 @@
+package com.ev.billingservice.repository;
+
+import com.ev.billingservice.model.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+    
+    /**
+     * Take the lock that serializes claims across relay instances, released when the transaction ends
+     *
+     * @return false if another instance is claiming right now
+     */
+    @Query(value = "SELECT pg_try_advisory_xact_lock(?1)", nativeQuery = true)
+    boolean tryLockClaims(long lockKey);
+    
+    /**
+     * The oldest unpublished events that can be claimed, skipping aggregates that have an event claimed by
+     * another relay or waiting for a retry, so that events of one aggregate are never in flight out of order.
+     * Whenever an event can be claimed, all earlier unpublished events of its aggregate can be claimed with it.
+     * Only stable while the claim lock is held.
+     */
+    @Query(value = "SELECT o.id FROM outbox_events o " +
+            "WHERE o.published_at IS NULL " +
+            "AND NOT EXISTS (SELECT 1 FROM outbox_events c " +
+            "  WHERE c.aggregate_id = o.aggregate_id AND c.published_at IS NULL AND c.claimed_until > ?1) " +
+            "ORDER BY o.id LIMIT ?2", nativeQuery = true)
+    List<Long> findClaimableIds(LocalDateTime now, int limit);
+    
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.claimedBy = ?2, e.claimedUntil = ?3 WHERE e.id IN ?1")
+    int claim(Collection<Long> ids, String owner, LocalDateTime claimedUntil);
+    
+    List<OutboxEvent> findByIdInOrderByIdAsc(Collection<Long> ids);
+    
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.publishedAt = ?2, e.claimedBy = null, e.claimedUntil = null WHERE e.id IN ?1")
+    int markPublished(Collection<Long> ids, LocalDateTime publishedAt);
+    
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.attempts = e.attempts + 1, e.lastError = ?3, e.claimedUntil = ?2 WHERE e.id = ?1")
+    int recordFailure(Long id, LocalDateTime retryAt, String error);
+    
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.claimedUntil = ?2 WHERE e.id IN ?1")
+    int deferClaims(Collection<Long> ids, LocalDateTime retryAt);
+    
+    long countByPublishedAtIsNull();
+    
+    @Query("SELECT MIN(e.createdAt) FROM OutboxEvent e WHERE e.publishedAt IS NULL")
+    LocalDateTime findOldestUnpublishedCreatedAt();
+    
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.publishedAt < ?1")
+    int deletePublishedBefore(LocalDateTime publishedBefore);
+}
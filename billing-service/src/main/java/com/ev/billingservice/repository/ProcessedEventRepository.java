@@ -0,0 +1,40 @@
+package com.ev.billingservice.repository;
+
+import com.ev.billingservice.model.ProcessedEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ProcessedEventRepository extends JpaRepository<ProcessedEvent, UUID> {
+    
+    /**
+     * Record event IDs as processed in one statement, skipping those already recorded.
+     * A concurrent transaction recording the same ID blocks this one until it ends, so each ID is claimed once.
+     *
+     * @param eventIds Comma-separated event IDs
+     * @param claimId Token stored with the recorded IDs, to find them with {@link #findClaimedEventIds}
+     * @return The number of IDs that were not recorded before
+     */
+    @Modifying
+    @Query(value = "INSERT INTO processed_events (event_id, processed_at, claim_id) " +
+            "SELECT CAST(id AS uuid), ?2, ?3 FROM unnest(string_to_array(?1, ',')) AS id " +
+            "ON CONFLICT (event_id) DO NOTHING", nativeQuery = true)
+    int claimEventIds(String eventIds, LocalDateTime processedAt, UUID claimId);
+    
+    /**
+     * The given event IDs that were recorded by a claim
+     */
+    @Query("SELECT e.eventId FROM ProcessedEvent e WHERE e.eventId IN ?1 AND e.claimId = ?2")
+    List<UUID> findClaimedEventIds(Collection<UUID> eventIds, UUID claimId);
+    
+    @Modifying
+    @Query("DELETE FROM ProcessedEvent e WHERE e.processedAt < ?1")
+    int deleteProcessedBefore(LocalDateTime processedBefore);
+}
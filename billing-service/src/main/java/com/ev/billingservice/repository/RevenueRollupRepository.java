@@ -0,0 +1,98 @@
+package com.ev.billingservice.repository;
+
+import com.ev.billingservice.model.RevenueRollup;
+import com.ev.billingservice.model.RevenueRollup.Granularity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface RevenueRollupRepository extends JpaRepository<RevenueRollup, RevenueRollup.RollupKey> {
+    
+    /**
+     * Add completed transactions to a rollup row, creating it on first use
+     */
+    @Modifying
+    @Query(value = "INSERT INTO revenue_rollups (granularity, bucket_start, station_id, organization_id, " +
+            "billing_plan_id, currency, session_count, energy_kwh, revenue, duration_seconds) " +
+            "VALUES (?1, ?2, ?3, ?4, ?5, ?6, ?7, ?8, ?9, ?10) " +
+            "ON CONFLICT (granularity, bucket_start, station_id, organization_id, billing_plan_id, currency) " +
+            "DO UPDATE SET session_count = revenue_rollups.session_count + EXCLUDED.session_count, " +
+            "energy_kwh = revenue_rollups.energy_kwh + EXCLUDED.energy_kwh, " +
+            "revenue = revenue_rollups.revenue + EXCLUDED.revenue, " +
+            "duration_seconds = revenue_rollups.duration_seconds + EXCLUDED.duration_seconds", nativeQuery = true)
+    int addToRollup(String granularity, LocalDateTime bucketStart, UUID stationId, UUID organizationId,
+                    UUID billingPlanId, String currency, long sessionCount, BigDecimal energyKwh,
+                    BigDecimal revenue, long durationSeconds);
+    
+    @Modifying
+    @Query("DELETE FROM RevenueRollup r WHERE r.granularity = ?1 AND r.bucketStart >= ?2 AND r.bucketStart < ?3")
+    int deleteBuckets(Granularity granularity, LocalDateTime start, LocalDateTime end);
+    
+    /**
+     * Recompute the rollups of a period from the transactions themselves
+     *
+     * @param granularity Granularity name
+     * @param truncateTo Unit of date_trunc matching the granularity ('hour' or 'day')
+     * @param noId UUID that stands for a missing organization or plan
+     */
+    @Modifying
+    @Query(value = "INSERT INTO revenue_rollups (granularity, bucket_start, station_id, organization_id, " +
+            "billing_plan_id, currency, session_count, energy_kwh, revenue, duration_seconds) " +
+            "SELECT ?1, date_trunc(?2, t.end_time), t.station_id, COALESCE(s.organization_id, ?5), " +
+            "COALESCE(t.billing_plan_id, ?5), COALESCE(t.currency, ?6), COUNT(*), " +
+            "COALESCE(SUM(t.energy_delivered_kwh), 0), COALESCE(SUM(t.amount), 0), COALESCE(SUM(t.duration_seconds), 0) " +
+            "FROM charging_transactions t LEFT JOIN subscriptions s ON s.id = t.subscription_id " +
+            "WHERE t.status IN ('COMPLETED', 'INVOICED') AND t.end_time >= ?3 AND t.end_time < ?4 " +
+            "GROUP BY 2, 3, 4, 5, 6", nativeQuery = true)
+    int rebuildBuckets(String granularity, String truncateTo, LocalDateTime start, LocalDateTime end,
+                       UUID noId, String defaultCurrency);
+    
+    @Query("SELECT r.bucketStart AS bucketStart, r.currency AS currency, SUM(r.sessionCount) AS sessionCount, " +
+            "SUM(r.energyKwh) AS energyKwh, SUM(r.revenue) AS revenue FROM RevenueRollup r " +
+            "WHERE r.granularity = ?1 AND r.bucketStart >= ?2 AND r.bucketStart < ?3 " +
+            "GROUP BY r.bucketStart, r.currency ORDER BY r.bucketStart")
+    List<RevenueTotals> findTotals(Granularity granularity, LocalDateTime start, LocalDateTime end);
+    
+    @Query("SELECT r.bucketStart AS bucketStart, r.stationId AS dimensionId, r.currency AS currency, " +
+            "SUM(r.sessionCount) AS sessionCount, SUM(r.energyKwh) AS energyKwh, SUM(r.revenue) AS revenue " +
+            "FROM RevenueRollup r WHERE r.granularity = ?1 AND r.bucketStart >= ?2 AND r.bucketStart < ?3 " +
+            "GROUP BY r.bucketStart, r.stationId, r.currency ORDER BY r.bucketStart")
+    List<DimensionTotals> findTotalsByStation(Granularity granularity, LocalDateTime start, LocalDateTime end);
+    
+    @Query("SELECT r.bucketStart AS bucketStart, r.organizationId AS dimensionId, r.currency AS currency, " +
+            "SUM(r.sessionCount) AS sessionCount, SUM(r.energyKwh) AS energyKwh, SUM(r.revenue) AS revenue " +
+            "FROM RevenueRollup r WHERE r.granularity = ?1 AND r.bucketStart >= ?2 AND r.bucketStart < ?3 " +
+            "GROUP BY r.bucketStart, r.organizationId, r.currency ORDER BY r.bucketStart")
+    List<DimensionTotals> findTotalsByOrganization(Granularity granularity, LocalDateTime start, LocalDateTime end);
+    
+    @Query("SELECT r.bucketStart AS bucketStart, r.billingPlanId AS dimensionId, r.currency AS currency, " +
+            "SUM(r.sessionCount) AS sessionCount, SUM(r.energyKwh) AS energyKwh, SUM(r.revenue) AS revenue " +
+            "FROM RevenueRollup r WHERE r.granularity = ?1 AND r.bucketStart >= ?2 AND r.bucketStart < ?3 " +
+            "GROUP BY r.bucketStart, r.billingPlanId, r.currency ORDER BY r.bucketStart")
+    List<DimensionTotals> findTotalsByBillingPlan(Granularity granularity, LocalDateTime start, LocalDateTime end);
+    
+    /**
+     * Totals of one bucket and currency
+     */
+    interface RevenueTotals {
+        LocalDateTime getBucketStart();
+        String getCurrency();
+        Long getSessionCount();
+        BigDecimal getEnergyKwh();
+        BigDecimal getRevenue();
+    }
+    
+    /**
+     * Totals of one bucket, currency and station, organization or plan
+     */
+    interface DimensionTotals extends RevenueTotals {
+        UUID getDimensionId();
+    }
+}
@@ -3,10 +3,12 @@ package com.ev.billingservice.repository;
 import com.ev.billingservice.model.Subscription;
 import com.ev.billingservice.model.Subscription.SubscriptionStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -22,6 +24,8 @@ public interface SubscriptionRepository extends JpaRepository<Subscription, UUID
     
     Optional<Subscription> findByUserIdAndStatus(UUID userId, SubscriptionStatus status);
     
+    List<Subscription> findByUserIdInAndStatus(Collection<UUID> userIds, SubscriptionStatus status);
+    
     Optional<Subscription> findByOrganizationIdAndStatus(UUID organizationId, SubscriptionStatus status);
     
     @Query("SELECT s FROM Subscription s WHERE s.endDate < ?1 AND s.status = 'ACTIVE'")
@@ -29,4 +33,13 @@ public interface SubscriptionRepository extends JpaRepository<Subscription, UUID
     
     @Query("SELECT s FROM Subscription s WHERE s.endDate BETWEEN ?1 AND ?2 AND s.status = 'ACTIVE' AND s.autoRenew = true")
     List<Subscription> findSubscriptionsToRenew(LocalDateTime start, LocalDateTime end);
-} 
\ No newline at end of file
+    
+    @Query("SELECT s.organizationId FROM Subscription s WHERE s.organizationId IN ?1 " +
+            "GROUP BY s.organizationId HAVING COUNT(s) > 1")
+    List<UUID> findOrganizationIdsWithMultipleSubscriptions(Collection<UUID> organizationIds);
+    
+    @Modifying
+    @Query("UPDATE Subscription s SET s.status = ?2, s.updatedAt = ?4 WHERE s.id IN ?1 AND s.status = ?3")
+    int updateStatus(Collection<UUID> subscriptionIds, SubscriptionStatus status, SubscriptionStatus currentStatus,
+                     LocalDateTime updatedAt);
+}
@@ -1,10 +1,14 @@
 package com.ev.billingservice.repository;
 
 import com.ev.billingservice.model.UsageRecord;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -20,4 +24,39 @@ public interface UsageRecordRepository extends JpaRepository<UsageRecord, UUID>
     List<UsageRecord> findByTimestampBetween(LocalDateTime start, LocalDateTime end);
     
     List<UsageRecord> findBySubscriptionIdAndTimestampBetween(UUID subscriptionId, LocalDateTime start, LocalDateTime end);
-} 
\ No newline at end of file
+
+    /**
+     * Find the next subscriptions with unprocessed usage, in ID order after the given one
+     */
+    @Query("SELECT DISTINCT u.subscriptionId FROM UsageRecord u " +
+           "WHERE u.processed = false AND u.createdAt < ?1 AND u.subscriptionId > ?2 " +
+           "ORDER BY u.subscriptionId")
+    List<UUID> findSubscriptionIdsWithUnprocessedUsage(LocalDateTime createdBefore, UUID afterSubscriptionId,
+                                                       Pageable pageable);
+
+    /**
+     * Mark the unprocessed usage of some subscriptions as processed and return it totalled per meter,
+     * ordered by subscription. Records another instance has already claimed are skipped, so each
+     * record is returned exactly once.
+     */
+    @Query(value = "WITH claimed AS (" +
+                   "UPDATE usage_records SET processed = true " +
+                   "WHERE subscription_id IN ?1 AND processed = false AND created_at < ?2 " +
+                   "RETURNING subscription_id, meter_type, quantity) " +
+                   "SELECT subscription_id AS subscriptionId, meter_type AS meterType, " +
+                   "SUM(quantity) AS quantity, COUNT(*) AS recordCount " +
+                   "FROM claimed GROUP BY subscription_id, meter_type " +
+                   "ORDER BY subscription_id, meter_type",
+           nativeQuery = true)
+    List<MeterUsage> claimUsage(Collection<UUID> subscriptionIds, LocalDateTime createdBefore);
+
+    /**
+     * Usage of one subscription on one meter
+     */
+    interface MeterUsage {
+        UUID getSubscriptionId();
+        String getMeterType();
+        BigDecimal getQuantity();
+        Long getRecordCount();
+    }
+}
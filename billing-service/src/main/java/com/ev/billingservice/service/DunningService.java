@@ -0,0 +1,16 @@
+package com.ev.billingservice.service;
+
+/**
+ * Chases unpaid invoices through the dunning stages: overdue at the due date, a first and a final
+ * reminder some days later, and finally suspension of the subscription
+ */
+public interface DunningService {
+    
+    /**
+     * Move every unpaid invoice that is due for it to its next dunning stage.
+     * Each invoice advances at most one stage per run, so customers never get several notices at once.
+     *
+     * @return Number of invoices that advanced
+     */
+    int processOverdueInvoices();
+}
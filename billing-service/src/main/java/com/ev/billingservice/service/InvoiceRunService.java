@@ -0,0 +1,21 @@
+package com.ev.billingservice.service;
+
+import com.ev.billingservice.model.InvoiceRun;
+
+/**
+ * Consolidates completed charging transactions into invoices in scheduled billing runs
+ */
+public interface InvoiceRunService {
+    
+    /**
+     * Run or resume the billing run of the given type for the current period.
+     * MONTHLY consolidates all transactions of the closed month into one invoice per organization.
+     * DAILY invoices the previous days' transactions per subscription, except for organizations
+     * with several subscriptions, which are left for the monthly consolidated invoice.
+     * Both invoice transactions charged without a subscription to their user, one invoice per user.
+     *
+     * @param runType The type of run
+     * @return The run with its final counters, or null if another instance is already executing it
+     */
+    InvoiceRun runInvoicing(InvoiceRun.RunType runType);
+}
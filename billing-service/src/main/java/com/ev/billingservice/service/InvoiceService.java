@@ -43,5 +43,13 @@ public interface InvoiceService {
     
     void generateInvoicesForSubscriptions();
     
+    /**
+     * Invoice a completed transaction without a subscription to its user, in a transaction of its own.
+     * Invoicing a transaction again returns its existing invoice.
+     *
+     * @param transactionId ID of the completed charging transaction
+     * @return ID of the transaction's invoice, or null if an invoice run is invoicing the user's transactions
+     *         right now; the transaction is then left to the invoice runs
+     */
     UUID generateInvoiceForTransaction(UUID transactionId);
 } 
\ No newline at end of file
@@ -2,12 +2,16 @@ package com.ev.billingservice.service;
 
 import com.ev.billingservice.config.KafkaConfig;
 import com.ev.billingservice.dto.event.ChargingSessionEvent;
+import com.ev.billingservice.dto.event.WalletEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
 
 /**
  * Service for consuming events from Kafka topics
@@ -18,92 +22,68 @@ import org.springframework.transaction.annotation.Transactional;
 public class KafkaConsumerService {
 
     private final TransactionService transactionService;
+    private final PaymentService paymentService;
 
     /**
-     * Consume charging session events from Kafka
-     * 
-     * @param event The charging session event
+     * Consume a batch of charging session events from Kafka.
+     * The whole batch is applied in one database transaction and acknowledged once.
+     *
+     * @param events The charging session events of one poll
      * @param acknowledgment Acknowledgment for manual commits
      */
     @KafkaListener(
         topics = KafkaConfig.CHARGING_SESSION_TOPIC,
         groupId = KafkaConfig.BILLING_CONSUMER_GROUP,
-        containerFactory = "kafkaListenerContainerFactory"
+        containerFactory = "chargingSessionBatchListenerFactory"
     )
-    @Transactional
-    public void consumeChargingSessionEvent(ChargingSessionEvent event, Acknowledgment acknowledgment) {
+    public void consumeChargingSessionEvents(List<ChargingSessionEvent> events, Acknowledgment acknowledgment) {
         try {
-            log.info("Received charging session event: type={}, sessionId={}", 
-                    event.getEventType(), event.getSessionId());
-            
-            switch (event.getEventType()) {
-                case "STARTED":
-                    handleSessionStarted(event);
-                    break;
-                case "UPDATED":
-                    handleSessionUpdated(event);
-                    break;
-                case "ENDED":
-                    handleSessionEnded(event);
-                    break;
-                default:
-                    log.warn("Unknown event type: {}", event.getEventType());
-            }
-            
-            // Acknowledge the message after successful processing
+            log.debug("Received {} charging session events", events.size());
+
+            int applied = transactionService.applySessionEvents(events);
+
+            // Acknowledge the batch after successful processing
             acknowledgment.acknowledge();
-            log.debug("Acknowledged charging session event: {}", event.getEventId());
+            log.info("Applied {} charging session events to {} transactions", events.size(), applied);
         } catch (Exception e) {
-            log.error("Error processing charging session event: {}", event.getEventId(), e);
-            // Don't acknowledge - the message will be redelivered
+            log.error("Error processing batch of {} charging session events", events.size(), e);
+            // Don't acknowledge - the batch will be redelivered
             // If this fails multiple times, the DefaultErrorHandler will handle it
             throw e;
         }
     }
-    
-    /**
-     * Handle a session started event
-     */
-    private void handleSessionStarted(ChargingSessionEvent event) {
-        log.info("Handling session started event for session: {}", event.getSessionId());
-        
-        // Create a pending transaction for the charging session
-        transactionService.createPendingTransaction(
-            event.getSessionId(),
-            event.getUserId(),
-            event.getStationId(),
-            event.getConnectorId(),
-            event.getStartTime()
-        );
-    }
-    
+
     /**
-     * Handle a session updated event
+     * Consume a wallet event from Kafka.
+     * Invoices of prepaid sessions are paid from the session's wallet hold; the payment is
+     * recorded so the invoice is settled and not collected again.
+     *
+     * @param event The wallet event
+     * @param acknowledgment Acknowledgment for manual commits
      */
-    private void handleSessionUpdated(ChargingSessionEvent event) {
-        log.info("Handling session updated event for session: {}", event.getSessionId());
-        
-        // Update the pending transaction with current values
-        transactionService.updatePendingTransaction(
-            event.getSessionId(),
-            event.getEnergyDeliveredKwh(),
-            event.getDurationSeconds(),
-            event.getMeterValue()
-        );
+    @KafkaListener(
+        topics = KafkaConfig.WALLET_EVENTS_TOPIC,
+        groupId = KafkaConfig.BILLING_CONSUMER_GROUP,
+        containerFactory = "walletEventListenerFactory"
+    )
+    public void consumeWalletEvent(WalletEvent event, Acknowledgment acknowledgment) {
+        if ("PAYMENT_COMPLETED".equals(event.getEventType())
+                && event.getExternalReference() != null
+                && event.getTransactionId() != null) {
+            UUID invoiceId = UUID.fromString(event.getExternalReference());
+            paymentService.recordWalletPayment(invoiceId, event.getTransactionId().toString(),
+                    event.getAmount(), event.getTimestamp());
+            log.info("Recorded wallet payment {} of invoice {}", event.getTransactionId(), invoiceId);
+        }
+
+        acknowledgment.acknowledge();
     }
-    
+
     /**
-     * Handle a session ended event
+     * Apply held events whose transaction was created without a batch of their session to carry them
      */
-    private void handleSessionEnded(ChargingSessionEvent event) {
-        log.info("Handling session ended event for session: {}", event.getSessionId());
-        
-        // Complete the transaction and generate an invoice
-        transactionService.completeTransaction(
-            event.getSessionId(),
-            event.getEndTime(),
-            event.getEnergyDeliveredKwh(),
-            event.getDurationSeconds()
-        );
+    @Scheduled(fixedDelayString = "${billing.ingest.reorder-retry-ms:5000}")
+    public void retryHeldEvents() {
+        transactionService.applyHeldEvents();
     }
-}
\ No newline at end of file
+}
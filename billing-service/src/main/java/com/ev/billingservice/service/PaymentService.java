@@ -3,6 +3,7 @@ package com.ev.billingservice.service;
 import com.ev.billingservice.dto.PaymentDTO;
 import com.ev.billingservice.model.Payment.PaymentStatus;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
@@ -25,5 +26,7 @@ public interface PaymentService {
     
     PaymentDTO processPayment(PaymentDTO paymentDTO);
     
+    PaymentDTO recordWalletPayment(UUID invoiceId, String walletTransactionId, BigDecimal amount, LocalDateTime paidAt);
+    
     PaymentDTO refundPayment(UUID id);
 } 
\ No newline at end of file
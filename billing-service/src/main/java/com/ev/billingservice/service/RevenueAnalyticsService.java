@@ -0,0 +1,49 @@
+package com.ev.billingservice.service;
+
+import com.ev.billingservice.dto.RevenueRollupDTO;
+import com.ev.billingservice.model.ChargingTransaction;
+import com.ev.billingservice.model.RevenueRollup.Granularity;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Service for revenue and usage reporting, served from incrementally maintained rollups
+ */
+public interface RevenueAnalyticsService {
+    
+    /**
+     * Add completed transactions to the hourly and daily rollups, in the caller's transaction
+     *
+     * @param transactions Transactions that have just been completed
+     */
+    void recordCompletedTransactions(Collection<ChargingTransaction> transactions);
+    
+    /**
+     * Get revenue and usage per hour or day
+     *
+     * @param granularity Bucket size
+     * @param groupBy Dimension to break the totals down by
+     * @param start Start of the period (inclusive)
+     * @param end End of the period (exclusive)
+     * @return Totals per bucket, currency and dimension value
+     */
+    List<RevenueRollupDTO> getRevenue(Granularity granularity, GroupBy groupBy, LocalDateTime start, LocalDateTime end);
+    
+    /**
+     * Recompute the rollups of whole days from the transactions, e.g. to backfill history
+     *
+     * @param start Start of the period, rounded down to the day
+     * @param end End of the period, rounded up to the day
+     * @return Number of rollup rows written
+     */
+    int rebuildRollups(LocalDateTime start, LocalDateTime end);
+    
+    enum GroupBy {
+        NONE,
+        STATION,
+        ORGANIZATION,
+        BILLING_PLAN
+    }
+}
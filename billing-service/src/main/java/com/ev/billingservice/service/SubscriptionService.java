@@ -4,7 +4,9 @@ import com.ev.billingservice.dto.SubscriptionDTO;
 import com.ev.billingservice.model.Subscription.SubscriptionStatus;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public interface SubscriptionService {
@@ -21,6 +23,13 @@ public interface SubscriptionService {
     
     SubscriptionDTO getActiveSubscriptionForUser(UUID userId);
     
+    /**
+     * Find the active subscriptions of several users at once
+     *
+     * @return Active subscription by user ID; users without one are left out
+     */
+    Map<UUID, SubscriptionDTO> getActiveSubscriptionsForUsers(Collection<UUID> userIds);
+    
     SubscriptionDTO getActiveSubscriptionByOrganizationId(UUID organizationId);
     
     List<SubscriptionDTO> getSubscriptionsByStatus(SubscriptionStatus status);
@@ -1,7 +1,10 @@
 package com.ev.billingservice.service;
 
+import com.ev.billingservice.dto.event.ChargingSessionEvent;
+
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -10,7 +13,8 @@ import java.util.UUID;
 public interface TransactionService {
     
     /**
-     * Create a pending transaction when a charging session starts
+     * Create a pending transaction when a charging session starts.
+     * Idempotent: if the session already has a transaction, its ID is returned.
      *
      * @param sessionId ID of the charging session
      * @param userId ID of the user
@@ -43,13 +47,16 @@ public interface TransactionService {
     );
     
     /**
-     * Complete a transaction when a charging session ends and generate an invoice
+     * Complete a transaction when a charging session ends.
+     * Transactions without a subscription are invoiced once the completion commits; the others are
+     * consolidated by the billing run. Completing a completed transaction again changes nothing.
      *
      * @param sessionId ID of the charging session
      * @param endTime Time when the session ended
      * @param energyDeliveredKwh Total energy delivered in kWh
      * @param durationSeconds Total duration of the session in seconds
-     * @return ID of the generated invoice
+     * @return ID of the invoice if the transaction was completed and invoiced before, otherwise null
+     * @throws IllegalStateException if the transaction was canceled or failed
      */
     UUID completeTransaction(
         UUID sessionId,
@@ -58,6 +65,27 @@ public interface TransactionService {
         Long durationSeconds
     );
     
+    /**
+     * Apply a batch of charging session events in a single database transaction.
+     * Events are grouped by session, with only the latest UPDATED of each session applied
+     * and an ENDED event superseding any UPDATED in the same batch.
+     * Events whose ID was processed before are skipped, so redelivered batches are harmless.
+     * Events that arrive before their session's transaction can be created are held back
+     * and applied with a later batch.
+     *
+     * @param events Charging session events in the order they were consumed
+     * @return Number of transactions created or changed
+     */
+    int applySessionEvents(List<ChargingSessionEvent> events);
+    
+    /**
+     * Apply held events whose transaction was created since they were held,
+     * without a batch of their session to carry them
+     *
+     * @return Number of transactions created or changed
+     */
+    int applyHeldEvents();
+    
     /**
      * Get the current state of a transaction
      *
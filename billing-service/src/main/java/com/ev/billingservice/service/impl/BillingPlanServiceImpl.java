@@ -8,6 +8,7 @@ import com.ev.billingservice.model.BillingPlan;
 import com.ev.billingservice.repository.BillingAuditLogRepository;
 import com.ev.billingservice.repository.BillingPlanRepository;
 import com.ev.billingservice.service.BillingPlanService;
+import com.ev.billingservice.service.tariff.TariffEngine;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -24,6 +25,7 @@ public class BillingPlanServiceImpl implements BillingPlanService {
     
     private final BillingPlanRepository billingPlanRepository;
     private final BillingAuditLogRepository billingAuditLogRepository;
+    private final TariffEngine tariffEngine;
     
     @Override
     @Transactional
@@ -82,6 +84,7 @@ public class BillingPlanServiceImpl implements BillingPlanService {
         existingBillingPlan.setFeatures(billingPlanDTO.getFeatures());
         
         BillingPlan updatedBillingPlan = billingPlanRepository.save(existingBillingPlan);
+        tariffEngine.evictAfterCommit(id);
         
         createAuditLog(updatedBillingPlan.getId(), "UPDATE", "Updated billing plan: " + updatedBillingPlan.getName());
         
@@ -100,6 +103,7 @@ public class BillingPlanServiceImpl implements BillingPlanService {
         
         billingPlan.setActive(true);
         billingPlanRepository.save(billingPlan);
+        tariffEngine.evictAfterCommit(id);
         
         createAuditLog(billingPlan.getId(), "ACTIVATE", "Activated billing plan: " + billingPlan.getName());
     }
@@ -116,6 +120,7 @@ public class BillingPlanServiceImpl implements BillingPlanService {
         
         billingPlan.setActive(false);
         billingPlanRepository.save(billingPlan);
+        tariffEngine.evictAfterCommit(id);
         
         createAuditLog(billingPlan.getId(), "DEACTIVATE", "Deactivated billing plan: " + billingPlan.getName());
     }
@@ -130,6 +135,7 @@ public class BillingPlanServiceImpl implements BillingPlanService {
         
         String planName = billingPlan.getName();
         billingPlanRepository.delete(billingPlan);
+        tariffEngine.evictAfterCommit(id);
         
         createAuditLog(id, "DELETE", "Deleted billing plan: " + planName);
     }
@@ -0,0 +1,178 @@
+package com.ev.billingservice.service.impl;
+
+import com.ev.billingservice.dto.event.InvoiceEvent;
+import com.ev.billingservice.model.Invoice;
+import com.ev.billingservice.model.Invoice.DunningStage;
+import com.ev.billingservice.model.Invoice.InvoiceStatus;
+import com.ev.billingservice.model.Subscription.SubscriptionStatus;
+import com.ev.billingservice.repository.InvoiceRepository;
+import com.ev.billingservice.repository.SubscriptionRepository;
+import com.ev.billingservice.service.DunningService;
+import com.ev.billingservice.service.outbox.EventOutbox;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Dunning runs stage by stage, in chunks that each commit on their own: a chunk is locked, moved to the
+ * next stage with one bulk UPDATE, and its events are queued in the same transaction. Notifications
+ * are sent by the notification service from those events, so no chunk waits on a notification.
+ * Several workers take chunks in parallel; rows locked by one worker are skipped by the others.
+ */
+@Service
+@Slf4j
+public class DunningServiceImpl implements DunningService {
+
+    private final InvoiceRepository invoiceRepository;
+    private final SubscriptionRepository subscriptionRepository;
+    private final EventOutbox eventOutbox;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor dunningExecutor;
+
+    @Value("${billing.dunning.threads:4}")
+    private int workerCount;
+
+    @Value("${billing.dunning.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${billing.dunning.first-reminder-days:3}")
+    private long firstReminderDays;
+
+    @Value("${billing.dunning.final-reminder-days:7}")
+    private long finalReminderDays;
+
+    @Value("${billing.dunning.suspension-days:14}")
+    private long suspensionDays;
+
+    public DunningServiceImpl(
+            InvoiceRepository invoiceRepository,
+            SubscriptionRepository subscriptionRepository,
+            EventOutbox eventOutbox,
+            PlatformTransactionManager transactionManager,
+            @Qualifier("dunningExecutor") Executor dunningExecutor) {
+        this.invoiceRepository = invoiceRepository;
+        this.subscriptionRepository = subscriptionRepository;
+        this.eventOutbox = eventOutbox;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.dunningExecutor = dunningExecutor;
+    }
+
+    @Override
+    @Scheduled(cron = "${billing.invoice.overdue.check.cron:0 0 0 * * ?}") // Default: every day at midnight
+    public int processOverdueInvoices() {
+        LocalDateTime now = LocalDateTime.now();
+        long startedAt = System.currentTimeMillis();
+        int total = 0;
+
+        // Later stages first, so an invoice moved by this run is not moved again by it
+        DunningStage[] stages = DunningStage.values();
+        for (int i = stages.length - 1; i >= 0; i--) {
+            DunningStage stage = stages[i];
+            int advanced = advanceStage(stage, now);
+            if (advanced > 0) {
+                log.info("Moved {} invoices to dunning stage {}", advanced, stage);
+            }
+            total += advanced;
+        }
+
+        log.info("Dunning run moved {} invoices in {} ms", total, System.currentTimeMillis() - startedAt);
+        return total;
+    }
+
+    private int advanceStage(DunningStage stage, LocalDateTime now) {
+        LocalDateTime dueBefore = now.minusDays(daysAfterDue(stage));
+        AtomicInteger advanced = new AtomicInteger();
+
+        List<CompletableFuture<Void>> workers = new ArrayList<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(CompletableFuture.runAsync(() -> {
+                List<Invoice> chunk;
+                do {
+                    chunk = transactionTemplate.execute(status -> advanceChunk(stage, now, dueBefore));
+                    advanced.addAndGet(chunk.size());
+                } while (chunk.size() == chunkSize);
+            }, dunningExecutor));
+        }
+        CompletableFuture.allOf(workers.toArray(new CompletableFuture[0])).join();
+
+        return advanced.get();
+    }
+
+    private List<Invoice> advanceChunk(DunningStage stage, LocalDateTime now, LocalDateTime dueBefore) {
+        List<UUID> invoiceIds = stage == DunningStage.OVERDUE
+                ? invoiceRepository.lockOverdueChunk(dueBefore, chunkSize)
+                : invoiceRepository.lockDunningChunk(previousStage(stage).name(), dueBefore, chunkSize);
+        if (invoiceIds.isEmpty()) {
+            return List.of();
+        }
+        invoiceRepository.moveToDunningStage(invoiceIds, InvoiceStatus.OVERDUE, stage, now);
+        List<Invoice> invoices = invoiceRepository.findAllById(invoiceIds);
+
+        if (stage == DunningStage.SUSPENDED) {
+            // Invoices of sessions charged without a subscription have nothing to suspend
+            Set<UUID> subscriptionIds = invoices.stream()
+                    .map(Invoice::getSubscriptionId)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet());
+            if (!subscriptionIds.isEmpty()) {
+                int suspended = subscriptionRepository.updateStatus(subscriptionIds,
+                        SubscriptionStatus.PAST_DUE, SubscriptionStatus.ACTIVE, now);
+                log.info("Suspended {} subscriptions for unpaid invoices", suspended);
+            }
+        }
+
+        for (Invoice invoice : invoices) {
+            eventOutbox.enqueueInvoiceEvent(dunningEvent(invoice, stage, now));
+        }
+
+        return invoices;
+    }
+
+    private InvoiceEvent dunningEvent(Invoice invoice, DunningStage stage, LocalDateTime now) {
+        return InvoiceEvent.builder()
+                .invoiceId(invoice.getId())
+                .userId(invoice.getUserId())
+                .eventType(stage.name())
+                .invoiceNumber(invoice.getInvoiceNumber())
+                .totalAmount(invoice.getTotalAmount())
+                .currency(invoice.getCurrency())
+                .status(invoice.getStatus().toString())
+                .issuedAt(invoice.getIssuedAt())
+                .dueAt(invoice.getDueAt())
+                .timestamp(now)
+                .invoiceUrl("/api/v1/billing/invoices/" + invoice.getId())
+                .build();
+    }
+
+    private long daysAfterDue(DunningStage stage) {
+        switch (stage) {
+            case FIRST_REMINDER:
+                return firstReminderDays;
+            case FINAL_REMINDER:
+                return finalReminderDays;
+            case SUSPENDED:
+                return suspensionDays;
+            default:
+                return 0;
+        }
+    }
+
+    private DunningStage previousStage(DunningStage stage) {
+        return DunningStage.values()[stage.ordinal() - 1];
+    }
+}
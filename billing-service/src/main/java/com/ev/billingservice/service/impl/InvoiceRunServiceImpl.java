@@ -0,0 +1,603 @@
+package com.ev.billingservice.service.impl;
+
+import com.ev.billingservice.dto.event.InvoiceEvent;
+import com.ev.billingservice.model.ChargingTransaction;
+import com.ev.billingservice.model.Invoice;
+import com.ev.billingservice.model.Invoice.InvoiceStatus;
+import com.ev.billingservice.model.InvoiceItem;
+import com.ev.billingservice.model.InvoiceRun;
+import com.ev.billingservice.model.InvoiceRun.RunStatus;
+import com.ev.billingservice.model.InvoiceRun.RunType;
+import com.ev.billingservice.model.Subscription;
+import com.ev.billingservice.model.Subscription.SubscriptionStatus;
+import com.ev.billingservice.model.TransactionStatus;
+import com.ev.billingservice.repository.ChargingTransactionRepository;
+import com.ev.billingservice.repository.InvoiceItemRepository;
+import com.ev.billingservice.repository.InvoiceRepository;
+import com.ev.billingservice.repository.InvoiceRunRepository;
+import com.ev.billingservice.repository.SubscriptionRepository;
+import com.ev.billingservice.service.InvoiceRunService;
+import com.ev.billingservice.service.NotificationService;
+import com.ev.billingservice.service.invoice.InvoiceNumberAllocator;
+import com.ev.billingservice.service.outbox.EventOutbox;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class InvoiceRunServiceImpl implements InvoiceRunService {
+
+    private static final String DEFAULT_CURRENCY = "USD";
+
+    // Keeps IN lists well below the database's bind parameter limit
+    private static final int ID_BATCH_SIZE = 1000;
+
+    private final ChargingTransactionRepository transactionRepository;
+    private final SubscriptionRepository subscriptionRepository;
+    private final InvoiceRepository invoiceRepository;
+    private final InvoiceItemRepository invoiceItemRepository;
+    private final InvoiceRunRepository invoiceRunRepository;
+    private final InvoiceNumberAllocator invoiceNumberAllocator;
+    private final NotificationService notificationService;
+    private final EventOutbox eventOutbox;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor invoiceRunExecutor;
+
+    @Value("${billing.invoice.run.threads:4}")
+    private int partitionCount;
+
+    @Value("${billing.invoice.run.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${billing.invoice.run.checkpoint-interval-seconds:10}")
+    private long checkpointIntervalSeconds;
+
+    @Value("${billing.invoice.run.heartbeat-interval-seconds:30}")
+    private long heartbeatIntervalSeconds;
+
+    @Value("${billing.invoice.run.stale-after-minutes:2}")
+    private long staleAfterMinutes;
+
+    @Value("${billing.invoice.payment-term-days:14}")
+    private long paymentTermDays;
+
+    // Identifies this instance as the owner of the runs it executes
+    private final String instanceId = ManagementFactory.getRuntimeMXBean().getName();
+
+    // Heartbeats have their own thread; the scheduler thread is busy executing the run
+    private final ScheduledExecutorService heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "invoice-run-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public InvoiceRunServiceImpl(
+            ChargingTransactionRepository transactionRepository,
+            SubscriptionRepository subscriptionRepository,
+            InvoiceRepository invoiceRepository,
+            InvoiceItemRepository invoiceItemRepository,
+            InvoiceRunRepository invoiceRunRepository,
+            InvoiceNumberAllocator invoiceNumberAllocator,
+            NotificationService notificationService,
+            EventOutbox eventOutbox,
+            EntityManager entityManager,
+            PlatformTransactionManager transactionManager,
+            @Qualifier("invoiceRunExecutor") Executor invoiceRunExecutor) {
+        this.transactionRepository = transactionRepository;
+        this.subscriptionRepository = subscriptionRepository;
+        this.invoiceRepository = invoiceRepository;
+        this.invoiceItemRepository = invoiceItemRepository;
+        this.invoiceRunRepository = invoiceRunRepository;
+        this.invoiceNumberAllocator = invoiceNumberAllocator;
+        this.notificationService = notificationService;
+        this.eventOutbox = eventOutbox;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.invoiceRunExecutor = invoiceRunExecutor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeatExecutor.shutdownNow();
+    }
+
+    @Scheduled(cron = "${billing.invoice.generation.cron:0 0 0 1 * ?}") // Default: first day of each month
+    public void runMonthlyInvoicing() {
+        runInvoicing(RunType.MONTHLY);
+    }
+
+    @Scheduled(cron = "${billing.invoice.run.daily.cron:0 0 1 * * ?}") // Default: every day at 1 AM
+    public void runDailyInvoicing() {
+        runInvoicing(RunType.DAILY);
+    }
+
+    @Override
+    public InvoiceRun runInvoicing(RunType runType) {
+        LocalDateTime cutoff = runType == RunType.MONTHLY
+                ? LocalDate.now().withDayOfMonth(1).atStartOfDay()
+                : LocalDate.now().atStartOfDay();
+
+        InvoiceRun run = claimRun(runType, cutoff);
+        if (run == null) {
+            return null;
+        }
+
+        RunProgress progress = new RunProgress(run);
+        // Reported apart from checkpoints, so a group that takes long does not make the run look abandoned
+        ScheduledFuture<?> heartbeat = heartbeatExecutor.scheduleAtFixedRate(progress::heartbeat,
+                heartbeatIntervalSeconds, heartbeatIntervalSeconds, TimeUnit.SECONDS);
+        try {
+            // Groups finished by an earlier attempt no longer have uninvoiced transactions
+            List<InvoiceGroup> groups = findInvoiceGroups(runType, cutoff);
+            progress.start(groups.size());
+
+            log.info("Starting {} invoice run {} for transactions ended before {}: {} groups in {} partitions",
+                    runType, run.getId(), cutoff, groups.size(), partitionCount);
+
+            // Deal the groups round-robin across the partitions
+            List<List<InvoiceGroup>> partitions = new ArrayList<>();
+            for (int i = 0; i < partitionCount; i++) {
+                partitions.add(new ArrayList<>());
+            }
+            for (int i = 0; i < groups.size(); i++) {
+                partitions.get(i % partitionCount).add(groups.get(i));
+            }
+
+            CompletableFuture.allOf(partitions.stream()
+                            .filter(partition -> !partition.isEmpty())
+                            .map(partition -> CompletableFuture.runAsync(
+                                    () -> processPartition(partition, cutoff, progress), invoiceRunExecutor))
+                            .toArray(CompletableFuture[]::new))
+                    .join();
+
+            return progress.finish(null);
+        } catch (Exception e) {
+            log.error("Invoice run {} failed", run.getId(), e);
+            return progress.finish(e.getMessage());
+        } finally {
+            heartbeat.cancel(false);
+        }
+    }
+
+    /**
+     * Create the run for this type and cutoff, or take over an existing one whose owner stopped
+     * reporting heartbeats. The run row is locked while it is claimed, so two instances never
+     * take it over together. Returns null if another instance holds or is claiming the run.
+     */
+    private InvoiceRun claimRun(RunType runType, LocalDateTime cutoff) {
+        try {
+            return transactionTemplate.execute(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                // A run locked by a concurrent claim is skipped; creating it again then fails on the unique key
+                InvoiceRun run = invoiceRunRepository.findForClaim(runType.name(), cutoff).orElse(null);
+
+                if (run == null) {
+                    run = InvoiceRun.builder()
+                            .runType(runType)
+                            .cutoff(cutoff)
+                            .startedAt(now)
+                            .build();
+                } else if (run.getStatus() == RunStatus.RUNNING
+                        && run.getHeartbeatAt() != null
+                        && run.getHeartbeatAt().isAfter(now.minusMinutes(staleAfterMinutes))) {
+                    log.info("{} invoice run {} is already running on {}", runType, run.getId(), run.getOwner());
+                    return null;
+                } else {
+                    log.info("Resuming {} invoice run {} from checkpoint: {}/{} groups, {} invoices",
+                            runType, run.getId(), run.getGroupsCompleted(), run.getGroupsTotal(),
+                            run.getInvoicesCreated());
+                }
+
+                run.setStatus(RunStatus.RUNNING);
+                run.setOwner(instanceId);
+                run.setLastCheckpointAt(now);
+                run.setCompletedAt(null);
+                run.setLastError(null);
+                InvoiceRun claimed = invoiceRunRepository.saveAndFlush(run);
+                invoiceRunRepository.heartbeat(claimed.getId(), instanceId, now);
+                return claimed;
+            });
+        } catch (DataIntegrityViolationException | OptimisticLockingFailureException e) {
+            log.info("{} invoice run for {} was claimed by another instance", runType, cutoff);
+            return null;
+        }
+    }
+
+    /**
+     * Find the groups of subscriptions, and the users charged without a subscription, that each get one
+     * invoice per currency
+     */
+    private List<InvoiceGroup> findInvoiceGroups(RunType runType, LocalDateTime cutoff) {
+        List<UUID> subscriptionIds = transactionRepository.findUninvoicedSubscriptionIds(
+                TransactionStatus.COMPLETED, cutoff);
+
+        List<Subscription> subscriptions = new ArrayList<>(subscriptionIds.size());
+        for (int i = 0; i < subscriptionIds.size(); i += ID_BATCH_SIZE) {
+            subscriptions.addAll(subscriptionRepository.findAllById(
+                    subscriptionIds.subList(i, Math.min(i + ID_BATCH_SIZE, subscriptionIds.size()))));
+        }
+
+        Map<UUID, List<Subscription>> subscriptionsByOrganization = subscriptions.stream()
+                .collect(Collectors.groupingBy(Subscription::getOrganizationId));
+
+        List<InvoiceGroup> groups = new ArrayList<>();
+        if (runType == RunType.MONTHLY) {
+            for (List<Subscription> organizationSubscriptions : subscriptionsByOrganization.values()) {
+                // Bill the organization through its active subscription when it has one
+                Subscription billed = organizationSubscriptions.stream()
+                        .filter(subscription -> subscription.getStatus() == SubscriptionStatus.ACTIVE)
+                        .findFirst()
+                        .orElse(organizationSubscriptions.get(0));
+                groups.add(new InvoiceGroup(billed, organizationSubscriptions.stream()
+                        .map(Subscription::getId)
+                        .collect(Collectors.toList())));
+            }
+        } else {
+            // Fleets are consolidated by the monthly run instead
+            List<UUID> organizationIds = new ArrayList<>(subscriptionsByOrganization.keySet());
+            Set<UUID> fleetOrganizationIds = new HashSet<>();
+            for (int i = 0; i < organizationIds.size(); i += ID_BATCH_SIZE) {
+                fleetOrganizationIds.addAll(subscriptionRepository.findOrganizationIdsWithMultipleSubscriptions(
+                        organizationIds.subList(i, Math.min(i + ID_BATCH_SIZE, organizationIds.size()))));
+            }
+            for (Subscription subscription : subscriptions) {
+                if (!fleetOrganizationIds.contains(subscription.getOrganizationId())) {
+                    groups.add(new InvoiceGroup(subscription, List.of(subscription.getId())));
+                }
+            }
+        }
+
+        // Sessions charged without a subscription are invoiced to their user by both runs
+        for (UUID userId : transactionRepository.findUninvoicedUserIdsWithoutSubscription(
+                TransactionStatus.COMPLETED, cutoff)) {
+            groups.add(new InvoiceGroup(userId));
+        }
+
+        return groups;
+    }
+
+    private void processPartition(List<InvoiceGroup> groups, LocalDateTime cutoff, RunProgress progress) {
+        for (InvoiceGroup group : groups) {
+            if (!progress.isOwned()) {
+                // The new owner invoices the groups left over
+                return;
+            }
+            try {
+                // Each group commits on its own, so a restart picks up exactly the groups left over
+                GroupResult result = transactionTemplate.execute(status -> invoiceGroup(group, cutoff));
+                if (result == null) {
+                    log.warn("{} is being invoiced elsewhere; skipped", group);
+                    continue;
+                }
+                progress.groupCompleted(result);
+
+                for (Invoice invoice : result.invoices) {
+                    notificationService.sendInvoiceCreatedNotification(invoice);
+                }
+            } catch (Exception e) {
+                log.error("Error invoicing {}", group, e);
+                progress.groupFailed(e);
+            }
+        }
+    }
+
+    /**
+     * Invoice all uninvoiced transactions of a group, streaming them in chunks
+     *
+     * @return null if another instance is invoicing the group
+     */
+    private GroupResult invoiceGroup(InvoiceGroup group, LocalDateTime cutoff) {
+        // Daily groups are organizations with one subscription, so the organization also guards
+        // against a daily and a monthly run invoicing the same subscription
+        if (!invoiceRunRepository.tryLockGroup(InvoiceRunRepository.GROUP_LOCK_CLASS, group.lockKey())) {
+            return null;
+        }
+
+        Map<String, InvoiceTotals> totalsByCurrency = new HashMap<>();
+        PageRequest firstChunk = PageRequest.of(0, chunkSize);
+        int transactionCount = 0;
+
+        // Invoiced transactions drop out of the query, so the first chunk is always the next one
+        List<ChargingTransaction> chunk;
+        while (!(chunk = findChunk(group, cutoff, firstChunk)).isEmpty()) {
+
+            List<InvoiceItem> items = new ArrayList<>(chunk.size());
+            for (ChargingTransaction transaction : chunk) {
+                String currency = transaction.getCurrency() != null ? transaction.getCurrency() : DEFAULT_CURRENCY;
+                InvoiceTotals totals = totalsByCurrency.computeIfAbsent(currency,
+                        c -> new InvoiceTotals(createDraftInvoice(group, c).getId()));
+                BigDecimal amount = transaction.getAmount() != null ? transaction.getAmount() : BigDecimal.ZERO;
+
+                items.add(InvoiceItem.builder()
+                        .invoiceId(totals.invoiceId)
+                        .description(String.format("Charging session %s at station %s: %s kWh",
+                                transaction.getSessionId(), transaction.getStationId(),
+                                transaction.getEnergyDeliveredKwh()))
+                        .quantity(1)
+                        .unitPrice(amount)
+                        .totalPrice(amount)
+                        .build());
+
+                totals.amount = totals.amount.add(amount);
+                totals.sessionIds.add(transaction.getSessionId());
+                transaction.setInvoiceId(totals.invoiceId);
+                transaction.setStatus(TransactionStatus.INVOICED);
+            }
+
+            invoiceItemRepository.saveAll(items);
+            transactionCount += chunk.size();
+
+            // Write the chunk as JDBC batches and release it before loading the next
+            entityManager.flush();
+            entityManager.clear();
+        }
+
+        List<Invoice> invoices = new ArrayList<>(totalsByCurrency.size());
+        for (InvoiceTotals totals : totalsByCurrency.values()) {
+            Invoice invoice = invoiceRepository.findById(totals.invoiceId)
+                    .orElseThrow(() -> new IllegalStateException("Draft invoice disappeared: " + totals.invoiceId));
+            invoice.setAmount(totals.amount);
+            invoice.setTaxAmount(BigDecimal.ZERO);
+            invoice.setTotalAmount(totals.amount);
+            invoice.setStatus(InvoiceStatus.ISSUED);
+            invoices.add(invoice);
+
+            // Queued with the invoice, so the event is published exactly when the invoice commits
+            eventOutbox.enqueueInvoiceEvent(invoiceCreatedEvent(invoice, totals.sessionIds));
+        }
+
+        return new GroupResult(invoices, transactionCount);
+    }
+
+    private List<ChargingTransaction> findChunk(InvoiceGroup group, LocalDateTime cutoff, PageRequest chunk) {
+        if (group.billedSubscription == null) {
+            return transactionRepository.findByStatusAndInvoiceIdIsNullAndSubscriptionIdIsNullAndUserIdAndEndTimeBefore(
+                    TransactionStatus.COMPLETED, group.userId, cutoff, chunk);
+        }
+        return transactionRepository.findByStatusAndInvoiceIdIsNullAndSubscriptionIdInAndEndTimeBefore(
+                TransactionStatus.COMPLETED, group.subscriptionIds, cutoff, chunk);
+    }
+
+    private Invoice createDraftInvoice(InvoiceGroup group, String currency) {
+        Subscription subscription = group.billedSubscription;
+        UUID organizationId = subscription != null ? subscription.getOrganizationId() : null;
+        LocalDateTime now = LocalDateTime.now();
+        Invoice invoice = Invoice.builder()
+                .subscriptionId(subscription != null ? subscription.getId() : null)
+                .userId(group.userId)
+                .organizationId(organizationId)
+                .invoiceNumber(invoiceNumberAllocator.nextInvoiceNumber(organizationId))
+                .amount(BigDecimal.ZERO)
+                .taxAmount(BigDecimal.ZERO)
+                .totalAmount(BigDecimal.ZERO)
+                .status(InvoiceStatus.DRAFT)
+                .currency(currency)
+                .issuedAt(now)
+                .dueDate(now.plusDays(paymentTermDays))
+                .dueAt(now.plusDays(paymentTermDays))
+                .build();
+        return invoiceRepository.save(invoice);
+    }
+
+    private InvoiceEvent invoiceCreatedEvent(Invoice invoice, List<UUID> sessionIds) {
+        // Transaction IDs are left out; the session IDs let wallet holds of the sessions pay the invoice
+        return InvoiceEvent.builder()
+                .eventId(UUID.randomUUID())
+                .invoiceId(invoice.getId())
+                .userId(invoice.getUserId())
+                .eventType("CREATED")
+                .invoiceNumber(invoice.getInvoiceNumber())
+                .totalAmount(invoice.getTotalAmount())
+                .currency(invoice.getCurrency())
+                .status(invoice.getStatus().toString())
+                .issuedAt(invoice.getIssuedAt())
+                .dueAt(invoice.getDueAt())
+                .timestamp(LocalDateTime.now())
+                .chargingSessionIds(sessionIds)
+                .invoiceUrl("/api/v1/billing/invoices/" + invoice.getId())
+                .notes("Consolidated invoice for " + sessionIds.size() + " charging sessions")
+                .build();
+    }
+
+    /**
+     * Subscriptions invoiced together, and the subscription the invoice is issued against;
+     * or a user whose sessions were charged without a subscription
+     */
+    private static class InvoiceGroup {
+        private final Subscription billedSubscription;
+        private final List<UUID> subscriptionIds;
+        private final UUID userId;
+
+        InvoiceGroup(Subscription billedSubscription, List<UUID> subscriptionIds) {
+            this.billedSubscription = billedSubscription;
+            this.subscriptionIds = subscriptionIds;
+            this.userId = billedSubscription.getUserId();
+        }
+
+        InvoiceGroup(UUID userId) {
+            this.billedSubscription = null;
+            this.subscriptionIds = List.of();
+            this.userId = userId;
+        }
+
+        /**
+         * Key of the advisory lock; users without a subscription share it with the per-transaction invoices
+         */
+        String lockKey() {
+            return billedSubscription != null ? billedSubscription.getOrganizationId().toString() : userId.toString();
+        }
+
+        @Override
+        public String toString() {
+            return billedSubscription != null
+                    ? "organization " + billedSubscription.getOrganizationId() + " subscription " + billedSubscription.getId()
+                    : "user " + userId + " without subscription";
+        }
+    }
+
+    /**
+     * Running total of one invoice while its transactions are streamed
+     */
+    private static class InvoiceTotals {
+        private final UUID invoiceId;
+        private final List<UUID> sessionIds = new ArrayList<>();
+        private BigDecimal amount = BigDecimal.ZERO;
+
+        InvoiceTotals(UUID invoiceId) {
+            this.invoiceId = invoiceId;
+        }
+    }
+
+    /**
+     * Invoices issued for one group and the number of transactions they cover
+     */
+    private static class GroupResult {
+        private final List<Invoice> invoices;
+        private final int transactionCount;
+
+        GroupResult(List<Invoice> invoices, int transactionCount) {
+            this.invoices = invoices;
+            this.transactionCount = transactionCount;
+        }
+    }
+
+    /**
+     * Progress shared by the partitions of a run, periodically saved to the run as its checkpoint
+     */
+    private class RunProgress {
+        private InvoiceRun run;
+        private final UUID runId;
+        private final int baseGroupsCompleted;
+        private final int baseInvoicesCreated;
+        private final long baseTransactionsInvoiced;
+        private final AtomicInteger groupsCompleted = new AtomicInteger();
+        private final AtomicInteger groupsFailed = new AtomicInteger();
+        private final AtomicInteger invoicesCreated = new AtomicInteger();
+        private final AtomicLong transactionsInvoiced = new AtomicLong();
+        private final long startNanos = System.nanoTime();
+        private volatile long lastCheckpointNanos = startNanos;
+        private volatile String lastError;
+        private volatile boolean owned = true;
+
+        RunProgress(InvoiceRun run) {
+            this.run = run;
+            this.runId = run.getId();
+            this.baseGroupsCompleted = run.getGroupsCompleted();
+            this.baseInvoicesCreated = run.getInvoicesCreated();
+            this.baseTransactionsInvoiced = run.getTransactionsInvoiced();
+        }
+
+        synchronized void start(int groupsLeft) {
+            run.setGroupsTotal(run.getGroupsCompleted() + groupsLeft);
+            run = invoiceRunRepository.save(run);
+        }
+
+        void groupCompleted(GroupResult result) {
+            groupsCompleted.incrementAndGet();
+            invoicesCreated.addAndGet(result.invoices.size());
+            transactionsInvoiced.addAndGet(result.transactionCount);
+
+            if (owned && System.nanoTime() - lastCheckpointNanos >= checkpointIntervalSeconds * 1_000_000_000L) {
+                checkpoint();
+            }
+        }
+
+        void groupFailed(Exception e) {
+            groupsFailed.incrementAndGet();
+            lastError = e.getMessage();
+        }
+
+        boolean isOwned() {
+            return owned;
+        }
+
+        /**
+         * Report that this instance is still executing the run; stops the run if it was taken over
+         */
+        void heartbeat() {
+            try {
+                Integer updated = transactionTemplate.execute(status ->
+                        invoiceRunRepository.heartbeat(runId, instanceId, LocalDateTime.now()));
+                if (updated != null && updated == 0 && owned) {
+                    owned = false;
+                    log.warn("Invoice run {} was taken over by another instance; stopping", runId);
+                }
+            } catch (Exception e) {
+                log.warn("Heartbeat of invoice run {} failed", runId, e);
+            }
+        }
+
+        synchronized InvoiceRun finish(String error) {
+            if (!owned) {
+                // The new owner records the outcome
+                log.info("{} invoice run {} stopped after it was taken over", run.getRunType(), runId);
+                return run;
+            }
+            String runError = error != null ? error : lastError;
+            if (runError == null && groupsFailed.get() > 0) {
+                runError = groupsFailed.get() + " groups failed";
+            }
+            run.setStatus(runError == null ? RunStatus.COMPLETED : RunStatus.FAILED);
+            run.setLastError(runError != null && runError.length() > 1000 ? runError.substring(0, 1000) : runError);
+            run.setCompletedAt(LocalDateTime.now());
+            checkpoint();
+
+            log.info("{} invoice run {} finished with status {}: {} groups failed", run.getRunType(), run.getId(),
+                    run.getStatus(), groupsFailed.get());
+            return run;
+        }
+
+        private synchronized void checkpoint() {
+            lastCheckpointNanos = System.nanoTime();
+            run.setGroupsCompleted(baseGroupsCompleted + groupsCompleted.get());
+            run.setInvoicesCreated(baseInvoicesCreated + invoicesCreated.get());
+            run.setTransactionsInvoiced(baseTransactionsInvoiced + transactionsInvoiced.get());
+            run.setLastCheckpointAt(LocalDateTime.now());
+            try {
+                run = invoiceRunRepository.save(run);
+            } catch (OptimisticLockingFailureException e) {
+                // Claimed by another instance since the last heartbeat
+                owned = false;
+                log.warn("Invoice run {} was taken over by another instance; stopping", runId);
+                return;
+            }
+
+            double seconds = Math.max((lastCheckpointNanos - startNanos) / 1_000_000_000.0, 0.001);
+            log.info("Invoice run {} progress: {}/{} groups, {} invoices, {} transactions ({} transactions/s)",
+                    run.getId(), run.getGroupsCompleted(), run.getGroupsTotal(), run.getInvoicesCreated(),
+                    run.getTransactionsInvoiced(), String.format("%.1f", transactionsInvoiced.get() / seconds));
+        }
+    }
+}
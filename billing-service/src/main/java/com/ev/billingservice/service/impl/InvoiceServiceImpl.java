@@ -2,27 +2,38 @@ package com.ev.billingservice.service.impl;
 
 import com.ev.billingservice.dto.InvoiceDTO;
 import com.ev.billingservice.dto.InvoiceItemDTO;
+import com.ev.billingservice.dto.event.InvoiceEvent;
 import com.ev.billingservice.exception.BadRequestException;
 import com.ev.billingservice.exception.ResourceNotFoundException;
+import com.ev.billingservice.model.ChargingTransaction;
 import com.ev.billingservice.model.Invoice;
 import com.ev.billingservice.model.Invoice.InvoiceStatus;
 import com.ev.billingservice.model.InvoiceItem;
+import com.ev.billingservice.model.InvoiceRun;
+import com.ev.billingservice.model.TransactionStatus;
+import com.ev.billingservice.repository.ChargingTransactionRepository;
 import com.ev.billingservice.repository.InvoiceItemRepository;
 import com.ev.billingservice.repository.InvoiceRepository;
+import com.ev.billingservice.repository.InvoiceRunRepository;
 import com.ev.billingservice.repository.SubscriptionRepository;
+import com.ev.billingservice.service.DunningService;
+import com.ev.billingservice.service.InvoiceRunService;
 import com.ev.billingservice.service.InvoiceService;
 import com.ev.billingservice.service.NotificationService;
+import com.ev.billingservice.service.invoice.InvoiceNumberAllocator;
+import com.ev.billingservice.service.outbox.EventOutbox;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Random;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -35,13 +46,24 @@ public class InvoiceServiceImpl implements InvoiceService {
     private final InvoiceItemRepository invoiceItemRepository;
     private final SubscriptionRepository subscriptionRepository;
     private final NotificationService notificationService;
+    private final InvoiceRunService invoiceRunService;
+    private final DunningService dunningService;
+    private final InvoiceNumberAllocator invoiceNumberAllocator;
+    private final ChargingTransactionRepository transactionRepository;
+    private final EventOutbox eventOutbox;
+    private final InvoiceRunRepository invoiceRunRepository;
+    
+    private static final String DEFAULT_CURRENCY = "USD";
+    
+    @Value("${billing.invoice.payment-term-days:14}")
+    private long paymentTermDays;
     
     @Override
     @Transactional
     public InvoiceDTO createInvoice(InvoiceDTO invoiceDTO) {
         // Generate invoice number if not provided
         if (invoiceDTO.getInvoiceNumber() == null || invoiceDTO.getInvoiceNumber().isEmpty()) {
-            invoiceDTO.setInvoiceNumber(generateInvoiceNumber());
+            invoiceDTO.setInvoiceNumber(invoiceNumberAllocator.nextInvoiceNumber(invoiceDTO.getOrganizationId()));
         } else if (invoiceRepository.findByInvoiceNumber(invoiceDTO.getInvoiceNumber()).isPresent()) {
             throw new BadRequestException("Invoice with number " + invoiceDTO.getInvoiceNumber() + " already exists");
         }
@@ -210,63 +232,91 @@ public class InvoiceServiceImpl implements InvoiceService {
     
     @Override
     public String generateInvoiceNumber() {
-        String year = String.valueOf(LocalDateTime.now().getYear());
-        String randomPart = String.format("%04d", new Random().nextInt(10000));
-        return "INV-" + year + "-" + randomPart;
+        return invoiceNumberAllocator.nextInvoiceNumber(null);
     }
     
     @Override
-    @Transactional
-    @Scheduled(cron = "${billing.invoice.overdue.check.cron:0 0 0 * * ?}") // Default: every day at midnight
     public void processOverdueInvoices() {
-        List<Invoice> overdueInvoices = invoiceRepository.findByStatusAndDueDateBefore(InvoiceStatus.ISSUED, LocalDateTime.now());
-        
-        for (Invoice invoice : overdueInvoices) {
-            invoice.setStatus(InvoiceStatus.OVERDUE);
-            invoiceRepository.save(invoice);
-            
-            // Send overdue notification
-            notificationService.sendPaymentOverdueNotification(invoice);
-            
-            log.info("Marked invoice {} as overdue", invoice.getInvoiceNumber());
-        }
+        // Scheduled daily by the dunning service; this triggers the same run on demand
+        dunningService.processOverdueInvoices();
     }
     
     @Override
-    @Transactional
-    @Scheduled(cron = "${billing.invoice.generation.cron:0 0 0 1 * ?}") // Default: first day of each month
     public void generateInvoicesForSubscriptions() {
-        // Implementation for automatic invoice generation
-        // This would typically get active subscriptions and generate invoices for them
-        // Code omitted for brevity
+        // Scheduled monthly by the invoice run service; this triggers the same run on demand
+        invoiceRunService.runInvoicing(InvoiceRun.RunType.MONTHLY);
     }
     
     @Override
-    @Transactional
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public UUID generateInvoiceForTransaction(UUID transactionId) {
-        // Implementation to generate an invoice for a specific transaction
+        ChargingTransaction transaction = transactionRepository.findForInvoicing(transactionId)
+                .orElseThrow(() -> new ResourceNotFoundException("Transaction", "id", transactionId));
         
-        // In a real implementation, this would:
-        // 1. Look up the charging transaction
-        // 2. Create an invoice based on the transaction details
-        // 3. Create invoice items
-        // 4. Save and return the invoice ID
+        // Invoicing again returns the invoice of the first attempt
+        if (transaction.getInvoiceId() != null) {
+            return transaction.getInvoiceId();
+        }
+        // An invoice run invoicing the user's transactions could invoice this one as well
+        if (!invoiceRunRepository.tryLockGroup(InvoiceRunRepository.GROUP_LOCK_CLASS,
+                transaction.getUserId().toString())) {
+            log.info("Transaction {} is left to the invoice run invoicing user {}", transactionId,
+                    transaction.getUserId());
+            return null;
+        }
+        if (transaction.getStatus() != TransactionStatus.COMPLETED) {
+            throw new BadRequestException("Cannot invoice transaction " + transactionId
+                    + " with status: " + transaction.getStatus());
+        }
         
-        // Placeholder implementation for now
         log.info("Generating invoice for transaction: {}", transactionId);
         
-        Invoice invoice = Invoice.builder()
-                .invoiceNumber(generateInvoiceNumber())
+        BigDecimal amount = transaction.getAmount() != null ? transaction.getAmount() : BigDecimal.ZERO;
+        LocalDateTime now = LocalDateTime.now();
+        Invoice invoice = invoiceRepository.save(Invoice.builder()
+                .userId(transaction.getUserId())
+                .invoiceNumber(invoiceNumberAllocator.nextInvoiceNumber(null))
+                .amount(amount)
+                .taxAmount(BigDecimal.ZERO)
+                .totalAmount(amount)
                 .status(InvoiceStatus.ISSUED)
-                .dueDate(LocalDateTime.now().plusDays(14))
-                .issuedAt(LocalDateTime.now())
-                .dueAt(LocalDateTime.now().plusDays(14))
-                .currency("USD")
-                .build();
-                
-        invoice = invoiceRepository.save(invoice);
+                .currency(transaction.getCurrency() != null ? transaction.getCurrency() : DEFAULT_CURRENCY)
+                .issuedAt(now)
+                .dueDate(now.plusDays(paymentTermDays))
+                .dueAt(now.plusDays(paymentTermDays))
+                .build());
+        
+        invoiceItemRepository.save(InvoiceItem.builder()
+                .invoiceId(invoice.getId())
+                .description(String.format("Charging session %s at station %s: %s kWh",
+                        transaction.getSessionId(), transaction.getStationId(), transaction.getEnergyDeliveredKwh()))
+                .quantity(1)
+                .unitPrice(amount)
+                .totalPrice(amount)
+                .build());
+        
+        transaction.setInvoiceId(invoice.getId());
+        transaction.setStatus(TransactionStatus.INVOICED);
+        transactionRepository.save(transaction);
+        
+        // Queued with the invoice, so the event is published exactly when the invoice commits
+        eventOutbox.enqueueInvoiceEvent(InvoiceEvent.builder()
+                .eventId(UUID.randomUUID())
+                .invoiceId(invoice.getId())
+                .userId(invoice.getUserId())
+                .eventType("CREATED")
+                .invoiceNumber(invoice.getInvoiceNumber())
+                .totalAmount(invoice.getTotalAmount())
+                .currency(invoice.getCurrency())
+                .status(invoice.getStatus().toString())
+                .issuedAt(invoice.getIssuedAt())
+                .dueAt(invoice.getDueAt())
+                .chargingSessionIds(List.of(transaction.getSessionId()))
+                .transactionIds(List.of(transaction.getId()))
+                .timestamp(now)
+                .invoiceUrl("/api/v1/billing/invoices/" + invoice.getId())
+                .build());
         
-        // Send notification
         notificationService.sendInvoiceCreatedNotification(invoice);
         
         return invoice.getId();
@@ -10,14 +10,15 @@ import com.ev.billingservice.model.Payment;
 import com.ev.billingservice.model.Payment.PaymentStatus;
 import com.ev.billingservice.repository.InvoiceRepository;
 import com.ev.billingservice.repository.PaymentRepository;
-import com.ev.billingservice.service.KafkaProducerService;
 import com.ev.billingservice.service.NotificationService;
 import com.ev.billingservice.service.PaymentService;
+import com.ev.billingservice.service.outbox.EventOutbox;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
@@ -31,7 +32,9 @@ public class PaymentServiceImpl implements PaymentService {
     private final PaymentRepository paymentRepository;
     private final InvoiceRepository invoiceRepository;
     private final NotificationService notificationService;
-    private final KafkaProducerService kafkaProducerService;
+    private final EventOutbox eventOutbox;
+    
+    private static final String WALLET_PAYMENT_METHOD = "WALLET";
     
     @Override
     @Transactional
@@ -62,6 +65,26 @@ public class PaymentServiceImpl implements PaymentService {
         return mapToDTO(payment);
     }
     
+    @Override
+    @Transactional
+    public PaymentDTO recordWalletPayment(UUID invoiceId, String walletTransactionId, BigDecimal amount,
+                                          LocalDateTime paidAt) {
+        // Wallet events are delivered at least once; the wallet transaction identifies the payment
+        Payment existing = paymentRepository.findByTransactionId(walletTransactionId).orElse(null);
+        if (existing != null) {
+            return mapToDTO(existing);
+        }
+        
+        return createPayment(PaymentDTO.builder()
+                .invoiceId(invoiceId)
+                .amount(amount)
+                .paymentMethod(WALLET_PAYMENT_METHOD)
+                .transactionId(walletTransactionId)
+                .status(PaymentStatus.COMPLETED)
+                .paymentDate(paidAt != null ? paidAt : LocalDateTime.now())
+                .build());
+    }
+    
     @Override
     @Transactional(readOnly = true)
     public PaymentDTO getPaymentById(UUID id) {
@@ -167,7 +190,7 @@ public class PaymentServiceImpl implements PaymentService {
             "PROCESSING",
             null
         );
-        kafkaProducerService.sendPaymentEvent(processingEvent);
+        eventOutbox.enqueuePaymentEvent(processingEvent);
         
         paymentDTO.setStatus(PaymentStatus.COMPLETED);
         paymentDTO.setTransactionId(UUID.randomUUID().toString());
@@ -246,29 +269,23 @@ public class PaymentServiceImpl implements PaymentService {
     }
     
     /**
-     * Send a payment event to Kafka
+     * Queue a payment event for Kafka in the current transaction
      */
     private void sendPaymentEvent(Payment payment, String eventType) {
-        try {
-            PaymentEvent event = createPaymentEvent(
-                payment.getId(),
-                payment.getInvoiceId(),
-                payment.getUserId(),
-                eventType,
-                payment.getAmount(),
-                "USD",
-                payment.getPaymentMethod(),
-                payment.getTransactionId(),
-                payment.getStatus().name(),
-                null
-            );
-            
-            kafkaProducerService.sendPaymentEvent(event);
-            log.debug("Sent payment event of type {} for payment: {}", eventType, payment.getId());
-        } catch (Exception e) {
-            log.error("Failed to send payment event for payment {}: {}", payment.getId(), e.getMessage(), e);
-            // Don't throw - we don't want to fail the transaction just because the event couldn't be sent
-        }
+        PaymentEvent event = createPaymentEvent(
+            payment.getId(),
+            payment.getInvoiceId(),
+            payment.getUserId(),
+            eventType,
+            payment.getAmount(),
+            "USD",
+            payment.getPaymentMethod(),
+            payment.getTransactionId(),
+            payment.getStatus().name(),
+            null
+        );
+        
+        eventOutbox.enqueuePaymentEvent(event);
     }
     
     /**
@@ -0,0 +1,198 @@
+package com.ev.billingservice.service.impl;
+
+import com.ev.billingservice.dto.RevenueRollupDTO;
+import com.ev.billingservice.exception.BadRequestException;
+import com.ev.billingservice.model.ChargingTransaction;
+import com.ev.billingservice.model.RevenueRollup.Granularity;
+import com.ev.billingservice.model.RevenueRollup.RollupKey;
+import com.ev.billingservice.model.Subscription;
+import com.ev.billingservice.repository.RevenueRollupRepository;
+import com.ev.billingservice.repository.RevenueRollupRepository.DimensionTotals;
+import com.ev.billingservice.repository.RevenueRollupRepository.RevenueTotals;
+import com.ev.billingservice.repository.SubscriptionRepository;
+import com.ev.billingservice.service.RevenueAnalyticsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RevenueAnalyticsServiceImpl implements RevenueAnalyticsService {
+
+    // Stands for a missing organization or billing plan in rollup keys
+    private static final UUID NO_ID = new UUID(0L, 0L);
+    private static final String DEFAULT_CURRENCY = "USD";
+
+    // Rows are written in key order so concurrent batches lock them in the same order
+    private static final Comparator<RollupKey> KEY_ORDER = Comparator
+            .comparing(RollupKey::getGranularity)
+            .thenComparing(RollupKey::getBucketStart)
+            .thenComparing(RollupKey::getStationId)
+            .thenComparing(RollupKey::getOrganizationId)
+            .thenComparing(RollupKey::getBillingPlanId)
+            .thenComparing(RollupKey::getCurrency);
+
+    private final RevenueRollupRepository revenueRollupRepository;
+    private final SubscriptionRepository subscriptionRepository;
+
+    @Override
+    @Transactional
+    public void recordCompletedTransactions(Collection<ChargingTransaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+
+        Set<UUID> subscriptionIds = transactions.stream()
+                .map(ChargingTransaction::getSubscriptionId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<UUID, UUID> organizationBySubscription = subscriptionRepository.findAllById(subscriptionIds).stream()
+                .filter(subscription -> subscription.getOrganizationId() != null)
+                .collect(Collectors.toMap(Subscription::getId, Subscription::getOrganizationId));
+
+        // Sum the batch per row first, so each row is written once
+        Map<RollupKey, Totals> totalsByKey = new HashMap<>();
+        for (ChargingTransaction transaction : transactions) {
+            LocalDateTime endTime = transaction.getEndTime() != null ? transaction.getEndTime() : LocalDateTime.now();
+            UUID organizationId = organizationBySubscription.getOrDefault(transaction.getSubscriptionId(), NO_ID);
+            UUID billingPlanId = transaction.getBillingPlanId() != null ? transaction.getBillingPlanId() : NO_ID;
+            String currency = transaction.getCurrency() != null ? transaction.getCurrency() : DEFAULT_CURRENCY;
+
+            for (Granularity granularity : Granularity.values()) {
+                RollupKey key = new RollupKey(granularity, truncate(endTime, granularity),
+                        transaction.getStationId(), organizationId, billingPlanId, currency);
+                totalsByKey.computeIfAbsent(key, k -> new Totals()).add(transaction);
+            }
+        }
+
+        List<RollupKey> keys = new ArrayList<>(totalsByKey.keySet());
+        keys.sort(KEY_ORDER);
+        for (RollupKey key : keys) {
+            Totals totals = totalsByKey.get(key);
+            revenueRollupRepository.addToRollup(key.getGranularity().name(), key.getBucketStart(),
+                    key.getStationId(), key.getOrganizationId(), key.getBillingPlanId(), key.getCurrency(),
+                    totals.sessionCount, totals.energyKwh, totals.revenue, totals.durationSeconds);
+        }
+
+        log.debug("Added {} completed transactions to {} revenue rollups", transactions.size(), keys.size());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<RevenueRollupDTO> getRevenue(Granularity granularity, GroupBy groupBy,
+                                             LocalDateTime start, LocalDateTime end) {
+        if (!end.isAfter(start)) {
+            throw new BadRequestException("End must be after start");
+        }
+
+        switch (groupBy) {
+            case STATION:
+                return mapDimensionTotals(revenueRollupRepository.findTotalsByStation(granularity, start, end),
+                        RevenueRollupDTO::setStationId);
+            case ORGANIZATION:
+                return mapDimensionTotals(revenueRollupRepository.findTotalsByOrganization(granularity, start, end),
+                        RevenueRollupDTO::setOrganizationId);
+            case BILLING_PLAN:
+                return mapDimensionTotals(revenueRollupRepository.findTotalsByBillingPlan(granularity, start, end),
+                        RevenueRollupDTO::setBillingPlanId);
+            default:
+                return revenueRollupRepository.findTotals(granularity, start, end).stream()
+                        .map(this::mapToDTO)
+                        .collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    @Transactional
+    public int rebuildRollups(LocalDateTime start, LocalDateTime end) {
+        LocalDateTime from = start.truncatedTo(ChronoUnit.DAYS);
+        LocalDateTime to = end.truncatedTo(ChronoUnit.DAYS);
+        if (to.isBefore(end)) {
+            to = to.plusDays(1);
+        }
+        if (!to.isAfter(from)) {
+            throw new BadRequestException("End must be after start");
+        }
+
+        int written = 0;
+        for (Granularity granularity : Granularity.values()) {
+            revenueRollupRepository.deleteBuckets(granularity, from, to);
+            written += revenueRollupRepository.rebuildBuckets(granularity.name(),
+                    granularity == Granularity.HOUR ? "hour" : "day", from, to, NO_ID, DEFAULT_CURRENCY);
+        }
+
+        log.info("Rebuilt revenue rollups from {} to {}: {} rows", from, to, written);
+        return written;
+    }
+
+    private LocalDateTime truncate(LocalDateTime time, Granularity granularity) {
+        return time.truncatedTo(granularity == Granularity.HOUR ? ChronoUnit.HOURS : ChronoUnit.DAYS);
+    }
+
+    private List<RevenueRollupDTO> mapDimensionTotals(List<DimensionTotals> rows,
+                                                      BiConsumer<RevenueRollupDTO, UUID> setDimension) {
+        List<RevenueRollupDTO> result = new ArrayList<>(rows.size());
+        for (DimensionTotals row : rows) {
+            RevenueRollupDTO dto = mapToDTO(row);
+            // The nil UUID only exists to keep keys non-null; report it as no value
+            setDimension.accept(dto, NO_ID.equals(row.getDimensionId()) ? null : row.getDimensionId());
+            result.add(dto);
+        }
+        return result;
+    }
+
+    private RevenueRollupDTO mapToDTO(RevenueTotals totals) {
+        BigDecimal energyKwh = totals.getEnergyKwh() != null ? totals.getEnergyKwh() : BigDecimal.ZERO;
+        BigDecimal revenue = totals.getRevenue() != null ? totals.getRevenue() : BigDecimal.ZERO;
+
+        return RevenueRollupDTO.builder()
+                .bucketStart(totals.getBucketStart())
+                .currency(totals.getCurrency())
+                .sessionCount(totals.getSessionCount() != null ? totals.getSessionCount() : 0L)
+                .energyKwh(energyKwh)
+                .revenue(revenue)
+                .averagePricePerKwh(energyKwh.signum() > 0 ? revenue.divide(energyKwh, 4, RoundingMode.HALF_UP) : null)
+                .build();
+    }
+
+    /**
+     * Totals of the transactions of a batch that fall into one rollup row
+     */
+    private static class Totals {
+        private long sessionCount;
+        private BigDecimal energyKwh = BigDecimal.ZERO;
+        private BigDecimal revenue = BigDecimal.ZERO;
+        private long durationSeconds;
+
+        void add(ChargingTransaction transaction) {
+            sessionCount++;
+            if (transaction.getEnergyDeliveredKwh() != null) {
+                energyKwh = energyKwh.add(transaction.getEnergyDeliveredKwh());
+            }
+            if (transaction.getAmount() != null) {
+                revenue = revenue.add(transaction.getAmount());
+            }
+            if (transaction.getDurationSeconds() != null) {
+                durationSeconds += transaction.getDurationSeconds();
+            }
+        }
+    }
+}
@@ -21,7 +21,9 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -123,6 +125,16 @@ public class SubscriptionServiceImpl implements SubscriptionService {
                 .orElse(null);
     }
     
+    @Override
+    @Transactional(readOnly = true)
+    public Map<UUID, SubscriptionDTO> getActiveSubscriptionsForUsers(Collection<UUID> userIds) {
+        if (userIds.isEmpty()) {
+            return Map.of();
+        }
+        return subscriptionRepository.findByUserIdInAndStatus(userIds, SubscriptionStatus.ACTIVE).stream()
+                .collect(Collectors.toMap(Subscription::getUserId, this::mapToDTO, (first, second) -> first));
+    }
+    
     @Override
     @Transactional(readOnly = true)
     public SubscriptionDTO getActiveSubscriptionByOrganizationId(UUID organizationId) {
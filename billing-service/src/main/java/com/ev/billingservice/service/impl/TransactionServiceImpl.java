@@ -1,24 +1,43 @@
 package com.ev.billingservice.service.impl;
 
+import com.ev.billingservice.dto.SubscriptionDTO;
 import com.ev.billingservice.dto.event.ChargingSessionEvent;
-import com.ev.billingservice.dto.event.InvoiceEvent;
 import com.ev.billingservice.model.ChargingTransaction;
 import com.ev.billingservice.model.TransactionStatus;
 import com.ev.billingservice.repository.ChargingTransactionRepository;
-import com.ev.billingservice.service.BillingPlanService;
 import com.ev.billingservice.service.InvoiceService;
+import com.ev.billingservice.service.RevenueAnalyticsService;
 import com.ev.billingservice.service.SubscriptionService;
 import com.ev.billingservice.service.TransactionService;
-import com.ev.billingservice.service.KafkaProducerService;
+import com.ev.billingservice.service.ingest.ProcessedEventFilter;
+import com.ev.billingservice.service.ingest.SessionEventReorderBuffer;
+import com.ev.billingservice.service.ingest.SessionEventReorderBuffer.HeldEvent;
+import com.ev.billingservice.service.outbox.EventOutbox;
+import com.ev.billingservice.service.tariff.CompiledTariff;
+import com.ev.billingservice.service.tariff.TariffEngine;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -26,10 +45,18 @@ import java.util.UUID;
 public class TransactionServiceImpl implements TransactionService {
 
     private final ChargingTransactionRepository transactionRepository;
-    private final BillingPlanService billingPlanService;
+    private final TariffEngine tariffEngine;
     private final SubscriptionService subscriptionService;
     private final InvoiceService invoiceService;
-    private final KafkaProducerService kafkaProducerService;
+    private final EventOutbox eventOutbox;
+    private final ProcessedEventFilter processedEventFilter;
+    private final SessionEventReorderBuffer reorderBuffer;
+    private final RevenueAnalyticsService revenueAnalyticsService;
+    private final ObjectMapper objectMapper;
+    
+    private static final String EVENT_STARTED = "STARTED";
+    private static final String EVENT_UPDATED = "UPDATED";
+    private static final String EVENT_ENDED = "ENDED";
 
     @Override
     @Transactional
@@ -42,43 +69,21 @@ public class TransactionServiceImpl implements TransactionService {
         
         log.info("Creating pending transaction for session: {}, user: {}", sessionId, userId);
         
-        // Check if transaction already exists
-        if (transactionRepository.findBySessionId(sessionId).isPresent()) {
-            log.warn("Transaction already exists for session: {}", sessionId);
-            return transactionRepository.findBySessionId(sessionId).get().getId();
-        }
-        
-        // Find user's subscription
-        UUID subscriptionId = null;
-        UUID billingPlanId = null;
-        
-        try {
-            var subscription = subscriptionService.getActiveSubscriptionForUser(userId);
-            if (subscription != null) {
-                subscriptionId = subscription.getId();
-                billingPlanId = subscription.getBillingPlanId();
-            }
-        } catch (Exception e) {
-            log.error("Error getting subscription for user: {}", userId, e);
-        }
-        
-        // Create transaction
-        ChargingTransaction transaction = ChargingTransaction.builder()
+        boolean inserted = insertPendingTransactions(List.of(ChargingSessionEvent.builder()
                 .sessionId(sessionId)
                 .userId(userId)
                 .stationId(stationId)
                 .connectorId(connectorId)
-                .status(TransactionStatus.PENDING)
                 .startTime(startTime)
-                .energyDeliveredKwh(BigDecimal.ZERO)
-                .durationSeconds(0L)
-                .subscriptionId(subscriptionId)
-                .billingPlanId(billingPlanId)
-                .build();
-        
-        transaction = transactionRepository.save(transaction);
+                .build())) == 1;
+        ChargingTransaction transaction = transactionRepository.findBySessionId(sessionId)
+                .orElseThrow(() -> new IllegalStateException("Transaction disappeared for session: " + sessionId));
         
-        log.info("Created pending transaction: {} for session: {}", transaction.getId(), sessionId);
+        if (inserted) {
+            log.info("Created pending transaction: {} for session: {}", transaction.getId(), sessionId);
+        } else {
+            log.info("Transaction already exists for session: {}", sessionId);
+        }
         
         return transaction.getId();
     }
@@ -102,24 +107,8 @@ public class TransactionServiceImpl implements TransactionService {
             return;
         }
         
-        // Update transaction
-        transaction.setEnergyDeliveredKwh(energyDeliveredKwh);
-        transaction.setDurationSeconds(durationSeconds);
-        transaction.setMeterValue(meterValue);
-        
-        // Update estimated amount
-        if (transaction.getBillingPlanId() != null) {
-            try {
-                BigDecimal amount = calculateAmount(
-                        transaction.getBillingPlanId(),
-                        energyDeliveredKwh,
-                        durationSeconds);
-                
-                transaction.setAmount(amount);
-            } catch (Exception e) {
-                log.error("Error calculating amount for transaction: {}", transaction.getId(), e);
-            }
-        }
+        applyUpdate(transaction, energyDeliveredKwh, durationSeconds, meterValue,
+                tariffEngine.getTariff(transaction.getBillingPlanId()));
         
         transactionRepository.save(transaction);
         
@@ -139,49 +128,198 @@ public class TransactionServiceImpl implements TransactionService {
         ChargingTransaction transaction = transactionRepository.findBySessionId(sessionId)
                 .orElseThrow(() -> new IllegalArgumentException("Transaction not found for session: " + sessionId));
         
-        // Only complete if pending
+        // Completing again is a no-op, so a repeated completion gets the same answer as the first
+        if (isCompleted(transaction)) {
+            log.info("Transaction {} for session {} is already completed", transaction.getId(), sessionId);
+            return transaction.getInvoiceId();
+        }
         if (transaction.getStatus() != TransactionStatus.PENDING) {
-            log.warn("Cannot complete transaction with status: {}", transaction.getStatus());
-            return null;
+            throw new IllegalStateException("Cannot complete transaction " + transaction.getId()
+                    + " with status: " + transaction.getStatus());
         }
         
-        // Update transaction
-        transaction.setStatus(TransactionStatus.COMPLETED);
-        transaction.setEndTime(endTime);
-        transaction.setEnergyDeliveredKwh(energyDeliveredKwh);
-        transaction.setDurationSeconds(durationSeconds);
+        applyCompletion(transaction, endTime, energyDeliveredKwh, durationSeconds,
+                tariffEngine.getTariff(transaction.getBillingPlanId()));
         
-        // Calculate final amount
-        if (transaction.getBillingPlanId() != null) {
-            try {
-                // Get billing plan once
-                var billingPlan = billingPlanService.getBillingPlanById(transaction.getBillingPlanId());
-                
-                BigDecimal amount = calculateAmount(
-                        transaction.getBillingPlanId(),
-                        energyDeliveredKwh,
-                        durationSeconds);
-                
-                transaction.setAmount(amount);
-                transaction.setCurrency(billingPlan.getCurrency() != null ? billingPlan.getCurrency() : "USD");
-            } catch (Exception e) {
-                log.error("Error calculating amount for transaction: {}", transaction.getId(), e);
+        transaction = transactionRepository.save(transaction);
+        revenueAnalyticsService.recordCompletedTransactions(List.of(transaction));
+        
+        log.info("Completed transaction: {} for session: {}", transaction.getId(), sessionId);
+        
+        // Subscription transactions are consolidated into invoices by the billing run
+        if (transaction.getSubscriptionId() == null) {
+            invoiceAfterCommit(List.of(transaction.getId()));
+        }
+        return null;
+    }
+
+    @Override
+    @Transactional
+    public int applySessionEvents(List<ChargingSessionEvent> events) {
+        // Drop events that were applied before, by this or another consumer
+        Set<UUID> newEventIds = processedEventFilter.claim(events.stream()
+                .map(ChargingSessionEvent::getEventId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
+        List<ChargingSessionEvent> newEvents = events.stream()
+                .filter(event -> event.getEventId() == null || newEventIds.remove(event.getEventId()))
+                .collect(Collectors.toList());
+        
+        // Events held back from earlier batches for the sessions of this batch; they were claimed when first consumed
+        List<HeldEvent> heldEvents = reorderBuffer.take(newEvents.stream()
+                .map(ChargingSessionEvent::getSessionId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet()));
+        
+        return apply(heldEvents, newEvents);
+    }
+    
+    @Override
+    @Transactional
+    public int applyHeldEvents() {
+        return apply(reorderBuffer.takeReady(), List.of());
+    }
+    
+    /**
+     * Apply held events, which come first, and newly consumed events
+     *
+     * @return Number of transactions created or changed
+     */
+    private int apply(List<HeldEvent> heldEvents, List<ChargingSessionEvent> events) {
+        Map<ChargingSessionEvent, LocalDateTime> heldSince = new IdentityHashMap<>();
+        List<ChargingSessionEvent> pending = new ArrayList<>(heldEvents.size() + events.size());
+        for (HeldEvent heldEvent : heldEvents) {
+            heldSince.put(heldEvent.getEvent(), heldEvent.getHeldSince());
+            pending.add(heldEvent.getEvent());
+        }
+        pending.addAll(events);
+        
+        // Collapse the batch per session: the first STARTED, the latest UPDATED and the ENDED event
+        Map<UUID, SessionEvents> eventsBySession = new LinkedHashMap<>();
+        for (ChargingSessionEvent event : pending) {
+            if (event.getSessionId() == null || event.getEventType() == null) {
+                log.warn("Ignoring charging session event without session ID or type: {}", event.getEventId());
+                continue;
+            }
+            
+            SessionEvents sessionEvents = eventsBySession.computeIfAbsent(event.getSessionId(), id -> new SessionEvents());
+            switch (event.getEventType()) {
+                case EVENT_STARTED:
+                    if (sessionEvents.started == null) {
+                        sessionEvents.started = event;
+                    }
+                    break;
+                case EVENT_UPDATED:
+                    if (isLaterThan(event, sessionEvents.latestUpdate)) {
+                        sessionEvents.latestUpdate = event;
+                    }
+                    break;
+                case EVENT_ENDED:
+                    sessionEvents.ended = event;
+                    break;
+                default:
+                    log.warn("Unknown event type: {}", event.getEventType());
+                    continue;
+            }
+            if (sessionEvents.creator == null && describesSession(event)) {
+                sessionEvents.creator = event;
             }
         }
         
-        transaction = transactionRepository.save(transaction);
+        if (eventsBySession.isEmpty()) {
+            return 0;
+        }
         
-        log.info("Completed transaction: {} for session: {}", transaction.getId(), sessionId);
+        // One query for all transactions of the batch
+        Map<UUID, ChargingTransaction> transactions = transactionRepository.findBySessionIdIn(eventsBySession.keySet())
+                .stream()
+                .collect(Collectors.toMap(ChargingTransaction::getSessionId, Function.identity()));
         
-        // Generate invoice for single transaction (can be batched later)
-        try {
-            UUID invoiceId = generateInvoice(transaction);
-            log.info("Generated invoice: {} for transaction: {}", invoiceId, transaction.getId());
-            return invoiceId;
-        } catch (Exception e) {
-            log.error("Error generating invoice for transaction: {}", transaction.getId(), e);
-            return null;
+        // Create missing transactions from the STARTED event, or from any event that carries the session
+        // details when it overtook STARTED; an insert that loses to a concurrent one is simply skipped
+        List<ChargingSessionEvent> creators = new ArrayList<>();
+        List<HeldEvent> stillHeld = new ArrayList<>();
+        for (Map.Entry<UUID, SessionEvents> entry : eventsBySession.entrySet()) {
+            UUID sessionId = entry.getKey();
+            SessionEvents sessionEvents = entry.getValue();
+            if (transactions.containsKey(sessionId)) {
+                continue;
+            }
+            
+            ChargingSessionEvent creator = sessionEvents.started != null ? sessionEvents.started : sessionEvents.creator;
+            if (creator != null) {
+                creators.add(creator);
+            } else {
+                // Wait for the STARTED event; only the events that still matter are held
+                log.info("Holding events for session {} until its transaction is created", sessionId);
+                LocalDateTime now = LocalDateTime.now();
+                for (ChargingSessionEvent event : Arrays.asList(sessionEvents.latestUpdate, sessionEvents.ended)) {
+                    if (event != null) {
+                        stillHeld.add(new HeldEvent(event, heldSince.getOrDefault(event, now)));
+                    }
+                }
+            }
+        }
+        // Stored with this transaction, so a held event is kept exactly when its claim is
+        reorderBuffer.hold(stillHeld);
+        
+        if (!creators.isEmpty()) {
+            insertPendingTransactions(creators);
+            transactionRepository.findBySessionIdIn(creators.stream()
+                            .map(ChargingSessionEvent::getSessionId)
+                            .collect(Collectors.toList()))
+                    .forEach(transaction -> transactions.put(transaction.getSessionId(), transaction));
         }
+        
+        List<ChargingTransaction> changed = new ArrayList<>();
+        List<ChargingTransaction> completed = new ArrayList<>();
+        List<UUID> toInvoice = new ArrayList<>();
+        
+        for (Map.Entry<UUID, SessionEvents> entry : eventsBySession.entrySet()) {
+            SessionEvents sessionEvents = entry.getValue();
+            ChargingTransaction transaction = transactions.get(entry.getKey());
+            if (transaction == null) {
+                continue;
+            }
+            
+            if (transaction.getStatus() != TransactionStatus.PENDING) {
+                // Late updates of a completed session are expected when events are reordered
+                if (isCompleted(transaction)) {
+                    log.debug("Ignoring events for completed transaction: {}", transaction.getId());
+                } else {
+                    log.warn("Cannot apply events to transaction with status: {}", transaction.getStatus());
+                }
+                continue;
+            }
+            
+            CompiledTariff tariff = tariffEngine.getTariff(transaction.getBillingPlanId());
+            
+            // An ENDED event carries the final values, so any UPDATED in the same batch is superseded
+            ChargingSessionEvent ended = sessionEvents.ended;
+            ChargingSessionEvent update = sessionEvents.latestUpdate;
+            if (ended != null) {
+                applyCompletion(transaction, ended.getEndTime(), ended.getEnergyDeliveredKwh(),
+                        ended.getDurationSeconds(), tariff);
+                completed.add(transaction);
+                if (transaction.getSubscriptionId() == null) {
+                    toInvoice.add(transaction.getId());
+                }
+            } else if (update != null) {
+                applyUpdate(transaction, update.getEnergyDeliveredKwh(), update.getDurationSeconds(),
+                        update.getMeterValue(), tariff);
+            } else {
+                continue;
+            }
+            
+            changed.add(transaction);
+        }
+        
+        // Updates are flushed as JDBC batches on commit
+        transactionRepository.saveAll(changed);
+        revenueAnalyticsService.recordCompletedTransactions(completed);
+        invoiceAfterCommit(toInvoice);
+        
+        return changed.size() + creators.size();
     }
 
     @Override
@@ -191,66 +329,153 @@ public class TransactionServiceImpl implements TransactionService {
     }
     
     /**
-     * Calculate the amount for a transaction based on the billing plan
+     * Insert pending transactions in one statement, each linked to its user's active subscription
+     * if there is one, skipping sessions that already have a transaction
+     *
+     * @param creators Events carrying the details of the sessions to create
+     * @return Number of transactions inserted
      */
-    private BigDecimal calculateAmount(UUID billingPlanId, BigDecimal energyDeliveredKwh, Long durationSeconds) {
-        // Get the billing plan
-        var billingPlan = billingPlanService.getBillingPlanById(billingPlanId);
-        
-        // Simple calculation based on energy and time
-        // In a real implementation, this would be more complex based on the billing plan
-        BigDecimal energyRate = billingPlan.getEnergyRate() != null ? 
-                billingPlan.getEnergyRate() : BigDecimal.valueOf(0.20); // $0.20 per kWh default
-        
-        BigDecimal timeRate = billingPlan.getTimeRate() != null ?
-                billingPlan.getTimeRate() : BigDecimal.valueOf(0.01); // $0.01 per minute default
-                
-        BigDecimal energyCost = energyDeliveredKwh.multiply(energyRate);
-        BigDecimal timeCost = BigDecimal.valueOf(durationSeconds / 60.0).multiply(timeRate);
-        
-        return energyCost.add(timeCost);
+    private int insertPendingTransactions(List<ChargingSessionEvent> creators) {
+        // Find the users' subscriptions
+        Map<UUID, SubscriptionDTO> subscriptions = Map.of();
+        try {
+            subscriptions = subscriptionService.getActiveSubscriptionsForUsers(creators.stream()
+                    .map(ChargingSessionEvent::getUserId)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet()));
+        } catch (Exception e) {
+            log.error("Error getting subscriptions for {} users", creators.size(), e);
+        }
+        
+        List<Map<String, Object>> rows = new ArrayList<>(creators.size());
+        for (ChargingSessionEvent creator : creators) {
+            SubscriptionDTO subscription = subscriptions.get(creator.getUserId());
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", UUID.randomUUID());
+            row.put("session_id", creator.getSessionId());
+            row.put("user_id", creator.getUserId());
+            row.put("station_id", creator.getStationId());
+            row.put("connector_id", creator.getConnectorId());
+            row.put("start_time", creator.getStartTime() != null ? creator.getStartTime().toString() : null);
+            row.put("subscription_id", subscription != null ? subscription.getId() : null);
+            row.put("billing_plan_id", subscription != null ? subscription.getBillingPlanId() : null);
+            rows.add(row);
+        }
+        
+        try {
+            return transactionRepository.insertPendingIfAbsent(objectMapper.writeValueAsString(rows), LocalDateTime.now());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize " + rows.size() + " pending transactions", e);
+        }
     }
     
     /**
-     * Generate an invoice for a transaction
+     * Invoice transactions without a subscription once the current transaction commits, each in a
+     * transaction of its own, so a failing invoice neither rolls back nor blocks the events that completed it.
+     * A transaction left uninvoiced stays completed and is invoiced by the next invoice run.
+     *
+     * @param transactionIds IDs of the completed transactions
      */
-    private UUID generateInvoice(ChargingTransaction transaction) {
-        // Mark as invoiced
-        transaction.setStatus(TransactionStatus.INVOICED);
-        transactionRepository.save(transaction);
-        
-        // Generate invoice - this would call the invoice service
-        UUID invoiceId = invoiceService.generateInvoiceForTransaction(transaction.getId());
-        
-        // Get invoice details
-        var invoice = invoiceService.getInvoiceById(invoiceId);
+    private void invoiceAfterCommit(List<UUID> transactionIds) {
+        if (transactionIds.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invoice(transactionIds);
+                }
+            });
+        } else {
+            invoice(transactionIds);
+        }
+    }
+    
+    private void invoice(List<UUID> transactionIds) {
+        for (UUID transactionId : transactionIds) {
+            try {
+                UUID invoiceId = invoiceService.generateInvoiceForTransaction(transactionId);
+                if (invoiceId != null) {
+                    log.info("Generated invoice: {} for transaction: {}", invoiceId, transactionId);
+                }
+            } catch (Exception e) {
+                log.error("Error generating invoice for transaction: {}", transactionId, e);
+            }
+        }
+    }
+    
+    /**
+     * Whether an event carries everything needed to create its transaction
+     */
+    private boolean describesSession(ChargingSessionEvent event) {
+        return event.getUserId() != null
+                && event.getStationId() != null
+                && event.getConnectorId() != null
+                && event.getStartTime() != null;
+    }
+    
+    private boolean isCompleted(ChargingTransaction transaction) {
+        return transaction.getStatus() == TransactionStatus.COMPLETED
+                || transaction.getStatus() == TransactionStatus.INVOICED;
+    }
+    
+    /**
+     * Apply current values to a pending transaction and update its estimated amount
+     */
+    private void applyUpdate(ChargingTransaction transaction, BigDecimal energyDeliveredKwh,
+                             Long durationSeconds, BigDecimal meterValue, CompiledTariff tariff) {
+        transaction.setEnergyDeliveredKwh(energyDeliveredKwh);
+        transaction.setDurationSeconds(durationSeconds);
+        transaction.setMeterValue(meterValue);
         
-        // Send invoice event
-        try {
-            InvoiceEvent event = InvoiceEvent.builder()
-                .eventId(UUID.randomUUID())
-                .invoiceId(invoiceId)
-                .userId(transaction.getUserId())
-                .eventType("CREATED")
-                .invoiceNumber(invoice.getInvoiceNumber())
-                .totalAmount(invoice.getTotalAmount())
-                .currency(invoice.getCurrency())
-                .status(invoice.getStatus().toString())
-                .issuedAt(invoice.getIssuedAt())
-                .dueAt(invoice.getDueAt())
-                .chargingSessionIds(Collections.singletonList(transaction.getSessionId()))
-                .transactionIds(Collections.singletonList(transaction.getId()))
-                .timestamp(LocalDateTime.now())
-                .invoiceUrl("/api/v1/billing/invoices/" + invoiceId) // Sample URL
-                .build();
-            
-            kafkaProducerService.sendInvoiceEvent(event);
-            log.debug("Sent invoice event for invoice: {}", invoiceId);
-        } catch (Exception e) {
-            log.error("Failed to send invoice event for invoice {}: {}", invoiceId, e.getMessage(), e);
-            // Don't throw - we still want to return the invoice ID even if the event sending fails
+        if (tariff != null) {
+            try {
+                transaction.setAmount(tariff.price(energyDeliveredKwh, durationSeconds, transaction.getStartTime()));
+            } catch (Exception e) {
+                log.error("Error calculating amount for transaction: {}", transaction.getId(), e);
+            }
         }
+    }
+    
+    /**
+     * Mark a transaction completed with its final values and amount
+     */
+    private void applyCompletion(ChargingTransaction transaction, LocalDateTime endTime,
+                                 BigDecimal energyDeliveredKwh, Long durationSeconds, CompiledTariff tariff) {
+        transaction.setStatus(TransactionStatus.COMPLETED);
+        transaction.setEndTime(endTime);
+        transaction.setEnergyDeliveredKwh(energyDeliveredKwh);
+        transaction.setDurationSeconds(durationSeconds);
         
-        return invoiceId;
+        if (tariff != null) {
+            try {
+                transaction.setAmount(tariff.price(energyDeliveredKwh, durationSeconds, transaction.getStartTime()));
+                transaction.setCurrency(tariff.getCurrency());
+            } catch (Exception e) {
+                log.error("Error calculating amount for transaction: {}", transaction.getId(), e);
+            }
+        }
+    }
+    
+    /**
+     * Whether an event is newer than the current one; events without timestamps keep arrival order
+     */
+    private boolean isLaterThan(ChargingSessionEvent event, ChargingSessionEvent current) {
+        return current == null
+                || event.getTimestamp() == null
+                || current.getTimestamp() == null
+                || !event.getTimestamp().isBefore(current.getTimestamp());
+    }
+    
+    /**
+     * Events of one session within a consumed batch
+     */
+    private static class SessionEvents {
+        // First event with the session details, used when STARTED has not arrived
+        private ChargingSessionEvent creator;
+        private ChargingSessionEvent started;
+        private ChargingSessionEvent latestUpdate;
+        private ChargingSessionEvent ended;
     }
-} 
\ No newline at end of file
+}
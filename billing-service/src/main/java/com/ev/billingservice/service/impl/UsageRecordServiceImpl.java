@@ -2,11 +2,11 @@ package com.ev.billingservice.service.impl;
 
 import com.ev.billingservice.dto.UsageRecordDTO;
 import com.ev.billingservice.exception.ResourceNotFoundException;
-import com.ev.billingservice.model.Subscription;
 import com.ev.billingservice.model.UsageRecord;
 import com.ev.billingservice.repository.SubscriptionRepository;
 import com.ev.billingservice.repository.UsageRecordRepository;
 import com.ev.billingservice.service.UsageRecordService;
+import com.ev.billingservice.service.invoice.UsageInvoicer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -25,6 +25,7 @@ public class UsageRecordServiceImpl implements UsageRecordService {
 
     private final UsageRecordRepository usageRecordRepository;
     private final SubscriptionRepository subscriptionRepository;
+    private final UsageInvoicer usageInvoicer;
 
     @Override
     @Transactional
@@ -125,35 +126,10 @@ public class UsageRecordServiceImpl implements UsageRecordService {
     }
 
     @Override
-    @Transactional
     @Scheduled(cron = "${billing.usageRecord.processing.cron:0 0 1 * * ?}") // Default: every day at 1 AM
     public void processUsageRecordsForBilling() {
-        // Get all active subscriptions
-        List<Subscription> activeSubscriptions = subscriptionRepository.findByStatus(Subscription.SubscriptionStatus.ACTIVE);
-        
-        for (Subscription subscription : activeSubscriptions) {
-            List<UsageRecord> unprocessedRecords = usageRecordRepository.findBySubscriptionIdAndProcessed(
-                    subscription.getId(), false);
-            
-            if (!unprocessedRecords.isEmpty()) {
-                log.info("Processing {} usage records for subscription ID: {}", 
-                        unprocessedRecords.size(), subscription.getId());
-                
-                // In a real system, we would:
-                // 1. Calculate charges based on usage and subscription plan
-                // 2. Create invoice items or update existing ones
-                // 3. Mark usage records as processed
-                
-                // For now, just mark them as processed
-                for (UsageRecord record : unprocessedRecords) {
-                    record.setProcessed(true);
-                }
-                
-                usageRecordRepository.saveAll(unprocessedRecords);
-                log.info("Processed {} usage records for subscription ID: {}", 
-                        unprocessedRecords.size(), subscription.getId());
-            }
-        }
+        // Each chunk of subscriptions commits on its own
+        usageInvoicer.invoiceUnprocessedUsage();
     }
     
     private UsageRecord findUsageRecordById(UUID id) {
@@ -0,0 +1,99 @@
+package com.ev.billingservice.service.ingest;
+
+import com.ev.billingservice.repository.ProcessedEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Decides which consumed events are new, so redelivered events are applied only once.
+ * The processed_events table is the record of truth; IDs are claimed in the caller's transaction,
+ * so they are released again if it rolls back. IDs committed recently by this instance are also
+ * kept in a bounded in-memory set, which drops most redeliveries without a database round-trip.
+ */
+@Component
+@Slf4j
+public class ProcessedEventFilter {
+
+    private final ProcessedEventRepository processedEventRepository;
+    private final long retentionDays;
+
+    // Most recently committed event IDs, oldest evicted first
+    private final Map<UUID, Boolean> recentIds;
+
+    public ProcessedEventFilter(ProcessedEventRepository processedEventRepository,
+                                @Value("${billing.ingest.recent-event-ids:100000}") int recentIdCapacity,
+                                @Value("${billing.ingest.processed-event-retention-days:7}") long retentionDays) {
+        this.processedEventRepository = processedEventRepository;
+        this.retentionDays = retentionDays;
+        this.recentIds = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Boolean> eldest) {
+                return size() > recentIdCapacity;
+            }
+        };
+    }
+
+    /**
+     * Claim event IDs for the current transaction
+     *
+     * @param eventIds IDs of the consumed events
+     * @return The IDs not processed before; each is returned to exactly one caller
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Set<UUID> claim(Collection<UUID> eventIds) {
+        Set<UUID> candidates = new LinkedHashSet<>(eventIds);
+        synchronized (recentIds) {
+            candidates.removeIf(recentIds::containsKey);
+        }
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+
+        String idList = candidates.stream().map(UUID::toString).collect(Collectors.joining(","));
+        UUID claimId = UUID.randomUUID();
+        Set<UUID> claimed = processedEventRepository.claimEventIds(idList, LocalDateTime.now(), claimId) > 0
+                ? new HashSet<>(processedEventRepository.findClaimedEventIds(candidates, claimId))
+                : new HashSet<>();
+
+        if (claimed.size() < candidates.size()) {
+            log.info("Skipping {} already processed events", candidates.size() - claimed.size());
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                synchronized (recentIds) {
+                    claimed.forEach(id -> recentIds.put(id, Boolean.TRUE));
+                }
+            }
+        });
+
+        return claimed;
+    }
+
+    /**
+     * Forget processed events older than the retention; redeliveries never arrive that late
+     */
+    @Scheduled(cron = "${billing.ingest.processed-event-cleanup.cron:0 15 3 * * *}")
+    @Transactional
+    public void deleteExpiredEvents() {
+        int deleted = processedEventRepository.deleteProcessedBefore(LocalDateTime.now().minusDays(retentionDays));
+        log.info("Deleted {} processed event IDs older than {} days", deleted, retentionDays);
+    }
+}
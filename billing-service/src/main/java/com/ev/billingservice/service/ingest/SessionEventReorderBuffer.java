@@ -0,0 +1,155 @@
+package com.ev.billingservice.service.ingest;
+
+import com.ev.billingservice.dto.event.ChargingSessionEvent;
+import com.ev.billingservice.model.HeldSessionEvent;
+import com.ev.billingservice.repository.HeldSessionEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Holds charging session events that arrived before the transaction they belong to could be created,
+ * e.g. an UPDATED or ENDED event without the session details overtaking its STARTED event.
+ * Held events are stored in the held_session_events table in the transaction that claimed their
+ * event ID, so an event that was claimed and acknowledged is never only in memory. They are taken
+ * back when a later batch brings events of their session, or by the retry timer once their
+ * transaction exists, and are only dropped after the retention, when their STARTED event is not coming.
+ */
+@Component
+@Slf4j
+public class SessionEventReorderBuffer {
+
+    private final HeldSessionEventRepository heldSessionEventRepository;
+    private final ObjectMapper objectMapper;
+    private final int retryBatchSize;
+    private final long retentionDays;
+
+    public SessionEventReorderBuffer(HeldSessionEventRepository heldSessionEventRepository,
+                                     ObjectMapper objectMapper,
+                                     @Value("${billing.ingest.held-event-retry-batch-size:500}") int retryBatchSize,
+                                     @Value("${billing.ingest.held-event-retention-days:7}") long retentionDays) {
+        this.heldSessionEventRepository = heldSessionEventRepository;
+        this.objectMapper = objectMapper;
+        this.retryBatchSize = retryBatchSize;
+        this.retentionDays = retentionDays;
+    }
+
+    /**
+     * Hold events until their transaction exists; they are stored only if the current transaction commits
+     *
+     * @param events The events to hold, with the time each was first held
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void hold(List<HeldEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        heldSessionEventRepository.saveAll(events.stream()
+                .map(heldEvent -> HeldSessionEvent.builder()
+                        .eventId(heldEvent.event.getEventId())
+                        .sessionId(heldEvent.event.getSessionId())
+                        .payload(serialize(heldEvent.event))
+                        .heldSince(heldEvent.heldSince)
+                        .build())
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Take the held events of the given sessions; they are held again if the current transaction rolls back
+     *
+     * @param sessionIds Sessions of the batch being applied
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<HeldEvent> take(Collection<UUID> sessionIds) {
+        if (sessionIds.isEmpty()) {
+            return List.of();
+        }
+        String idList = sessionIds.stream().map(UUID::toString).collect(Collectors.joining(","));
+        return take(heldSessionEventRepository.lockBySessionIds(idList));
+    }
+
+    /**
+     * Take held events whose transaction was created since they were held, oldest first
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<HeldEvent> takeReady() {
+        return take(heldSessionEventRepository.lockReady(retryBatchSize));
+    }
+    
+    /**
+     * Delete locked rows in one statement; they come back if the current transaction rolls back
+     */
+    private List<HeldEvent> take(List<HeldSessionEvent> rows) {
+        if (!rows.isEmpty()) {
+            heldSessionEventRepository.deleteAllInBatch(rows);
+        }
+        return toHeldEvents(rows);
+    }
+
+    /**
+     * Drop events held longer than the retention; their session's STARTED event is not coming
+     */
+    @Scheduled(cron = "${billing.ingest.held-event-cleanup.cron:0 30 3 * * *}")
+    @Transactional
+    public void deleteExpiredEvents() {
+        int deleted = heldSessionEventRepository.deleteHeldBefore(LocalDateTime.now().minusDays(retentionDays));
+        if (deleted > 0) {
+            log.error("Dropped {} charging session events held for more than {} days without a transaction",
+                    deleted, retentionDays);
+        }
+    }
+
+    private List<HeldEvent> toHeldEvents(List<HeldSessionEvent> rows) {
+        return rows.stream()
+                .map(row -> new HeldEvent(deserialize(row), row.getHeldSince()))
+                .collect(Collectors.toList());
+    }
+
+    private String serialize(ChargingSessionEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize charging session event " + event.getEventId(), e);
+        }
+    }
+
+    private ChargingSessionEvent deserialize(HeldSessionEvent row) {
+        try {
+            return objectMapper.readValue(row.getPayload(), ChargingSessionEvent.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to read held charging session event " + row.getEventId(), e);
+        }
+    }
+
+    /**
+     * An event and the time it was first held
+     */
+    public static class HeldEvent {
+        private final ChargingSessionEvent event;
+        private final LocalDateTime heldSince;
+
+        public HeldEvent(ChargingSessionEvent event, LocalDateTime heldSince) {
+            this.event = event;
+            this.heldSince = heldSince;
+        }
+
+        public ChargingSessionEvent getEvent() {
+            return event;
+        }
+
+        public LocalDateTime getHeldSince() {
+            return heldSince;
+        }
+    }
+}
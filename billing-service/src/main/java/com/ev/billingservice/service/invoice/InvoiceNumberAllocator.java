@@ -0,0 +1,118 @@
+package com.ev.billingservice.service.invoice;
+
+import com.ev.billingservice.repository.InvoiceNumberSequenceRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Allocates invoice numbers for invoices created through the API and by billing runs.
+ * Numbers run per organization and year, formatted as {@code INV-<year>-<organization>-<number>}.
+ * Each instance leases a block of numbers from the database (Hi/Lo) and hands them out from
+ * memory, so only one database write is needed per block. Blocks are leased in their own
+ * transaction so no two instances ever hold the same numbers; numbers left in a block when
+ * an instance stops are skipped, so the sequence is gap-tolerant rather than gapless.
+ */
+@Component
+@Slf4j
+public class InvoiceNumberAllocator {
+
+    // Sequence used for invoices that are not tied to an organization
+    private static final UUID NO_ORGANIZATION = new UUID(0L, 0L);
+
+    private final InvoiceNumberSequenceRepository sequenceRepository;
+    private final TransactionTemplate leaseTransaction;
+    private final int blockSize;
+
+    private final Map<SequenceKey, Block> blocks = new ConcurrentHashMap<>();
+
+    public InvoiceNumberAllocator(InvoiceNumberSequenceRepository sequenceRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${billing.invoice.number.block-size:50}") int blockSize) {
+        this.sequenceRepository = sequenceRepository;
+        this.leaseTransaction = new TransactionTemplate(transactionManager);
+        this.leaseTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Allocate the next invoice number for an organization
+     *
+     * @param organizationId ID of the organization being invoiced (null for none)
+     * @return A new invoice number
+     */
+    public String nextInvoiceNumber(UUID organizationId) {
+        UUID organization = organizationId != null ? organizationId : NO_ORGANIZATION;
+        int year = LocalDate.now().getYear();
+
+        long number = nextValue(organization, year);
+
+        return String.format("INV-%d-%s-%06d",
+                year, organization.toString().replace("-", "").toUpperCase(), number);
+    }
+
+    private long nextValue(UUID organizationId, int year) {
+        Block block = blocks.computeIfAbsent(new SequenceKey(organizationId, year), key -> new Block());
+
+        synchronized (block) {
+            if (block.next > block.last) {
+                Long high = leaseTransaction.execute(status -> {
+                    sequenceRepository.leaseBlock(organizationId, year, blockSize);
+                    return sequenceRepository.findNextValue(organizationId, year);
+                });
+                block.next = high - blockSize;
+                block.last = high - 1;
+                log.debug("Leased invoice numbers {}-{} for organization {} in {}",
+                        block.next, block.last, organizationId, year);
+            }
+            return block.next++;
+        }
+    }
+
+    /**
+     * Organization and year a sequence runs for
+     */
+    private static class SequenceKey {
+        private final UUID organizationId;
+        private final int year;
+
+        SequenceKey(UUID organizationId, int year) {
+            this.organizationId = organizationId;
+            this.year = year;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SequenceKey)) {
+                return false;
+            }
+            SequenceKey other = (SequenceKey) o;
+            return year == other.year && organizationId.equals(other.organizationId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(organizationId, year);
+        }
+    }
+
+    /**
+     * Numbers leased by this instance; empty when next is past last
+     */
+    private static class Block {
+        private long next = 1;
+        private long last = 0;
+    }
+}
@@ -0,0 +1,224 @@
+package com.ev.billingservice.service.invoice;
+
+import com.ev.billingservice.dto.event.InvoiceEvent;
+import com.ev.billingservice.model.Invoice;
+import com.ev.billingservice.model.Invoice.InvoiceStatus;
+import com.ev.billingservice.model.InvoiceItem;
+import com.ev.billingservice.model.Subscription;
+import com.ev.billingservice.repository.InvoiceItemRepository;
+import com.ev.billingservice.repository.InvoiceRepository;
+import com.ev.billingservice.repository.SubscriptionRepository;
+import com.ev.billingservice.repository.UsageRecordRepository;
+import com.ev.billingservice.repository.UsageRecordRepository.MeterUsage;
+import com.ev.billingservice.service.NotificationService;
+import com.ev.billingservice.service.outbox.EventOutbox;
+import com.ev.billingservice.service.tariff.CompiledTariff;
+import com.ev.billingservice.service.tariff.TariffEngine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Invoices the metered usage of subscriptions.
+ * Subscriptions with unprocessed usage records are walked in ID order and handled in chunks: one
+ * statement per chunk marks the records processed and returns their totals per meter, which are
+ * priced with the subscription's plan and issued as one invoice per subscription in the same
+ * transaction. A failed chunk leaves its records unprocessed for the next run.
+ */
+@Component
+@Slf4j
+public class UsageInvoicer {
+
+    // Sorts before every subscription ID
+    private static final UUID FIRST_SUBSCRIPTION = new UUID(0L, 0L);
+
+    private final UsageRecordRepository usageRecordRepository;
+    private final SubscriptionRepository subscriptionRepository;
+    private final InvoiceRepository invoiceRepository;
+    private final InvoiceItemRepository invoiceItemRepository;
+    private final TariffEngine tariffEngine;
+    private final InvoiceNumberAllocator invoiceNumberAllocator;
+    private final NotificationService notificationService;
+    private final EventOutbox eventOutbox;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final long paymentTermDays;
+
+    public UsageInvoicer(UsageRecordRepository usageRecordRepository,
+                         SubscriptionRepository subscriptionRepository,
+                         InvoiceRepository invoiceRepository,
+                         InvoiceItemRepository invoiceItemRepository,
+                         TariffEngine tariffEngine,
+                         InvoiceNumberAllocator invoiceNumberAllocator,
+                         NotificationService notificationService,
+                         EventOutbox eventOutbox,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${billing.usage.chunk-size:500}") int chunkSize,
+                         @Value("${billing.invoice.payment-term-days:14}") long paymentTermDays) {
+        this.usageRecordRepository = usageRecordRepository;
+        this.subscriptionRepository = subscriptionRepository;
+        this.invoiceRepository = invoiceRepository;
+        this.invoiceItemRepository = invoiceItemRepository;
+        this.tariffEngine = tariffEngine;
+        this.invoiceNumberAllocator = invoiceNumberAllocator;
+        this.notificationService = notificationService;
+        this.eventOutbox = eventOutbox;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.paymentTermDays = paymentTermDays;
+    }
+
+    /**
+     * Invoice all usage recorded before now that has not been processed yet
+     *
+     * @return Number of invoices issued
+     */
+    public int invoiceUnprocessedUsage() {
+        // Records arriving during the run are left for the next one
+        LocalDateTime cutoff = LocalDateTime.now();
+        PageRequest firstChunk = PageRequest.of(0, chunkSize);
+        UUID after = FIRST_SUBSCRIPTION;
+        int invoiceCount = 0;
+        long recordCount = 0;
+        int failedChunks = 0;
+
+        List<UUID> chunk;
+        while (!(chunk = usageRecordRepository.findSubscriptionIdsWithUnprocessedUsage(
+                cutoff, after, firstChunk)).isEmpty()) {
+            List<UUID> subscriptionIds = chunk;
+            after = subscriptionIds.get(subscriptionIds.size() - 1);
+
+            try {
+                ChunkResult result = transactionTemplate.execute(status -> invoiceChunk(subscriptionIds, cutoff));
+                invoiceCount += result.invoices.size();
+                recordCount += result.recordCount;
+
+                for (Invoice invoice : result.invoices) {
+                    notificationService.sendInvoiceCreatedNotification(invoice);
+                }
+            } catch (Exception e) {
+                log.error("Error invoicing usage of {} subscriptions from {}",
+                        subscriptionIds.size(), subscriptionIds.get(0), e);
+                failedChunks++;
+            }
+        }
+
+        log.info("Processed {} usage records into {} invoices ({} chunks failed)",
+                recordCount, invoiceCount, failedChunks);
+        return invoiceCount;
+    }
+
+    private ChunkResult invoiceChunk(List<UUID> subscriptionIds, LocalDateTime cutoff) {
+        List<MeterUsage> usage = usageRecordRepository.claimUsage(subscriptionIds, cutoff);
+        Map<UUID, Subscription> subscriptions = subscriptionRepository.findAllById(subscriptionIds).stream()
+                .collect(Collectors.toMap(Subscription::getId, Function.identity()));
+
+        ChunkResult result = new ChunkResult();
+        List<InvoiceItem> items = new ArrayList<>();
+
+        // Usage comes back ordered by subscription, so each subscription is one run of rows
+        int i = 0;
+        while (i < usage.size()) {
+            UUID subscriptionId = usage.get(i).getSubscriptionId();
+            Subscription subscription = subscriptions.get(subscriptionId);
+            CompiledTariff tariff = tariffEngine.getTariff(subscription.getPlanId());
+
+            List<InvoiceItem> subscriptionItems = new ArrayList<>();
+            BigDecimal amount = BigDecimal.ZERO;
+            for (; i < usage.size() && usage.get(i).getSubscriptionId().equals(subscriptionId); i++) {
+                MeterUsage meter = usage.get(i);
+                result.recordCount += meter.getRecordCount();
+
+                BigDecimal price = tariff != null
+                        ? tariff.priceUsage(meter.getMeterType(), meter.getQuantity())
+                        : null;
+                if (price == null || price.signum() == 0) {
+                    log.debug("No charge for {} {} usage of subscription {}",
+                            meter.getQuantity(), meter.getMeterType(), subscriptionId);
+                    continue;
+                }
+
+                subscriptionItems.add(InvoiceItem.builder()
+                        .description(String.format("%s usage: %s (%d records)", meter.getMeterType(),
+                                meter.getQuantity().stripTrailingZeros().toPlainString(), meter.getRecordCount()))
+                        .quantity(1)
+                        .unitPrice(price)
+                        .totalPrice(price)
+                        .build());
+                amount = amount.add(price);
+            }
+
+            if (!subscriptionItems.isEmpty()) {
+                Invoice invoice = createUsageInvoice(subscription, tariff.getCurrency(), amount);
+                for (InvoiceItem item : subscriptionItems) {
+                    item.setInvoiceId(invoice.getId());
+                }
+                items.addAll(subscriptionItems);
+                result.invoices.add(invoice);
+
+                // Queued with the invoice, so the event is published exactly when the invoice commits
+                eventOutbox.enqueueInvoiceEvent(usageInvoiceEvent(invoice, subscriptionItems.size()));
+            }
+        }
+
+        invoiceItemRepository.saveAll(items);
+        return result;
+    }
+
+    private Invoice createUsageInvoice(Subscription subscription, String currency, BigDecimal amount) {
+        LocalDateTime now = LocalDateTime.now();
+        Invoice invoice = Invoice.builder()
+                .subscriptionId(subscription.getId())
+                .userId(subscription.getUserId())
+                .organizationId(subscription.getOrganizationId())
+                .invoiceNumber(invoiceNumberAllocator.nextInvoiceNumber(subscription.getOrganizationId()))
+                .amount(amount)
+                .taxAmount(BigDecimal.ZERO)
+                .totalAmount(amount)
+                .status(InvoiceStatus.ISSUED)
+                .currency(currency)
+                .issuedAt(now)
+                .dueDate(now.plusDays(paymentTermDays))
+                .dueAt(now.plusDays(paymentTermDays))
+                .build();
+        return invoiceRepository.save(invoice);
+    }
+
+    private InvoiceEvent usageInvoiceEvent(Invoice invoice, int meterCount) {
+        return InvoiceEvent.builder()
+                .eventId(UUID.randomUUID())
+                .invoiceId(invoice.getId())
+                .userId(invoice.getUserId())
+                .eventType("CREATED")
+                .invoiceNumber(invoice.getInvoiceNumber())
+                .totalAmount(invoice.getTotalAmount())
+                .currency(invoice.getCurrency())
+                .status(invoice.getStatus().toString())
+                .issuedAt(invoice.getIssuedAt())
+                .dueAt(invoice.getDueAt())
+                .timestamp(LocalDateTime.now())
+                .invoiceUrl("/api/v1/billing/invoices/" + invoice.getId())
+                .notes("Usage invoice for " + meterCount + " meters")
+                .build();
+    }
+
+    /**
+     * Invoices issued for a chunk and the number of usage records they cover
+     */
+    private static class ChunkResult {
+        private final List<Invoice> invoices = new ArrayList<>();
+        private long recordCount;
+    }
+}
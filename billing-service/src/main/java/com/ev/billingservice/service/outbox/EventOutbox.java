@@ -0,0 +1,84 @@
+package com.ev.billingservice.service.outbox;
+
+import com.ev.billingservice.config.KafkaConfig;
+import com.ev.billingservice.dto.event.InvoiceEvent;
+import com.ev.billingservice.dto.event.PaymentEvent;
+import com.ev.billingservice.model.OutboxEvent;
+import com.ev.billingservice.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Queues billing events for Kafka in the caller's transaction.
+ * An event is stored only if the change it describes commits, and {@link OutboxRelay}
+ * publishes it afterwards, so events are neither lost nor sent for rolled-back changes.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EventOutbox {
+
+    public static final String AGGREGATE_PAYMENT = "Payment";
+    public static final String AGGREGATE_INVOICE = "Invoice";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Queue a payment event, keyed by payment
+     *
+     * @param event The payment event to publish
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueuePaymentEvent(PaymentEvent event) {
+        if (event.getEventId() == null) {
+            event.setEventId(UUID.randomUUID());
+        }
+
+        // Payments still being processed have no ID yet and are ordered with their invoice
+        UUID aggregateId = event.getPaymentId() != null ? event.getPaymentId() : event.getInvoiceId();
+        enqueue(AGGREGATE_PAYMENT, aggregateId, KafkaConfig.PAYMENT_EVENTS_TOPIC, event);
+        log.debug("Queued payment event: type={}, paymentId={}", event.getEventType(), event.getPaymentId());
+    }
+
+    /**
+     * Queue an invoice event, keyed by invoice
+     *
+     * @param event The invoice event to publish
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueInvoiceEvent(InvoiceEvent event) {
+        if (event.getEventId() == null) {
+            event.setEventId(UUID.randomUUID());
+        }
+
+        enqueue(AGGREGATE_INVOICE, event.getInvoiceId(), KafkaConfig.INVOICE_EVENTS_TOPIC, event);
+        log.debug("Queued invoice event: type={}, invoiceId={}", event.getEventType(), event.getInvoiceId());
+    }
+
+    private void enqueue(String aggregateType, UUID aggregateId, String topic, Object event) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize " + aggregateType + " event " + aggregateId, e);
+        }
+
+        outboxEventRepository.save(OutboxEvent.builder()
+                .aggregateType(aggregateType)
+                .aggregateId(aggregateId)
+                .topic(topic)
+                .payloadType(event.getClass().getName())
+                .payload(payload)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+}
@@ -0,0 +1,229 @@
+package com.ev.billingservice.service.outbox;
+
+import com.ev.billingservice.model.OutboxEvent;
+import com.ev.billingservice.repository.OutboxEventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the events queued by {@link EventOutbox} to Kafka.
+ * Each round claims a batch in a short transaction, sends it with no database connection held,
+ * then marks what Kafka acknowledged in a second short transaction. Events are keyed by aggregate,
+ * and an aggregate whose event fails stays blocked until that event is retried, so consumers see
+ * each aggregate's events in order. Delivery is at-least-once: an event is sent again if the relay
+ * stops between the send and the mark, and consumers are expected to dedupe on the event ID.
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    // Advisory lock key that serializes claims across instances
+    private static final long CLAIM_LOCK_KEY = 0x6f7574626f78L;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Timer publishLatency;
+    private final Counter publishFailures;
+    private final AtomicLong backlog = new AtomicLong();
+    private final AtomicLong lagMillis = new AtomicLong();
+
+    private final Map<String, Class<?>> payloadTypes = new ConcurrentHashMap<>();
+
+    // Identifies this instance as the holder of the events it claims
+    private final String instanceId = ManagementFactory.getRuntimeMXBean().getName();
+
+    @Value("${billing.outbox.relay.batch-size:200}")
+    private int batchSize;
+
+    @Value("${billing.outbox.relay.claim-seconds:60}")
+    private long claimSeconds;
+
+    @Value("${billing.outbox.relay.send-timeout-seconds:35}")
+    private long sendTimeoutSeconds;
+
+    @Value("${billing.outbox.relay.retry-backoff-seconds:5}")
+    private long retryBackoffSeconds;
+
+    @Value("${billing.outbox.retention-hours:72}")
+    private long retentionHours;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       KafkaTemplate<String, Object> kafkaTemplate,
+                       ObjectMapper objectMapper,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        this.publishLatency = Timer.builder("billing.outbox.publish.latency")
+                .description("Time from queuing an event to its acknowledgement by Kafka")
+                .register(meterRegistry);
+        this.publishFailures = Counter.builder("billing.outbox.publish.failures")
+                .description("Outbox events that failed to publish and will be retried")
+                .register(meterRegistry);
+        Gauge.builder("billing.outbox.backlog", backlog, AtomicLong::get)
+                .description("Outbox events not yet published")
+                .register(meterRegistry);
+        Gauge.builder("billing.outbox.lag", lagMillis, lag -> lag.get() / 1000.0)
+                .description("Age of the oldest outbox event not yet published")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Drain the outbox, one batch after another until it is empty
+     */
+    @Scheduled(fixedDelayString = "${billing.outbox.relay.interval-ms:200}")
+    public void relay() {
+        List<OutboxEvent> batch;
+        do {
+            batch = claimBatch();
+            if (!batch.isEmpty()) {
+                publish(batch);
+            }
+        } while (batch.size() == batchSize);
+    }
+
+    /**
+     * Refresh the backlog and lag gauges
+     */
+    @Scheduled(fixedDelayString = "${billing.outbox.metrics.interval-ms:10000}")
+    public void refreshMetrics() {
+        backlog.set(outboxEventRepository.countByPublishedAtIsNull());
+        LocalDateTime oldest = outboxEventRepository.findOldestUnpublishedCreatedAt();
+        lagMillis.set(oldest != null ? Duration.between(oldest, LocalDateTime.now()).toMillis() : 0);
+    }
+
+    /**
+     * Delete published events once they are past retention
+     */
+    @Scheduled(cron = "${billing.outbox.cleanup.cron:0 30 * * * *}")
+    public void deletePublishedEvents() {
+        Integer deleted = transactionTemplate.execute(status ->
+                outboxEventRepository.deletePublishedBefore(LocalDateTime.now().minusHours(retentionHours)));
+        log.info("Deleted {} published outbox events", deleted);
+    }
+
+    private List<OutboxEvent> claimBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        return transactionTemplate.execute(status -> {
+            if (!outboxEventRepository.tryLockClaims(CLAIM_LOCK_KEY)) {
+                // Another instance is claiming; try again next round
+                return List.<OutboxEvent>of();
+            }
+            List<Long> ids = outboxEventRepository.findClaimableIds(now, batchSize);
+            if (ids.isEmpty()) {
+                return List.<OutboxEvent>of();
+            }
+            outboxEventRepository.claim(ids, instanceId, now.plusSeconds(claimSeconds));
+            return outboxEventRepository.findByIdInOrderByIdAsc(ids);
+        });
+    }
+
+    private void publish(List<OutboxEvent> batch) {
+        // Send the whole batch before waiting so the producer can pipeline it
+        List<CompletableFuture<SendResult<String, Object>>> sends = new ArrayList<>(batch.size());
+        for (OutboxEvent event : batch) {
+            sends.add(send(event));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(sendTimeoutSeconds);
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime retryAt = now.plusSeconds(retryBackoffSeconds);
+
+        List<Long> published = new ArrayList<>(batch.size());
+        List<Long> deferred = new ArrayList<>();
+        Set<UUID> failedAggregates = new HashSet<>();
+        List<OutboxEvent> failed = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+
+        for (int i = 0; i < batch.size(); i++) {
+            OutboxEvent event = batch.get(i);
+
+            // Only the events before an aggregate's first failure count as published;
+            // the rest are sent again after it, even if Kafka took them this time
+            if (failedAggregates.contains(event.getAggregateId())) {
+                deferred.add(event.getId());
+                continue;
+            }
+
+            try {
+                sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                published.add(event.getId());
+                publishLatency.record(Duration.between(event.getCreatedAt(), LocalDateTime.now()));
+            } catch (Exception e) {
+                String error = e.getCause() != null ? e.getCause().toString() : e.toString();
+                log.warn("Failed to publish outbox event {} for {} {} (attempt {}): {}",
+                        event.getId(), event.getAggregateType(), event.getAggregateId(),
+                        event.getAttempts() + 1, error);
+                failedAggregates.add(event.getAggregateId());
+                failed.add(event);
+                errors.add(error.length() > 1000 ? error.substring(0, 1000) : error);
+                publishFailures.increment();
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!published.isEmpty()) {
+                outboxEventRepository.markPublished(published, now);
+            }
+            for (int i = 0; i < failed.size(); i++) {
+                outboxEventRepository.recordFailure(failed.get(i).getId(), retryAt, errors.get(i));
+            }
+            if (!deferred.isEmpty()) {
+                outboxEventRepository.deferClaims(deferred, retryAt);
+            }
+        });
+
+        log.debug("Published {} of {} outbox events", published.size(), batch.size());
+    }
+
+    private CompletableFuture<SendResult<String, Object>> send(OutboxEvent event) {
+        try {
+            Object payload = objectMapper.readValue(event.getPayload(), payloadType(event.getPayloadType()));
+            return kafkaTemplate.send(event.getTopic(), event.getAggregateId().toString(), payload);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private Class<?> payloadType(String className) {
+        return payloadTypes.computeIfAbsent(className, name -> {
+            try {
+                return Class.forName(name);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Unknown outbox payload type " + name, e);
+            }
+        });
+    }
+}
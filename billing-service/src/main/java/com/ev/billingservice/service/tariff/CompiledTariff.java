@@ -0,0 +1,156 @@
+package com.ev.billingservice.service.tariff;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Immutable pricing function compiled from a billing plan by {@link TariffEngine}.
+ * Rates are held as BigDecimals in flat arrays indexed by time-of-day segment. Usage is
+ * weighted by whole seconds so intermediate sums stay exact; the only division is into
+ * per-minute and per-kWh terms, and the total is rounded half-up to cents once at the end.
+ */
+public final class CompiledTariff {
+
+    static final int MINUTES_PER_DAY = 24 * 60;
+
+    private static final BigDecimal SECONDS_PER_MINUTE = BigDecimal.valueOf(60);
+    private static final int CENTS_SCALE = 2;
+
+    private final UUID billingPlanId;
+    private final String currency;
+    private final BigDecimal sessionFee;
+    private final BigDecimal parkingRatePerMinute;
+    private final long parkingGraceSeconds;
+    private final BigDecimal minSessionAmount;
+    private final BigDecimal maxSessionAmount;
+
+    // Time-of-day segments covering the whole day: segment i spans minutes [segmentStarts[i], segmentStarts[i + 1])
+    private final int[] segmentStarts;
+    private final BigDecimal[] energyRates;
+    private final BigDecimal[] timeRates;
+
+    // Metered usage: one unit of usageMeterTypes[i] costs usageRates[i]
+    private final String[] usageMeterTypes;
+    private final BigDecimal[] usageRates;
+
+    private final long compiledAtMillis;
+
+    CompiledTariff(UUID billingPlanId, String currency, BigDecimal sessionFee,
+                   BigDecimal parkingRatePerMinute, BigDecimal parkingGraceMinutes,
+                   BigDecimal minSessionAmount, BigDecimal maxSessionAmount,
+                   int[] segmentStarts, BigDecimal[] energyRates, BigDecimal[] timeRates,
+                   String[] usageMeterTypes, BigDecimal[] usageRates) {
+        this.billingPlanId = billingPlanId;
+        this.currency = currency;
+        this.sessionFee = sessionFee;
+        this.parkingRatePerMinute = parkingRatePerMinute;
+        this.parkingGraceSeconds = parkingGraceMinutes.multiply(SECONDS_PER_MINUTE)
+                .setScale(0, RoundingMode.HALF_UP).longValueExact();
+        this.minSessionAmount = minSessionAmount;
+        this.maxSessionAmount = maxSessionAmount;
+        this.segmentStarts = segmentStarts;
+        this.energyRates = energyRates;
+        this.timeRates = timeRates;
+        this.usageMeterTypes = usageMeterTypes;
+        this.usageRates = usageRates;
+        this.compiledAtMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Price a session from its energy, duration and start time.
+     * Energy is assumed to be delivered evenly over the session when it spans several time-of-day bands.
+     *
+     * @param energyDeliveredKwh Energy delivered in kWh
+     * @param durationSeconds Duration of the session in seconds
+     * @param startTime Time the session started (null prices everything at the first band's rates)
+     * @return The amount, rounded half-up to cents
+     */
+    public BigDecimal price(BigDecimal energyDeliveredKwh, Long durationSeconds, LocalDateTime startTime) {
+        BigDecimal energy = energyDeliveredKwh != null ? energyDeliveredKwh : BigDecimal.ZERO;
+        long seconds = durationSeconds != null ? Math.max(durationSeconds, 0) : 0;
+
+        BigDecimal amount = sessionFee;
+
+        int segmentCount = energyRates.length;
+        if (segmentCount == 1 || startTime == null || seconds == 0) {
+            amount = amount.add(energy.multiply(energyRates[0]))
+                    .add(perMinute(timeRates[0].multiply(BigDecimal.valueOf(seconds))));
+        } else {
+            // Walk the session through the day's segments, wrapping at midnight, summing rate x seconds per segment
+            BigDecimal energyRateSeconds = BigDecimal.ZERO;
+            BigDecimal timeRateSeconds = BigDecimal.ZERO;
+            long secondOfDay = startTime.toLocalTime().toSecondOfDay();
+            int segment = segmentAt((int) (secondOfDay / 60));
+            long remaining = seconds;
+
+            while (remaining > 0) {
+                long inSegment = Math.min(remaining, segmentStarts[segment + 1] * 60L - secondOfDay);
+                BigDecimal segmentSeconds = BigDecimal.valueOf(inSegment);
+                energyRateSeconds = energyRateSeconds.add(energyRates[segment].multiply(segmentSeconds));
+                timeRateSeconds = timeRateSeconds.add(timeRates[segment].multiply(segmentSeconds));
+                remaining -= inSegment;
+                segment = (segment + 1) % segmentCount;
+                secondOfDay = segmentStarts[segment] * 60L;
+            }
+
+            amount = amount.add(energy.multiply(energyRateSeconds)
+                            .divide(BigDecimal.valueOf(seconds), MathContext.DECIMAL128))
+                    .add(perMinute(timeRateSeconds));
+        }
+
+        if (seconds > parkingGraceSeconds) {
+            amount = amount.add(perMinute(parkingRatePerMinute.multiply(BigDecimal.valueOf(seconds - parkingGraceSeconds))));
+        }
+
+        amount = amount.max(minSessionAmount);
+        if (maxSessionAmount != null) {
+            amount = amount.min(maxSessionAmount);
+        }
+
+        return amount.setScale(CENTS_SCALE, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Price metered usage of a subscription
+     *
+     * @param meterType Meter type of the usage records
+     * @param quantity Total quantity recorded on the meter
+     * @return The amount, rounded half-up to cents, or null if the plan does not price the meter
+     */
+    public BigDecimal priceUsage(String meterType, BigDecimal quantity) {
+        for (int i = 0; i < usageMeterTypes.length; i++) {
+            if (usageMeterTypes[i].equals(meterType)) {
+                return quantity.multiply(usageRates[i]).setScale(CENTS_SCALE, RoundingMode.HALF_UP);
+            }
+        }
+        return null;
+    }
+
+    public UUID getBillingPlanId() {
+        return billingPlanId;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    boolean isCompiledBefore(long epochMillis) {
+        return compiledAtMillis < epochMillis;
+    }
+
+    private static BigDecimal perMinute(BigDecimal rateSeconds) {
+        return rateSeconds.divide(SECONDS_PER_MINUTE, MathContext.DECIMAL128);
+    }
+
+    private int segmentAt(int minuteOfDay) {
+        for (int i = segmentStarts.length - 2; i > 0; i--) {
+            if (minuteOfDay >= segmentStarts[i]) {
+                return i;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,214 @@
+package com.ev.billingservice.service.tariff;
+
+import com.ev.billingservice.model.BillingPlan;
+import com.ev.billingservice.repository.BillingPlanRepository;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles billing plans into {@link CompiledTariff} pricing functions and caches them by plan ID.
+ * The tariff is read from the plan's {@code features} JSON, for example:
+ * <pre>
+ * {
+ *   "currency": "EUR",
+ *   "energyRate": 0.30,
+ *   "timeRate": 0.01,
+ *   "sessionFee": 1.00,
+ *   "parking": { "ratePerMinute": 0.10, "graceMinutes": 240 },
+ *   "timeOfDayBands": [ { "start": "17:00", "end": "21:00", "energyRate": 0.45, "timeRate": 0.02 } ],
+ *   "minSessionAmount": 0.50,
+ *   "maxSessionAmount": 50.00,
+ *   "usageRates": { "API_CALLS": 0.001, "PREMIUM_FEATURES": 2.00 }
+ * }
+ * </pre>
+ * Without a currency, energy rate or time rate the plan is priced in USD at 0.20 per kWh and 0.01 per minute;
+ * the other fields default to no charge and no maximum.
+ * Rates are per kWh and per minute; usage rates are per unit recorded on the meter, and meters
+ * without a rate are not charged. Rates are read and priced as BigDecimals. Bands may wrap midnight; later bands win where they overlap.
+ * Entries are evicted when a plan is written and recompiled after a TTL so other replicas catch up.
+ */
+@Component
+@Slf4j
+public class TariffEngine {
+
+    private static final BigDecimal DEFAULT_ENERGY_RATE = new BigDecimal("0.20"); // $0.20 per kWh
+    private static final BigDecimal DEFAULT_TIME_RATE = new BigDecimal("0.01");   // $0.01 per minute
+    private static final String DEFAULT_CURRENCY = "USD";
+
+    private final BillingPlanRepository billingPlanRepository;
+    private final ObjectMapper objectMapper;
+    private final long cacheTtlMillis;
+
+    private final Map<UUID, CompiledTariff> tariffs = new ConcurrentHashMap<>();
+
+    public TariffEngine(BillingPlanRepository billingPlanRepository,
+                        ObjectMapper objectMapper,
+                        @Value("${billing.tariff.cache-ttl-seconds:300}") long cacheTtlSeconds) {
+        this.billingPlanRepository = billingPlanRepository;
+        this.objectMapper = objectMapper;
+        this.cacheTtlMillis = cacheTtlSeconds * 1000;
+    }
+
+    /**
+     * Get the compiled tariff of a billing plan, compiling it on first use
+     *
+     * @param billingPlanId ID of the billing plan
+     * @return The compiled tariff, or null if the plan does not exist
+     */
+    public CompiledTariff getTariff(UUID billingPlanId) {
+        if (billingPlanId == null) {
+            return null;
+        }
+
+        CompiledTariff tariff = tariffs.get(billingPlanId);
+        if (tariff != null && !tariff.isCompiledBefore(System.currentTimeMillis() - cacheTtlMillis)) {
+            return tariff;
+        }
+
+        return billingPlanRepository.findById(billingPlanId)
+                .map(plan -> {
+                    CompiledTariff compiled = compile(plan);
+                    tariffs.put(billingPlanId, compiled);
+                    return compiled;
+                })
+                .orElse(null);
+    }
+
+    /**
+     * Evict a plan's compiled tariff once the current transaction commits, or right away outside a transaction
+     *
+     * @param billingPlanId ID of the billing plan that was written
+     */
+    public void evictAfterCommit(UUID billingPlanId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    tariffs.remove(billingPlanId);
+                }
+            });
+        } else {
+            tariffs.remove(billingPlanId);
+        }
+    }
+
+    /**
+     * Compile a billing plan into a pricing function
+     */
+    CompiledTariff compile(BillingPlan plan) {
+        JsonNode features = readFeatures(plan);
+
+        BigDecimal energyRate = decimal(features.path("energyRate"), DEFAULT_ENERGY_RATE);
+        BigDecimal timeRate = decimal(features.path("timeRate"), DEFAULT_TIME_RATE);
+        JsonNode parking = features.path("parking");
+
+        // Mark every minute of the day with the band that applies, -1 for the base rates
+        int[] bandByMinute = new int[CompiledTariff.MINUTES_PER_DAY];
+        Arrays.fill(bandByMinute, -1);
+        List<BigDecimal[]> bandRates = new ArrayList<>();
+        for (JsonNode band : features.path("timeOfDayBands")) {
+            try {
+                int start = minuteOfDay(band.path("start").asText());
+                int end = minuteOfDay(band.path("end").asText());
+                int index = bandRates.size();
+                bandRates.add(new BigDecimal[]{
+                        decimal(band.path("energyRate"), energyRate),
+                        decimal(band.path("timeRate"), timeRate)});
+                for (int minute = start; minute != end; minute = (minute + 1) % CompiledTariff.MINUTES_PER_DAY) {
+                    bandByMinute[minute] = index;
+                }
+            } catch (Exception e) {
+                log.warn("Ignoring invalid time-of-day band in billing plan {}: {}", plan.getId(), band);
+            }
+        }
+
+        // Collapse runs of equal minutes into segments
+        List<Integer> starts = new ArrayList<>();
+        for (int minute = 0; minute < CompiledTariff.MINUTES_PER_DAY; minute++) {
+            if (minute == 0 || bandByMinute[minute] != bandByMinute[minute - 1]) {
+                starts.add(minute);
+            }
+        }
+        int[] segmentStarts = new int[starts.size() + 1];
+        BigDecimal[] energyRates = new BigDecimal[starts.size()];
+        BigDecimal[] timeRates = new BigDecimal[starts.size()];
+        for (int i = 0; i < starts.size(); i++) {
+            int band = bandByMinute[starts.get(i)];
+            segmentStarts[i] = starts.get(i);
+            energyRates[i] = band >= 0 ? bandRates.get(band)[0] : energyRate;
+            timeRates[i] = band >= 0 ? bandRates.get(band)[1] : timeRate;
+        }
+        segmentStarts[starts.size()] = CompiledTariff.MINUTES_PER_DAY;
+
+        List<String> usageMeterTypes = new ArrayList<>();
+        List<BigDecimal> usageRates = new ArrayList<>();
+        features.path("usageRates").fields().forEachRemaining(rate -> {
+            if (rate.getValue().isNumber()) {
+                usageMeterTypes.add(rate.getKey());
+                usageRates.add(rate.getValue().decimalValue());
+            } else {
+                log.warn("Ignoring invalid usage rate in billing plan {}: {}", plan.getId(), rate);
+            }
+        });
+
+        log.debug("Compiled tariff for billing plan {} with {} time-of-day segments", plan.getId(), energyRates.length);
+
+        return new CompiledTariff(
+                plan.getId(),
+                features.path("currency").asText(DEFAULT_CURRENCY),
+                decimal(features.path("sessionFee"), BigDecimal.ZERO),
+                decimal(parking.path("ratePerMinute"), BigDecimal.ZERO),
+                decimal(parking.path("graceMinutes"), BigDecimal.ZERO),
+                decimal(features.path("minSessionAmount"), BigDecimal.ZERO),
+                decimal(features.path("maxSessionAmount"), null),
+                segmentStarts,
+                energyRates,
+                timeRates,
+                usageMeterTypes.toArray(new String[0]),
+                usageRates.toArray(new BigDecimal[0]));
+    }
+
+    private JsonNode readFeatures(BillingPlan plan) {
+        if (plan.getFeatures() != null && !plan.getFeatures().isBlank()) {
+            try {
+                // Read fractional numbers as BigDecimal so rates keep the digits they were written with
+                JsonNode features = objectMapper.reader()
+                        .with(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+                        .readTree(plan.getFeatures());
+                if (features.isObject()) {
+                    return features;
+                }
+            } catch (Exception e) {
+                log.warn("Invalid features JSON in billing plan {}, using default rates", plan.getId());
+            }
+        }
+        return objectMapper.createObjectNode();
+    }
+
+    /**
+     * Read a rate as the decimal it was written as, or the default if it is missing or not a number
+     */
+    private BigDecimal decimal(JsonNode node, BigDecimal defaultValue) {
+        return node.isNumber() ? node.decimalValue() : defaultValue;
+    }
+
+    private int minuteOfDay(String time) {
+        LocalTime localTime = LocalTime.parse(time);
+        return localTime.getHour() * 60 + localTime.getMinute();
+    }
+}
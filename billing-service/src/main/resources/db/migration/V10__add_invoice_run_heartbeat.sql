@@ -0,0 +1,2 @@
+-- Liveness of the instance executing a run, reported independently of its checkpoints
+ALTER TABLE invoice_runs ADD COLUMN IF NOT EXISTS heartbeat_at TIMESTAMP;
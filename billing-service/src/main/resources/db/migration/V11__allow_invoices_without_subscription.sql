@@ -0,0 +1,3 @@
+-- Sessions charged without a subscription are invoiced to the user alone
+ALTER TABLE invoices ALTER COLUMN subscription_id DROP NOT NULL;
+ALTER TABLE invoices ALTER COLUMN organization_id DROP NOT NULL;
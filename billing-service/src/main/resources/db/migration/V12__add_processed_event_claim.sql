@@ -0,0 +1,2 @@
+-- Claim token of the transaction that recorded the event, to read back which IDs it recorded
+ALTER TABLE processed_events ADD COLUMN IF NOT EXISTS claim_id UUID;
@@ -1,5 +1,5 @@
 -- Create billing plans table
-CREATE TABLE billing_plans (
+CREATE TABLE IF NOT EXISTS billing_plans (
     id UUID PRIMARY KEY,
     name VARCHAR(100) NOT NULL,
     description TEXT,
@@ -12,7 +12,7 @@ CREATE TABLE billing_plans (
 );
 
 -- Create subscriptions table
-CREATE TABLE subscriptions (
+CREATE TABLE IF NOT EXISTS subscriptions (
     id UUID PRIMARY KEY,
     user_id UUID NOT NULL,
     organization_id UUID NOT NULL,
@@ -30,7 +30,7 @@ CREATE TABLE subscriptions (
 );
 
 -- Create invoices table
-CREATE TABLE invoices (
+CREATE TABLE IF NOT EXISTS invoices (
     id UUID PRIMARY KEY,
     subscription_id UUID NOT NULL,
     user_id UUID NOT NULL,
@@ -50,7 +50,7 @@ CREATE TABLE invoices (
 );
 
 -- Create invoice items table
-CREATE TABLE invoice_items (
+CREATE TABLE IF NOT EXISTS invoice_items (
     id UUID PRIMARY KEY,
     invoice_id UUID NOT NULL,
     description VARCHAR(255) NOT NULL,
@@ -65,7 +65,7 @@ CREATE TABLE invoice_items (
 );
 
 -- Create payments table
-CREATE TABLE payments (
+CREATE TABLE IF NOT EXISTS payments (
     id UUID PRIMARY KEY,
     invoice_id UUID NOT NULL,
     amount DECIMAL(10, 2) NOT NULL,
@@ -81,7 +81,7 @@ CREATE TABLE payments (
 );
 
 -- Create usage records table for metered billing
-CREATE TABLE usage_records (
+CREATE TABLE IF NOT EXISTS usage_records (
     id UUID PRIMARY KEY,
     subscription_id UUID NOT NULL,
     meter_type VARCHAR(50) NOT NULL,
@@ -95,7 +95,7 @@ CREATE TABLE usage_records (
 );
 
 -- Create payment methods table
-CREATE TABLE payment_methods (
+CREATE TABLE IF NOT EXISTS payment_methods (
     id UUID PRIMARY KEY,
     user_id UUID NOT NULL,
     type VARCHAR(50) NOT NULL,
@@ -110,7 +110,7 @@ CREATE TABLE payment_methods (
 );
 
 -- Create billing settings table
-CREATE TABLE billing_settings (
+CREATE TABLE IF NOT EXISTS billing_settings (
     id UUID PRIMARY KEY,
     organization_id UUID NOT NULL UNIQUE,
     billing_email VARCHAR(255),
@@ -122,7 +122,7 @@ CREATE TABLE billing_settings (
 );
 
 -- Create billing audit log table
-CREATE TABLE billing_audit_logs (
+CREATE TABLE IF NOT EXISTS billing_audit_logs (
     id UUID PRIMARY KEY,
     entity_type VARCHAR(50) NOT NULL,
     entity_id UUID NOT NULL,
@@ -133,23 +133,23 @@ CREATE TABLE billing_audit_logs (
 );
 
 -- Create indexes
-CREATE INDEX idx_billing_plans_active ON billing_plans(is_active);
-CREATE INDEX idx_subscriptions_user_id ON subscriptions(user_id);
-CREATE INDEX idx_subscriptions_organization_id ON subscriptions(organization_id);
-CREATE INDEX idx_subscriptions_plan_id ON subscriptions(plan_id);
-CREATE INDEX idx_subscriptions_status ON subscriptions(status);
-CREATE INDEX idx_invoices_subscription_id ON invoices(subscription_id);
-CREATE INDEX idx_invoices_user_id ON invoices(user_id);
-CREATE INDEX idx_invoices_organization_id ON invoices(organization_id);
-CREATE INDEX idx_invoices_status ON invoices(status);
-CREATE INDEX idx_invoices_due_date ON invoices(due_date);
-CREATE INDEX idx_invoice_items_invoice_id ON invoice_items(invoice_id);
-CREATE INDEX idx_payments_invoice_id ON payments(invoice_id);
-CREATE INDEX idx_payments_status ON payments(status);
-CREATE INDEX idx_usage_records_subscription_id ON usage_records(subscription_id);
-CREATE INDEX idx_usage_records_meter_type ON usage_records(meter_type);
-CREATE INDEX idx_usage_records_processed ON usage_records(processed);
-CREATE INDEX idx_payment_methods_user_id ON payment_methods(user_id);
-CREATE INDEX idx_billing_settings_organization_id ON billing_settings(organization_id);
-CREATE INDEX idx_billing_audit_logs_entity_type_id ON billing_audit_logs(entity_type, entity_id);
-CREATE INDEX idx_billing_audit_logs_created_at ON billing_audit_logs(created_at); 
\ No newline at end of file
+CREATE INDEX IF NOT EXISTS idx_billing_plans_active ON billing_plans(is_active);
+CREATE INDEX IF NOT EXISTS idx_subscriptions_user_id ON subscriptions(user_id);
+CREATE INDEX IF NOT EXISTS idx_subscriptions_organization_id ON subscriptions(organization_id);
+CREATE INDEX IF NOT EXISTS idx_subscriptions_plan_id ON subscriptions(plan_id);
+CREATE INDEX IF NOT EXISTS idx_subscriptions_status ON subscriptions(status);
+CREATE INDEX IF NOT EXISTS idx_invoices_subscription_id ON invoices(subscription_id);
+CREATE INDEX IF NOT EXISTS idx_invoices_user_id ON invoices(user_id);
+CREATE INDEX IF NOT EXISTS idx_invoices_organization_id ON invoices(organization_id);
+CREATE INDEX IF NOT EXISTS idx_invoices_status ON invoices(status);
+CREATE INDEX IF NOT EXISTS idx_invoices_due_date ON invoices(due_date);
+CREATE INDEX IF NOT EXISTS idx_invoice_items_invoice_id ON invoice_items(invoice_id);
+CREATE INDEX IF NOT EXISTS idx_payments_invoice_id ON payments(invoice_id);
+CREATE INDEX IF NOT EXISTS idx_payments_status ON payments(status);
+CREATE INDEX IF NOT EXISTS idx_usage_records_subscription_id ON usage_records(subscription_id);
+CREATE INDEX IF NOT EXISTS idx_usage_records_meter_type ON usage_records(meter_type);
+CREATE INDEX IF NOT EXISTS idx_usage_records_processed ON usage_records(processed);
+CREATE INDEX IF NOT EXISTS idx_payment_methods_user_id ON payment_methods(user_id);
+CREATE INDEX IF NOT EXISTS idx_billing_settings_organization_id ON billing_settings(organization_id);
+CREATE INDEX IF NOT EXISTS idx_billing_audit_logs_entity_type_id ON billing_audit_logs(entity_type, entity_id);
+CREATE INDEX IF NOT EXISTS idx_billing_audit_logs_created_at ON billing_audit_logs(created_at); 
\ No newline at end of file
@@ -0,0 +1,18 @@
+-- Create invoice runs table
+CREATE TABLE IF NOT EXISTS invoice_runs (
+    id UUID PRIMARY KEY,
+    run_type VARCHAR(20) NOT NULL,
+    cutoff TIMESTAMP NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    owner VARCHAR(255),
+    groups_total INTEGER NOT NULL DEFAULT 0,
+    groups_completed INTEGER NOT NULL DEFAULT 0,
+    invoices_created INTEGER NOT NULL DEFAULT 0,
+    transactions_invoiced BIGINT NOT NULL DEFAULT 0,
+    started_at TIMESTAMP NOT NULL,
+    last_checkpoint_at TIMESTAMP,
+    completed_at TIMESTAMP,
+    last_error VARCHAR(1000),
+    version BIGINT,
+    CONSTRAINT uk_invoice_runs_type_cutoff UNIQUE (run_type, cutoff)
+);
@@ -0,0 +1,7 @@
+-- Create invoice number sequences table
+CREATE TABLE IF NOT EXISTS invoice_number_sequences (
+    organization_id UUID NOT NULL,
+    year INTEGER NOT NULL,
+    next_value BIGINT NOT NULL,
+    PRIMARY KEY (organization_id, year)
+);
@@ -0,0 +1,14 @@
+-- Create revenue rollups table
+CREATE TABLE IF NOT EXISTS revenue_rollups (
+    granularity VARCHAR(10) NOT NULL,
+    bucket_start TIMESTAMP NOT NULL,
+    station_id UUID NOT NULL,
+    organization_id UUID NOT NULL,
+    billing_plan_id UUID NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    session_count BIGINT NOT NULL DEFAULT 0,
+    energy_kwh DECIMAL(16, 3) NOT NULL DEFAULT 0,
+    revenue DECIMAL(16, 2) NOT NULL DEFAULT 0,
+    duration_seconds BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (granularity, bucket_start, station_id, organization_id, billing_plan_id, currency)
+);
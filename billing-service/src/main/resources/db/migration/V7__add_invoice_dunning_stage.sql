@@ -0,0 +1,8 @@
+-- Track dunning progress per invoice
+ALTER TABLE invoices ADD COLUMN IF NOT EXISTS dunning_stage VARCHAR(20);
+ALTER TABLE invoices ADD COLUMN IF NOT EXISTS dunning_stage_at TIMESTAMP;
+
+-- Invoices already overdue continue with the reminders
+UPDATE invoices SET dunning_stage = 'OVERDUE', dunning_stage_at = updated_at WHERE status = 'OVERDUE';
+
+CREATE INDEX IF NOT EXISTS idx_invoices_dunning ON invoices (status, dunning_stage, due_date);
@@ -0,0 +1,2 @@
+-- Usage billing walks subscriptions with unprocessed records
+CREATE INDEX IF NOT EXISTS idx_usage_records_unprocessed ON usage_records (subscription_id) WHERE processed = false;
@@ -0,0 +1,13 @@
+-- Create held session events table
+-- Charging session events that arrived before their session's transaction could be created.
+-- They are stored in the transaction that claims their event ID, so they survive restarts.
+CREATE TABLE IF NOT EXISTS held_session_events (
+    id BIGSERIAL PRIMARY KEY,
+    event_id UUID,
+    session_id UUID NOT NULL,
+    payload TEXT NOT NULL,
+    held_since TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_held_session_events_session_id ON held_session_events (session_id);
+CREATE INDEX IF NOT EXISTS idx_held_session_events_held_since ON held_session_events (held_since);
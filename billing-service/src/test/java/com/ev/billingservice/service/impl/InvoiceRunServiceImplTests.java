@@ -0,0 +1,179 @@
+package com.ev.billingservice.service.impl;
+
+import com.ev.billingservice.dto.event.InvoiceEvent;
+import com.ev.billingservice.model.ChargingTransaction;
+import com.ev.billingservice.model.Invoice;
+import com.ev.billingservice.model.Invoice.InvoiceStatus;
+import com.ev.billingservice.model.InvoiceRun;
+import com.ev.billingservice.model.InvoiceRun.RunStatus;
+import com.ev.billingservice.model.InvoiceRun.RunType;
+import com.ev.billingservice.model.TransactionStatus;
+import com.ev.billingservice.repository.ChargingTransactionRepository;
+import com.ev.billingservice.repository.InvoiceItemRepository;
+import com.ev.billingservice.repository.InvoiceRepository;
+import com.ev.billingservice.repository.InvoiceRunRepository;
+import com.ev.billingservice.repository.SubscriptionRepository;
+import com.ev.billingservice.service.NotificationService;
+import com.ev.billingservice.service.invoice.InvoiceNumberAllocator;
+import com.ev.billingservice.service.outbox.EventOutbox;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the invoice run against in-memory transaction and invoice tables
+ */
+class InvoiceRunServiceImplTests {
+
+    private final UUID userId = UUID.randomUUID();
+    private final List<ChargingTransaction> transactionTable = new ArrayList<>();
+    private final Map<UUID, Invoice> invoiceTable = new HashMap<>();
+
+    private EventOutbox eventOutbox;
+    private InvoiceRunServiceImpl invoiceRunService;
+
+    @BeforeEach
+    void setUp() {
+        ChargingTransactionRepository transactionRepository = mock(ChargingTransactionRepository.class);
+        when(transactionRepository.findUninvoicedSubscriptionIds(any(), any())).thenReturn(List.of());
+        when(transactionRepository.findUninvoicedUserIdsWithoutSubscription(eq(TransactionStatus.COMPLETED), any()))
+                .thenAnswer(invocation -> uninvoiced().stream()
+                        .map(ChargingTransaction::getUserId)
+                        .distinct()
+                        .collect(Collectors.toList()));
+        when(transactionRepository.findByStatusAndInvoiceIdIsNullAndSubscriptionIdIsNullAndUserIdAndEndTimeBefore(
+                eq(TransactionStatus.COMPLETED), any(), any(), any())).thenAnswer(invocation -> uninvoiced().stream()
+                        .filter(transaction -> transaction.getUserId().equals(invocation.getArgument(1)))
+                        .limit(((Pageable) invocation.getArgument(3)).getPageSize())
+                        .collect(Collectors.toList()));
+
+        InvoiceRepository invoiceRepository = mock(InvoiceRepository.class);
+        when(invoiceRepository.save(any())).thenAnswer(invocation -> {
+            Invoice invoice = invocation.getArgument(0);
+            invoice.setId(UUID.randomUUID());
+            invoiceTable.put(invoice.getId(), invoice);
+            return invoice;
+        });
+        when(invoiceRepository.findById(any()))
+                .thenAnswer(invocation -> Optional.ofNullable(invoiceTable.get((UUID) invocation.getArgument(0))));
+
+        InvoiceRunRepository invoiceRunRepository = mock(InvoiceRunRepository.class);
+        when(invoiceRunRepository.findForClaim(anyString(), any())).thenReturn(Optional.empty());
+        when(invoiceRunRepository.saveAndFlush(any())).thenAnswer(invocation -> {
+            InvoiceRun run = invocation.getArgument(0);
+            run.setId(UUID.randomUUID());
+            return run;
+        });
+        when(invoiceRunRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(invoiceRunRepository.tryLockGroup(anyInt(), anyString())).thenReturn(true);
+
+        InvoiceNumberAllocator invoiceNumberAllocator = mock(InvoiceNumberAllocator.class);
+        when(invoiceNumberAllocator.nextInvoiceNumber(any())).thenReturn("INV-2024-000001");
+
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+
+        eventOutbox = mock(EventOutbox.class);
+        invoiceRunService = new InvoiceRunServiceImpl(
+                transactionRepository,
+                mock(SubscriptionRepository.class),
+                invoiceRepository,
+                mock(InvoiceItemRepository.class),
+                invoiceRunRepository,
+                invoiceNumberAllocator,
+                mock(NotificationService.class),
+                eventOutbox,
+                mock(EntityManager.class),
+                transactionManager,
+                Runnable::run);
+        ReflectionTestUtils.setField(invoiceRunService, "partitionCount", 2);
+        ReflectionTestUtils.setField(invoiceRunService, "chunkSize", 2);
+        ReflectionTestUtils.setField(invoiceRunService, "checkpointIntervalSeconds", 10L);
+        ReflectionTestUtils.setField(invoiceRunService, "heartbeatIntervalSeconds", 30L);
+        ReflectionTestUtils.setField(invoiceRunService, "staleAfterMinutes", 2L);
+        ReflectionTestUtils.setField(invoiceRunService, "paymentTermDays", 14L);
+    }
+
+    @Test
+    void sessionsWithoutSubscriptionAreInvoicedToTheirUser() {
+        ChargingTransaction first = transaction(userId, "4.50");
+        ChargingTransaction second = transaction(userId, "3.38");
+        ChargingTransaction third = transaction(userId, "2.12");
+
+        InvoiceRun run = invoiceRunService.runInvoicing(RunType.DAILY);
+
+        assertThat(run.getStatus()).isEqualTo(RunStatus.COMPLETED);
+        assertThat(run.getTransactionsInvoiced()).isEqualTo(3);
+        assertThat(invoiceTable.values()).singleElement().satisfies(invoice -> {
+            assertThat(invoice.getUserId()).isEqualTo(userId);
+            assertThat(invoice.getSubscriptionId()).isNull();
+            assertThat(invoice.getOrganizationId()).isNull();
+            assertThat(invoice.getTotalAmount()).isEqualByComparingTo("10.00");
+            assertThat(invoice.getStatus()).isEqualTo(InvoiceStatus.ISSUED);
+        });
+        assertThat(List.of(first, second, third)).allSatisfy(transaction ->
+                assertThat(transaction.getStatus()).isEqualTo(TransactionStatus.INVOICED));
+
+        ArgumentCaptor<InvoiceEvent> event = ArgumentCaptor.forClass(InvoiceEvent.class);
+        verify(eventOutbox).enqueueInvoiceEvent(event.capture());
+        assertThat(event.getValue().getChargingSessionIds())
+                .containsExactlyInAnyOrder(first.getSessionId(), second.getSessionId(), third.getSessionId());
+    }
+
+    @Test
+    void usersWithoutSubscriptionGetAnInvoiceEach() {
+        UUID otherUserId = UUID.randomUUID();
+        transaction(userId, "4.50");
+        transaction(otherUserId, "3.38");
+
+        invoiceRunService.runInvoicing(RunType.MONTHLY);
+
+        assertThat(invoiceTable.values()).extracting(Invoice::getUserId)
+                .containsExactlyInAnyOrder(userId, otherUserId);
+    }
+
+    private ChargingTransaction transaction(UUID userId, String amount) {
+        ChargingTransaction transaction = ChargingTransaction.builder()
+                .id(UUID.randomUUID())
+                .sessionId(UUID.randomUUID())
+                .userId(userId)
+                .status(TransactionStatus.COMPLETED)
+                .endTime(LocalDate.now().minusMonths(1).atStartOfDay())
+                .amount(new BigDecimal(amount))
+                .currency("USD")
+                .build();
+        transactionTable.add(transaction);
+        return transaction;
+    }
+
+    private List<ChargingTransaction> uninvoiced() {
+        return transactionTable.stream()
+                .filter(transaction -> transaction.getStatus() == TransactionStatus.COMPLETED)
+                .filter(transaction -> transaction.getInvoiceId() == null)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,133 @@
+package com.ev.billingservice.service.impl;
+
+import com.ev.billingservice.dto.event.InvoiceEvent;
+import com.ev.billingservice.model.ChargingTransaction;
+import com.ev.billingservice.model.Invoice;
+import com.ev.billingservice.model.Invoice.InvoiceStatus;
+import com.ev.billingservice.model.TransactionStatus;
+import com.ev.billingservice.repository.ChargingTransactionRepository;
+import com.ev.billingservice.repository.InvoiceItemRepository;
+import com.ev.billingservice.repository.InvoiceRepository;
+import com.ev.billingservice.repository.InvoiceRunRepository;
+import com.ev.billingservice.repository.SubscriptionRepository;
+import com.ev.billingservice.service.DunningService;
+import com.ev.billingservice.service.InvoiceRunService;
+import com.ev.billingservice.service.NotificationService;
+import com.ev.billingservice.service.invoice.InvoiceNumberAllocator;
+import com.ev.billingservice.service.outbox.EventOutbox;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InvoiceServiceImplTests {
+
+    private final ChargingTransaction transaction = ChargingTransaction.builder()
+            .id(UUID.randomUUID())
+            .sessionId(UUID.randomUUID())
+            .userId(UUID.randomUUID())
+            .stationId(UUID.randomUUID())
+            .connectorId(UUID.randomUUID())
+            .status(TransactionStatus.COMPLETED)
+            .startTime(LocalDateTime.of(2024, 3, 1, 9, 0))
+            .energyDeliveredKwh(new BigDecimal("22.5"))
+            .amount(new BigDecimal("7.88"))
+            .currency("EUR")
+            .build();
+
+    private InvoiceRepository invoiceRepository;
+    private EventOutbox eventOutbox;
+    private InvoiceRunRepository invoiceRunRepository;
+    private InvoiceServiceImpl invoiceService;
+
+    @BeforeEach
+    void setUp() {
+        invoiceRepository = mock(InvoiceRepository.class);
+        when(invoiceRepository.save(any())).thenAnswer(invocation -> {
+            Invoice invoice = invocation.getArgument(0);
+            invoice.setId(UUID.randomUUID());
+            return invoice;
+        });
+
+        ChargingTransactionRepository transactionRepository = mock(ChargingTransactionRepository.class);
+        when(transactionRepository.findForInvoicing(transaction.getId())).thenReturn(Optional.of(transaction));
+
+        InvoiceNumberAllocator invoiceNumberAllocator = mock(InvoiceNumberAllocator.class);
+        when(invoiceNumberAllocator.nextInvoiceNumber(any())).thenReturn("INV-2024-000001");
+
+        invoiceRunRepository = mock(InvoiceRunRepository.class);
+        when(invoiceRunRepository.tryLockGroup(anyInt(), anyString())).thenReturn(true);
+
+        eventOutbox = mock(EventOutbox.class);
+        invoiceService = new InvoiceServiceImpl(
+                invoiceRepository,
+                mock(InvoiceItemRepository.class),
+                mock(SubscriptionRepository.class),
+                mock(NotificationService.class),
+                mock(InvoiceRunService.class),
+                mock(DunningService.class),
+                invoiceNumberAllocator,
+                transactionRepository,
+                eventOutbox,
+                invoiceRunRepository);
+    }
+
+    @Test
+    void transactionIsInvoicedToItsUserForItsAmount() {
+        UUID invoiceId = invoiceService.generateInvoiceForTransaction(transaction.getId());
+
+        ArgumentCaptor<Invoice> invoice = ArgumentCaptor.forClass(Invoice.class);
+        verify(invoiceRepository).save(invoice.capture());
+        assertThat(invoice.getValue().getId()).isEqualTo(invoiceId);
+        assertThat(invoice.getValue().getSubscriptionId()).isNull();
+        assertThat(invoice.getValue().getUserId()).isEqualTo(transaction.getUserId());
+        assertThat(invoice.getValue().getAmount()).isEqualByComparingTo("7.88");
+        assertThat(invoice.getValue().getTaxAmount()).isEqualByComparingTo("0");
+        assertThat(invoice.getValue().getTotalAmount()).isEqualByComparingTo("7.88");
+        assertThat(invoice.getValue().getCurrency()).isEqualTo("EUR");
+        assertThat(invoice.getValue().getStatus()).isEqualTo(InvoiceStatus.ISSUED);
+
+        assertThat(transaction.getInvoiceId()).isEqualTo(invoiceId);
+        assertThat(transaction.getStatus()).isEqualTo(TransactionStatus.INVOICED);
+
+        // The wallet hold of the session pays the invoice
+        ArgumentCaptor<InvoiceEvent> event = ArgumentCaptor.forClass(InvoiceEvent.class);
+        verify(eventOutbox).enqueueInvoiceEvent(event.capture());
+        assertThat(event.getValue().getTotalAmount()).isEqualByComparingTo("7.88");
+        assertThat(event.getValue().getChargingSessionIds()).containsExactly(transaction.getSessionId());
+    }
+
+    @Test
+    void invoicedTransactionKeepsItsInvoice() {
+        UUID invoiceId = UUID.randomUUID();
+        transaction.setInvoiceId(invoiceId);
+        transaction.setStatus(TransactionStatus.INVOICED);
+
+        assertThat(invoiceService.generateInvoiceForTransaction(transaction.getId())).isEqualTo(invoiceId);
+        verify(invoiceRepository, never()).save(any());
+        verify(eventOutbox, never()).enqueueInvoiceEvent(any());
+    }
+
+    @Test
+    void transactionOfAUserBeingInvoicedByARunIsLeftToTheRun() {
+        when(invoiceRunRepository.tryLockGroup(anyInt(), anyString())).thenReturn(false);
+
+        assertThat(invoiceService.generateInvoiceForTransaction(transaction.getId())).isNull();
+        assertThat(transaction.getInvoiceId()).isNull();
+        assertThat(transaction.getStatus()).isEqualTo(TransactionStatus.COMPLETED);
+        verify(invoiceRepository, never()).save(any());
+    }
+}
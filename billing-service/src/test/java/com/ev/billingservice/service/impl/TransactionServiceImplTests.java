@@ -0,0 +1,234 @@
+package com.ev.billingservice.service.impl;
+
+import com.ev.billingservice.dto.event.ChargingSessionEvent;
+import com.ev.billingservice.model.ChargingTransaction;
+import com.ev.billingservice.model.HeldSessionEvent;
+import com.ev.billingservice.model.TransactionStatus;
+import com.ev.billingservice.repository.ChargingTransactionRepository;
+import com.ev.billingservice.repository.HeldSessionEventRepository;
+import com.ev.billingservice.service.InvoiceService;
+import com.ev.billingservice.service.RevenueAnalyticsService;
+import com.ev.billingservice.service.SubscriptionService;
+import com.ev.billingservice.service.ingest.ProcessedEventFilter;
+import com.ev.billingservice.service.ingest.SessionEventReorderBuffer;
+import com.ev.billingservice.service.outbox.EventOutbox;
+import com.ev.billingservice.service.tariff.TariffEngine;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Applies session events against in-memory stand-ins for the charging_transactions and
+ * held_session_events tables, which outlive the service instances like the database does
+ */
+class TransactionServiceImplTests {
+
+    private static final LocalDateTime START_TIME = LocalDateTime.of(2024, 3, 1, 9, 0);
+
+    private final Map<UUID, ChargingTransaction> transactionTable = new HashMap<>();
+    private final List<HeldSessionEvent> heldEventTable = new ArrayList<>();
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    
+    private ChargingTransactionRepository transactionRepository;
+    private HeldSessionEventRepository heldSessionEventRepository;
+    private InvoiceService invoiceService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        transactionRepository = mock(ChargingTransactionRepository.class);
+        when(transactionRepository.findBySessionIdIn(any())).thenAnswer(invocation ->
+                ((Collection<UUID>) invocation.getArgument(0)).stream()
+                        .map(transactionTable::get)
+                        .filter(transaction -> transaction != null)
+                        .collect(Collectors.toList()));
+        when(transactionRepository.insertPendingIfAbsent(anyString(), any())).thenAnswer(invocation -> {
+            int inserted = 0;
+            for (JsonNode row : objectMapper.readTree((String) invocation.getArgument(0))) {
+                UUID sessionId = UUID.fromString(row.get("session_id").asText());
+                if (transactionTable.containsKey(sessionId)) {
+                    continue;
+                }
+                transactionTable.put(sessionId, ChargingTransaction.builder()
+                        .id(UUID.fromString(row.get("id").asText()))
+                        .sessionId(sessionId)
+                        .userId(UUID.fromString(row.get("user_id").asText()))
+                        .stationId(UUID.fromString(row.get("station_id").asText()))
+                        .connectorId(UUID.fromString(row.get("connector_id").asText()))
+                        .startTime(LocalDateTime.parse(row.get("start_time").asText()))
+                        .status(TransactionStatus.PENDING)
+                        .build());
+                inserted++;
+            }
+            return inserted;
+        });
+        when(transactionRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(transactionRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        invoiceService = mock(InvoiceService.class);
+        
+        heldSessionEventRepository = mock(HeldSessionEventRepository.class);
+        when(heldSessionEventRepository.saveAll(any())).thenAnswer(invocation -> {
+            heldEventTable.addAll((Collection<HeldSessionEvent>) invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+        when(heldSessionEventRepository.lockBySessionIds(anyString())).thenAnswer(invocation -> {
+            Set<UUID> sessionIds = Arrays.stream(((String) invocation.getArgument(0)).split(","))
+                    .map(UUID::fromString)
+                    .collect(Collectors.toSet());
+            return select(held -> sessionIds.contains(held.getSessionId()));
+        });
+        when(heldSessionEventRepository.lockReady(anyInt()))
+                .thenAnswer(invocation -> select(held -> transactionTable.containsKey(held.getSessionId())));
+        doAnswer(invocation -> heldEventTable.removeAll((Collection<HeldSessionEvent>) invocation.getArgument(0)))
+                .when(heldSessionEventRepository).deleteAllInBatch(any());
+    }
+
+    @Test
+    void eventHeldBeforeRestartIsAppliedAfterIt() {
+        UUID sessionId = UUID.randomUUID();
+
+        // ENDED overtakes STARTED and carries no session details, so it is held
+        newInstance().applySessionEvents(List.of(ended(sessionId)));
+        assertThat(transactionTable).isEmpty();
+        assertThat(heldEventTable).hasSize(1);
+
+        // A restarted instance has nothing in memory; STARTED arrives and the held ENDED completes the session
+        newInstance().applySessionEvents(List.of(started(sessionId)));
+
+        ChargingTransaction transaction = transactionTable.get(sessionId);
+        assertThat(transaction.getStatus()).isNotEqualTo(TransactionStatus.PENDING);
+        assertThat(transaction.getEndTime()).isEqualTo(START_TIME.plusHours(1));
+        assertThat(transaction.getEnergyDeliveredKwh()).isEqualByComparingTo("22.5");
+        assertThat(heldEventTable).isEmpty();
+    }
+
+    @Test
+    void retryAppliesHeldEventsOnceTheirTransactionExists() {
+        UUID sessionId = UUID.randomUUID();
+        newInstance().applySessionEvents(List.of(ended(sessionId)));
+
+        // The transaction is created without a batch carrying the session's events
+        transactionTable.put(sessionId, ChargingTransaction.builder()
+                .id(UUID.randomUUID())
+                .sessionId(sessionId)
+                .startTime(START_TIME)
+                .status(TransactionStatus.PENDING)
+                .build());
+
+        newInstance().applyHeldEvents();
+
+        assertThat(transactionTable.get(sessionId).getEnergyDeliveredKwh()).isEqualByComparingTo("22.5");
+        assertThat(heldEventTable).isEmpty();
+    }
+
+    @Test
+    void startedSessionsOfABatchAreInsertedTogether() {
+        List<ChargingSessionEvent> batch = List.of(
+                started(UUID.randomUUID()), started(UUID.randomUUID()), started(UUID.randomUUID()));
+
+        int applied = newInstance().applySessionEvents(batch);
+
+        assertThat(applied).isEqualTo(3);
+        assertThat(transactionTable).hasSize(3);
+        verify(transactionRepository, times(1)).insertPendingIfAbsent(anyString(), any());
+    }
+
+    @Test
+    void completedSessionWithoutSubscriptionIsInvoicedByItself() {
+        UUID sessionId = UUID.randomUUID();
+        newInstance().applySessionEvents(List.of(started(sessionId)));
+        when(invoiceService.generateInvoiceForTransaction(any())).thenThrow(new IllegalStateException("invoicing failed"));
+
+        // A failing invoice does not undo the completion
+        newInstance().applySessionEvents(List.of(ended(sessionId)));
+
+        ChargingTransaction transaction = transactionTable.get(sessionId);
+        assertThat(transaction.getStatus()).isEqualTo(TransactionStatus.COMPLETED);
+        verify(invoiceService).generateInvoiceForTransaction(transaction.getId());
+    }
+
+    @Test
+    void eventsOfOtherSessionsStayHeld() {
+        UUID heldSessionId = UUID.randomUUID();
+        newInstance().applySessionEvents(List.of(ended(heldSessionId)));
+
+        newInstance().applySessionEvents(List.of(started(UUID.randomUUID())));
+
+        assertThat(heldEventTable).extracting(HeldSessionEvent::getSessionId).containsExactly(heldSessionId);
+    }
+
+    /**
+     * A fresh service instance, as after a restart, sharing only the tables
+     */
+    @SuppressWarnings("unchecked")
+    private TransactionServiceImpl newInstance() {
+        ProcessedEventFilter processedEventFilter = mock(ProcessedEventFilter.class);
+        when(processedEventFilter.claim(any()))
+                .thenAnswer(invocation -> new LinkedHashSet<>((Collection<UUID>) invocation.getArgument(0)));
+
+        return new TransactionServiceImpl(
+                transactionRepository,
+                mock(TariffEngine.class),
+                mock(SubscriptionService.class),
+                invoiceService,
+                mock(EventOutbox.class),
+                processedEventFilter,
+                new SessionEventReorderBuffer(heldSessionEventRepository, objectMapper, 500, 7),
+                mock(RevenueAnalyticsService.class),
+                objectMapper);
+    }
+
+    private List<HeldSessionEvent> select(Predicate<HeldSessionEvent> condition) {
+        return heldEventTable.stream().filter(condition).collect(Collectors.toList());
+    }
+
+    private static ChargingSessionEvent started(UUID sessionId) {
+        return ChargingSessionEvent.builder()
+                .eventId(UUID.randomUUID())
+                .sessionId(sessionId)
+                .eventType("STARTED")
+                .userId(UUID.randomUUID())
+                .stationId(UUID.randomUUID())
+                .connectorId(UUID.randomUUID())
+                .startTime(START_TIME)
+                .build();
+    }
+
+    private static ChargingSessionEvent ended(UUID sessionId) {
+        return ChargingSessionEvent.builder()
+                .eventId(UUID.randomUUID())
+                .sessionId(sessionId)
+                .eventType("ENDED")
+                .endTime(START_TIME.plusHours(1))
+                .energyDeliveredKwh(new BigDecimal("22.5"))
+                .durationSeconds(3600L)
+                .build();
+    }
+}
@@ -0,0 +1,125 @@
+package com.ev.billingservice.service.tariff;
+
+import com.ev.billingservice.model.BillingPlan;
+import com.ev.billingservice.repository.BillingPlanRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class TariffEngineTests {
+
+    private static final LocalDateTime MORNING = LocalDateTime.of(2024, 3, 1, 9, 30);
+
+    private final TariffEngine tariffEngine =
+            new TariffEngine(mock(BillingPlanRepository.class), new ObjectMapper(), 300);
+
+    @Test
+    void planWithoutTariffMatchesPlanRateCalculation() {
+        CompiledTariff tariff = tariffEngine.compile(plan(null));
+
+        assertThat(tariff.getCurrency()).isEqualTo("USD");
+        for (String energy : new String[]{"0", "0.001", "1.30", "7.5", "12.345", "48.999", "250"}) {
+            for (long seconds : new long[]{0, 1, 37, 59, 61, 1800, 3599, 7261, 86400}) {
+                BigDecimal energyKwh = new BigDecimal(energy);
+                assertThat(tariff.price(energyKwh, seconds, MORNING))
+                        .as("%s kWh over %d s", energy, seconds)
+                        .isEqualTo(planRateAmount(energyKwh, seconds, new BigDecimal("0.20"), new BigDecimal("0.01")));
+            }
+        }
+    }
+
+    @Test
+    void planRatesMatchPlanRateCalculation() {
+        CompiledTariff tariff = tariffEngine.compile(plan("{\"currency\": \"EUR\", \"energyRate\": 0.35, \"timeRate\": 0.02}"));
+
+        assertThat(tariff.getCurrency()).isEqualTo("EUR");
+        for (String energy : new String[]{"0.1", "1.30", "22.05", "63.7"}) {
+            for (long seconds : new long[]{30, 900, 5400, 12345}) {
+                BigDecimal energyKwh = new BigDecimal(energy);
+                assertThat(tariff.price(energyKwh, seconds, null))
+                        .as("%s kWh over %d s", energy, seconds)
+                        .isEqualTo(planRateAmount(energyKwh, seconds, new BigDecimal("0.35"), new BigDecimal("0.02")));
+            }
+        }
+    }
+
+    @Test
+    void halfCentsRoundUp() {
+        // 1.30 kWh at 0.35 is 0.455 exactly; computed in double it comes out as 0.45499... and rounds down
+        CompiledTariff tariff = tariffEngine.compile(plan("{\"energyRate\": 0.35, \"timeRate\": 0}"));
+
+        assertThat(tariff.price(new BigDecimal("1.30"), 0L, null)).isEqualByComparingTo("0.46");
+        assertThat(tariff.price(null, null, null)).isEqualByComparingTo("0.00");
+    }
+
+    @Test
+    void timeOfDayBandsSplitEnergyByDuration() {
+        CompiledTariff tariff = tariffEngine.compile(plan("{\"energyRate\": 0.30, \"timeRate\": 0,"
+                + " \"timeOfDayBands\": [{\"start\": \"17:00\", \"end\": \"21:00\", \"energyRate\": 0.50}]}"));
+
+        // 16:00 to 18:00: half the energy at the base rate, half at the evening rate
+        assertThat(tariff.price(new BigDecimal("20"), 7200L, LocalDateTime.of(2024, 3, 1, 16, 0)))
+                .isEqualByComparingTo("8.00");
+        // Entirely inside the band
+        assertThat(tariff.price(new BigDecimal("10"), 3600L, LocalDateTime.of(2024, 3, 1, 18, 0)))
+                .isEqualByComparingTo("5.00");
+    }
+
+    @Test
+    void bandsWrapMidnight() {
+        CompiledTariff tariff = tariffEngine.compile(plan("{\"energyRate\": 0.40, \"timeRate\": 0.01,"
+                + " \"timeOfDayBands\": [{\"start\": \"22:00\", \"end\": \"06:00\", \"energyRate\": 0.10, \"timeRate\": 0}]}"));
+
+        // 05:00 to 07:00: 10 kWh at 0.10 with no time charge, then 10 kWh at 0.40 plus 60 minutes at 0.01
+        assertThat(tariff.price(new BigDecimal("20"), 7200L, LocalDateTime.of(2024, 3, 1, 5, 0)))
+                .isEqualByComparingTo("5.60");
+        // 23:30 to 00:30 stays in the night band across midnight
+        assertThat(tariff.price(new BigDecimal("11"), 3600L, LocalDateTime.of(2024, 3, 1, 23, 30)))
+                .isEqualByComparingTo("1.10");
+    }
+
+    @Test
+    void sessionFeeParkingAndLimitsApply() {
+        CompiledTariff tariff = tariffEngine.compile(plan("{\"energyRate\": 0.30, \"timeRate\": 0, \"sessionFee\": 1.00,"
+                + " \"parking\": {\"ratePerMinute\": 0.10, \"graceMinutes\": 60},"
+                + " \"minSessionAmount\": 2.00, \"maxSessionAmount\": 50.00}"));
+
+        // Fee plus 3.00 of energy plus 30 minutes of parking
+        assertThat(tariff.price(new BigDecimal("10"), 5400L, null)).isEqualByComparingTo("7.00");
+        assertThat(tariff.price(new BigDecimal("1"), 600L, null)).isEqualByComparingTo("2.00");
+        assertThat(tariff.price(new BigDecimal("100"), 86400L, null)).isEqualByComparingTo("50.00");
+    }
+
+    @Test
+    void usageIsPricedPerUnit() {
+        CompiledTariff tariff = tariffEngine.compile(plan("{\"usageRates\": {\"API_CALLS\": 0.001, \"PREMIUM_FEATURES\": 2.00}}"));
+
+        assertThat(tariff.priceUsage("API_CALLS", new BigDecimal("12345"))).isEqualByComparingTo("12.35");
+        assertThat(tariff.priceUsage("PREMIUM_FEATURES", new BigDecimal("3"))).isEqualByComparingTo("6.00");
+        assertThat(tariff.priceUsage("STORAGE", new BigDecimal("3"))).isNull();
+    }
+
+    /**
+     * The amount the plan-rate calculation gave before tariffs were compiled, as stored with two decimals
+     */
+    private static BigDecimal planRateAmount(BigDecimal energyKwh, long seconds, BigDecimal energyRate, BigDecimal timeRate) {
+        BigDecimal energyCost = energyKwh.multiply(energyRate);
+        BigDecimal timeCost = BigDecimal.valueOf(seconds / 60.0).multiply(timeRate);
+        return energyCost.add(timeCost).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static BillingPlan plan(String features) {
+        return BillingPlan.builder()
+                .id(UUID.randomUUID())
+                .name("Test plan")
+                .features(features)
+                .build();
+    }
+}
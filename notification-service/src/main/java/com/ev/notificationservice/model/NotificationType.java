@@ -33,6 +33,7 @@ public enum NotificationType {
     INVOICE_PAID,
     INVOICE_OVERDUE,
     INVOICE_REMINDER,
+    INVOICE_SUSPENDED,
     
     // Station related notifications
     STATION_OFFLINE,
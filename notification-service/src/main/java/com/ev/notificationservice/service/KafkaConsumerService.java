@@ -196,8 +196,13 @@ public class KafkaConsumerService {
                     handleInvoicePaidEvent(event);
                     break;
                 case "OVERDUE":
+                case "FIRST_REMINDER":
+                case "FINAL_REMINDER":
                     handleInvoiceOverdueEvent(event);
                     break;
+                case "SUSPENDED":
+                    handleInvoiceSuspendedEvent(event);
+                    break;
             }
             
             acknowledgment.acknowledge();
@@ -578,6 +583,64 @@ public class KafkaConsumerService {
         }
     }
     
+    /**
+     * Handle invoice suspended event, sent once the charging service is suspended for the unpaid invoice
+     */
+    private void handleInvoiceSuspendedEvent(InvoiceEvent event) {
+        log.info("Processing invoice suspended event for invoice: {}", event.getInvoiceId());
+        
+        // Get user details
+        UserEvent user = userService.getUserById(event.getUserId());
+        if (user == null) {
+            log.error("User not found for invoice event: {}", event.getInvoiceId());
+            return;
+        }
+        
+        Map<String, Object> templateData = new HashMap<>();
+        templateData.put("firstName", user.getFirstName());
+        templateData.put("lastName", user.getLastName());
+        templateData.put("invoiceId", event.getInvoiceId());
+        templateData.put("invoiceNumber", event.getInvoiceNumber());
+        templateData.put("amount", formatAmount(event.getTotalAmount(), event.getCurrency()));
+        templateData.put("dueDate", event.getDueAt().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
+        templateData.put("daysOverdue", calculateDaysOverdue(event.getDueAt()));
+        templateData.put("invoiceUrl", event.getInvoiceUrl());
+        
+        NotificationEvent notificationEvent = NotificationEvent.builder()
+                .id(UUID.randomUUID())
+                .userId(event.getUserId())
+                .type(NotificationType.INVOICE_SUSPENDED)
+                .channel("email")
+                .recipient(user.getEmail())
+                .subject("Service Suspended: Invoice #" + event.getInvoiceNumber())
+                .templateId("invoice-suspended")
+                .templateData(templateData)
+                .priority(NotificationType.Priority.HIGH)
+                .timestamp(LocalDateTime.now())
+                .build();
+        
+        Notification notification = createNotificationFromEvent(notificationEvent);
+        notification.setSent(false);
+        
+        notification = notificationRepository.save(notification);
+        
+        boolean success = emailService.sendEmail(
+                user.getEmail(), 
+                "Service Suspended: Invoice #" + event.getInvoiceNumber(), 
+                null,
+                "invoice-suspended", 
+                templateData);
+        
+        if (success) {
+            notification.setSent(true);
+            notification.setSentAt(LocalDateTime.now());
+            notificationRepository.save(notification);
+            log.info("Invoice suspended email sent to user: {}", user.getEmail());
+        } else {
+            log.error("Failed to send invoice suspended email to user: {}", user.getEmail());
+        }
+    }
+    
     /**
      * Handle user created event
      */
@@ -0,0 +1,43 @@
+package com.ev.smartcharging.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Thread pools for work that runs off the request thread.
+ */
+@Configuration
+public class ExecutorConfig {
+
+    @Value("${smart-charging.optimizer.threads:4}")
+    private int optimizerThreads;
+
+    /**
+     * Plans charging groups in parallel
+     */
+    @Bean(name = "scheduleOptimizerExecutor")
+    public ThreadPoolTaskExecutor scheduleOptimizerExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(optimizerThreads);
+        executor.setMaxPoolSize(optimizerThreads);
+        executor.setThreadNamePrefix("schedule-optimizer-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Persists and audits emergency load sheds after the command has been sent
+     */
+    @Bean(name = "loadShedAuditExecutor")
+    public ThreadPoolTaskExecutor loadShedAuditExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("load-shed-audit-");
+        executor.initialize();
+        return executor;
+    }
+}
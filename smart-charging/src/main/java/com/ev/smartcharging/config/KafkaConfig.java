@@ -1,5 +1,6 @@
 package com.ev.smartcharging.config;
 
+import com.ev.smartcharging.dto.event.ChargingSessionEvent;
 import org.apache.kafka.clients.admin.AdminClientConfig;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
@@ -40,6 +41,7 @@ public class KafkaConfig {
     public static final String CHARGING_SESSION_EVENTS_TOPIC = "charging-session-events";
     public static final String POWER_DISTRIBUTION_EVENTS_TOPIC = "power-distribution-events";
     public static final String CHARGING_GROUP_EVENTS_TOPIC = "charging-group-events";
+    public static final String EMERGENCY_POWER_COMMANDS_TOPIC = "emergency-power-commands";
     
     // Consumer group for the smart charging service
     public static final String SMART_CHARGING_CONSUMER_GROUP = "smart-charging-service-group";
@@ -102,6 +104,42 @@ public class KafkaConfig {
         return factory;
     }
 
+    // Batch consumer for station-service session events
+    @Bean
+    public ConsumerFactory<String, ChargingSessionEvent> chargingSessionConsumerFactory() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, SMART_CHARGING_CONSUMER_GROUP);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.CLIENT_ID_CONFIG, applicationName + "-session-consumer");
+        
+        // Events are produced by station-service, so ignore its type headers
+        props.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, false);
+        props.put(JsonDeserializer.VALUE_DEFAULT_TYPE, ChargingSessionEvent.class.getName());
+        
+        // Larger polls so catch-up after downtime is applied in few batches
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 500);
+        props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, 100);
+        props.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, 300000); // 5 minutes
+        
+        return new DefaultKafkaConsumerFactory<>(props);
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, ChargingSessionEvent> chargingSessionBatchListenerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, ChargingSessionEvent> factory = 
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(chargingSessionConsumerFactory());
+        factory.setBatchListener(true);
+        factory.setConcurrency(3);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.setCommonErrorHandler(new DefaultErrorHandler(new FixedBackOff(1000L, 3)));
+        return factory;
+    }
+
     // Topic creation with Kafka Admin
     @Bean
     public KafkaAdmin kafkaAdmin() {
@@ -129,4 +167,9 @@ public class KafkaConfig {
     public NewTopic chargingGroupEventsTopic() {
         return new NewTopic(CHARGING_GROUP_EVENTS_TOPIC, 3, (short) 1);
     }
-} 
\ No newline at end of file
+
+    @Bean
+    public NewTopic emergencyPowerCommandsTopic() {
+        return new NewTopic(EMERGENCY_POWER_COMMANDS_TOPIC, 3, (short) 1);
+    }
+}
@@ -1,17 +1,21 @@
 package com.ev.smartcharging.controller;
 
+import com.ev.smartcharging.dto.ChargingScheduleDto;
 import com.ev.smartcharging.dto.ChargingStationDto;
+import com.ev.smartcharging.dto.SessionForecastDto;
 import com.ev.smartcharging.model.SessionStatus;
-import com.ev.smartcharging.service.KafkaProducerService;
+import com.ev.smartcharging.service.ChargingScheduleOptimizer;
+import com.ev.smartcharging.service.EmergencyLoadShedService;
 import com.ev.smartcharging.service.SmartChargingService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/v1/smart-charging")
@@ -19,7 +23,8 @@ import java.util.stream.Collectors;
 public class SmartChargingController {
 
     private final SmartChargingService smartChargingService;
-    private final KafkaProducerService kafkaProducerService;
+    private final ChargingScheduleOptimizer chargingScheduleOptimizer;
+    private final EmergencyLoadShedService emergencyLoadShedService;
 
     @PostMapping("/groups/{groupId}/allocate-power")
     @PreAuthorize("hasRole('ROLE_admin')")
@@ -51,6 +56,10 @@ public class SmartChargingController {
         return ResponseEntity.ok(stations);
     }
 
+    /**
+     * Manual session start notification. Station-service sessions normally arrive
+     * through the charging-session-events topic instead.
+     */
     @PostMapping("/sessions/{sessionId}/started")
     @PreAuthorize("hasAnyRole('ROLE_admin', 'ROLE_operator')")
     public ResponseEntity<Boolean> handleSessionStarted(
@@ -62,6 +71,10 @@ public class SmartChargingController {
         return ResponseEntity.ok(success);
     }
 
+    /**
+     * Manual session end notification. Station-service sessions normally arrive
+     * through the charging-session-events topic instead.
+     */
     @PostMapping("/sessions/{sessionId}/ended")
     @PreAuthorize("hasAnyRole('ROLE_admin', 'ROLE_operator')")
     public ResponseEntity<Boolean> handleSessionEnded(@PathVariable UUID sessionId) {
@@ -69,6 +82,20 @@ public class SmartChargingController {
         return ResponseEntity.ok(success);
     }
     
+    /**
+     * Endpoint for planning day-ahead charging schedules.
+     * Expected sessions are spread over the cheapest time-of-use windows within group limits.
+     */
+    @PostMapping("/day-ahead-schedule")
+    @PreAuthorize("hasAnyRole('ROLE_admin', 'ROLE_operator')")
+    public ResponseEntity<List<ChargingScheduleDto>> planDayAheadSchedule(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(defaultValue = "true") boolean publish,
+            @RequestBody List<SessionForecastDto> forecasts) {
+        List<ChargingScheduleDto> schedules = chargingScheduleOptimizer.optimizeDayAhead(date, forecasts, publish);
+        return ResponseEntity.ok(schedules);
+    }
+    
     /**
      * Endpoint for emergency power reduction for a station.
      * This will immediately reduce power to the specified limit for a duration.
@@ -81,7 +108,7 @@ public class SmartChargingController {
             @RequestParam Double powerLimitKW,
             @RequestParam(defaultValue = "300") Integer durationSeconds) {
         
-        UUID eventId = kafkaProducerService.sendEmergencyPowerReduction(
+        UUID eventId = emergencyLoadShedService.shedStationLoad(
                 stationId, connectorId, powerLimitKW, durationSeconds);
         
         return ResponseEntity.ok(eventId);
@@ -89,7 +116,9 @@ public class SmartChargingController {
     
     /**
      * Endpoint for group-wide emergency power reduction.
-     * This will reduce power for all stations in the group.
+     * Reduced limits for all stations in the group are sent as one command;
+     * the session allocations are persisted afterwards.
+     * Returns one event ID per station, as before the limits were batched.
      */
     @PostMapping("/groups/{groupId}/emergency-reduction")
     @PreAuthorize("hasRole('ROLE_admin')")
@@ -98,25 +127,13 @@ public class SmartChargingController {
             @RequestParam Double powerReductionPercentage,
             @RequestParam(defaultValue = "300") Integer durationSeconds) {
         
-        // Calculate reduced power for each station in the group
-        List<ChargingStationDto> stations = smartChargingService.calculateOptimalPowerAllocation(groupId);
+        if (powerReductionPercentage < 0 || powerReductionPercentage > 100) {
+            return ResponseEntity.badRequest().build();
+        }
         
-        List<UUID> eventIds = stations.stream()
-                .map(station -> {
-                    // Calculate reduced power (at most the specified percentage of max power)
-                    double reducedPower = station.getMaxPowerKW() * (100 - powerReductionPercentage) / 100;
-                    // Ensure it's not negative
-                    reducedPower = Math.max(0.0, reducedPower);
-                    
-                    // Send emergency reduction command
-                    return kafkaProducerService.sendEmergencyPowerReduction(
-                            UUID.fromString(station.getId().toString()), // FIX: Convert UUID to String then back to ensure it's a proper UUID
-                            null, // Apply to whole station
-                            reducedPower,
-                            durationSeconds);
-                })
-                .collect(Collectors.toList()); // FIX: Use collect instead of toList to ensure proper type conversion
+        List<UUID> eventIds = emergencyLoadShedService.shedGroupLoad(
+                groupId, powerReductionPercentage, durationSeconds);
         
         return ResponseEntity.ok(eventIds);
     }
-} 
\ No newline at end of file
+}
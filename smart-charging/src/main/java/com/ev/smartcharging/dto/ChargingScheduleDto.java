@@ -0,0 +1,31 @@
+package com.ev.smartcharging.dto;
+
+import com.ev.smartcharging.dto.event.PowerDistributionEvent;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Planned power schedule for a single charging session.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChargingScheduleDto {
+    private UUID sessionId;
+    private UUID transactionId;
+    private UUID stationId;
+    private Integer connectorId;
+    private UUID chargingGroupId;
+    private LocalDateTime scheduleStart;
+    private List<PowerDistributionEvent.ChargingSchedulePeriod> periods;
+    private Double energyScheduledKWh;
+    private Double unmetEnergyKWh;
+    private Double relativeCost;
+}
@@ -0,0 +1,28 @@
+package com.ev.smartcharging.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Expected charging session used as input for day-ahead schedule planning.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionForecastDto {
+    private UUID sessionId;
+    // Set when the session has already started, so its schedule can be bound to the transaction
+    private UUID transactionId;
+    private UUID stationId;
+    private Integer connectorId;
+    private LocalDateTime arrivalTime;
+    private LocalDateTime departureTime;
+    private Double energyRequiredKWh;
+    private Double maxPowerKW;
+}
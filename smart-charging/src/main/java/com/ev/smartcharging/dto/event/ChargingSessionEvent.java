@@ -0,0 +1,87 @@
+package com.ev.smartcharging.dto.event;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Event received from station-service when a charging session changes state.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ChargingSessionEvent {
+    
+    /**
+     * Unique identifier for the event
+     */
+    private UUID eventId;
+    
+    /**
+     * ID of the charging session
+     */
+    private UUID sessionId;
+    
+    /**
+     * ID of the station
+     */
+    private UUID stationId;
+    
+    /**
+     * ID of the connector
+     */
+    private Integer connectorId;
+    
+    /**
+     * Type of event (STARTED, UPDATED, ENDED)
+     */
+    private String eventType;
+    
+    /**
+     * ID of the user who initiated the session
+     */
+    private UUID userId;
+    
+    /**
+     * Session status as reported by station-service
+     */
+    private String sessionStatus;
+    
+    /**
+     * Timestamp when the session started
+     */
+    private LocalDateTime startTime;
+    
+    /**
+     * Timestamp when the session ended (null if still active)
+     */
+    private LocalDateTime endTime;
+    
+    /**
+     * Timestamp when this event was created
+     */
+    private LocalDateTime timestamp;
+    
+    /**
+     * Energy consumed in kWh so far
+     */
+    private BigDecimal energyDeliveredKwh;
+    
+    /**
+     * Duration of the session in seconds so far
+     */
+    private Long durationSeconds;
+    
+    /**
+     * Reason for ending the session (if applicable)
+     */
+    private String stopReason;
+}
@@ -0,0 +1,85 @@
+package com.ev.smartcharging.dto.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compact command carrying power limits for many stations at once.
+ * Used for emergency load shedding, where one message replaces a per-session event fan-out.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GroupPowerCommandEvent {
+    
+    /**
+     * Unique identifier for the command
+     */
+    private UUID commandId;
+    
+    /**
+     * Charging group the command applies to (null for a single station)
+     */
+    private UUID groupId;
+    
+    /**
+     * Reason for the power adjustment
+     */
+    private PowerDistributionEvent.PowerAdjustmentReason reason;
+    
+    /**
+     * Priority level of this command (higher priority commands override lower ones)
+     */
+    private int priority;
+    
+    /**
+     * How long the limits apply, in seconds
+     */
+    private Integer durationSeconds;
+    
+    /**
+     * Epoch milliseconds when the command was issued, on the issuing host's clock; for audit only
+     */
+    private long issuedAtEpochMillis;
+    
+    /**
+     * New limit per station or connector
+     */
+    private List<StationPowerLimit> limits;
+    
+    /**
+     * Power limit for one station or connector
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class StationPowerLimit {
+        
+        /**
+         * Identifier of this limit, as returned to the client that requested the shed
+         */
+        private UUID eventId;
+        
+        /**
+         * Station ID to which the limit is directed
+         */
+        private UUID stationId;
+        
+        /**
+         * Connector ID (null for whole station control)
+         */
+        private Integer connectorId;
+        
+        /**
+         * New power limit in kW
+         */
+        private Double powerLimitKW;
+    }
+}
@@ -5,5 +5,6 @@ public enum LoadBalancingStrategy {
     FIRST_COME_FIRST_SERVE, // Prioritize based on connection order
     PRIORITY_BASED,   // Prioritize based on user or vehicle priority
     DYNAMIC,          // Dynamically adjust based on real-time grid conditions
-    TIME_OF_USE       // Adjust based on time-of-day electricity pricing
+    TIME_OF_USE,      // Adjust based on time-of-day electricity pricing
+    CLOSED_LOOP       // Reallocate headroom left unused by sessions drawing less than allocated
 } 
\ No newline at end of file
@@ -1,8 +1,19 @@
 package com.ev.smartcharging.model;
 
 public enum PriceTier {
-    OFF_PEAK,      // Lowest electricity price
-    SHOULDER,      // Medium electricity price
-    PEAK,          // Highest electricity price
-    DYNAMIC        // Price varies based on real-time grid conditions
-} 
\ No newline at end of file
+    OFF_PEAK(1.0),      // Lowest electricity price
+    SHOULDER(2.0),      // Medium electricity price
+    PEAK(3.0),          // Highest electricity price
+    DYNAMIC(2.0);       // Price varies based on real-time grid conditions
+
+    // Relative cost of one kWh in this tier, used when planning schedules across tiers
+    private final double costWeight;
+
+    PriceTier(double costWeight) {
+        this.costWeight = costWeight;
+    }
+
+    public double getCostWeight() {
+        return costWeight;
+    }
+}
@@ -0,0 +1,28 @@
+package com.ev.smartcharging.service;
+
+import com.ev.smartcharging.dto.ChargingScheduleDto;
+import com.ev.smartcharging.dto.SessionForecastDto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Plans day-ahead charging schedules across time-of-use price windows.
+ */
+public interface ChargingScheduleOptimizer {
+
+    /**
+     * Length of a single schedule slot in minutes
+     */
+    int SLOT_MINUTES = 15;
+
+    /**
+     * Builds 15-minute power schedules for the expected sessions of a day, minimizing cost
+     * while respecting group limits and session energy targets. Groups are planned in parallel.
+     * @param date The day to plan
+     * @param forecasts The expected sessions with departure time and energy need
+     * @param publish Whether to send the schedules to the stations, merged into one per connector
+     * @return The planned schedule per session
+     */
+    List<ChargingScheduleDto> optimizeDayAhead(LocalDate date, List<SessionForecastDto> forecasts, boolean publish);
+}
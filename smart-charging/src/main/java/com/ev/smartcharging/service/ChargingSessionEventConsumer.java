@@ -0,0 +1,43 @@
+package com.ev.smartcharging.service;
+
+import com.ev.smartcharging.config.KafkaConfig;
+import com.ev.smartcharging.dto.event.ChargingSessionEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Kafka consumer for charging session events coming from station-service.
+ * Keeps the smart charging session table and group allocations in sync without REST callbacks,
+ * and catches up after downtime by replaying the topic.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChargingSessionEventConsumer {
+    
+    private final SmartChargingService smartChargingService;
+    
+    /**
+     * Listen for batches of charging session events from station-service.
+     * 
+     * @param events The session events received in one poll
+     * @param acknowledgment The Kafka acknowledgment callback
+     */
+    @KafkaListener(
+            topics = KafkaConfig.CHARGING_SESSION_EVENTS_TOPIC,
+            groupId = KafkaConfig.SMART_CHARGING_CONSUMER_GROUP,
+            containerFactory = "chargingSessionBatchListenerFactory"
+    )
+    public void consumeChargingSessionEvents(List<ChargingSessionEvent> events, Acknowledgment acknowledgment) {
+        log.debug("Received batch of {} charging session events", events.size());
+        
+        // Failures propagate to the error handler so the whole batch is retried; upserts make that safe
+        smartChargingService.applySessionEvents(events);
+        acknowledgment.acknowledge();
+    }
+}
@@ -0,0 +1,39 @@
+package com.ev.smartcharging.service;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Fast path for shedding load during grid emergencies.
+ * Limits are computed in memory and sent as one compact command; persistence and audit happen afterwards.
+ */
+public interface EmergencyLoadShedService {
+
+    /**
+     * Reduces every station of a group to a share of its maximum power.
+     * @param groupId The ID of the charging group
+     * @param reductionPercentage How much to reduce by, in percent of station maximum power (0 to 100)
+     * @param durationSeconds How long the reduction applies
+     * @return The IDs of the limits sent to station-service, one per station; empty if the group has no
+     *         enabled stations, in which case nothing is sent
+     * @throws IllegalArgumentException If the reduction is outside 0 to 100 percent
+     */
+    List<UUID> shedGroupLoad(UUID groupId, double reductionPercentage, int durationSeconds);
+
+    /**
+     * Reduces a single station or connector to a fixed power limit.
+     * @param stationId The ID of the charging station
+     * @param connectorId The ID of the connector (null for whole station)
+     * @param powerLimitKW The reduced power limit in kW
+     * @param durationSeconds How long the reduction applies
+     * @return The ID of the limit sent to station-service
+     */
+    UUID shedStationLoad(UUID stationId, Integer connectorId, double powerLimitKW, int durationSeconds);
+
+    /**
+     * Drops the station capacities kept for a group once the current transaction commits, or right away
+     * outside a transaction, so the next shed reads the group's stations again.
+     * @param groupId The ID of the charging group whose stations changed
+     */
+    void evictGroupAfterCommit(UUID groupId);
+}
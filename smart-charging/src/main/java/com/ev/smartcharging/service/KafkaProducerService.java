@@ -1,7 +1,10 @@
 package com.ev.smartcharging.service;
 
+import com.ev.smartcharging.dto.event.GroupPowerCommandEvent;
 import com.ev.smartcharging.dto.event.PowerDistributionEvent;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -50,4 +53,27 @@ public interface KafkaProducerService {
             Integer connectorId,
             Double powerLimitKW,
             Integer durationSeconds);
-} 
\ No newline at end of file
+    
+    /**
+     * Sends a multi-period charging schedule to a station or connector.
+     * @param stationId The ID of the charging station
+     * @param connectorId The ID of the connector (null for whole station)
+     * @param scheduleStart The start of the schedule
+     * @param periods The schedule periods relative to the start
+     * @param transactionId Optional transaction ID if related to a specific session
+     * @return The ID of the created event
+     */
+    UUID sendChargingSchedule(
+            UUID stationId,
+            Integer connectorId,
+            LocalDateTime scheduleStart,
+            List<PowerDistributionEvent.ChargingSchedulePeriod> periods,
+            UUID transactionId);
+    
+    /**
+     * Sends a group-level power command covering many stations in a single message.
+     * @param command The command to send
+     * @return A completable future that completes when the broker has acknowledged the command
+     */
+    CompletableFuture<Void> sendGroupPowerCommand(GroupPowerCommandEvent command);
+}
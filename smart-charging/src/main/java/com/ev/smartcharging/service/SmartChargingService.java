@@ -1,6 +1,7 @@
 package com.ev.smartcharging.service;
 
 import com.ev.smartcharging.dto.ChargingStationDto;
+import com.ev.smartcharging.dto.event.ChargingSessionEvent;
 import com.ev.smartcharging.model.SessionStatus;
 
 import java.util.List;
@@ -53,4 +54,12 @@ public interface SmartChargingService {
      * @return True if the session end was successfully processed
      */
     boolean handleSessionEnded(UUID sessionId);
-} 
\ No newline at end of file
+    
+    /**
+     * Applies a batch of charging session events from station-service.
+     * Events are collapsed per session and upserted idempotently, so redelivered or replayed batches are safe.
+     * @param events The session events in topic order
+     * @return The number of sessions that were inserted or changed
+     */
+    int applySessionEvents(List<ChargingSessionEvent> events);
+}
@@ -0,0 +1,97 @@
+package com.ev.smartcharging.service.allocation;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps an exponentially smoothed estimate of the power each session actually draws.
+ * The draw is derived from successive energy readings reported by station-service,
+ * so no extra meter data needs to be published.
+ */
+@Component
+public class ConsumptionTracker {
+
+    // Readings closer together than this are too noisy to derive power from
+    private static final long MIN_INTERVAL_SECONDS = 10;
+
+    private final Map<UUID, DrawEstimate> estimates = new ConcurrentHashMap<>();
+    private final double smoothingFactor;
+
+    public ConsumptionTracker(@Value("${smart-charging.closed-loop.smoothing-factor:0.3}") double smoothingFactor) {
+        this.smoothingFactor = smoothingFactor;
+    }
+
+    /**
+     * Records a cumulative energy reading for a session.
+     * @param sessionId The ID of the charging session
+     * @param energyKWh Energy delivered so far in kWh
+     * @param timestamp When the reading was taken
+     */
+    public void recordEnergy(UUID sessionId, double energyKWh, LocalDateTime timestamp) {
+        if (sessionId == null || timestamp == null) {
+            return;
+        }
+        estimates.compute(sessionId, (id, estimate) -> {
+            if (estimate == null) {
+                return new DrawEstimate(energyKWh, timestamp, null);
+            }
+            long seconds = Duration.between(estimate.timestamp, timestamp).getSeconds();
+            if (seconds < MIN_INTERVAL_SECONDS || energyKWh < estimate.energyKWh) {
+                // Out-of-order, duplicate or too-close reading; keep the current estimate
+                return estimate;
+            }
+            double sampleKW = (energyKWh - estimate.energyKWh) * 3600.0 / seconds;
+            Double smoothed = estimate.smoothedKW == null
+                    ? sampleKW
+                    : smoothingFactor * sampleKW + (1 - smoothingFactor) * estimate.smoothedKW;
+            return new DrawEstimate(energyKWh, timestamp, smoothed);
+        });
+    }
+
+    /**
+     * Returns the smoothed measured draw of the given sessions that have one.
+     * @param sessionIds The session IDs
+     * @return Measured draw in kW per session ID
+     */
+    public Map<UUID, Double> measuredDrawKW(Collection<UUID> sessionIds) {
+        Map<UUID, Double> draws = new HashMap<>();
+        for (UUID sessionId : sessionIds) {
+            DrawEstimate estimate = estimates.get(sessionId);
+            if (estimate != null && estimate.smoothedKW != null) {
+                draws.put(sessionId, estimate.smoothedKW);
+            }
+        }
+        return draws;
+    }
+
+    /**
+     * Drops the estimate of a finished session.
+     * @param sessionId The session ID
+     */
+    public void forget(UUID sessionId) {
+        estimates.remove(sessionId);
+    }
+
+    /**
+     * Latest reading and smoothed draw of one session
+     */
+    private static class DrawEstimate {
+        private final double energyKWh;
+        private final LocalDateTime timestamp;
+        private final Double smoothedKW;
+
+        DrawEstimate(double energyKWh, LocalDateTime timestamp, Double smoothedKW) {
+            this.energyKWh = energyKWh;
+            this.timestamp = timestamp;
+            this.smoothedKW = smoothedKW;
+        }
+    }
+}
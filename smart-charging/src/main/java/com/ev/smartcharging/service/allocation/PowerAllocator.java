@@ -0,0 +1,229 @@
+package com.ev.smartcharging.service.allocation;
+
+import com.ev.smartcharging.model.ChargingSession;
+import com.ev.smartcharging.model.LoadBalancingStrategy;
+import com.ev.smartcharging.model.PowerProfile;
+import com.ev.smartcharging.model.SessionStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Pure in-memory implementation of the load balancing strategies.
+ * Sets allocated power and status on the given sessions without touching the database,
+ * so the same code runs in the service, the simulator and the benchmarks.
+ */
+@Component
+public class PowerAllocator {
+
+    // Measured draw below this share of the allocation means the vehicle is tapering
+    private static final double TAPER_THRESHOLD = 0.8;
+
+    // Measured draw at or above this share of the allocation means the vehicle wants more
+    private static final double RAMP_UP_THRESHOLD = 0.95;
+
+    // Allocation growth per reallocation while ramping back up
+    private static final double RAMP_UP_FACTOR = 1.25;
+
+    // Margin kept above the measured draw of a tapering vehicle
+    private static final double HEADROOM_FACTOR = 1.1;
+
+    // Lowest cap for a tapering vehicle so it can still signal that it wants more
+    private static final double MIN_CAPPED_POWER_KW = 1.4;
+
+    /**
+     * Distributes group power among the given sessions using the given strategy.
+     * @param strategy The load balancing strategy
+     * @param groupMaxPowerKW The maximum power of the group
+     * @param sessions The active sessions; may be reordered
+     * @param activeProfile The power profile active right now, used by TIME_OF_USE (may be null)
+     * @return The total power allocated
+     */
+    public double allocate(LoadBalancingStrategy strategy, double groupMaxPowerKW,
+                           List<ChargingSession> sessions, PowerProfile activeProfile) {
+        return allocate(strategy, groupMaxPowerKW, sessions, activeProfile, Collections.emptyMap());
+    }
+
+    /**
+     * Distributes group power among the given sessions using the given strategy.
+     * @param strategy The load balancing strategy
+     * @param groupMaxPowerKW The maximum power of the group
+     * @param sessions The active sessions; may be reordered
+     * @param activeProfile The power profile active right now, used by TIME_OF_USE (may be null)
+     * @param measuredDrawKW Smoothed measured draw per session ID, used by CLOSED_LOOP
+     * @return The total power allocated
+     */
+    public double allocate(LoadBalancingStrategy strategy, double groupMaxPowerKW,
+                           List<ChargingSession> sessions, PowerProfile activeProfile,
+                           Map<UUID, Double> measuredDrawKW) {
+        switch (strategy) {
+            case ROUND_ROBIN:
+                return allocateRoundRobin(groupMaxPowerKW, sessions);
+            case FIRST_COME_FIRST_SERVE:
+                return allocateFirstComeFirstServe(groupMaxPowerKW, sessions);
+            case PRIORITY_BASED:
+                return allocatePriorityBased(groupMaxPowerKW, sessions);
+            case DYNAMIC:
+                return allocateDynamic(groupMaxPowerKW, sessions);
+            case TIME_OF_USE:
+                return allocateTimeOfUse(groupMaxPowerKW, sessions, activeProfile);
+            case CLOSED_LOOP:
+                return allocateClosedLoop(groupMaxPowerKW, sessions, measuredDrawKW);
+            default:
+                throw new IllegalArgumentException("Unsupported load balancing strategy: " + strategy);
+        }
+    }
+
+    private double allocateRoundRobin(double totalPower, List<ChargingSession> sessions) {
+        double powerPerSession = totalPower / sessions.size();
+        double allocatedPower = 0.0;
+
+        for (ChargingSession session : sessions) {
+            // Limit power to the session's max power
+            double sessionPower = Math.min(powerPerSession, session.getMaxPowerKW());
+
+            session.setAllocatedPowerKW(sessionPower);
+            session.setSessionStatus(SessionStatus.ACTIVE);
+
+            allocatedPower += sessionPower;
+        }
+
+        return allocatedPower;
+    }
+
+    private double allocateFirstComeFirstServe(double totalPower, List<ChargingSession> sessions) {
+        // Sort sessions by start time (earliest first)
+        sessions.sort(Comparator.comparing(ChargingSession::getStartTime));
+
+        return allocateInOrder(totalPower, sessions, null);
+    }
+
+    private double allocatePriorityBased(double totalPower, List<ChargingSession> sessions) {
+        // Sort sessions by priority (lowest number = highest priority)
+        sessions.sort(Comparator.comparing(ChargingSession::getPriorityLevel,
+                Comparator.nullsLast(Comparator.naturalOrder())));
+
+        return allocateInOrder(totalPower, sessions, null);
+    }
+
+    private double allocateDynamic(double totalPower, List<ChargingSession> sessions) {
+        // This is a placeholder for a more complex dynamic allocation strategy
+        // In a real implementation, this would take into account grid conditions,
+        // energy prices, and other real-time factors
+
+        // For now, default to priority-based allocation
+        return allocatePriorityBased(totalPower, sessions);
+    }
+
+    private double allocateTimeOfUse(double totalPower, List<ChargingSession> sessions, PowerProfile activeProfile) {
+        // If no active profile, fall back to priority-based
+        if (activeProfile == null) {
+            return allocatePriorityBased(totalPower, sessions);
+        }
+
+        // Modify total power based on profile
+        if (activeProfile.getMaxPowerKW() != null) {
+            totalPower = Math.min(totalPower, activeProfile.getMaxPowerKW());
+        }
+
+        // Sort sessions by priority
+        sessions.sort(Comparator.comparing(ChargingSession::getPriorityLevel,
+                Comparator.nullsLast(Comparator.naturalOrder())));
+
+        return allocateInOrder(totalPower, sessions, activeProfile.getMinPowerKW());
+    }
+
+    private double allocateClosedLoop(double totalPower, List<ChargingSession> sessions,
+                                      Map<UUID, Double> measuredDrawKW) {
+        int count = sessions.size();
+        double[] demand = new double[count];
+        Integer[] order = new Integer[count];
+
+        for (int i = 0; i < count; i++) {
+            ChargingSession session = sessions.get(i);
+            demand[i] = estimateDemand(session, measuredDrawKW.get(session.getId()));
+            order[i] = i;
+        }
+
+        // Max-min fair water-filling: the smallest demands are satisfied first and
+        // whatever they leave unused is shared among the rest
+        Arrays.sort(order, Comparator.comparingDouble(i -> demand[i]));
+
+        double remainingPower = totalPower;
+        double allocatedPower = 0.0;
+        for (int k = 0; k < count; k++) {
+            ChargingSession session = sessions.get(order[k]);
+            double fairShare = remainingPower / (count - k);
+            double sessionPower = Math.max(0.0, Math.min(demand[order[k]], fairShare));
+
+            session.setAllocatedPowerKW(sessionPower);
+            session.setSessionStatus(sessionPower > 0 ? SessionStatus.ACTIVE : SessionStatus.PAUSED);
+
+            remainingPower -= sessionPower;
+            allocatedPower += sessionPower;
+        }
+
+        return allocatedPower;
+    }
+
+    /**
+     * Estimates how much power a session can actually use from its previous allocation and measured draw.
+     * The band between the taper and ramp-up thresholds holds the previous allocation to avoid oscillation.
+     */
+    private double estimateDemand(ChargingSession session, Double measuredKW) {
+        double maxPower = session.getMaxPowerKW();
+        double previous = session.getAllocatedPowerKW() != null ? session.getAllocatedPowerKW() : 0.0;
+
+        if (measuredKW == null || previous <= 0) {
+            // Nothing to go on yet, so assume the vehicle takes its full rate
+            return maxPower;
+        }
+
+        double demand;
+        if (measuredKW < previous * TAPER_THRESHOLD) {
+            demand = Math.max(MIN_CAPPED_POWER_KW, measuredKW * HEADROOM_FACTOR);
+        } else if (measuredKW >= previous * RAMP_UP_THRESHOLD) {
+            demand = previous * RAMP_UP_FACTOR;
+        } else {
+            demand = previous;
+        }
+
+        return Math.min(maxPower, demand);
+    }
+
+    /**
+     * Fills sessions in list order up to their maximum until the group power is used up.
+     */
+    private double allocateInOrder(double totalPower, List<ChargingSession> sessions, Double minPowerKW) {
+        double allocatedPower = 0.0;
+
+        for (ChargingSession session : sessions) {
+            if (allocatedPower >= totalPower) {
+                // No more power to allocate
+                session.setAllocatedPowerKW(0.0);
+                session.setSessionStatus(SessionStatus.PAUSED);
+            } else {
+                // Allocate up to the session's maximum or remaining power
+                double remainingPower = totalPower - allocatedPower;
+                double sessionPower = Math.min(remainingPower, session.getMaxPowerKW());
+
+                // Ensure minimum power if specified in profile
+                if (minPowerKW != null && sessionPower > 0) {
+                    sessionPower = Math.max(sessionPower, minPowerKW);
+                }
+
+                session.setAllocatedPowerKW(sessionPower);
+                session.setSessionStatus(sessionPower > 0 ? SessionStatus.ACTIVE : SessionStatus.PAUSED);
+
+                allocatedPower += sessionPower;
+            }
+        }
+
+        return allocatedPower;
+    }
+}
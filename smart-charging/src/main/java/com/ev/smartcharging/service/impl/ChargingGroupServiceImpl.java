@@ -7,6 +7,7 @@ import com.ev.smartcharging.model.LoadBalancingStrategy;
 import com.ev.smartcharging.repository.ChargingGroupRepository;
 import com.ev.smartcharging.repository.ChargingStationRepository;
 import com.ev.smartcharging.service.ChargingGroupService;
+import com.ev.smartcharging.service.EmergencyLoadShedService;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -22,6 +23,7 @@ public class ChargingGroupServiceImpl implements ChargingGroupService {
 
     private final ChargingGroupRepository chargingGroupRepository;
     private final ChargingStationRepository chargingStationRepository;
+    private final EmergencyLoadShedService emergencyLoadShedService;
 
     @Override
     public List<ChargingGroupDto> getAllChargingGroups() {
@@ -82,6 +84,7 @@ public class ChargingGroupServiceImpl implements ChargingGroupService {
         });
         
         chargingGroupRepository.deleteById(id);
+        emergencyLoadShedService.evictGroupAfterCommit(id);
     }
 
     @Override
@@ -107,8 +110,12 @@ public class ChargingGroupServiceImpl implements ChargingGroupService {
         ChargingStation station = chargingStationRepository.findById(stationId)
                 .orElseThrow(() -> new EntityNotFoundException("Charging station not found with id: " + stationId));
         
+        if (station.getChargingGroup() != null) {
+            emergencyLoadShedService.evictGroupAfterCommit(station.getChargingGroup().getId());
+        }
         station.setChargingGroup(group);
         chargingStationRepository.save(station);
+        emergencyLoadShedService.evictGroupAfterCommit(groupId);
     }
 
     @Override
@@ -123,6 +130,7 @@ public class ChargingGroupServiceImpl implements ChargingGroupService {
         if (station.getChargingGroup() != null && station.getChargingGroup().getId().equals(groupId)) {
             station.setChargingGroup(null);
             chargingStationRepository.save(station);
+            emergencyLoadShedService.evictGroupAfterCommit(groupId);
         } else {
             throw new IllegalStateException("Station does not belong to the specified group");
         }
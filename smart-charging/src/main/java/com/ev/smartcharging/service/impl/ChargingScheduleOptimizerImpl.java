@@ -0,0 +1,384 @@
+package com.ev.smartcharging.service.impl;
+
+import com.ev.smartcharging.dto.ChargingScheduleDto;
+import com.ev.smartcharging.dto.SessionForecastDto;
+import com.ev.smartcharging.dto.event.PowerDistributionEvent;
+import com.ev.smartcharging.model.ChargingGroup;
+import com.ev.smartcharging.model.ChargingStation;
+import com.ev.smartcharging.model.PowerProfile;
+import com.ev.smartcharging.model.PriceTier;
+import com.ev.smartcharging.repository.ChargingStationRepository;
+import com.ev.smartcharging.repository.PowerProfileRepository;
+import com.ev.smartcharging.service.ChargingScheduleOptimizer;
+import com.ev.smartcharging.service.KafkaProducerService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Greedy day-ahead planner. Sessions are planned in order of least laxity and each one
+ * takes the cheapest remaining 15-minute slots inside its stay until its energy target is met.
+ * Schedules are returned per session but published per connector, since a station keeps a single
+ * day-ahead profile per connector.
+ */
+@Service
+@Slf4j
+public class ChargingScheduleOptimizerImpl implements ChargingScheduleOptimizer {
+
+    private static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+    private static final double SLOT_HOURS = SLOT_MINUTES / 60.0;
+    private static final double EPSILON = 1e-6;
+
+    private final ChargingStationRepository chargingStationRepository;
+    private final PowerProfileRepository powerProfileRepository;
+    private final KafkaProducerService kafkaProducerService;
+    private final Executor scheduleOptimizerExecutor;
+
+    public ChargingScheduleOptimizerImpl(
+            ChargingStationRepository chargingStationRepository,
+            PowerProfileRepository powerProfileRepository,
+            KafkaProducerService kafkaProducerService,
+            @Qualifier("scheduleOptimizerExecutor") Executor scheduleOptimizerExecutor) {
+        this.chargingStationRepository = chargingStationRepository;
+        this.powerProfileRepository = powerProfileRepository;
+        this.kafkaProducerService = kafkaProducerService;
+        this.scheduleOptimizerExecutor = scheduleOptimizerExecutor;
+    }
+
+    @Override
+    public List<ChargingScheduleDto> optimizeDayAhead(LocalDate date, List<SessionForecastDto> forecasts, boolean publish) {
+        if (forecasts == null || forecasts.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        long startNanos = System.nanoTime();
+        LocalDateTime dayStart = date.atStartOfDay();
+
+        // Load everything from the database up front so the planning itself runs purely in memory
+        List<GroupPlan> plans = buildGroupPlans(date, forecasts);
+
+        List<CompletableFuture<List<ChargingScheduleDto>>> futures = plans.stream()
+                .map(plan -> CompletableFuture.supplyAsync(() -> planGroup(plan, dayStart), scheduleOptimizerExecutor))
+                .collect(Collectors.toList());
+
+        List<ChargingScheduleDto> schedules = futures.stream()
+                .map(CompletableFuture::join)
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+
+        if (publish) {
+            publishByConnector(schedules, dayStart);
+        }
+
+        log.info("Planned {} day-ahead schedules across {} groups for {} in {} ms",
+                schedules.size(), plans.size(), date, (System.nanoTime() - startNanos) / 1_000_000);
+
+        return schedules;
+    }
+
+    private List<GroupPlan> buildGroupPlans(LocalDate date, List<SessionForecastDto> forecasts) {
+        Set<UUID> stationIds = forecasts.stream()
+                .map(SessionForecastDto::getStationId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+
+        Map<UUID, ChargingStation> stations = chargingStationRepository.findAllById(stationIds).stream()
+                .collect(Collectors.toMap(ChargingStation::getId, Function.identity()));
+
+        // Stations outside a group are planned on their own, keyed by the station ID
+        Map<UUID, List<SessionForecastDto>> forecastsByPlan = new LinkedHashMap<>();
+        for (SessionForecastDto forecast : forecasts) {
+            ChargingStation station = stations.get(forecast.getStationId());
+            if (station == null || !Boolean.TRUE.equals(station.getEnabled())) {
+                log.warn("Skipping forecast for unknown or disabled station {}", forecast.getStationId());
+                continue;
+            }
+            if (station.getMaxPowerKW() == null) {
+                log.warn("Skipping forecast for station {} without a maximum power", forecast.getStationId());
+                continue;
+            }
+            if (forecast.getEnergyRequiredKWh() == null || forecast.getEnergyRequiredKWh() <= 0) {
+                continue;
+            }
+            UUID planKey = station.getChargingGroup() != null ? station.getChargingGroup().getId() : station.getId();
+            forecastsByPlan.computeIfAbsent(planKey, k -> new ArrayList<>()).add(forecast);
+        }
+
+        String dayOfWeek = String.valueOf(date.getDayOfWeek().getValue());
+        List<GroupPlan> plans = new ArrayList<>();
+
+        for (Map.Entry<UUID, List<SessionForecastDto>> entry : forecastsByPlan.entrySet()) {
+            ChargingStation anyStation = stations.get(entry.getValue().get(0).getStationId());
+            ChargingGroup group = anyStation.getChargingGroup();
+
+            Double maxPowerKW;
+            List<PowerProfile> profiles;
+            if (group != null) {
+                maxPowerKW = group.getMaxPowerKW();
+                profiles = powerProfileRepository.findByGroupId(group.getId());
+            } else {
+                maxPowerKW = anyStation.getMaxPowerKW();
+                profiles = powerProfileRepository.findByStationId(anyStation.getId());
+            }
+            if (maxPowerKW == null) {
+                log.warn("Skipping {} forecasts for group {} without a maximum power",
+                        entry.getValue().size(), entry.getKey());
+                continue;
+            }
+
+            double[] capacityKW = new double[SLOTS_PER_DAY];
+            double[] costWeight = new double[SLOTS_PER_DAY];
+            Arrays.fill(capacityKW, maxPowerKW);
+            Arrays.fill(costWeight, PriceTier.SHOULDER.getCostWeight());
+
+            for (PowerProfile profile : profiles) {
+                if (!appliesOnDay(profile, dayOfWeek)) {
+                    continue;
+                }
+                for (int slot = 0; slot < SLOTS_PER_DAY; slot++) {
+                    LocalTime slotTime = LocalTime.MIN.plusMinutes((long) slot * SLOT_MINUTES);
+                    if (!appliesAt(profile, slotTime)) {
+                        continue;
+                    }
+                    if (profile.getMaxPowerKW() != null) {
+                        capacityKW[slot] = Math.min(capacityKW[slot], profile.getMaxPowerKW());
+                    }
+                    if (profile.getPriceTier() != null) {
+                        costWeight[slot] = profile.getPriceTier().getCostWeight();
+                    }
+                }
+            }
+
+            Map<UUID, Double> stationMaxPowerKW = new HashMap<>();
+            for (SessionForecastDto forecast : entry.getValue()) {
+                stationMaxPowerKW.put(forecast.getStationId(), stations.get(forecast.getStationId()).getMaxPowerKW());
+            }
+
+            plans.add(new GroupPlan(group != null ? group.getId() : null, capacityKW, costWeight,
+                    entry.getValue(), stationMaxPowerKW));
+        }
+
+        return plans;
+    }
+
+    private List<ChargingScheduleDto> planGroup(GroupPlan plan, LocalDateTime dayStart) {
+        double[] remainingKW = plan.capacityKW.clone();
+        double[] costWeight = plan.costWeight;
+
+        // Sessions with the least slack are planned first so flexible ones fill around them
+        List<SessionWindow> windows = plan.sessions.stream()
+                .map(forecast -> toWindow(forecast, plan, dayStart))
+                .sorted(Comparator.comparingDouble((SessionWindow window) -> window.laxityKWh))
+                .collect(Collectors.toList());
+
+        List<ChargingScheduleDto> schedules = new ArrayList<>(windows.size());
+
+        for (SessionWindow window : windows) {
+            List<Integer> candidates = new ArrayList<>(window.lastSlot - window.firstSlot);
+            for (int slot = window.firstSlot; slot < window.lastSlot; slot++) {
+                candidates.add(slot);
+            }
+            candidates.sort(Comparator.<Integer>comparingDouble(slot -> costWeight[slot])
+                    .thenComparingInt(slot -> slot));
+
+            double[] powerKW = new double[SLOTS_PER_DAY];
+            double neededKWh = window.forecast.getEnergyRequiredKWh();
+            double cost = 0.0;
+
+            for (int slot : candidates) {
+                if (neededKWh <= EPSILON) {
+                    break;
+                }
+                double slotPower = Math.min(window.maxPowerKW, remainingKW[slot]);
+                if (slotPower <= EPSILON) {
+                    continue;
+                }
+                slotPower = Math.min(slotPower, neededKWh / SLOT_HOURS);
+                powerKW[slot] = slotPower;
+                remainingKW[slot] -= slotPower;
+                neededKWh -= slotPower * SLOT_HOURS;
+                cost += slotPower * SLOT_HOURS * costWeight[slot];
+            }
+
+            double unmetKWh = Math.max(0.0, neededKWh);
+            if (unmetKWh > EPSILON) {
+                log.warn("Session {} at station {} is short {} kWh in the day-ahead plan",
+                        window.forecast.getSessionId(), window.forecast.getStationId(), unmetKWh);
+            }
+
+            schedules.add(ChargingScheduleDto.builder()
+                    .sessionId(window.forecast.getSessionId())
+                    .transactionId(window.forecast.getTransactionId())
+                    .stationId(window.forecast.getStationId())
+                    .connectorId(window.forecast.getConnectorId())
+                    .chargingGroupId(plan.groupId)
+                    .scheduleStart(dayStart)
+                    .periods(toPeriods(powerKW))
+                    .energyScheduledKWh(window.forecast.getEnergyRequiredKWh() - unmetKWh)
+                    .unmetEnergyKWh(unmetKWh)
+                    .relativeCost(cost)
+                    .build());
+        }
+
+        return schedules;
+    }
+
+    private SessionWindow toWindow(SessionForecastDto forecast, GroupPlan plan, LocalDateTime dayStart) {
+        // Only whole slots in which the vehicle is plugged in are usable
+        int firstSlot = forecast.getArrivalTime() == null ? 0
+                : clampSlot(ceilDiv(Duration.between(dayStart, forecast.getArrivalTime()).toMinutes(), SLOT_MINUTES));
+        int lastSlot = forecast.getDepartureTime() == null ? SLOTS_PER_DAY
+                : clampSlot(Math.floorDiv(Duration.between(dayStart, forecast.getDepartureTime()).toMinutes(), SLOT_MINUTES));
+        lastSlot = Math.max(firstSlot, lastSlot);
+
+        double maxPowerKW = plan.stationMaxPowerKW.get(forecast.getStationId());
+        if (forecast.getMaxPowerKW() != null) {
+            maxPowerKW = Math.min(maxPowerKW, forecast.getMaxPowerKW());
+        }
+
+        double laxityKWh = (lastSlot - firstSlot) * SLOT_HOURS * maxPowerKW - forecast.getEnergyRequiredKWh();
+        return new SessionWindow(forecast, firstSlot, lastSlot, maxPowerKW, laxityKWh);
+    }
+
+    /**
+     * Publish one schedule per connector carrying the plans of all sessions expected on it. Sessions on
+     * a connector do not overlap, so their slot powers add up to the connector's plan for the day.
+     */
+    private void publishByConnector(List<ChargingScheduleDto> schedules, LocalDateTime dayStart) {
+        Map<UUID, Map<Integer, List<ChargingScheduleDto>>> schedulesByConnector = new LinkedHashMap<>();
+        for (ChargingScheduleDto schedule : schedules) {
+            schedulesByConnector.computeIfAbsent(schedule.getStationId(), k -> new LinkedHashMap<>())
+                    .computeIfAbsent(schedule.getConnectorId(), k -> new ArrayList<>())
+                    .add(schedule);
+        }
+
+        for (Map.Entry<UUID, Map<Integer, List<ChargingScheduleDto>>> station : schedulesByConnector.entrySet()) {
+            for (Map.Entry<Integer, List<ChargingScheduleDto>> connector : station.getValue().entrySet()) {
+                List<ChargingScheduleDto> connectorSchedules = connector.getValue();
+                double[] powerKW = new double[SLOTS_PER_DAY];
+                for (ChargingScheduleDto schedule : connectorSchedules) {
+                    addSlots(schedule.getPeriods(), powerKW);
+                }
+
+                // A merged schedule belongs to no single transaction
+                UUID transactionId = connectorSchedules.size() == 1 ? connectorSchedules.get(0).getTransactionId() : null;
+                kafkaProducerService.sendChargingSchedule(
+                        station.getKey(),
+                        connector.getKey(),
+                        dayStart,
+                        toPeriods(powerKW),
+                        transactionId);
+            }
+        }
+    }
+
+    private void addSlots(List<PowerDistributionEvent.ChargingSchedulePeriod> periods, double[] powerKW) {
+        for (int i = 0; i < periods.size(); i++) {
+            int firstSlot = periods.get(i).getStartPeriod() / (SLOT_MINUTES * 60);
+            int lastSlot = i + 1 < periods.size()
+                    ? periods.get(i + 1).getStartPeriod() / (SLOT_MINUTES * 60)
+                    : SLOTS_PER_DAY;
+            for (int slot = firstSlot; slot < lastSlot; slot++) {
+                powerKW[slot] += periods.get(i).getLimitKW();
+            }
+        }
+    }
+
+    private List<PowerDistributionEvent.ChargingSchedulePeriod> toPeriods(double[] powerKW) {
+        List<PowerDistributionEvent.ChargingSchedulePeriod> periods = new ArrayList<>();
+        double previous = Double.NaN;
+        for (int slot = 0; slot < powerKW.length; slot++) {
+            double limit = Math.round(powerKW[slot] * 1000.0) / 1000.0;
+            if (limit != previous) {
+                periods.add(PowerDistributionEvent.ChargingSchedulePeriod.builder()
+                        .startPeriod(slot * SLOT_MINUTES * 60)
+                        .limitKW(limit)
+                        .build());
+                previous = limit;
+            }
+        }
+        return periods;
+    }
+
+    private boolean appliesOnDay(PowerProfile profile, String dayOfWeek) {
+        if (profile.getDayOfWeek() == null || profile.getDayOfWeek().isBlank()) {
+            return true;
+        }
+        for (String day : profile.getDayOfWeek().split(",")) {
+            if (day.trim().equals(dayOfWeek)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean appliesAt(PowerProfile profile, LocalTime time) {
+        LocalTime start = profile.getStartTime();
+        LocalTime end = profile.getEndTime();
+        if (start == null || end == null) {
+            return true;
+        }
+        if (start.isBefore(end)) {
+            return !time.isBefore(start) && time.isBefore(end);
+        }
+        // Window wraps around midnight
+        return !time.isBefore(start) || time.isBefore(end);
+    }
+
+    private static int clampSlot(long slot) {
+        return (int) Math.max(0, Math.min(SLOTS_PER_DAY, slot));
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return -Math.floorDiv(-value, divisor);
+    }
+
+    /**
+     * Slot capacities and prices for one charging group, prepared before planning
+     */
+    private static class GroupPlan {
+        private final UUID groupId;
+        private final double[] capacityKW;
+        private final double[] costWeight;
+        private final List<SessionForecastDto> sessions;
+        private final Map<UUID, Double> stationMaxPowerKW;
+
+        GroupPlan(UUID groupId, double[] capacityKW, double[] costWeight,
+                  List<SessionForecastDto> sessions, Map<UUID, Double> stationMaxPowerKW) {
+            this.groupId = groupId;
+            this.capacityKW = capacityKW;
+            this.costWeight = costWeight;
+            this.sessions = sessions;
+            this.stationMaxPowerKW = stationMaxPowerKW;
+        }
+    }
+
+    /**
+     * Usable slot range of a forecast session
+     */
+    private static class SessionWindow {
+        private final SessionForecastDto forecast;
+        private final int firstSlot;
+        private final int lastSlot;
+        private final double maxPowerKW;
+        private final double laxityKWh;
+
+        SessionWindow(SessionForecastDto forecast, int firstSlot, int lastSlot, double maxPowerKW, double laxityKWh) {
+            this.forecast = forecast;
+            this.firstSlot = firstSlot;
+            this.lastSlot = lastSlot;
+            this.maxPowerKW = maxPowerKW;
+            this.laxityKWh = laxityKWh;
+        }
+    }
+}
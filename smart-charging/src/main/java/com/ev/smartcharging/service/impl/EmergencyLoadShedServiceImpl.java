@@ -0,0 +1,211 @@
+package com.ev.smartcharging.service.impl;
+
+import com.ev.smartcharging.dto.event.GroupPowerCommandEvent;
+import com.ev.smartcharging.dto.event.PowerDistributionEvent;
+import com.ev.smartcharging.model.ChargingSession;
+import com.ev.smartcharging.model.ChargingStation;
+import com.ev.smartcharging.model.SessionStatus;
+import com.ev.smartcharging.repository.ChargingSessionRepository;
+import com.ev.smartcharging.repository.ChargingStationRepository;
+import com.ev.smartcharging.service.EmergencyLoadShedService;
+import com.ev.smartcharging.service.KafkaProducerService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class EmergencyLoadShedServiceImpl implements EmergencyLoadShedService {
+
+    private final ChargingStationRepository chargingStationRepository;
+    private final ChargingSessionRepository chargingSessionRepository;
+    private final KafkaProducerService kafkaProducerService;
+    private final Executor loadShedAuditExecutor;
+
+    // Station capacities per group, kept in memory so a shed needs no database round-trip
+    private final Map<UUID, List<StationCapacity>> groupStations = new ConcurrentHashMap<>();
+
+    public EmergencyLoadShedServiceImpl(
+            ChargingStationRepository chargingStationRepository,
+            ChargingSessionRepository chargingSessionRepository,
+            KafkaProducerService kafkaProducerService,
+            @Qualifier("loadShedAuditExecutor") Executor loadShedAuditExecutor) {
+        this.chargingStationRepository = chargingStationRepository;
+        this.chargingSessionRepository = chargingSessionRepository;
+        this.kafkaProducerService = kafkaProducerService;
+        this.loadShedAuditExecutor = loadShedAuditExecutor;
+    }
+
+    @Override
+    public List<UUID> shedGroupLoad(UUID groupId, double reductionPercentage, int durationSeconds) {
+        if (!(reductionPercentage >= 0 && reductionPercentage <= 100)) {
+            throw new IllegalArgumentException("Reduction percentage must be between 0 and 100: " + reductionPercentage);
+        }
+        long startNanos = System.nanoTime();
+
+        List<StationCapacity> stations = groupStations.computeIfAbsent(groupId, this::loadGroupStations);
+        if (stations.isEmpty()) {
+            // Not kept, so stations added to the group later are found by the next shed
+            groupStations.remove(groupId);
+            log.warn("Charging group {} has no enabled stations, nothing to shed", groupId);
+            return Collections.emptyList();
+        }
+
+        // Reduce each station to the remaining share of its maximum power
+        double remainingShare = (100 - reductionPercentage) / 100;
+        List<GroupPowerCommandEvent.StationPowerLimit> limits = new ArrayList<>(stations.size());
+        for (StationCapacity station : stations) {
+            limits.add(GroupPowerCommandEvent.StationPowerLimit.builder()
+                    .eventId(UUID.randomUUID())
+                    .stationId(station.stationId)
+                    .powerLimitKW(station.maxPowerKW * remainingShare)
+                    .build());
+        }
+
+        dispatch(groupId, limits, durationSeconds, startNanos);
+        return limits.stream()
+                .map(GroupPowerCommandEvent.StationPowerLimit::getEventId)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public UUID shedStationLoad(UUID stationId, Integer connectorId, double powerLimitKW, int durationSeconds) {
+        long startNanos = System.nanoTime();
+
+        List<GroupPowerCommandEvent.StationPowerLimit> limits = List.of(GroupPowerCommandEvent.StationPowerLimit.builder()
+                .eventId(UUID.randomUUID())
+                .stationId(stationId)
+                .connectorId(connectorId)
+                .powerLimitKW(Math.max(0.0, powerLimitKW))
+                .build());
+
+        dispatch(null, limits, durationSeconds, startNanos);
+        return limits.get(0).getEventId();
+    }
+
+    @Override
+    public void evictGroupAfterCommit(UUID groupId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    groupStations.remove(groupId);
+                }
+            });
+        } else {
+            groupStations.remove(groupId);
+        }
+    }
+
+    /**
+     * Refresh the in-memory station capacities of every group that has been shed before.
+     * Picks up station changes written outside this service, e.g. a station's maximum power.
+     */
+    @Scheduled(fixedRate = 60000) // Every minute
+    public void refreshGroupStations() {
+        for (UUID groupId : groupStations.keySet()) {
+            groupStations.put(groupId, loadGroupStations(groupId));
+        }
+    }
+
+    private void dispatch(UUID groupId, List<GroupPowerCommandEvent.StationPowerLimit> limits,
+                          int durationSeconds, long startNanos) {
+        GroupPowerCommandEvent command = GroupPowerCommandEvent.builder()
+                .commandId(UUID.randomUUID())
+                .groupId(groupId)
+                .reason(PowerDistributionEvent.PowerAdjustmentReason.EMERGENCY_REDUCTION)
+                .durationSeconds(durationSeconds)
+                .issuedAtEpochMillis(System.currentTimeMillis())
+                .limits(limits)
+                .build();
+
+        // Persist the reduced allocations only once the command is on its way
+        kafkaProducerService.sendGroupPowerCommand(command)
+                .thenRunAsync(() -> persistShed(command), loadShedAuditExecutor)
+                .exceptionally(e -> {
+                    log.error("Error completing emergency command {}: {}", command.getCommandId(), e.getMessage(), e);
+                    return null;
+                });
+
+        log.info("Dispatched emergency command {} for {} stations in {} us",
+                command.getCommandId(), limits.size(), (System.nanoTime() - startNanos) / 1000);
+    }
+
+    private void persistShed(GroupPowerCommandEvent command) {
+        List<ChargingSession> reducedSessions = new ArrayList<>();
+        List<UUID> stationIds = new ArrayList<>(command.getLimits().size());
+
+        for (GroupPowerCommandEvent.StationPowerLimit limit : command.getLimits()) {
+            stationIds.add(limit.getStationId());
+            List<ChargingSession> sessions = chargingSessionRepository.findActiveSessionsByStationId(limit.getStationId());
+            if (limit.getConnectorId() != null) {
+                sessions = sessions.stream()
+                        .filter(session -> limit.getConnectorId().equals(session.getConnectorId()))
+                        .collect(Collectors.toList());
+            }
+            if (sessions.isEmpty()) {
+                continue;
+            }
+
+            // Split the station limit evenly across its sessions
+            double sessionCap = limit.getPowerLimitKW() / sessions.size();
+            for (ChargingSession session : sessions) {
+                if (session.getAllocatedPowerKW() != null && session.getAllocatedPowerKW() > sessionCap) {
+                    session.setAllocatedPowerKW(sessionCap);
+                    session.setSessionStatus(SessionStatus.POWER_REDUCED);
+                    reducedSessions.add(session);
+                }
+            }
+        }
+
+        chargingSessionRepository.saveAll(reducedSessions);
+
+        Map<UUID, Double> limitByStation = command.getLimits().stream()
+                .filter(limit -> limit.getConnectorId() == null)
+                .collect(Collectors.toMap(GroupPowerCommandEvent.StationPowerLimit::getStationId,
+                        GroupPowerCommandEvent.StationPowerLimit::getPowerLimitKW, Math::min));
+        List<ChargingStation> stations = chargingStationRepository.findAllById(limitByStation.keySet());
+        for (ChargingStation station : stations) {
+            double current = station.getCurrentPowerKW() != null ? station.getCurrentPowerKW() : 0.0;
+            station.setCurrentPowerKW(Math.min(current, limitByStation.get(station.getId())));
+        }
+        chargingStationRepository.saveAll(stations);
+
+        log.info("AUDIT emergency load shed: command={} group={} stations={} sessionsReduced={} durationSeconds={} " +
+                        "persistedAfterMs={}",
+                command.getCommandId(), command.getGroupId(), stationIds, reducedSessions.size(),
+                command.getDurationSeconds(), System.currentTimeMillis() - command.getIssuedAtEpochMillis());
+    }
+
+    private List<StationCapacity> loadGroupStations(UUID groupId) {
+        return chargingStationRepository.findByChargingGroupId(groupId).stream()
+                .filter(station -> Boolean.TRUE.equals(station.getEnabled()) && station.getMaxPowerKW() != null)
+                .map(station -> new StationCapacity(station.getId(), station.getMaxPowerKW()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Station ID and maximum power, all a shed needs to know about a station
+     */
+    private static class StationCapacity {
+        private final UUID stationId;
+        private final double maxPowerKW;
+
+        StationCapacity(UUID stationId, double maxPowerKW) {
+            this.stationId = stationId;
+            this.maxPowerKW = maxPowerKW;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.ev.smartcharging.service.impl;
 
 import com.ev.smartcharging.config.KafkaConfig;
+import com.ev.smartcharging.dto.event.GroupPowerCommandEvent;
 import com.ev.smartcharging.dto.event.PowerDistributionEvent;
 import com.ev.smartcharging.service.KafkaProducerService;
 import lombok.RequiredArgsConstructor;
@@ -9,7 +10,9 @@ import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -90,6 +93,82 @@ public class KafkaProducerServiceImpl implements KafkaProducerService {
                 null);
     }
     
+    @Override
+    public UUID sendChargingSchedule(
+            UUID stationId,
+            Integer connectorId,
+            LocalDateTime scheduleStart,
+            List<PowerDistributionEvent.ChargingSchedulePeriod> periods,
+            UUID transactionId) {
+        
+        UUID eventId = UUID.randomUUID();
+        
+        // The period in effect now doubles as the immediate limit for consumers that ignore schedules
+        PowerDistributionEvent event = PowerDistributionEvent.builder()
+                .eventId(eventId)
+                .stationId(stationId)
+                .connectorId(connectorId)
+                .powerLimitKW(limitInEffect(scheduleStart, periods, LocalDateTime.now()))
+                .reason(PowerDistributionEvent.PowerAdjustmentReason.SCHEDULED_PROFILE)
+                .temporary(false)
+                .transactionId(transactionId)
+                .timestamp(LocalDateTime.now())
+                .priority(calculatePriority(PowerDistributionEvent.PowerAdjustmentReason.SCHEDULED_PROFILE))
+                .scheduleStart(scheduleStart)
+                .chargingSchedulePeriods(periods)
+                .build();
+        
+        sendPowerDistributionEvent(event);
+        return eventId;
+    }
+    
+    @Override
+    public CompletableFuture<Void> sendGroupPowerCommand(GroupPowerCommandEvent command) {
+        if (command.getCommandId() == null) {
+            command.setCommandId(UUID.randomUUID());
+        }
+        
+        if (command.getReason() != null) {
+            command.setPriority(calculatePriority(command.getReason()));
+        }
+        
+        // Key by group so successive commands for the same site stay ordered
+        UUID keyId = command.getGroupId() != null ? command.getGroupId() : command.getLimits().get(0).getStationId();
+        
+        return kafkaTemplate.send(KafkaConfig.EMERGENCY_POWER_COMMANDS_TOPIC, keyId.toString(), command)
+                .whenComplete((result, ex) -> {
+                    if (ex == null) {
+                        log.info("Sent group power command {} covering {} stations to partition {}", 
+                                command.getCommandId(), command.getLimits().size(), 
+                                result.getRecordMetadata().partition());
+                    } else {
+                        log.error("Failed to send group power command {}", command.getCommandId(), ex);
+                    }
+                })
+                .thenApply(result -> null);
+    }
+    
+    /**
+     * Find the limit of the schedule period in effect at a point in time.
+     *
+     * @return The limit in kW, or null if the schedule has not started yet or the period has no limit
+     */
+    static Double limitInEffect(LocalDateTime scheduleStart,
+                                List<PowerDistributionEvent.ChargingSchedulePeriod> periods,
+                                LocalDateTime at) {
+        long elapsedSeconds = scheduleStart != null ? Duration.between(scheduleStart, at).getSeconds() : 0;
+        Double limit = null;
+        int latestStart = Integer.MIN_VALUE;
+        for (PowerDistributionEvent.ChargingSchedulePeriod period : periods) {
+            Integer start = period.getStartPeriod();
+            if (start != null && start <= elapsedSeconds && start >= latestStart) {
+                latestStart = start;
+                limit = period.getLimitKW();
+            }
+        }
+        return limit;
+    }
+
     /**
      * Calculate priority based on the reason type.
      * Emergency reductions have the highest priority.
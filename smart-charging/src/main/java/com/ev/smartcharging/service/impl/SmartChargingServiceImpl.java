@@ -1,6 +1,7 @@
 package com.ev.smartcharging.service.impl;
 
 import com.ev.smartcharging.dto.ChargingStationDto;
+import com.ev.smartcharging.dto.event.ChargingSessionEvent;
 import com.ev.smartcharging.dto.event.PowerDistributionEvent;
 import com.ev.smartcharging.model.*;
 import com.ev.smartcharging.repository.ChargingGroupRepository;
@@ -9,6 +10,8 @@ import com.ev.smartcharging.repository.ChargingStationRepository;
 import com.ev.smartcharging.repository.PowerProfileRepository;
 import com.ev.smartcharging.service.KafkaProducerService;
 import com.ev.smartcharging.service.SmartChargingService;
+import com.ev.smartcharging.service.allocation.ConsumptionTracker;
+import com.ev.smartcharging.service.allocation.PowerAllocator;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -19,6 +22,7 @@ import java.time.DayOfWeek;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -31,6 +35,10 @@ public class SmartChargingServiceImpl implements SmartChargingService {
     private final ChargingSessionRepository chargingSessionRepository;
     private final PowerProfileRepository powerProfileRepository;
     private final KafkaProducerService kafkaProducerService;
+    private final PowerAllocator powerAllocator;
+    private final ConsumptionTracker consumptionTracker;
+
+    private static final String SESSION_EVENT_ENDED = "ENDED";
 
     @Override
     @Transactional
@@ -58,31 +66,27 @@ public class SmartChargingServiceImpl implements SmartChargingService {
                 return true;
             }
 
-            double totalPowerAllocated = 0.0;
             LoadBalancingStrategy strategy = group.getLoadBalancingStrategy();
+            if (strategy == null) {
+                log.warn("No load balancing strategy configured for group {}", groupId);
+                return false;
+            }
 
-            // Apply the appropriate load balancing strategy
-            switch (strategy) {
-                case ROUND_ROBIN:
-                    totalPowerAllocated = allocateRoundRobin(group, activeSessions);
-                    break;
-                case FIRST_COME_FIRST_SERVE:
-                    totalPowerAllocated = allocateFirstComeFirstServe(group, activeSessions);
-                    break;
-                case PRIORITY_BASED:
-                    totalPowerAllocated = allocatePriorityBased(group, activeSessions);
-                    break;
-                case DYNAMIC:
-                    totalPowerAllocated = allocateDynamic(group, activeSessions);
-                    break;
-                case TIME_OF_USE:
-                    totalPowerAllocated = allocateTimeOfUse(group, activeSessions);
-                    break;
-                default:
-                    log.warn("Unsupported load balancing strategy: {}", strategy);
-                    return false;
+            PowerProfile activeProfile = strategy == LoadBalancingStrategy.TIME_OF_USE
+                    ? findActiveGroupProfile(group)
+                    : null;
+
+            Map<UUID, Double> measuredDrawKW = Collections.emptyMap();
+            if (strategy == LoadBalancingStrategy.CLOSED_LOOP) {
+                measuredDrawKW = consumptionTracker.measuredDrawKW(
+                        activeSessions.stream().map(ChargingSession::getId).collect(Collectors.toList()));
             }
 
+            // Apply the appropriate load balancing strategy and persist all sessions in one batch
+            double totalPowerAllocated = powerAllocator.allocate(
+                    strategy, group.getMaxPowerKW(), activeSessions, activeProfile, measuredDrawKW);
+            chargingSessionRepository.saveAll(activeSessions);
+
             // Update the group's current power
             group.setCurrentPowerKW(totalPowerAllocated);
             chargingGroupRepository.save(group);
@@ -305,6 +309,7 @@ public class SmartChargingServiceImpl implements SmartChargingService {
             session.setEndTime(LocalDateTime.now());
             session.setAllocatedPowerKW(0.0);
             chargingSessionRepository.save(session);
+            consumptionTracker.forget(sessionId);
             
             // Update station power
             updateStationPower(session.getStationId());
@@ -324,151 +329,142 @@ public class SmartChargingServiceImpl implements SmartChargingService {
         }
     }
 
-    // Helper methods for power allocation strategies
-    
-    private double allocateRoundRobin(ChargingGroup group, List<ChargingSession> sessions) {
-        double totalPower = group.getMaxPowerKW();
-        double powerPerSession = totalPower / sessions.size();
-        double allocatedPower = 0.0;
-        
-        for (ChargingSession session : sessions) {
-            // Limit power to the session's max power
-            double sessionPower = Math.min(powerPerSession, session.getMaxPowerKW());
-            
-            // Update session
-            session.setAllocatedPowerKW(sessionPower);
-            session.setSessionStatus(SessionStatus.ACTIVE);
-            chargingSessionRepository.save(session);
+    @Override
+    @Transactional
+    public int applySessionEvents(List<ChargingSessionEvent> events) {
+        // Collapse to the latest event per session; an ENDED event is final even if stale updates follow it
+        Map<UUID, ChargingSessionEvent> latestEvents = new LinkedHashMap<>();
+        for (ChargingSessionEvent event : events) {
+            if (event == null || event.getSessionId() == null || event.getEventType() == null) {
+                continue;
+            }
+            // Every reading feeds the measured draw estimate, not just the latest one
+            if (event.getEnergyDeliveredKwh() != null) {
+                consumptionTracker.recordEnergy(event.getSessionId(), 
+                        event.getEnergyDeliveredKwh().doubleValue(), event.getTimestamp());
+            }
             
-            allocatedPower += sessionPower;
+            ChargingSessionEvent previous = latestEvents.get(event.getSessionId());
+            if (previous != null && SESSION_EVENT_ENDED.equals(previous.getEventType())) {
+                continue;
+            }
+            latestEvents.put(event.getSessionId(), event);
         }
         
-        return allocatedPower;
-    }
-    
-    private double allocateFirstComeFirstServe(ChargingGroup group, List<ChargingSession> sessions) {
-        double totalPower = group.getMaxPowerKW();
-        double allocatedPower = 0.0;
+        if (latestEvents.isEmpty()) {
+            return 0;
+        }
         
-        // Sort sessions by start time (earliest first)
-        sessions.sort(Comparator.comparing(ChargingSession::getStartTime));
+        // Load sessions and stations for the whole batch in two queries
+        Map<UUID, ChargingSession> existingSessions = chargingSessionRepository.findAllById(latestEvents.keySet()).stream()
+                .collect(Collectors.toMap(ChargingSession::getId, Function.identity()));
         
-        for (ChargingSession session : sessions) {
-            if (allocatedPower >= totalPower) {
-                // No more power to allocate
+        Set<UUID> stationIds = new HashSet<>();
+        latestEvents.values().forEach(event -> stationIds.add(event.getStationId()));
+        existingSessions.values().forEach(session -> stationIds.add(session.getStationId()));
+        stationIds.remove(null);
+        
+        Map<UUID, ChargingStation> stations = chargingStationRepository.findAllById(stationIds).stream()
+                .collect(Collectors.toMap(ChargingStation::getId, Function.identity()));
+        
+        List<ChargingSession> changedSessions = new ArrayList<>();
+        for (ChargingSessionEvent event : latestEvents.values()) {
+            ChargingSession session = existingSessions.get(event.getSessionId());
+            
+            if (session == null) {
+                ChargingStation station = stations.get(event.getStationId());
+                if (station == null) {
+                    log.warn("Ignoring event for session {} on unknown station {}", event.getSessionId(), event.getStationId());
+                    continue;
+                }
+                session = createSessionFromEvent(event, station);
+            } else if (isEnded(session.getSessionStatus())) {
+                // Redeliveries and late updates for finished sessions are no-ops
+                continue;
+            }
+            
+            if (event.getEnergyDeliveredKwh() != null) {
+                session.setEnergyDeliveredKWh(event.getEnergyDeliveredKwh().doubleValue());
+            }
+            
+            if (SESSION_EVENT_ENDED.equals(event.getEventType())) {
+                session.setSessionStatus(SessionStatus.COMPLETED);
+                session.setEndTime(event.getEndTime() != null ? event.getEndTime() : LocalDateTime.now());
                 session.setAllocatedPowerKW(0.0);
-                session.setSessionStatus(SessionStatus.PAUSED);
-            } else {
-                // Allocate up to the session's maximum or remaining power
-                double remainingPower = totalPower - allocatedPower;
-                double sessionPower = Math.min(remainingPower, session.getMaxPowerKW());
-                
-                session.setAllocatedPowerKW(sessionPower);
-                session.setSessionStatus(sessionPower > 0 ? SessionStatus.ACTIVE : SessionStatus.PAUSED);
-                
-                allocatedPower += sessionPower;
+                consumptionTracker.forget(session.getId());
             }
             
-            chargingSessionRepository.save(session);
+            changedSessions.add(session);
         }
         
-        return allocatedPower;
-    }
-    
-    private double allocatePriorityBased(ChargingGroup group, List<ChargingSession> sessions) {
-        double totalPower = group.getMaxPowerKW();
-        double allocatedPower = 0.0;
+        if (changedSessions.isEmpty()) {
+            return 0;
+        }
         
-        // Sort sessions by priority (lowest number = highest priority)
-        sessions.sort(Comparator.comparing(ChargingSession::getPriorityLevel, 
-                Comparator.nullsLast(Comparator.naturalOrder())));
+        chargingSessionRepository.saveAll(changedSessions);
         
-        for (ChargingSession session : sessions) {
-            if (allocatedPower >= totalPower) {
-                // No more power to allocate
-                session.setAllocatedPowerKW(0.0);
-                session.setSessionStatus(SessionStatus.PAUSED);
-            } else {
-                // Allocate up to the session's maximum or remaining power
-                double remainingPower = totalPower - allocatedPower;
-                double sessionPower = Math.min(remainingPower, session.getMaxPowerKW());
-                
-                session.setAllocatedPowerKW(sessionPower);
-                session.setSessionStatus(sessionPower > 0 ? SessionStatus.ACTIVE : SessionStatus.PAUSED);
-                
-                allocatedPower += sessionPower;
+        // Reallocate once per affected group rather than once per event
+        Set<UUID> affectedGroupIds = new LinkedHashSet<>();
+        Set<UUID> affectedStationIds = new LinkedHashSet<>();
+        for (ChargingSession session : changedSessions) {
+            ChargingStation station = stations.get(session.getStationId());
+            if (station == null) {
+                continue;
+            }
+            affectedStationIds.add(station.getId());
+            if (station.getChargingGroup() != null && station.getSmartChargingEnabled()) {
+                affectedGroupIds.add(station.getChargingGroup().getId());
             }
-            
-            chargingSessionRepository.save(session);
         }
         
-        return allocatedPower;
+        affectedGroupIds.forEach(this::allocateGroupPower);
+        affectedStationIds.forEach(this::updateStationPower);
+        
+        log.info("Applied {} session events to {} sessions across {} groups", 
+                events.size(), changedSessions.size(), affectedGroupIds.size());
+        
+        return changedSessions.size();
     }
+
+    // Helper methods for session events
     
-    private double allocateDynamic(ChargingGroup group, List<ChargingSession> sessions) {
-        // This is a placeholder for a more complex dynamic allocation strategy
-        // In a real implementation, this would take into account grid conditions, 
-        // energy prices, and other real-time factors
+    private ChargingSession createSessionFromEvent(ChargingSessionEvent event, ChargingStation station) {
+        // Grouped smart charging stations start at zero and get their share from the group allocation
+        boolean groupManaged = station.getSmartChargingEnabled() && station.getChargingGroup() != null;
         
-        // For now, default to priority-based allocation
-        return allocatePriorityBased(group, sessions);
+        return ChargingSession.builder()
+                .id(event.getSessionId())
+                .stationId(station.getId())
+                .connectorId(event.getConnectorId())
+                .userId(event.getUserId())
+                .startTime(event.getStartTime() != null ? event.getStartTime() : LocalDateTime.now())
+                .allocatedPowerKW(groupManaged ? 0.0 : station.getMaxPowerKW())
+                .maxPowerKW(station.getMaxPowerKW())
+                .energyDeliveredKWh(0.0)
+                .priorityLevel(station.getPriorityLevel())
+                .sessionStatus(SessionStatus.ACTIVE)
+                .build();
     }
     
-    private double allocateTimeOfUse(ChargingGroup group, List<ChargingSession> sessions) {
-        double totalPower = group.getMaxPowerKW();
-        double allocatedPower = 0.0;
-        
+    private boolean isEnded(SessionStatus status) {
+        return status == SessionStatus.COMPLETED || 
+               status == SessionStatus.TERMINATED ||
+               status == SessionStatus.ERROR;
+    }
+
+    // Helper methods for power allocation strategies
+    
+    private PowerProfile findActiveGroupProfile(ChargingGroup group) {
         // Get current time
         LocalTime currentTime = LocalTime.now();
         DayOfWeek currentDay = LocalDateTime.now().getDayOfWeek();
         String dayOfWeekValue = String.valueOf(currentDay.getValue());
         
-        // Find active power profiles for this group
+        // Find active power profiles for this group and use the first applicable one
         List<PowerProfile> activeProfiles = powerProfileRepository.findActiveProfiles(
                 null, group.getId(), dayOfWeekValue, currentTime);
         
-        // If no active profiles, fall back to priority-based
-        if (activeProfiles.isEmpty()) {
-            return allocatePriorityBased(group, sessions);
-        }
-        
-        // Use the first applicable power profile
-        PowerProfile activeProfile = activeProfiles.get(0);
-        
-        // Modify total power based on profile
-        if (activeProfile.getMaxPowerKW() != null) {
-            totalPower = Math.min(totalPower, activeProfile.getMaxPowerKW());
-        }
-        
-        // Sort sessions by priority
-        sessions.sort(Comparator.comparing(ChargingSession::getPriorityLevel, 
-                Comparator.nullsLast(Comparator.naturalOrder())));
-        
-        for (ChargingSession session : sessions) {
-            if (allocatedPower >= totalPower) {
-                // No more power to allocate
-                session.setAllocatedPowerKW(0.0);
-                session.setSessionStatus(SessionStatus.PAUSED);
-            } else {
-                // Allocate up to the session's maximum or remaining power
-                double remainingPower = totalPower - allocatedPower;
-                double sessionPower = Math.min(remainingPower, session.getMaxPowerKW());
-                
-                // Ensure minimum power if specified in profile
-                if (activeProfile.getMinPowerKW() != null && sessionPower > 0) {
-                    sessionPower = Math.max(sessionPower, activeProfile.getMinPowerKW());
-                }
-                
-                session.setAllocatedPowerKW(sessionPower);
-                session.setSessionStatus(sessionPower > 0 ? SessionStatus.ACTIVE : SessionStatus.PAUSED);
-                
-                allocatedPower += sessionPower;
-            }
-            
-            chargingSessionRepository.save(session);
-        }
-        
-        return allocatedPower;
+        return activeProfiles.isEmpty() ? null : activeProfiles.get(0);
     }
     
     // Additional helper methods
@@ -0,0 +1,94 @@
+package com.ev.smartcharging.benchmark;
+
+import com.ev.smartcharging.model.ChargingSession;
+import com.ev.smartcharging.model.LoadBalancingStrategy;
+import com.ev.smartcharging.model.PowerProfile;
+import com.ev.smartcharging.model.SessionStatus;
+import com.ev.smartcharging.service.allocation.PowerAllocator;
+import com.ev.smartcharging.simulation.ChargingSimulator;
+import com.ev.smartcharging.simulation.SessionTrace;
+import com.ev.smartcharging.simulation.TraceGenerator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of a single group reallocation per strategy and session count.
+ * Run with:
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.ev.smartcharging.benchmark.PowerAllocatorBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PowerAllocatorBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    private int sessionCount;
+
+    @Param({"ROUND_ROBIN", "FIRST_COME_FIRST_SERVE", "PRIORITY_BASED", "DYNAMIC", "TIME_OF_USE", "CLOSED_LOOP"})
+    private LoadBalancingStrategy strategy;
+
+    private final PowerAllocator powerAllocator = new PowerAllocator();
+    // Sessions in arrival order; never reordered, since the strategies sort the list they are given
+    private List<ChargingSession> sessions;
+    private double groupMaxPowerKW;
+    private PowerProfile activeProfile;
+    private Map<UUID, Double> measuredDrawKW;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<SessionTrace> traces = TraceGenerator.synthetic(sessionCount, 24, 42L);
+        sessions = new ArrayList<>(sessionCount);
+        measuredDrawKW = new HashMap<>();
+        double demandKW = 0.0;
+
+        for (SessionTrace trace : traces) {
+            UUID sessionId = UUID.randomUUID();
+            sessions.add(ChargingSession.builder()
+                    .id(sessionId)
+                    .startTime(start.plusSeconds(trace.getArrivalSeconds()))
+                    .maxPowerKW(trace.getMaxPowerKW())
+                    .allocatedPowerKW(0.0)
+                    .priorityLevel(trace.getPriorityLevel())
+                    .sessionStatus(SessionStatus.ACTIVE)
+                    .build());
+            demandKW += trace.getMaxPowerKW();
+
+            // Every third vehicle is tapering, so CLOSED_LOOP has headroom to hand on once allocations exist
+            measuredDrawKW.put(sessionId, sessions.size() % 3 == 0 ? trace.getMaxPowerKW() * 0.3 : trace.getMaxPowerKW());
+        }
+
+        // Constrain the group so that every strategy has to ration power
+        groupMaxPowerKW = demandKW * 0.6;
+        activeProfile = ChargingSimulator.profileFor(strategy, groupMaxPowerKW);
+    }
+
+    @Benchmark
+    public double allocate() {
+        // Every invocation sorts its own copy, so none of them sees input already sorted by the previous one
+        return powerAllocator.allocate(strategy, groupMaxPowerKW, new ArrayList<>(sessions), activeProfile,
+                measuredDrawKW);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PowerAllocatorBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
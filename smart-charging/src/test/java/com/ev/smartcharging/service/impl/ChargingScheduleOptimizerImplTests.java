@@ -0,0 +1,209 @@
+package com.ev.smartcharging.service.impl;
+
+import com.ev.smartcharging.dto.ChargingScheduleDto;
+import com.ev.smartcharging.dto.SessionForecastDto;
+import com.ev.smartcharging.dto.event.PowerDistributionEvent;
+import com.ev.smartcharging.model.ChargingGroup;
+import com.ev.smartcharging.model.ChargingStation;
+import com.ev.smartcharging.model.PowerProfile;
+import com.ev.smartcharging.model.PriceTier;
+import com.ev.smartcharging.repository.ChargingStationRepository;
+import com.ev.smartcharging.repository.PowerProfileRepository;
+import com.ev.smartcharging.service.ChargingScheduleOptimizer;
+import com.ev.smartcharging.service.KafkaProducerService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChargingScheduleOptimizerImplTests {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 1, 1);
+    private static final LocalDateTime DAY_START = DAY.atStartOfDay();
+    private static final int SLOTS_PER_DAY = 24 * 60 / ChargingScheduleOptimizer.SLOT_MINUTES;
+    private static final double SLOT_HOURS = ChargingScheduleOptimizer.SLOT_MINUTES / 60.0;
+    private static final double EPSILON = 1e-3;
+
+    private final ChargingGroup group = ChargingGroup.builder()
+            .id(UUID.randomUUID())
+            .maxPowerKW(22.0)
+            .build();
+    private final List<ChargingStation> stations = new ArrayList<>();
+    private final List<PowerProfile> groupProfiles = new ArrayList<>();
+
+    private KafkaProducerService kafkaProducerService;
+    private ChargingScheduleOptimizerImpl optimizer;
+
+    @BeforeEach
+    void setUp() {
+        ChargingStationRepository stationRepository = mock(ChargingStationRepository.class);
+        when(stationRepository.findAllById(any())).thenReturn(stations);
+        PowerProfileRepository profileRepository = mock(PowerProfileRepository.class);
+        when(profileRepository.findByGroupId(group.getId())).thenReturn(groupProfiles);
+        kafkaProducerService = mock(KafkaProducerService.class);
+
+        optimizer = new ChargingScheduleOptimizerImpl(stationRepository, profileRepository, kafkaProducerService,
+                Runnable::run);
+    }
+
+    @Test
+    void groupCapacityIsNeverExceeded() {
+        // Evening peak during which the site may only draw 11 kW
+        groupProfiles.add(PowerProfile.builder()
+                .groupId(group.getId())
+                .startTime(LocalTime.of(17, 0))
+                .endTime(LocalTime.of(20, 0))
+                .maxPowerKW(11.0)
+                .priceTier(PriceTier.PEAK)
+                .build());
+
+        List<SessionForecastDto> forecasts = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            ChargingStation station = station(11.0);
+            forecasts.add(forecast(station, 1, DAY_START.plusHours(16 + i % 3), DAY_START.plusHours(23), 30.0));
+        }
+
+        List<ChargingScheduleDto> schedules = optimizer.optimizeDayAhead(DAY, forecasts, false);
+
+        double[] groupPowerKW = new double[SLOTS_PER_DAY];
+        for (ChargingScheduleDto schedule : schedules) {
+            double[] powerKW = toSlots(schedule.getPeriods());
+            for (int slot = 0; slot < SLOTS_PER_DAY; slot++) {
+                assertThat(powerKW[slot]).isLessThanOrEqualTo(11.0 + EPSILON);
+                groupPowerKW[slot] += powerKW[slot];
+            }
+        }
+        for (int slot = 0; slot < SLOTS_PER_DAY; slot++) {
+            double capacityKW = slot >= 17 * 4 && slot < 20 * 4 ? 11.0 : 22.0;
+            assertThat(groupPowerKW[slot]).as("slot %d", slot).isLessThanOrEqualTo(capacityKW + EPSILON);
+        }
+        // The site cannot deliver 180 kWh in the evening, so some of it stays unmet rather than overloading
+        assertThat(schedules).anySatisfy(schedule -> assertThat(schedule.getUnmetEnergyKWh()).isPositive());
+    }
+
+    @Test
+    void energyIsDeliveredWithinEachStay() {
+        List<SessionForecastDto> forecasts = List.of(
+                forecast(station(11.0), 1, DAY_START.plusHours(7).plusMinutes(50), DAY_START.plusHours(12), 20.0),
+                forecast(station(7.4), 1, DAY_START.plusHours(9), DAY_START.plusHours(17).plusMinutes(10), 35.0),
+                forecast(station(22.0), 2, DAY_START.plusHours(18), DAY_START.plusHours(22), 15.0));
+
+        List<ChargingScheduleDto> schedules = optimizer.optimizeDayAhead(DAY, forecasts, false);
+
+        assertThat(schedules).hasSize(forecasts.size());
+        for (ChargingScheduleDto schedule : schedules) {
+            SessionForecastDto forecast = forecasts.stream()
+                    .filter(candidate -> candidate.getSessionId().equals(schedule.getSessionId()))
+                    .findFirst()
+                    .orElseThrow();
+            double[] powerKW = toSlots(schedule.getPeriods());
+            double deliveredKWh = 0.0;
+            for (int slot = 0; slot < SLOTS_PER_DAY; slot++) {
+                LocalDateTime slotStart = DAY_START.plusMinutes((long) slot * ChargingScheduleOptimizer.SLOT_MINUTES);
+                LocalDateTime slotEnd = slotStart.plusMinutes(ChargingScheduleOptimizer.SLOT_MINUTES);
+                if (slotStart.isBefore(forecast.getArrivalTime()) || slotEnd.isAfter(forecast.getDepartureTime())) {
+                    assertThat(powerKW[slot]).as("slot %d outside the stay", slot).isZero();
+                }
+                deliveredKWh += powerKW[slot] * SLOT_HOURS;
+            }
+            assertThat(deliveredKWh).isCloseTo(forecast.getEnergyRequiredKWh(), within(0.01));
+            assertThat(schedule.getUnmetEnergyKWh()).isZero();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sessionsOfAConnectorArePublishedAsOneSchedule() {
+        ChargingStation station = station(11.0);
+        SessionForecastDto morning = forecast(station, 1, DAY_START.plusHours(6), DAY_START.plusHours(9), 11.0);
+        SessionForecastDto evening = forecast(station, 1, DAY_START.plusHours(18), DAY_START.plusHours(21), 11.0);
+        morning.setTransactionId(UUID.randomUUID());
+
+        optimizer.optimizeDayAhead(DAY, List.of(morning, evening), true);
+
+        ArgumentCaptor<List<PowerDistributionEvent.ChargingSchedulePeriod>> periods =
+                ArgumentCaptor.forClass(List.class);
+        verify(kafkaProducerService).sendChargingSchedule(eq(station.getId()), eq(1), eq(DAY_START),
+                periods.capture(), isNull());
+
+        double[] powerKW = toSlots(periods.getValue());
+        double morningKWh = 0.0;
+        double eveningKWh = 0.0;
+        for (int slot = 0; slot < SLOTS_PER_DAY; slot++) {
+            if (slot < 12 * 4) {
+                morningKWh += powerKW[slot] * SLOT_HOURS;
+            } else {
+                eveningKWh += powerKW[slot] * SLOT_HOURS;
+            }
+        }
+        assertThat(morningKWh).isCloseTo(11.0, within(0.01));
+        assertThat(eveningKWh).isCloseTo(11.0, within(0.01));
+    }
+
+    @Test
+    void stationsWithoutEnabledFlagOrMaximumPowerAreSkipped() {
+        ChargingStation unflagged = station(11.0);
+        unflagged.setEnabled(null);
+        ChargingStation unrated = station(11.0);
+        unrated.setMaxPowerKW(null);
+
+        List<ChargingScheduleDto> schedules = optimizer.optimizeDayAhead(DAY, List.of(
+                forecast(unflagged, 1, DAY_START.plusHours(8), DAY_START.plusHours(12), 10.0),
+                forecast(unrated, 1, DAY_START.plusHours(8), DAY_START.plusHours(12), 10.0)), true);
+
+        assertThat(schedules).isEmpty();
+        verify(kafkaProducerService, never()).sendChargingSchedule(any(), any(), any(), any(), any());
+    }
+
+    private ChargingStation station(double maxPowerKW) {
+        ChargingStation station = ChargingStation.builder()
+                .id(UUID.randomUUID())
+                .maxPowerKW(maxPowerKW)
+                .enabled(true)
+                .smartChargingEnabled(true)
+                .chargingGroup(group)
+                .build();
+        stations.add(station);
+        return station;
+    }
+
+    private static SessionForecastDto forecast(ChargingStation station, int connectorId, LocalDateTime arrivalTime,
+                                               LocalDateTime departureTime, double energyRequiredKWh) {
+        return SessionForecastDto.builder()
+                .sessionId(UUID.randomUUID())
+                .stationId(station.getId())
+                .connectorId(connectorId)
+                .arrivalTime(arrivalTime)
+                .departureTime(departureTime)
+                .energyRequiredKWh(energyRequiredKWh)
+                .build();
+    }
+
+    private static double[] toSlots(List<PowerDistributionEvent.ChargingSchedulePeriod> periods) {
+        double[] powerKW = new double[SLOTS_PER_DAY];
+        int slotSeconds = ChargingScheduleOptimizer.SLOT_MINUTES * 60;
+        for (int i = 0; i < periods.size(); i++) {
+            int end = i + 1 < periods.size() ? periods.get(i + 1).getStartPeriod() / slotSeconds : SLOTS_PER_DAY;
+            for (int slot = periods.get(i).getStartPeriod() / slotSeconds; slot < end; slot++) {
+                powerKW[slot] = periods.get(i).getLimitKW();
+            }
+        }
+        return powerKW;
+    }
+}
@@ -0,0 +1,140 @@
+package com.ev.smartcharging.service.impl;
+
+import com.ev.smartcharging.dto.event.GroupPowerCommandEvent;
+import com.ev.smartcharging.model.ChargingSession;
+import com.ev.smartcharging.model.ChargingStation;
+import com.ev.smartcharging.model.SessionStatus;
+import com.ev.smartcharging.repository.ChargingSessionRepository;
+import com.ev.smartcharging.repository.ChargingStationRepository;
+import com.ev.smartcharging.service.KafkaProducerService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmergencyLoadShedServiceImplTests {
+
+    private final UUID groupId = UUID.randomUUID();
+    private final List<ChargingStation> groupStations = new ArrayList<>();
+
+    private ChargingStationRepository stationRepository;
+    private ChargingSessionRepository sessionRepository;
+    private KafkaProducerService kafkaProducerService;
+    private CompletableFuture<Void> sent;
+    private EmergencyLoadShedServiceImpl loadShedService;
+
+    @BeforeEach
+    void setUp() {
+        stationRepository = mock(ChargingStationRepository.class);
+        when(stationRepository.findByChargingGroupId(groupId)).thenAnswer(invocation -> new ArrayList<>(groupStations));
+        sessionRepository = mock(ChargingSessionRepository.class);
+        kafkaProducerService = mock(KafkaProducerService.class);
+        sent = new CompletableFuture<>();
+        when(kafkaProducerService.sendGroupPowerCommand(any())).thenReturn(sent);
+
+        loadShedService = new EmergencyLoadShedServiceImpl(stationRepository, sessionRepository, kafkaProducerService,
+                Runnable::run);
+    }
+
+    @Test
+    void everyEnabledStationIsReducedToItsRemainingShare() {
+        ChargingStation large = station(22.0, true);
+        ChargingStation small = station(11.0, true);
+        station(50.0, false);
+
+        List<UUID> eventIds = loadShedService.shedGroupLoad(groupId, 40, 300);
+
+        GroupPowerCommandEvent command = sentCommand();
+        assertThat(command.getGroupId()).isEqualTo(groupId);
+        assertThat(command.getDurationSeconds()).isEqualTo(300);
+        assertThat(command.getLimits()).extracting(GroupPowerCommandEvent.StationPowerLimit::getStationId)
+                .containsExactly(large.getId(), small.getId());
+        assertThat(command.getLimits().get(0).getPowerLimitKW()).isCloseTo(13.2, within(1e-9));
+        assertThat(command.getLimits().get(1).getPowerLimitKW()).isCloseTo(6.6, within(1e-9));
+        assertThat(eventIds).containsExactlyElementsOf(command.getLimits().stream()
+                .map(GroupPowerCommandEvent.StationPowerLimit::getEventId)
+                .toList());
+    }
+
+    @Test
+    void shedIsPersistedOnlyOnceTheCommandIsSent() {
+        ChargingStation station = station(22.0, true);
+        ChargingSession session = ChargingSession.builder()
+                .id(UUID.randomUUID())
+                .stationId(station.getId())
+                .allocatedPowerKW(22.0)
+                .sessionStatus(SessionStatus.ACTIVE)
+                .build();
+        when(sessionRepository.findActiveSessionsByStationId(station.getId())).thenReturn(List.of(session));
+
+        loadShedService.shedGroupLoad(groupId, 50, 300);
+
+        verify(sessionRepository, never()).saveAll(any());
+        assertThat(session.getAllocatedPowerKW()).isEqualTo(22.0);
+
+        sent.complete(null);
+
+        verify(sessionRepository).saveAll(List.of(session));
+        assertThat(session.getAllocatedPowerKW()).isCloseTo(11.0, within(1e-9));
+        assertThat(session.getSessionStatus()).isEqualTo(SessionStatus.POWER_REDUCED);
+    }
+
+    @Test
+    void emptyGroupIsNotShed() {
+        station(22.0, false);
+
+        assertThat(loadShedService.shedGroupLoad(groupId, 50, 300)).isEmpty();
+
+        verify(kafkaProducerService, never()).sendGroupPowerCommand(any());
+    }
+
+    @Test
+    void stationsJoiningTheGroupAreShedOnceTheGroupIsEvicted() {
+        station(22.0, true);
+        loadShedService.shedGroupLoad(groupId, 50, 300);
+        ChargingStation joined = station(11.0, true);
+
+        // Station capacities are kept between sheds until the group changes
+        loadShedService.shedGroupLoad(groupId, 50, 300);
+        loadShedService.evictGroupAfterCommit(groupId);
+        loadShedService.shedGroupLoad(groupId, 50, 300);
+
+        ArgumentCaptor<GroupPowerCommandEvent> commands = ArgumentCaptor.forClass(GroupPowerCommandEvent.class);
+        verify(kafkaProducerService, times(3)).sendGroupPowerCommand(commands.capture());
+        assertThat(commands.getAllValues()).extracting(command -> command.getLimits().size())
+                .containsExactly(1, 1, 2);
+        assertThat(commands.getAllValues().get(2).getLimits())
+                .extracting(GroupPowerCommandEvent.StationPowerLimit::getStationId)
+                .contains(joined.getId());
+    }
+
+    private ChargingStation station(double maxPowerKW, boolean enabled) {
+        ChargingStation station = ChargingStation.builder()
+                .id(UUID.randomUUID())
+                .maxPowerKW(maxPowerKW)
+                .enabled(enabled)
+                .smartChargingEnabled(true)
+                .build();
+        groupStations.add(station);
+        return station;
+    }
+
+    private GroupPowerCommandEvent sentCommand() {
+        ArgumentCaptor<GroupPowerCommandEvent> command = ArgumentCaptor.forClass(GroupPowerCommandEvent.class);
+        verify(kafkaProducerService).sendGroupPowerCommand(command.capture());
+        return command.getValue();
+    }
+}
@@ -0,0 +1,82 @@
+package com.ev.smartcharging.service.impl;
+
+import com.ev.smartcharging.config.KafkaConfig;
+import com.ev.smartcharging.dto.event.PowerDistributionEvent;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class KafkaProducerServiceImplTests {
+
+    private static final LocalDateTime SCHEDULE_START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    // Off-peak night at 0 kW, then 11 kW from 06:00 and 3.7 kW from 18:00
+    private static final List<PowerDistributionEvent.ChargingSchedulePeriod> PERIODS = List.of(
+            period(0, 0.0),
+            period(6 * 3600, 11.0),
+            period(18 * 3600, 3.7));
+
+    @Test
+    void limitInEffectFollowsTheCurrentPeriod() {
+        assertThat(KafkaProducerServiceImpl.limitInEffect(SCHEDULE_START, PERIODS, SCHEDULE_START.plusHours(2)))
+                .isEqualTo(0.0);
+        assertThat(KafkaProducerServiceImpl.limitInEffect(SCHEDULE_START, PERIODS, SCHEDULE_START.plusHours(6)))
+                .isEqualTo(11.0);
+        assertThat(KafkaProducerServiceImpl.limitInEffect(SCHEDULE_START, PERIODS, SCHEDULE_START.plusHours(20)))
+                .isEqualTo(3.7);
+    }
+
+    @Test
+    void noLimitBeforeTheScheduleStarts() {
+        assertThat(KafkaProducerServiceImpl.limitInEffect(SCHEDULE_START, PERIODS, SCHEDULE_START.minusMinutes(1)))
+                .isNull();
+    }
+
+    @Test
+    void periodWithoutLimitGivesNoLimit() {
+        List<PowerDistributionEvent.ChargingSchedulePeriod> periods = List.of(period(0, 7.4), period(3600, null));
+
+        assertThat(KafkaProducerServiceImpl.limitInEffect(SCHEDULE_START, periods, SCHEDULE_START.plusHours(2)))
+                .isNull();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void scheduleCarriesTheTransactionAndCurrentLimit() {
+        KafkaTemplate<String, Object> kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(new CompletableFuture<>());
+        KafkaProducerServiceImpl producer = new KafkaProducerServiceImpl(kafkaTemplate);
+        UUID stationId = UUID.randomUUID();
+        UUID transactionId = UUID.randomUUID();
+        LocalDateTime start = LocalDateTime.now().minusHours(7);
+
+        producer.sendChargingSchedule(stationId, 1, start, PERIODS, transactionId);
+
+        ArgumentCaptor<Object> sent = ArgumentCaptor.forClass(Object.class);
+        verify(kafkaTemplate).send(eq(KafkaConfig.POWER_DISTRIBUTION_EVENTS_TOPIC), eq(stationId.toString()), sent.capture());
+        PowerDistributionEvent event = (PowerDistributionEvent) sent.getValue();
+        assertThat(event.getTransactionId()).isEqualTo(transactionId);
+        assertThat(event.getPowerLimitKW()).isEqualTo(11.0);
+        assertThat(event.getChargingSchedulePeriods()).isEqualTo(PERIODS);
+    }
+
+    private static PowerDistributionEvent.ChargingSchedulePeriod period(int startPeriod, Double limitKW) {
+        return PowerDistributionEvent.ChargingSchedulePeriod.builder()
+                .startPeriod(startPeriod)
+                .limitKW(limitKW)
+                .build();
+    }
+}
@@ -0,0 +1,175 @@
+package com.ev.smartcharging.simulation;
+
+import com.ev.smartcharging.model.ChargingSession;
+import com.ev.smartcharging.model.LoadBalancingStrategy;
+import com.ev.smartcharging.model.PowerProfile;
+import com.ev.smartcharging.model.SessionStatus;
+import com.ev.smartcharging.service.allocation.PowerAllocator;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+/**
+ * Deterministic discrete-event simulator for a single charging group.
+ * Replays arrivals and departures through {@link PowerAllocator}, reallocating on every
+ * event and on a fixed interval like the scheduled reallocation does in production.
+ * Between events every session draws its allocation until its energy need is met,
+ * and that actual draw is fed back to the CLOSED_LOOP strategy as its measurement.
+ */
+public class ChargingSimulator {
+
+    private static final LocalDateTime TRACE_START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    // Event ordering at equal timestamps: departures free capacity before arrivals claim it
+    private static final int DEPARTURE = 0;
+    private static final int ARRIVAL = 1;
+    private static final int TICK = 2;
+
+    private final PowerAllocator powerAllocator;
+    private final double groupMaxPowerKW;
+    private final long reallocationIntervalSeconds;
+
+    public ChargingSimulator(PowerAllocator powerAllocator, double groupMaxPowerKW, long reallocationIntervalSeconds) {
+        this.powerAllocator = powerAllocator;
+        this.groupMaxPowerKW = groupMaxPowerKW;
+        this.reallocationIntervalSeconds = reallocationIntervalSeconds;
+    }
+
+    /**
+     * Power profile to replay a strategy with: TIME_OF_USE gets a peak-hour profile, active for the whole
+     * replay, capping the group at 80% of its maximum with a 1.4 kW floor per session.
+     * The other strategies ignore profiles.
+     */
+    public static PowerProfile profileFor(LoadBalancingStrategy strategy, double groupMaxPowerKW) {
+        if (strategy != LoadBalancingStrategy.TIME_OF_USE) {
+            return null;
+        }
+        return PowerProfile.builder()
+                .maxPowerKW(groupMaxPowerKW * 0.8)
+                .minPowerKW(1.4)
+                .build();
+    }
+
+    /**
+     * Replays the trace through the given strategy.
+     * @param strategy The load balancing strategy to evaluate
+     * @param traces The sessions to replay
+     * @param activeProfile Power profile passed to TIME_OF_USE (may be null)
+     * @return The collected metrics
+     */
+    public SimulationResult run(LoadBalancingStrategy strategy, List<SessionTrace> traces, PowerProfile activeProfile) {
+        int count = traces.size();
+        ChargingSession[] sessions = new ChargingSession[count];
+        double[] deliveredKWh = new double[count];
+
+        PriorityQueue<long[]> events = new PriorityQueue<>(Comparator
+                .<long[]>comparingLong(event -> event[0])
+                .thenComparingLong(event -> event[1])
+                .thenComparingLong(event -> event[2]));
+
+        long lastDeparture = 0;
+        for (int i = 0; i < count; i++) {
+            SessionTrace trace = traces.get(i);
+            // The connector ID doubles as the index into the trace
+            sessions[i] = ChargingSession.builder()
+                    .id(UUID.nameUUIDFromBytes(("sim-" + i).getBytes(StandardCharsets.UTF_8)))
+                    .connectorId(i)
+                    .startTime(TRACE_START.plusSeconds(trace.getArrivalSeconds()))
+                    .maxPowerKW(trace.getMaxPowerKW())
+                    .allocatedPowerKW(0.0)
+                    .priorityLevel(trace.getPriorityLevel())
+                    .sessionStatus(SessionStatus.PENDING)
+                    .build();
+            events.add(new long[]{trace.getArrivalSeconds(), ARRIVAL, i});
+            events.add(new long[]{trace.getDepartureSeconds(), DEPARTURE, i});
+            lastDeparture = Math.max(lastDeparture, trace.getDepartureSeconds());
+        }
+        for (long t = reallocationIntervalSeconds; t < lastDeparture; t += reallocationIntervalSeconds) {
+            events.add(new long[]{t, TICK, -1});
+        }
+
+        List<ChargingSession> active = new ArrayList<>();
+        Map<UUID, Double> measuredDrawKW = new HashMap<>();
+        double peakKW = 0.0;
+        long lastTime = 0;
+        int reallocations = 0;
+        long totalNanos = 0;
+        long maxNanos = 0;
+
+        while (!events.isEmpty()) {
+            long[] event = events.poll();
+            long now = event[0];
+
+            // Advance energy delivery across the interval since the previous event
+            double hours = (now - lastTime) / 3600.0;
+            double drawKW = 0.0;
+            for (ChargingSession session : active) {
+                int index = session.getConnectorId();
+                double need = traces.get(index).getEnergyRequiredKWh() - deliveredKWh[index];
+                double sessionDrawKW = need > 0 ? session.getAllocatedPowerKW() : 0.0;
+                if (need > 0) {
+                    drawKW += sessionDrawKW;
+                    deliveredKWh[index] += Math.min(need, session.getAllocatedPowerKW() * hours);
+                }
+                if (hours > 0) {
+                    measuredDrawKW.put(session.getId(), sessionDrawKW);
+                }
+            }
+            if (hours > 0) {
+                peakKW = Math.max(peakKW, drawKW);
+            }
+            lastTime = now;
+
+            int index = (int) event[2];
+            if (event[1] == ARRIVAL) {
+                active.add(sessions[index]);
+            } else if (event[1] == DEPARTURE) {
+                active.remove(sessions[index]);
+                measuredDrawKW.remove(sessions[index].getId());
+                sessions[index].setAllocatedPowerKW(0.0);
+                sessions[index].setSessionStatus(SessionStatus.COMPLETED);
+            }
+
+            if (!active.isEmpty()) {
+                long start = System.nanoTime();
+                powerAllocator.allocate(strategy, groupMaxPowerKW, active, activeProfile, measuredDrawKW);
+                long elapsed = System.nanoTime() - start;
+                totalNanos += elapsed;
+                maxNanos = Math.max(maxNanos, elapsed);
+                reallocations++;
+            }
+        }
+
+        double requested = 0.0;
+        double delivered = 0.0;
+        double shareSum = 0.0;
+        double shareSquareSum = 0.0;
+        for (int i = 0; i < count; i++) {
+            double need = traces.get(i).getEnergyRequiredKWh();
+            requested += need;
+            delivered += deliveredKWh[i];
+            double share = need > 0 ? deliveredKWh[i] / need : 1.0;
+            shareSum += share;
+            shareSquareSum += share * share;
+        }
+
+        return SimulationResult.builder()
+                .strategy(strategy)
+                .sessionCount(count)
+                .energyDeliveredKWh(delivered)
+                .unmetDemandKWh(requested - delivered)
+                .peakKW(peakKW)
+                .jainFairnessIndex(shareSquareSum > 0 ? (shareSum * shareSum) / (count * shareSquareSum) : 1.0)
+                .reallocations(reallocations)
+                .meanReallocationMicros(reallocations > 0 ? totalNanos / 1000.0 / reallocations : 0.0)
+                .maxReallocationMicros(maxNanos / 1000.0)
+                .build();
+    }
+}
@@ -0,0 +1,61 @@
+package com.ev.smartcharging.simulation;
+
+import com.ev.smartcharging.model.LoadBalancingStrategy;
+import com.ev.smartcharging.model.PowerProfile;
+import com.ev.smartcharging.service.allocation.PowerAllocator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class ChargingSimulatorTests {
+
+    private static final double GROUP_MAX_POWER_KW = 150.0;
+
+    private final ChargingSimulator simulator = new ChargingSimulator(new PowerAllocator(), GROUP_MAX_POWER_KW, 60);
+
+    @ParameterizedTest
+    @EnumSource(LoadBalancingStrategy.class)
+    void strategyStaysWithinGroupLimitAndConservesEnergy(LoadBalancingStrategy strategy) {
+        List<SessionTrace> traces = TraceGenerator.synthetic(100, 24, 42L);
+        double requested = traces.stream().mapToDouble(SessionTrace::getEnergyRequiredKWh).sum();
+
+        PowerProfile profile = ChargingSimulator.profileFor(strategy, GROUP_MAX_POWER_KW);
+        SimulationResult result = simulator.run(strategy, traces, profile);
+
+        assertThat(result.getStrategy()).isEqualTo(strategy);
+        assertThat(result.getSessionCount()).isEqualTo(traces.size());
+        assertThat(result.getPeakKW()).isLessThanOrEqualTo(GROUP_MAX_POWER_KW + 1e-6);
+        assertThat(result.getEnergyDeliveredKWh() + result.getUnmetDemandKWh()).isCloseTo(requested, within(1e-6));
+        assertThat(result.getJainFairnessIndex()).isBetween(0.0, 1.0 + 1e-9);
+        assertThat(result.getReallocations()).isPositive();
+    }
+
+    @Test
+    void timeOfUseKeepsToTheProfileLimit() {
+        List<SessionTrace> traces = TraceGenerator.synthetic(100, 24, 42L);
+        PowerProfile profile = ChargingSimulator.profileFor(LoadBalancingStrategy.TIME_OF_USE, GROUP_MAX_POWER_KW);
+
+        SimulationResult result = simulator.run(LoadBalancingStrategy.TIME_OF_USE, traces, profile);
+
+        // The per-session floor may push the last session served past the profile limit by at most the floor
+        assertThat(result.getPeakKW()).isLessThanOrEqualTo(profile.getMaxPowerKW() + profile.getMinPowerKW() + 1e-6);
+        assertThat(result.getEnergyDeliveredKWh()).isPositive();
+    }
+
+    @Test
+    void replayIsDeterministic() {
+        List<SessionTrace> traces = TraceGenerator.synthetic(50, 12, 7L);
+
+        SimulationResult first = simulator.run(LoadBalancingStrategy.PRIORITY_BASED, traces, null);
+        SimulationResult second = simulator.run(LoadBalancingStrategy.PRIORITY_BASED, traces, null);
+
+        assertThat(second.getEnergyDeliveredKWh()).isEqualTo(first.getEnergyDeliveredKWh());
+        assertThat(second.getPeakKW()).isEqualTo(first.getPeakKW());
+        assertThat(second.getJainFairnessIndex()).isEqualTo(first.getJainFairnessIndex());
+    }
+}
@@ -0,0 +1,21 @@
+package com.ev.smartcharging.simulation;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One charging session in a simulation trace. Times are seconds from the start of the trace.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionTrace {
+    private long arrivalSeconds;
+    private long departureSeconds;
+    private double energyRequiredKWh;
+    private double maxPowerKW;
+    private Integer priorityLevel;
+}
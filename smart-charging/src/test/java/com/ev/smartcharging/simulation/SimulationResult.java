@@ -0,0 +1,39 @@
+package com.ev.smartcharging.simulation;
+
+import com.ev.smartcharging.model.LoadBalancingStrategy;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Metrics collected while replaying a trace through one load balancing strategy.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SimulationResult {
+    private LoadBalancingStrategy strategy;
+    private int sessionCount;
+    private double energyDeliveredKWh;
+    private double unmetDemandKWh;
+    private double peakKW;
+    
+    /**
+     * Jain's fairness index over the share of requested energy each session received (1.0 = perfectly fair)
+     */
+    private double jainFairnessIndex;
+    
+    private int reallocations;
+    private double meanReallocationMicros;
+    private double maxReallocationMicros;
+
+    @Override
+    public String toString() {
+        return String.format("%-22s sessions=%d delivered=%.1fkWh unmet=%.1fkWh peak=%.1fkW fairness=%.3f " +
+                        "reallocations=%d mean=%.1fus max=%.1fus",
+                strategy, sessionCount, energyDeliveredKWh, unmetDemandKWh, peakKW, jainFairnessIndex,
+                reallocations, meanReallocationMicros, maxReallocationMicros);
+    }
+}
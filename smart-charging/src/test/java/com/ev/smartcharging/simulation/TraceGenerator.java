@@ -0,0 +1,75 @@
+package com.ev.smartcharging.simulation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds simulation traces, either synthetically from a fixed seed or from a recorded CSV file.
+ */
+public final class TraceGenerator {
+
+    private static final double[] CONNECTOR_POWER_KW = {7.4, 11.0, 22.0, 50.0};
+
+    private TraceGenerator() {
+    }
+
+    /**
+     * Generates a depot-like trace: arrivals spread over the first part of the horizon,
+     * stays of one to ten hours and energy needs between 5 and 60 kWh.
+     * @param sessionCount Number of sessions
+     * @param horizonHours Length of the trace in hours
+     * @param seed Random seed; the same seed always yields the same trace
+     * @return The generated trace
+     */
+    public static List<SessionTrace> synthetic(int sessionCount, int horizonHours, long seed) {
+        Random random = new Random(seed);
+        long horizonSeconds = horizonHours * 3600L;
+        List<SessionTrace> traces = new ArrayList<>(sessionCount);
+
+        for (int i = 0; i < sessionCount; i++) {
+            long arrival = (long) (random.nextDouble() * horizonSeconds * 0.6);
+            long stay = 3600L + (long) (random.nextDouble() * 9 * 3600);
+            traces.add(SessionTrace.builder()
+                    .arrivalSeconds(arrival)
+                    .departureSeconds(Math.min(horizonSeconds, arrival + stay))
+                    .energyRequiredKWh(5 + random.nextDouble() * 55)
+                    .maxPowerKW(CONNECTOR_POWER_KW[random.nextInt(CONNECTOR_POWER_KW.length)])
+                    .priorityLevel(1 + random.nextInt(5))
+                    .build());
+        }
+
+        return traces;
+    }
+
+    /**
+     * Loads a recorded trace with the columns
+     * {@code arrivalSeconds,departureSeconds,energyRequiredKWh,maxPowerKW,priorityLevel}.
+     * Blank lines, lines starting with '#' and a header line are ignored.
+     * @param file The CSV file
+     * @return The recorded trace
+     */
+    public static List<SessionTrace> fromCsv(Path file) throws IOException {
+        List<SessionTrace> traces = new ArrayList<>();
+
+        for (String line : Files.readAllLines(file)) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#") || Character.isLetter(trimmed.charAt(0))) {
+                continue;
+            }
+            String[] columns = trimmed.split(",");
+            traces.add(SessionTrace.builder()
+                    .arrivalSeconds(Long.parseLong(columns[0].trim()))
+                    .departureSeconds(Long.parseLong(columns[1].trim()))
+                    .energyRequiredKWh(Double.parseDouble(columns[2].trim()))
+                    .maxPowerKW(Double.parseDouble(columns[3].trim()))
+                    .priorityLevel(columns.length > 4 ? Integer.valueOf(columns[4].trim()) : null)
+                    .build());
+        }
+
+        return traces;
+    }
+}
@@ -0,0 +1,26 @@
+package com.ev.station.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Thread pools for work that runs off the Kafka listener and OCPP threads.
+ */
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Sends power limit notifications after an emergency command has been applied
+     */
+    @Bean(name = "powerNotificationExecutor")
+    public ThreadPoolTaskExecutor powerNotificationExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("power-notification-");
+        executor.initialize();
+        return executor;
+    }
+}
@@ -1,5 +1,6 @@
 package com.ev.station.config;
 
+import com.ev.station.dto.event.GroupPowerCommandEvent;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.springframework.beans.factory.annotation.Value;
@@ -36,6 +37,7 @@ public class KafkaConsumerConfig {
     
     // Topics to consume from
     public static final String POWER_DISTRIBUTION_EVENTS_TOPIC = "power-distribution-events";
+    public static final String EMERGENCY_POWER_COMMANDS_TOPIC = "emergency-power-commands";
 
     // Consumer configuration
     @Bean
@@ -74,4 +76,41 @@ public class KafkaConsumerConfig {
         
         return factory;
     }
-} 
\ No newline at end of file
+
+    /**
+     * Consumer factory for emergency group power commands.
+     * The payload type is fixed so no type headers from the producer are needed.
+     */
+    @Bean
+    public ConsumerFactory<String, GroupPowerCommandEvent> groupPowerCommandConsumerFactory() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, STATION_CONSUMER_GROUP);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.CLIENT_ID_CONFIG, applicationName + "-emergency-consumer");
+        props.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, false);
+        props.put(JsonDeserializer.VALUE_DEFAULT_TYPE, GroupPowerCommandEvent.class.getName());
+
+        // Emergency commands must not wait behind a long poll
+        props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, 10);
+
+        return new DefaultKafkaConsumerFactory<>(props);
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, GroupPowerCommandEvent> groupPowerCommandListenerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, GroupPowerCommandEvent> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(groupPowerCommandConsumerFactory());
+        factory.setConcurrency(3);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
+
+        // A stale emergency command is worse than a missed one, so it is not retried
+        factory.setCommonErrorHandler(new DefaultErrorHandler(new FixedBackOff(0L, 0)));
+
+        return factory;
+    }
+}
@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -68,6 +69,36 @@ public class PowerDistributionEvent {
      */
     private UUID transactionId;
     
+    /**
+     * Start of the charging schedule (applicable when schedule periods are present)
+     */
+    private LocalDateTime scheduleStart;
+    
+    /**
+     * Schedule periods relative to scheduleStart; when present they take precedence over powerLimitKW
+     */
+    private List<ChargingSchedulePeriod> chargingSchedulePeriods;
+    
+    /**
+     * Power limit for one period of a charging schedule
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ChargingSchedulePeriod {
+        
+        /**
+         * Start of the period in seconds from scheduleStart
+         */
+        private Integer startPeriod;
+        
+        /**
+         * Power limit in kW during this period
+         */
+        private Double limitKW;
+    }
+    
     /**
      * Reasons for power adjustment
      */
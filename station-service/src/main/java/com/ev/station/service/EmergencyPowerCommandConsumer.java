@@ -0,0 +1,52 @@
+package com.ev.station.service;
+
+import com.ev.station.config.KafkaConsumerConfig;
+import com.ev.station.dto.event.GroupPowerCommandEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Service;
+
+/**
+ * Kafka consumer for emergency group power commands coming from the Smart Charging service.
+ * Each command carries the limits for a whole group and is fanned out to the stations at once.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmergencyPowerCommandConsumer {
+
+    private final PowerControlService powerControlService;
+
+    /**
+     * Listen for emergency group power commands from the Smart Charging service.
+     * The command is acknowledged as soon as it has been sent to the stations, since
+     * replaying an emergency limit after a failure could apply it long after it was needed.
+     *
+     * @param command The group power command to apply
+     * @param acknowledgment The Kafka acknowledgment callback
+     */
+    @KafkaListener(
+            topics = KafkaConsumerConfig.EMERGENCY_POWER_COMMANDS_TOPIC,
+            groupId = KafkaConsumerConfig.STATION_CONSUMER_GROUP,
+            containerFactory = "groupPowerCommandListenerFactory"
+    )
+    public void consumeGroupPowerCommand(GroupPowerCommandEvent command, Acknowledgment acknowledgment) {
+        try {
+            log.info("Received emergency command: {} for {} stations",
+                    command.getCommandId(), command.getLimits().size());
+
+            powerControlService.applyGroupPowerCommand(command)
+                    .exceptionally(e -> {
+                        log.error("Error applying emergency command {}: {}",
+                                command.getCommandId(), e.getMessage(), e);
+                        return 0;
+                    });
+        } catch (Exception e) {
+            log.error("Error processing emergency command: {}", e.getMessage(), e);
+        } finally {
+            acknowledgment.acknowledge();
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.ev.station.service;
 
+import com.ev.station.dto.event.GroupPowerCommandEvent;
 import com.ev.station.dto.event.PowerDistributionEvent;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -19,6 +22,15 @@ public interface PowerControlService {
      */
     boolean processPowerDistributionEvent(PowerDistributionEvent event);
     
+    /**
+     * Applies all limits of an emergency group power command concurrently.
+     * Stations are not looked up beforehand; disconnected stations simply fail fast.
+     *
+     * @param command The group power command to apply
+     * @return A CompletableFuture with the number of limits the stations accepted
+     */
+    CompletableFuture<Integer> applyGroupPowerCommand(GroupPowerCommandEvent command);
+    
     /**
      * Sets a power limit on a specific connector of a charging station.
      *
@@ -36,6 +48,23 @@ public interface PowerControlService {
             Integer durationSeconds,
             Integer profileId);
     
+    /**
+     * Sets a multi-period charging schedule on a specific connector of a charging station.
+     *
+     * @param stationId The ID of the charging station
+     * @param connectorId The ID of the connector (0 for the whole station)
+     * @param scheduleStart The start of the schedule
+     * @param periods The schedule periods relative to the start
+     * @param profileId Optional profile ID for tracking
+     * @return A CompletableFuture that completes when the command is processed
+     */
+    CompletableFuture<Boolean> setConnectorChargingSchedule(
+            String stationId,
+            int connectorId,
+            LocalDateTime scheduleStart,
+            List<PowerDistributionEvent.ChargingSchedulePeriod> periods,
+            Integer profileId);
+    
     /**
      * Clears a power limit on a specific connector of a charging station.
      *
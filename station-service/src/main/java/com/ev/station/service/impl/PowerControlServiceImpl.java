@@ -1,5 +1,6 @@
 package com.ev.station.service.impl;
 
+import com.ev.station.dto.event.GroupPowerCommandEvent;
 import com.ev.station.dto.event.PowerDistributionEvent;
 import com.ev.station.model.ChargingStation;
 import com.ev.station.model.StationStatus;
@@ -11,8 +12,10 @@ import com.ev.station.service.ChargingStationService;
 import com.ev.station.service.NotificationService;
 import com.ev.station.service.PowerControlService;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
@@ -24,13 +27,14 @@ import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Implementation of PowerControlService to process power distribution events 
  * and send charging profiles to stations.
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class PowerControlServiceImpl implements PowerControlService {
 
@@ -38,6 +42,8 @@ public class PowerControlServiceImpl implements PowerControlService {
     private final OcppWebSocketHandler ocppWebSocketHandler;
     private final NotificationService notificationService;
     private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Executor powerNotificationExecutor;
     
     // Cache of active power control profiles to track and manage them
     // Map: stationId -> connectorId -> profileId -> expiryTime
@@ -46,6 +52,32 @@ public class PowerControlServiceImpl implements PowerControlService {
     // Base profile ID for power control profiles
     private static final int POWER_CONTROL_PROFILE_BASE_ID = 1000000;
     
+    // Base profile ID for day-ahead schedules; each connector holds one schedule that the next plan replaces
+    private static final int SCHEDULE_PROFILE_BASE_ID = 2000000;
+    
+    // A station replaces any profile with the same purpose and stack level, so power limits sit above
+    // the day-ahead schedule and clearing a limit falls back to the schedule
+    private static final int SCHEDULE_STACK_LEVEL = 0;
+    private static final int POWER_LIMIT_STACK_LEVEL = 1;
+    
+    // Emergency limits not confirmed by then are reported as failed
+    private static final long EMERGENCY_RESPONSE_TIMEOUT_SECONDS = 5;
+    
+    public PowerControlServiceImpl(
+            ChargingStationService stationService,
+            OcppWebSocketHandler ocppWebSocketHandler,
+            NotificationService notificationService,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Qualifier("powerNotificationExecutor") Executor powerNotificationExecutor) {
+        this.stationService = stationService;
+        this.ocppWebSocketHandler = ocppWebSocketHandler;
+        this.notificationService = notificationService;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.powerNotificationExecutor = powerNotificationExecutor;
+    }
+    
     @Override
     public boolean processPowerDistributionEvent(PowerDistributionEvent event) {
         try {
@@ -74,13 +106,23 @@ public class PowerControlServiceImpl implements PowerControlService {
             // Calculate profile ID for this event
             int profileId = calculateProfileId(event);
             
-            // Set connector power limit
-            CompletableFuture<Boolean> result = setConnectorPowerLimit(
-                    stationId,
-                    connectorId,
-                    event.getPowerLimitKW(),
-                    event.isTemporary() ? event.getDurationSeconds() : null,
-                    profileId);
+            // Planned schedules are sent as a whole; otherwise set a single connector power limit
+            CompletableFuture<Boolean> result;
+            if (event.getChargingSchedulePeriods() != null && !event.getChargingSchedulePeriods().isEmpty()) {
+                result = setConnectorChargingSchedule(
+                        stationId,
+                        connectorId,
+                        event.getScheduleStart(),
+                        event.getChargingSchedulePeriods(),
+                        profileId);
+            } else {
+                result = setConnectorPowerLimit(
+                        stationId,
+                        connectorId,
+                        event.getPowerLimitKW(),
+                        event.isTemporary() ? event.getDurationSeconds() : null,
+                        profileId);
+            }
             
             // If this is a temporary limit, schedule its expiration
             if (event.isTemporary() && event.getDurationSeconds() != null) {
@@ -118,6 +160,83 @@ public class PowerControlServiceImpl implements PowerControlService {
         }
     }
 
+    @Override
+    public CompletableFuture<Integer> applyGroupPowerCommand(GroupPowerCommandEvent command) {
+        long receivedAtNanos = System.nanoTime();
+        List<GroupPowerCommandEvent.StationPowerLimit> limits = command.getLimits();
+        List<CompletableFuture<Boolean>> results = new ArrayList<>(limits.size());
+        LocalDateTime expiryTime = command.getDurationSeconds() != null
+                ? LocalDateTime.now().plusSeconds(command.getDurationSeconds())
+                : null;
+        
+        // Send every profile before waiting on any response
+        for (GroupPowerCommandEvent.StationPowerLimit limit : limits) {
+            String stationId = limit.getStationId().toString();
+            int connectorId = limit.getConnectorId() != null ? limit.getConnectorId() : 0;
+            int profileId = calculateProfileId(command.getPriority(), command.getReason(), limit.getConnectorId());
+            
+            results.add(setConnectorPowerLimit(
+                    stationId, connectorId, limit.getPowerLimitKW(), command.getDurationSeconds(), profileId)
+                    .completeOnTimeout(false, EMERGENCY_RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    .exceptionally(e -> false));
+            
+            if (expiryTime != null) {
+                activeProfiles.computeIfAbsent(stationId, k -> new ConcurrentHashMap<>())
+                        .computeIfAbsent(connectorId, k -> new ConcurrentHashMap<>())
+                        .put(profileId, expiryTime);
+            }
+        }
+        
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> {
+                    int accepted = 0;
+                    for (CompletableFuture<Boolean> result : results) {
+                        if (result.join()) {
+                            accepted++;
+                        }
+                    }
+                    
+                    // Measured on this host's monotonic clock only; the issuing host's clock may differ
+                    long latencyNanos = System.nanoTime() - receivedAtNanos;
+                    Timer.builder("station.emergency.shed.latency")
+                            .description("Time from receiving an emergency command to the last station response")
+                            .register(meterRegistry)
+                            .record(latencyNanos, TimeUnit.NANOSECONDS);
+                    log.info("Emergency command {} applied to {}/{} limits in {} ms",
+                            command.getCommandId(), accepted, limits.size(), latencyNanos / 1_000_000);
+                    
+                    // Notifications need station names, so they are sent off the critical path
+                    CompletableFuture.runAsync(
+                            () -> notifyGroupPowerCommand(command, results), powerNotificationExecutor);
+                    
+                    return accepted;
+                });
+    }
+    
+    /**
+     * Send a power limit notification for every limit of a group power command
+     */
+    private void notifyGroupPowerCommand(GroupPowerCommandEvent command, List<CompletableFuture<Boolean>> results) {
+        for (int i = 0; i < command.getLimits().size(); i++) {
+            GroupPowerCommandEvent.StationPowerLimit limit = command.getLimits().get(i);
+            try {
+                ChargingStation station = stationService.getStationByUUID(limit.getStationId());
+                notificationService.notifyPowerLimitSet(
+                        limit.getStationId(),
+                        station != null ? station.getName() : limit.getStationId().toString(),
+                        limit.getConnectorId(),
+                        limit.getPowerLimitKW(),
+                        command.getReason(),
+                        command.getDurationSeconds() != null,
+                        command.getDurationSeconds(),
+                        results.get(i).join());
+            } catch (Exception e) {
+                log.error("Error sending power limit notification for station {}: {}",
+                        limit.getStationId(), e.getMessage(), e);
+            }
+        }
+    }
+
     @Override
     public CompletableFuture<Boolean> setConnectorPowerLimit(
             String stationId, int connectorId, double powerLimitKW, Integer durationSeconds, Integer profileId) {
@@ -133,42 +252,7 @@ public class PowerControlServiceImpl implements PowerControlService {
             SetChargingProfileRequest request = buildChargingProfileRequest(
                     connectorId, powerLimitW, durationSeconds, profileId);
             
-            // Get the station for notification purposes
-            UUID stationUuid = UUID.fromString(stationId);
-            ChargingStation station = stationService.getStationByUUID(stationUuid);
-            String stationName = station != null ? station.getName() : stationId;
-            
-            // Send to station and return the future
-            return sendOcppRequest(stationId, "SetChargingProfile", request)
-                    .thenApply(response -> {
-                        try {
-                            // Parse the response
-                            SetChargingProfileResponse profileResponse = 
-                                    objectMapper.convertValue(response.getPayload(), SetChargingProfileResponse.class);
-                            
-                            // Check if it was accepted
-                            boolean success = profileResponse.getStatus() == 
-                                    SetChargingProfileResponse.ChargingProfileStatus.Accepted;
-                            
-                            if (success) {
-                                log.info("Successfully set power limit on station {} connector {}", 
-                                        stationId, connectorId);
-                            } else {
-                                log.warn("Failed to set power limit on station {} connector {}: {}", 
-                                        stationId, connectorId, profileResponse.getStatus());
-                            }
-                            
-                            return success;
-                        } catch (Exception e) {
-                            log.error("Error processing charging profile response: {}", e.getMessage(), e);
-                            return false;
-                        }
-                    })
-                    .exceptionally(e -> {
-                        log.error("Error setting power limit on station {} connector {}: {}", 
-                                stationId, connectorId, e.getMessage(), e);
-                        return false;
-                    });
+            return sendChargingProfile(stationId, connectorId, request);
         } catch (Exception e) {
             log.error("Error preparing power limit request: {}", e.getMessage(), e);
             CompletableFuture<Boolean> future = new CompletableFuture<>();
@@ -177,6 +261,69 @@ public class PowerControlServiceImpl implements PowerControlService {
         }
     }
 
+    @Override
+    public CompletableFuture<Boolean> setConnectorChargingSchedule(
+            String stationId,
+            int connectorId,
+            LocalDateTime scheduleStart,
+            List<PowerDistributionEvent.ChargingSchedulePeriod> periods,
+            Integer profileId) {
+        
+        try {
+            log.info("Setting {}-period charging schedule on station {} connector {}", 
+                    periods.size(), stationId, connectorId);
+            
+            SetChargingProfileRequest request = buildScheduledChargingProfileRequest(
+                    connectorId, scheduleStart, periods, profileId);
+            
+            return sendChargingProfile(stationId, connectorId, request);
+        } catch (Exception e) {
+            log.error("Error preparing charging schedule request: {}", e.getMessage(), e);
+            CompletableFuture<Boolean> future = new CompletableFuture<>();
+            future.complete(false);
+            return future;
+        }
+    }
+    
+    /**
+     * Send a SetChargingProfile request and map the station's response to a success flag
+     */
+    private CompletableFuture<Boolean> sendChargingProfile(
+            String stationId, int connectorId, SetChargingProfileRequest request) {
+        
+        // Send to station and return the future
+        return sendOcppRequest(stationId, "SetChargingProfile", request)
+                .thenApply(response -> {
+                    try {
+                        // Parse the response
+                        SetChargingProfileResponse profileResponse = 
+                                objectMapper.convertValue(response.getPayload(), SetChargingProfileResponse.class);
+                        
+                        // Check if it was accepted
+                        boolean success = profileResponse.getStatus() == 
+                                SetChargingProfileResponse.ChargingProfileStatus.Accepted;
+                        
+                        if (success) {
+                            log.info("Successfully set power limit on station {} connector {}", 
+                                    stationId, connectorId);
+                        } else {
+                            log.warn("Failed to set power limit on station {} connector {}: {}", 
+                                    stationId, connectorId, profileResponse.getStatus());
+                        }
+                        
+                        return success;
+                    } catch (Exception e) {
+                        log.error("Error processing charging profile response: {}", e.getMessage(), e);
+                        return false;
+                    }
+                })
+                .exceptionally(e -> {
+                    log.error("Error setting power limit on station {} connector {}: {}", 
+                            stationId, connectorId, e.getMessage(), e);
+                    return false;
+                });
+    }
+
     @Override
     public CompletableFuture<Boolean> clearConnectorPowerLimit(String stationId, int connectorId, int profileId) {
         log.info("Clearing power limit profile {} on station {} connector {}", 
@@ -248,15 +395,23 @@ public class PowerControlServiceImpl implements PowerControlService {
 
     @Override
     public int calculateProfileId(PowerDistributionEvent event) {
+        if (event.getChargingSchedulePeriods() != null && !event.getChargingSchedulePeriods().isEmpty()) {
+            return SCHEDULE_PROFILE_BASE_ID + (event.getConnectorId() != null ? event.getConnectorId() : 0);
+        }
+        return calculateProfileId(event.getPriority(), event.getReason(), event.getConnectorId());
+    }
+    
+    private int calculateProfileId(int priority, PowerDistributionEvent.PowerAdjustmentReason reason,
+                                   Integer connectorId) {
         // Create a unique profile ID based on the event type and priority
         // This ensures that higher priority events override lower priority ones
-        int priorityComponent = event.getPriority() * 1000;
-        int reasonComponent = event.getReason().ordinal() * 100;
+        int priorityComponent = priority * 1000;
+        int reasonComponent = reason.ordinal() * 100;
         int uniqueComponent;
         
-        if (event.getConnectorId() != null) {
+        if (connectorId != null) {
             // For connector-specific profiles
-            uniqueComponent = event.getConnectorId();
+            uniqueComponent = connectorId;
         } else {
             // For station-wide profiles
             uniqueComponent = 0;
@@ -376,7 +531,7 @@ public class PowerControlServiceImpl implements PowerControlService {
         SetChargingProfileRequest.ChargingProfile profile = 
                 SetChargingProfileRequest.ChargingProfile.builder()
                         .chargingProfileId(profileId != null ? profileId : POWER_CONTROL_PROFILE_BASE_ID)
-                        .stackLevel(0)
+                        .stackLevel(POWER_LIMIT_STACK_LEVEL)
                         .chargingProfilePurpose(SetChargingProfileRequest.ChargingProfilePurposeType.TxDefaultProfile)
                         .chargingProfileKind(SetChargingProfileRequest.ChargingProfileKindType.Absolute)
                         .chargingSchedule(schedule)
@@ -390,6 +545,58 @@ public class PowerControlServiceImpl implements PowerControlService {
                 .build();
     }
     
+    /**
+     * Build a charging profile request carrying a multi-period schedule
+     */
+    private SetChargingProfileRequest buildScheduledChargingProfileRequest(
+            int connectorId, LocalDateTime scheduleStart, 
+            List<PowerDistributionEvent.ChargingSchedulePeriod> periods, Integer profileId) {
+        
+        // Convert every period to watts (OCPP expects watts, not kilowatts); incomplete periods are skipped
+        SetChargingProfileRequest.ChargingSchedulePeriod[] schedulePeriods = periods.stream()
+                .filter(period -> period.getStartPeriod() != null && period.getLimitKW() != null)
+                .map(period -> SetChargingProfileRequest.ChargingSchedulePeriod.builder()
+                        .startPeriod(period.getStartPeriod())
+                        .limit((float) (period.getLimitKW() * 1000))
+                        .build())
+                .toArray(SetChargingProfileRequest.ChargingSchedulePeriod[]::new);
+        
+        if (schedulePeriods.length == 0) {
+            throw new IllegalArgumentException("Charging schedule has no period with a start and a limit");
+        }
+        if (schedulePeriods.length < periods.size()) {
+            log.warn("Skipped {} charging schedule periods without a start or limit", 
+                    periods.size() - schedulePeriods.length);
+        }
+        
+        LocalDateTime start = scheduleStart != null ? scheduleStart : LocalDateTime.now();
+        
+        // Build the charging schedule
+        SetChargingProfileRequest.ChargingSchedule schedule = 
+                SetChargingProfileRequest.ChargingSchedule.builder()
+                        .startSchedule(DateTimeFormatter.ISO_DATE_TIME.format(start))
+                        .chargingRateUnit(SetChargingProfileRequest.ChargingRateUnitType.W)
+                        .chargingSchedulePeriod(schedulePeriods)
+                        .build();
+        
+        // Build the charging profile
+        SetChargingProfileRequest.ChargingProfile profile = 
+                SetChargingProfileRequest.ChargingProfile.builder()
+                        .chargingProfileId(profileId != null ? profileId : SCHEDULE_PROFILE_BASE_ID + connectorId)
+                        .stackLevel(SCHEDULE_STACK_LEVEL)
+                        .chargingProfilePurpose(SetChargingProfileRequest.ChargingProfilePurposeType.TxDefaultProfile)
+                        .chargingProfileKind(SetChargingProfileRequest.ChargingProfileKindType.Absolute)
+                        .chargingSchedule(schedule)
+                        .validFrom(DateTimeFormatter.ISO_DATE_TIME.format(start))
+                        .build();
+        
+        // Build the request
+        return SetChargingProfileRequest.builder()
+                .connectorId(connectorId)
+                .csChargingProfiles(profile)
+                .build();
+    }
+    
     /**
      * Build a charging profile request to clear a power limit
      */
@@ -405,7 +612,7 @@ public class PowerControlServiceImpl implements PowerControlService {
         SetChargingProfileRequest.ChargingProfile profile = 
                 SetChargingProfileRequest.ChargingProfile.builder()
                         .chargingProfileId(profileId)
-                        .stackLevel(0)
+                        .stackLevel(POWER_LIMIT_STACK_LEVEL)
                         .chargingProfilePurpose(SetChargingProfileRequest.ChargingProfilePurposeType.TxDefaultProfile)
                         .chargingProfileKind(SetChargingProfileRequest.ChargingProfileKindType.Absolute)
                         .chargingSchedule(schedule)
@@ -0,0 +1,188 @@
+package com.ev.station.service.impl;
+
+import com.ev.station.dto.event.GroupPowerCommandEvent;
+import com.ev.station.dto.event.PowerDistributionEvent;
+import com.ev.station.ocpp.OcppMessage;
+import com.ev.station.ocpp.OcppWebSocketHandler;
+import com.ev.station.ocpp.request.SetChargingProfileRequest;
+import com.ev.station.ocpp.response.SetChargingProfileResponse;
+import com.ev.station.service.ChargingStationService;
+import com.ev.station.service.NotificationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PowerControlServiceImplTests {
+
+    private static final String STATION_ID = "station-1";
+
+    private OcppWebSocketHandler ocppWebSocketHandler;
+    private PowerControlServiceImpl powerControlService;
+
+    @BeforeEach
+    void setUp() {
+        ocppWebSocketHandler = mock(OcppWebSocketHandler.class);
+        when(ocppWebSocketHandler.sendRequest(anyString(), anyString(), any()))
+                .thenReturn(new CompletableFuture<>());
+        powerControlService = new PowerControlServiceImpl(
+                mock(ChargingStationService.class),
+                ocppWebSocketHandler,
+                mock(NotificationService.class),
+                new ObjectMapper(),
+                new SimpleMeterRegistry(),
+                Runnable::run);
+    }
+
+    @Test
+    void scheduleIsSentInWatts() {
+        powerControlService.setConnectorChargingSchedule(STATION_ID, 1, LocalDateTime.of(2024, 1, 1, 0, 0),
+                List.of(period(0, 0.0), period(3600, 11.0)), 42);
+
+        SetChargingProfileRequest.ChargingSchedulePeriod[] sent = sentPeriods();
+        assertThat(sent).extracting(SetChargingProfileRequest.ChargingSchedulePeriod::getStartPeriod)
+                .containsExactly(0, 3600);
+        assertThat(sent).extracting(SetChargingProfileRequest.ChargingSchedulePeriod::getLimit)
+                .containsExactly(0f, 11000f);
+    }
+
+    @Test
+    void periodsWithoutLimitAreSkipped() {
+        powerControlService.setConnectorChargingSchedule(STATION_ID, 1, null,
+                List.of(period(0, 7.4), period(900, null), period(1800, 3.7)), 42);
+
+        assertThat(sentPeriods()).extracting(SetChargingProfileRequest.ChargingSchedulePeriod::getStartPeriod)
+                .containsExactly(0, 1800);
+    }
+
+    @Test
+    void scheduleWithoutUsablePeriodsIsNotSent() {
+        CompletableFuture<Boolean> result = powerControlService.setConnectorChargingSchedule(STATION_ID, 1, null,
+                List.of(period(0, null)), 42);
+
+        assertThat(result.join()).isFalse();
+        verify(ocppWebSocketHandler, never()).sendRequest(anyString(), anyString(), any());
+    }
+
+    @Test
+    void powerLimitStacksAboveTheDayAheadSchedule() {
+        PowerDistributionEvent schedule = PowerDistributionEvent.builder()
+                .connectorId(1)
+                .reason(PowerDistributionEvent.PowerAdjustmentReason.SCHEDULED_PROFILE)
+                .chargingSchedulePeriods(List.of(period(0, 11.0)))
+                .build();
+        PowerDistributionEvent limit = PowerDistributionEvent.builder()
+                .connectorId(1)
+                .reason(PowerDistributionEvent.PowerAdjustmentReason.SCHEDULED_PROFILE)
+                .build();
+        int scheduleProfileId = powerControlService.calculateProfileId(schedule);
+        int limitProfileId = powerControlService.calculateProfileId(limit);
+        assertThat(scheduleProfileId).isNotEqualTo(limitProfileId);
+
+        powerControlService.setConnectorChargingSchedule(STATION_ID, 1, null, schedule.getChargingSchedulePeriods(),
+                scheduleProfileId);
+        powerControlService.setConnectorPowerLimit(STATION_ID, 1, 3.7, null, limitProfileId);
+
+        List<SetChargingProfileRequest.ChargingProfile> sent = sentProfiles();
+        assertThat(sent).extracting(SetChargingProfileRequest.ChargingProfile::getChargingProfileId)
+                .containsExactly(scheduleProfileId, limitProfileId);
+        assertThat(sent.get(1).getStackLevel()).isGreaterThan(sent.get(0).getStackLevel());
+    }
+
+    @Test
+    void schedulesOfDifferentConnectorsKeepTheirOwnProfiles() {
+        PowerDistributionEvent first = PowerDistributionEvent.builder()
+                .connectorId(1)
+                .chargingSchedulePeriods(List.of(period(0, 11.0)))
+                .build();
+        PowerDistributionEvent second = PowerDistributionEvent.builder()
+                .connectorId(2)
+                .chargingSchedulePeriods(List.of(period(0, 11.0)))
+                .build();
+
+        assertThat(powerControlService.calculateProfileId(first))
+                .isNotEqualTo(powerControlService.calculateProfileId(second));
+    }
+
+    @Test
+    void groupCommandIsSentToEveryStationBeforeAnyAnswers() {
+        List<CompletableFuture<OcppMessage>> responses = new ArrayList<>();
+        when(ocppWebSocketHandler.sendRequest(anyString(), anyString(), any())).thenAnswer(invocation -> {
+            CompletableFuture<OcppMessage> response = new CompletableFuture<>();
+            responses.add(response);
+            return response;
+        });
+        GroupPowerCommandEvent command = GroupPowerCommandEvent.builder()
+                .commandId(UUID.randomUUID())
+                .reason(PowerDistributionEvent.PowerAdjustmentReason.EMERGENCY_REDUCTION)
+                .durationSeconds(300)
+                .limits(List.of(limit(), limit(), limit()))
+                .build();
+
+        CompletableFuture<Integer> accepted = powerControlService.applyGroupPowerCommand(command);
+
+        // Every station has its profile while none has answered yet
+        assertThat(responses).hasSize(3);
+        assertThat(accepted).isNotDone();
+
+        responses.get(0).complete(profileResponse(SetChargingProfileResponse.ChargingProfileStatus.Accepted));
+        responses.get(1).complete(profileResponse(SetChargingProfileResponse.ChargingProfileStatus.Rejected));
+        responses.get(2).completeExceptionally(new IllegalStateException("Station not connected"));
+
+        assertThat(accepted.join()).isEqualTo(1);
+    }
+
+    private List<SetChargingProfileRequest.ChargingProfile> sentProfiles() {
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(ocppWebSocketHandler, atLeastOnce()).sendRequest(eq(STATION_ID), eq("SetChargingProfile"), payload.capture());
+        return payload.getAllValues().stream()
+                .map(request -> ((SetChargingProfileRequest) request).getCsChargingProfiles())
+                .toList();
+    }
+
+    private SetChargingProfileRequest.ChargingSchedulePeriod[] sentPeriods() {
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(ocppWebSocketHandler).sendRequest(eq(STATION_ID), eq("SetChargingProfile"), payload.capture());
+        SetChargingProfileRequest request = (SetChargingProfileRequest) payload.getValue();
+        return request.getCsChargingProfiles().getChargingSchedule().getChargingSchedulePeriod();
+    }
+
+    private static GroupPowerCommandEvent.StationPowerLimit limit() {
+        return GroupPowerCommandEvent.StationPowerLimit.builder()
+                .eventId(UUID.randomUUID())
+                .stationId(UUID.randomUUID())
+                .powerLimitKW(11.0)
+                .build();
+    }
+
+    private static OcppMessage profileResponse(SetChargingProfileResponse.ChargingProfileStatus status) {
+        return OcppMessage.builder()
+                .payload(Map.of("status", status.name()))
+                .build();
+    }
+
+    private static PowerDistributionEvent.ChargingSchedulePeriod period(Integer startPeriod, Double limitKW) {
+        return PowerDistributionEvent.ChargingSchedulePeriod.builder()
+                .startPeriod(startPeriod)
+                .limitKW(limitKW)
+                .build();
+    }
+}
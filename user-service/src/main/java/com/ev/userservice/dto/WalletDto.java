@@ -16,5 +16,6 @@ public class WalletDto {
     private UUID id;
     private UUID userId;
     private BigDecimal balance;
+    private BigDecimal heldAmount;
     private String currency;
 } 
\ No newline at end of file
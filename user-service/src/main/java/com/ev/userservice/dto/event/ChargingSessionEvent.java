@@ -0,0 +1,58 @@
+package com.ev.userservice.dto.event;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Event DTO for charging session events published by the station service.
+ * Only the fields the wallet hold ledger needs are mapped.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ChargingSessionEvent {
+    
+    /**
+     * Unique identifier for the event
+     */
+    private UUID eventId;
+    
+    /**
+     * Charging session ID
+     */
+    private UUID sessionId;
+    
+    /**
+     * Type of event (STARTED, UPDATED or ENDED)
+     */
+    private String eventType;
+    
+    /**
+     * User ID, if the station resolved it
+     */
+    private UUID userId;
+    
+    /**
+     * ID token the session was authorized with
+     */
+    private String idToken;
+    
+    /**
+     * Energy delivered so far in kWh
+     */
+    private BigDecimal energyDeliveredKwh;
+    
+    /**
+     * Timestamp of the event
+     */
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,64 @@
+package com.ev.userservice.dto.event;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Event DTO for invoice events published by the billing service.
+ * Only the fields the wallet hold ledger needs to pay an invoice are mapped.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class InvoiceEvent {
+    
+    /**
+     * Unique identifier for the event
+     */
+    private UUID eventId;
+    
+    /**
+     * ID of the invoice
+     */
+    private UUID invoiceId;
+    
+    /**
+     * ID of the user
+     */
+    private UUID userId;
+    
+    /**
+     * Type of event (CREATED, UPDATED, PAID, CANCELED, OVERDUE)
+     */
+    private String eventType;
+    
+    /**
+     * Invoice number (human-readable)
+     */
+    private String invoiceNumber;
+    
+    /**
+     * Total amount of the invoice
+     */
+    private BigDecimal totalAmount;
+    
+    /**
+     * IDs of the charging sessions the invoice covers
+     */
+    private List<UUID> chargingSessionIds;
+    
+    /**
+     * Timestamp when this event was created
+     */
+    private LocalDateTime timestamp;
+}
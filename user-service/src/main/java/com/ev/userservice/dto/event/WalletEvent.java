@@ -83,6 +83,7 @@ public class WalletEvent {
         REFUND_COMPLETED,
         BALANCE_ADJUSTED,
         SUSPENDED,
-        UNSUSPENDED
+        UNSUSPENDED,
+        HOLD_DECLINED
     }
 } 
\ No newline at end of file
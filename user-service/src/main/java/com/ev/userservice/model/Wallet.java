@@ -33,6 +33,10 @@ public class Wallet {
     @Column(nullable = false)
     private String currency;
     
+    // Written only by the hold ledger's conditional updates, never by entity saves
+    @Column(name = "held_amount", nullable = false, insertable = false, updatable = false)
+    private BigDecimal heldAmount;
+    
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
     
@@ -49,6 +53,9 @@ public class Wallet {
         if (balance == null) {
             balance = BigDecimal.ZERO;
         }
+        if (heldAmount == null) {
+            heldAmount = BigDecimal.ZERO;
+        }
         if (currency == null || currency.isEmpty()) {
             currency = "USD";
         }
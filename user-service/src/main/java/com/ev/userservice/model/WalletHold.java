@@ -0,0 +1,54 @@
+package com.ev.userservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Funds reserved on a wallet for one charging session.
+ * The reserved amount is also counted in {@link Wallet#getHeldAmount()}, so both are only
+ * changed together through the wallet hold ledger.
+ */
+@Entity
+@Table(name = "wallet_holds")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletHold {
+
+    @Id
+    @Column(name = "session_id")
+    private UUID sessionId;
+
+    @Column(name = "wallet_id", nullable = false)
+    private UUID walletId;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @Column(name = "captured_amount")
+    private BigDecimal capturedAmount;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private HoldStatus status;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public enum HoldStatus {
+        HELD,
+        CAPTURED,
+        RELEASED
+    }
+}
@@ -0,0 +1,38 @@
+package com.ev.userservice.repository;
+
+import com.ev.userservice.model.WalletHold;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface WalletHoldRepository extends JpaRepository<WalletHold, UUID> {
+
+    /**
+     * Open an empty hold for a session unless it already has one
+     */
+    @Modifying
+    @Query(value = "INSERT INTO wallet_holds (session_id, wallet_id, amount, status, created_at, updated_at) " +
+                   "VALUES (?1, ?2, 0, 'HELD', ?3, ?3) ON CONFLICT (session_id) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(UUID sessionId, UUID walletId, LocalDateTime createdAt);
+
+    /**
+     * Lock a session's hold so its amount can be compared and set
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT h FROM WalletHold h WHERE h.sessionId = ?1")
+    Optional<WalletHold> findForUpdate(UUID sessionId);
+
+    @Query("SELECT h.sessionId FROM WalletHold h WHERE h.status = ?1 AND h.updatedAt < ?2")
+    List<UUID> findSessionIdsByStatusAndUpdatedAtBefore(WalletHold.HoldStatus status, LocalDateTime updatedBefore,
+                                                        Pageable pageable);
+}
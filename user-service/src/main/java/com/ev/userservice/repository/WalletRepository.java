@@ -3,13 +3,62 @@ package com.ev.userservice.repository;
 import com.ev.userservice.model.User;
 import com.ev.userservice.model.Wallet;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface WalletRepository extends JpaRepository<Wallet, UUID> {
     Optional<Wallet> findByUser(User user);
+    Optional<Wallet> findByUserId(UUID userId);
     boolean existsByUser(User user);
-} 
\ No newline at end of file
+
+    /**
+     * Reserve funds if the available balance covers them
+     * @return 1 if the funds were reserved, 0 if the available balance is too low
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE wallets SET held_amount = held_amount + ?2, updated_at = ?3 " +
+                   "WHERE id = ?1 AND balance - held_amount >= ?2", nativeQuery = true)
+    int reserveFunds(UUID walletId, BigDecimal amount, LocalDateTime updatedAt);
+
+    /**
+     * Return reserved funds to the available balance
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE wallets SET held_amount = held_amount - ?2, updated_at = ?3 " +
+                   "WHERE id = ?1", nativeQuery = true)
+    int releaseFunds(UUID walletId, BigDecimal heldAmount, LocalDateTime updatedAt);
+
+    /**
+     * Debit a captured amount and drop the hold it was reserved under, if the hold and the available
+     * balance cover it. Funds other holds reserve are never used.
+     * @return 1 if the amount was captured, 0 if the balance is too low
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE wallets SET balance = balance - ?2, held_amount = held_amount - ?3, updated_at = ?4 " +
+                   "WHERE id = ?1 AND balance - held_amount + ?3 >= ?2", nativeQuery = true)
+    int captureFunds(UUID walletId, BigDecimal amount, BigDecimal heldAmount, LocalDateTime updatedAt);
+
+    /**
+     * Add funds to the balance
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE wallets SET balance = balance + ?2, updated_at = ?3 " +
+                   "WHERE id = ?1", nativeQuery = true)
+    int creditFunds(UUID walletId, BigDecimal amount, LocalDateTime updatedAt);
+
+    /**
+     * Debit funds if the available balance covers them
+     * @return 1 if the funds were debited, 0 if the available balance is too low
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE wallets SET balance = balance - ?2, updated_at = ?3 " +
+                   "WHERE id = ?1 AND balance - held_amount >= ?2", nativeQuery = true)
+    int debitFunds(UUID walletId, BigDecimal amount, LocalDateTime updatedAt);
+}
@@ -16,4 +16,5 @@ public interface WalletTransactionRepository extends JpaRepository<WalletTransac
     List<WalletTransaction> findByWallet(Wallet wallet);
     Page<WalletTransaction> findByWallet(Wallet wallet, Pageable pageable);
     Optional<WalletTransaction> findByReferenceId(UUID referenceId);
+    boolean existsByReferenceIdAndTransactionType(UUID referenceId, WalletTransaction.TransactionType transactionType);
 } 
\ No newline at end of file
@@ -0,0 +1,98 @@
+package com.ev.userservice.service;
+
+import com.ev.userservice.config.KafkaConfig;
+import com.ev.userservice.dto.event.ChargingSessionEvent;
+import com.ev.userservice.dto.event.InvoiceEvent;
+import com.ev.userservice.repository.RfidTokenRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+
+/**
+ * Service for consuming charging session and invoice events from Kafka.
+ * Sessions are authorized against the wallet hold ledger as their events arrive,
+ * so no synchronous balance check is needed when a session starts or meters energy,
+ * and their holds pay the invoices billing issues for them.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class KafkaConsumerService {
+
+    private final WalletHoldService walletHoldService;
+    private final RfidTokenRepository rfidTokenRepository;
+
+    /**
+     * Consume a charging session event from Kafka
+     * @param event The charging session event
+     * @param acknowledgment Acknowledgment for manual commits
+     */
+    @KafkaListener(
+        topics = KafkaConfig.CHARGING_SESSION_TOPIC,
+        groupId = KafkaConfig.USER_CONSUMER_GROUP,
+        containerFactory = "chargingSessionListenerFactory"
+    )
+    public void consumeChargingSessionEvent(ChargingSessionEvent event, Acknowledgment acknowledgment) {
+        if (event.getSessionId() == null || event.getEventType() == null) {
+            log.warn("Skipping charging session event without session or type: {}", event.getEventId());
+            acknowledgment.acknowledge();
+            return;
+        }
+
+        UUID userId = resolveUserId(event);
+        switch (event.getEventType()) {
+            case "STARTED":
+                walletHoldService.authorizeSessionStart(event.getSessionId(), userId);
+                break;
+            case "UPDATED":
+                walletHoldService.authorizeEnergy(event.getSessionId(), userId, event.getEnergyDeliveredKwh());
+                break;
+            case "ENDED":
+                // The hold stays until billing prices the session and its invoice arrives
+                log.debug("Session {} ended; its hold waits for the invoice", event.getSessionId());
+                break;
+            default:
+                log.debug("Ignoring charging session event type {}", event.getEventType());
+        }
+
+        acknowledgment.acknowledge();
+    }
+
+    /**
+     * Consume an invoice event from Kafka
+     * @param event The invoice event
+     * @param acknowledgment Acknowledgment for manual commits
+     */
+    @KafkaListener(
+        topics = KafkaConfig.INVOICE_EVENTS_TOPIC,
+        groupId = KafkaConfig.USER_CONSUMER_GROUP,
+        containerFactory = "invoiceListenerFactory"
+    )
+    public void consumeInvoiceEvent(InvoiceEvent event, Acknowledgment acknowledgment) {
+        if ("CREATED".equals(event.getEventType())
+                && event.getInvoiceId() != null
+                && event.getChargingSessionIds() != null
+                && !event.getChargingSessionIds().isEmpty()) {
+            walletHoldService.payInvoice(event.getInvoiceId(), event.getInvoiceNumber(),
+                    event.getChargingSessionIds(), event.getTotalAmount());
+        }
+
+        acknowledgment.acknowledge();
+    }
+
+    private UUID resolveUserId(ChargingSessionEvent event) {
+        if (event.getUserId() != null) {
+            return event.getUserId();
+        }
+        if (event.getIdToken() == null) {
+            return null;
+        }
+        return rfidTokenRepository.findByTokenValue(event.getIdToken())
+                .map(token -> token.getUser().getId())
+                .orElse(null);
+    }
+}
@@ -0,0 +1,20 @@
+package com.ev.userservice.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Pre-authorizes charging sessions against wallet balances.
+ * Funds are held when a session starts and the hold is extended as energy accrues, so prepaid users
+ * cannot charge past their balance. The hold stays in place after the session ends and pays the
+ * invoice billing issues for it, so the wallet is charged the tariff price exactly once. An invoice
+ * that arrives after its holds expired is paid from the available balance instead.
+ */
+public interface WalletHoldService {
+    boolean authorizeSessionStart(UUID sessionId, UUID userId);
+    boolean authorizeEnergy(UUID sessionId, UUID userId, BigDecimal energyDeliveredKwh);
+    boolean payInvoice(UUID invoiceId, String invoiceNumber, List<UUID> sessionIds, BigDecimal amount);
+    void releaseSession(UUID sessionId);
+    int releaseExpiredHolds();
+}
@@ -0,0 +1,260 @@
+package com.ev.userservice.service.impl;
+
+import com.ev.userservice.dto.event.WalletEvent;
+import com.ev.userservice.model.Wallet;
+import com.ev.userservice.model.WalletHold;
+import com.ev.userservice.model.WalletTransaction;
+import com.ev.userservice.repository.WalletHoldRepository;
+import com.ev.userservice.repository.WalletRepository;
+import com.ev.userservice.repository.WalletTransactionRepository;
+import com.ev.userservice.service.KafkaProducerService;
+import com.ev.userservice.service.WalletHoldService;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Wallet hold ledger. Each session's hold row is locked while its amount is compared and set, and
+ * the wallet's held amount only grows through a conditional update that checks the available
+ * balance in the same statement, so concurrent sessions of one user cannot reserve the same funds.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WalletHoldServiceImpl implements WalletHoldService {
+
+    private final WalletRepository walletRepository;
+    private final WalletHoldRepository holdRepository;
+    private final WalletTransactionRepository transactionRepository;
+    private final KafkaProducerService kafkaProducerService;
+
+    @Value("${wallet.hold.rate-per-kwh:0.50}")
+    private BigDecimal ratePerKwh;
+
+    @Value("${wallet.hold.initial-kwh:20}")
+    private BigDecimal initialKwh;
+
+    @Value("${wallet.hold.headroom-kwh:5}")
+    private BigDecimal headroomKwh;
+
+    @Value("${wallet.hold.expiry-hours:24}")
+    private long expiryHours;
+
+    @Override
+    @Transactional
+    public boolean authorizeSessionStart(UUID sessionId, UUID userId) {
+        return reserve(sessionId, userId, estimate(initialKwh));
+    }
+
+    @Override
+    @Transactional
+    public boolean authorizeEnergy(UUID sessionId, UUID userId, BigDecimal energyDeliveredKwh) {
+        // Stay ahead of the meter so the hold only needs extending every few kWh
+        BigDecimal energy = energyDeliveredKwh != null ? energyDeliveredKwh : BigDecimal.ZERO;
+        return reserve(sessionId, userId, estimate(energy.add(headroomKwh)));
+    }
+
+    @Override
+    @Transactional
+    public boolean payInvoice(UUID invoiceId, String invoiceNumber, List<UUID> sessionIds, BigDecimal amount) {
+        // Lock in session order so invoices covering the same sessions cannot deadlock
+        List<WalletHold> holds = sessionIds.stream()
+                .distinct()
+                .sorted()
+                .map(holdRepository::findForUpdate)
+                .flatMap(Optional::stream)
+                .collect(Collectors.toList());
+        if (holds.isEmpty() || amount == null) {
+            // Not charged from a wallet
+            return false;
+        }
+        if (transactionRepository.existsByReferenceIdAndTransactionType(invoiceId,
+                WalletTransaction.TransactionType.CHARGING_PAYMENT)) {
+            log.debug("Invoice {} was already paid from a wallet", invoiceNumber);
+            return false;
+        }
+
+        // An invoice covers the sessions of one user, so all of its holds are on that user's wallet.
+        // Holds that expired before the invoice was issued no longer reserve anything, so their part
+        // of the invoice comes from the available balance.
+        UUID walletId = holds.get(0).getWalletId();
+        holds = holds.stream()
+                .filter(hold -> hold.getStatus() == WalletHold.HoldStatus.HELD)
+                .collect(Collectors.toList());
+        BigDecimal heldAmount = holds.stream().map(WalletHold::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+        LocalDateTime now = LocalDateTime.now();
+
+        // The invoice may exceed the hold, but the capture never takes the balance below zero
+        if (walletRepository.captureFunds(walletId, amount, heldAmount, now) == 0) {
+            holds.forEach(this::release);
+            log.warn("Wallet {} cannot pay invoice {} of {}; holds released and invoice left open",
+                    walletId, invoiceNumber, amount);
+            publishWalletEvent(findWallet(walletId), null, amount, WalletEvent.WalletEventType.PAYMENT_FAILED,
+                    "Insufficient funds for invoice " + invoiceNumber, invoiceId);
+            return false;
+        }
+
+        BigDecimal remaining = amount;
+        for (int i = 0; i < holds.size(); i++) {
+            WalletHold hold = holds.get(i);
+            BigDecimal captured = i == holds.size() - 1 ? remaining : remaining.min(hold.getAmount());
+            remaining = remaining.subtract(captured);
+            hold.setCapturedAmount(captured);
+            hold.setStatus(WalletHold.HoldStatus.CAPTURED);
+            hold.setUpdatedAt(now);
+        }
+        holdRepository.saveAll(holds);
+
+        Wallet wallet = findWallet(walletId);
+        WalletTransaction transaction = transactionRepository.save(WalletTransaction.builder()
+                .wallet(wallet)
+                .amount(amount)
+                .transactionType(WalletTransaction.TransactionType.CHARGING_PAYMENT)
+                .referenceId(invoiceId)
+                .description("Invoice " + invoiceNumber)
+                .transactionStatus(WalletTransaction.TransactionStatus.COMPLETED)
+                .build());
+
+        log.info("Paid invoice {} of {} from wallet {} (held {})", invoiceNumber, amount, walletId, heldAmount);
+        publishWalletEvent(wallet, transaction.getId(), amount, WalletEvent.WalletEventType.PAYMENT_COMPLETED,
+                transaction.getDescription(), invoiceId);
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public void releaseSession(UUID sessionId) {
+        holdRepository.findForUpdate(sessionId).ifPresent(this::release);
+    }
+
+    @Override
+    @Transactional
+    @Scheduled(fixedDelayString = "${wallet.hold.expiry-check-ms:600000}")
+    public int releaseExpiredHolds() {
+        // Holds that no invoice settled, e.g. sessions that never ended or were billed another way,
+        // must not keep the funds reserved forever
+        List<UUID> sessionIds = holdRepository.findSessionIdsByStatusAndUpdatedAtBefore(
+                WalletHold.HoldStatus.HELD, LocalDateTime.now().minusHours(expiryHours), PageRequest.of(0, 500));
+
+        for (UUID sessionId : sessionIds) {
+            holdRepository.findForUpdate(sessionId).ifPresent(this::release);
+        }
+
+        if (!sessionIds.isEmpty()) {
+            log.info("Released {} expired wallet holds", sessionIds.size());
+        }
+        return sessionIds.size();
+    }
+
+    /**
+     * Grow a session's hold to at least the target amount
+     * @return true if the target is held, false if the wallet cannot cover it
+     */
+    private boolean reserve(UUID sessionId, UUID userId, BigDecimal target) {
+        WalletHold hold = lockHold(sessionId, userId);
+        if (hold == null) {
+            return false;
+        }
+        if (hold.getStatus() != WalletHold.HoldStatus.HELD || hold.getAmount().compareTo(target) >= 0) {
+            return true;
+        }
+
+        BigDecimal increment = target.subtract(hold.getAmount());
+        LocalDateTime now = LocalDateTime.now();
+
+        if (walletRepository.reserveFunds(hold.getWalletId(), increment, now) == 0) {
+            log.warn("Declined hold of {} for session {}: insufficient funds in wallet {}",
+                    target, sessionId, hold.getWalletId());
+            publishWalletEvent(findWallet(hold.getWalletId()), null, increment,
+                    WalletEvent.WalletEventType.HOLD_DECLINED, "Insufficient funds for charging session " + sessionId, null);
+            return false;
+        }
+
+        hold.setAmount(target);
+        hold.setUpdatedAt(now);
+        holdRepository.save(hold);
+        log.debug("Holding {} for session {} on wallet {}", target, sessionId, hold.getWalletId());
+        return true;
+    }
+
+    /**
+     * Lock a session's hold, opening an empty one on the user's wallet if there is none yet
+     * @return The locked hold, or null if the user has no wallet
+     */
+    private WalletHold lockHold(UUID sessionId, UUID userId) {
+        WalletHold hold = holdRepository.findForUpdate(sessionId).orElse(null);
+        if (hold != null) {
+            return hold;
+        }
+
+        Wallet wallet = userId != null ? walletRepository.findByUserId(userId).orElse(null) : null;
+        if (wallet == null) {
+            log.debug("No wallet to hold funds for session {} of user {}", sessionId, userId);
+            return null;
+        }
+
+        // A concurrent insert wins the race; either way the row exists afterwards
+        holdRepository.insertIfAbsent(sessionId, wallet.getId(), LocalDateTime.now());
+        return holdRepository.findForUpdate(sessionId).orElse(null);
+    }
+
+    private void release(WalletHold hold) {
+        if (hold.getStatus() != WalletHold.HoldStatus.HELD) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        walletRepository.releaseFunds(hold.getWalletId(), hold.getAmount(), now);
+        hold.setStatus(WalletHold.HoldStatus.RELEASED);
+        hold.setUpdatedAt(now);
+        holdRepository.save(hold);
+        log.info("Released hold of {} for session {} on wallet {}", hold.getAmount(), hold.getSessionId(), hold.getWalletId());
+    }
+
+    private BigDecimal estimate(BigDecimal energyKwh) {
+        return energyKwh.multiply(ratePerKwh).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private Wallet findWallet(UUID walletId) {
+        return walletRepository.findById(walletId)
+                .orElseThrow(() -> new EntityNotFoundException("Wallet not found with id: " + walletId));
+    }
+
+    /**
+     * Publish a wallet event to Kafka
+     * @param invoiceId The billing invoice the event settles, if any
+     */
+    private void publishWalletEvent(Wallet wallet, UUID transactionId, BigDecimal amount,
+                                    WalletEvent.WalletEventType eventType, String description, UUID invoiceId) {
+        try {
+            kafkaProducerService.sendWalletEvent(WalletEvent.builder()
+                    .eventId(UUID.randomUUID())
+                    .userId(wallet.getUser().getId())
+                    .walletId(wallet.getId())
+                    .eventType(eventType)
+                    .timestamp(LocalDateTime.now())
+                    .amount(amount)
+                    .newBalance(wallet.getBalance())
+                    .transactionId(transactionId)
+                    .description(description)
+                    .externalReference(invoiceId != null ? invoiceId.toString() : null)
+                    .build());
+        } catch (Exception e) {
+            log.error("Failed to publish wallet event: {}", eventType, e);
+            // Don't fail the hold if event publishing fails
+        }
+    }
+}
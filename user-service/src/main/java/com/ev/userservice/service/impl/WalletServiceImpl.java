@@ -59,8 +59,7 @@ public class WalletServiceImpl implements WalletService {
     @Override
     @Transactional
     public WalletTransactionDto createTransaction(UUID walletId, WalletTransactionRequest request) {
-        Wallet wallet = walletRepository.findById(walletId)
-                .orElseThrow(() -> new EntityNotFoundException("Wallet not found with id: " + walletId));
+        Wallet wallet = findWallet(walletId);
         
         WalletTransaction transaction = WalletTransaction.builder()
                 .wallet(wallet)
@@ -71,19 +70,21 @@ public class WalletServiceImpl implements WalletService {
                 .transactionStatus(WalletTransaction.TransactionStatus.PENDING)
                 .build();
         
-        // Process transaction based on type
+        // Process transaction based on type; balances only change through conditional updates,
+        // so concurrent debits cannot both pass a check made on a stale copy of the wallet
         WalletEvent.WalletEventType eventType = null;
         boolean transactionSuccessful = false;
+        LocalDateTime now = LocalDateTime.now();
         
         switch (request.getTransactionType()) {
             case DEPOSIT:
-                wallet.setBalance(wallet.getBalance().add(request.getAmount()));
+                walletRepository.creditFunds(walletId, request.getAmount(), now);
                 transaction.setTransactionStatus(WalletTransaction.TransactionStatus.COMPLETED);
                 eventType = WalletEvent.WalletEventType.TOPPED_UP;
                 transactionSuccessful = true;
                 break;
             case WITHDRAWAL:
-                if (wallet.getBalance().compareTo(request.getAmount()) < 0) {
+                if (walletRepository.debitFunds(walletId, request.getAmount(), now) == 0) {
                     transaction.setTransactionStatus(WalletTransaction.TransactionStatus.FAILED);
                     transactionRepository.save(transaction);
                     
@@ -94,13 +95,12 @@ public class WalletServiceImpl implements WalletService {
                     
                     throw new IllegalStateException("Insufficient funds for transaction");
                 }
-                wallet.setBalance(wallet.getBalance().subtract(request.getAmount()));
                 transaction.setTransactionStatus(WalletTransaction.TransactionStatus.COMPLETED);
                 eventType = WalletEvent.WalletEventType.DEBITED;
                 transactionSuccessful = true;
                 break;
             case CHARGING_PAYMENT:
-                if (wallet.getBalance().compareTo(request.getAmount()) < 0) {
+                if (walletRepository.debitFunds(walletId, request.getAmount(), now) == 0) {
                     transaction.setTransactionStatus(WalletTransaction.TransactionStatus.FAILED);
                     transactionRepository.save(transaction);
                     
@@ -111,22 +111,20 @@ public class WalletServiceImpl implements WalletService {
                     
                     throw new IllegalStateException("Insufficient funds for transaction");
                 }
-                wallet.setBalance(wallet.getBalance().subtract(request.getAmount()));
                 transaction.setTransactionStatus(WalletTransaction.TransactionStatus.COMPLETED);
                 eventType = WalletEvent.WalletEventType.PAYMENT_COMPLETED;
                 transactionSuccessful = true;
                 break;
             case REFUND:
-                wallet.setBalance(wallet.getBalance().add(request.getAmount()));
+                walletRepository.creditFunds(walletId, request.getAmount(), now);
                 transaction.setTransactionStatus(WalletTransaction.TransactionStatus.COMPLETED);
                 eventType = WalletEvent.WalletEventType.REFUND_COMPLETED;
                 transactionSuccessful = true;
                 break;
         }
         
-        wallet.setUpdatedAt(LocalDateTime.now());
-        Wallet updatedWallet = walletRepository.save(wallet);
         WalletTransaction savedTransaction = transactionRepository.save(transaction);
+        Wallet updatedWallet = findWallet(walletId);
         
         // Publish event if transaction was successful
         if (transactionSuccessful && eventType != null) {
@@ -144,11 +142,8 @@ public class WalletServiceImpl implements WalletService {
             throw new IllegalArgumentException("Amount must be positive");
         }
         
-        Wallet wallet = walletRepository.findById(walletId)
-                .orElseThrow(() -> new EntityNotFoundException("Wallet not found with id: " + walletId));
-        
-        wallet.setBalance(wallet.getBalance().add(amount));
-        wallet.setUpdatedAt(LocalDateTime.now());
+        Wallet wallet = findWallet(walletId);
+        walletRepository.creditFunds(walletId, amount, LocalDateTime.now());
         
         // Create transaction record
         WalletTransaction transaction = WalletTransaction.builder()
@@ -160,7 +155,7 @@ public class WalletServiceImpl implements WalletService {
                 .build();
         
         WalletTransaction savedTransaction = transactionRepository.save(transaction);
-        Wallet updatedWallet = walletRepository.save(wallet);
+        Wallet updatedWallet = findWallet(walletId);
         
         // Publish wallet topped up event
         publishWalletEvent(updatedWallet, savedTransaction, 
@@ -176,10 +171,10 @@ public class WalletServiceImpl implements WalletService {
             throw new IllegalArgumentException("Amount must be positive");
         }
         
-        Wallet wallet = walletRepository.findById(walletId)
-                .orElseThrow(() -> new EntityNotFoundException("Wallet not found with id: " + walletId));
+        Wallet wallet = findWallet(walletId);
         
-        if (wallet.getBalance().compareTo(amount) < 0) {
+        // The available balance is checked in the same statement that debits it
+        if (walletRepository.debitFunds(walletId, amount, LocalDateTime.now()) == 0) {
             // Publish wallet payment failed event
             publishWalletEvent(wallet, null, 
                     WalletEvent.WalletEventType.PAYMENT_FAILED, 
@@ -188,9 +183,6 @@ public class WalletServiceImpl implements WalletService {
             throw new IllegalStateException("Insufficient funds");
         }
         
-        wallet.setBalance(wallet.getBalance().subtract(amount));
-        wallet.setUpdatedAt(LocalDateTime.now());
-        
         // Create transaction record
         WalletTransaction transaction = WalletTransaction.builder()
                 .wallet(wallet)
@@ -201,7 +193,7 @@ public class WalletServiceImpl implements WalletService {
                 .build();
         
         WalletTransaction savedTransaction = transactionRepository.save(transaction);
-        Wallet updatedWallet = walletRepository.save(wallet);
+        Wallet updatedWallet = findWallet(walletId);
         
         // Publish wallet debited event
         publishWalletEvent(updatedWallet, savedTransaction, 
@@ -215,7 +207,19 @@ public class WalletServiceImpl implements WalletService {
         Wallet wallet = walletRepository.findById(walletId)
                 .orElseThrow(() -> new EntityNotFoundException("Wallet not found with id: " + walletId));
         
-        return wallet.getBalance().compareTo(amount) >= 0;
+        return availableBalance(wallet).compareTo(amount) >= 0;
+    }
+    
+    /**
+     * Balance not held for charging sessions in progress
+     */
+    private BigDecimal availableBalance(Wallet wallet) {
+        return wallet.getBalance().subtract(wallet.getHeldAmount());
+    }
+    
+    private Wallet findWallet(UUID walletId) {
+        return walletRepository.findById(walletId)
+                .orElseThrow(() -> new EntityNotFoundException("Wallet not found with id: " + walletId));
     }
     
     /**
@@ -248,6 +252,7 @@ public class WalletServiceImpl implements WalletService {
                 .id(wallet.getId())
                 .userId(wallet.getUser().getId())
                 .balance(wallet.getBalance())
+                .heldAmount(wallet.getHeldAmount())
                 .currency(wallet.getCurrency())
                 .build();
     }
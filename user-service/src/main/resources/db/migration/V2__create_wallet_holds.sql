@@ -0,0 +1,20 @@
+-- Funds reserved for charging sessions in progress; available balance is balance - held_amount
+ALTER TABLE wallets ADD COLUMN held_amount DECIMAL(10, 2) NOT NULL DEFAULT 0.00;
+
+-- Create wallet holds table, one hold per charging session
+CREATE TABLE wallet_holds (
+    session_id UUID PRIMARY KEY,
+    wallet_id UUID NOT NULL,
+    amount DECIMAL(10, 2) NOT NULL DEFAULT 0.00,
+    captured_amount DECIMAL(10, 2),
+    status VARCHAR(20) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    updated_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    CONSTRAINT fk_wallet_hold
+        FOREIGN KEY(wallet_id)
+        REFERENCES wallets(id)
+        ON DELETE CASCADE
+);
+
+CREATE INDEX idx_wallet_holds_wallet_id ON wallet_holds(wallet_id);
+CREATE INDEX idx_wallet_holds_status_updated_at ON wallet_holds(status, updated_at);
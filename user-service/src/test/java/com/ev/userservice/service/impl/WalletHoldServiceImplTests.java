@@ -0,0 +1,238 @@
+package com.ev.userservice.service.impl;
+
+import com.ev.userservice.model.User;
+import com.ev.userservice.model.Wallet;
+import com.ev.userservice.model.WalletHold;
+import com.ev.userservice.model.WalletTransaction;
+import com.ev.userservice.repository.WalletHoldRepository;
+import com.ev.userservice.repository.WalletRepository;
+import com.ev.userservice.repository.WalletTransactionRepository;
+import com.ev.userservice.service.KafkaProducerService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the hold ledger against an in-memory wallet and hold table that apply the
+ * conditional updates the way the database does
+ */
+class WalletHoldServiceImplTests {
+
+    private final UUID userId = UUID.randomUUID();
+    private final Wallet wallet = Wallet.builder()
+            .id(UUID.randomUUID())
+            .user(User.builder().id(userId).build())
+            .balance(new BigDecimal("100.00"))
+            .heldAmount(BigDecimal.ZERO)
+            .currency("USD")
+            .build();
+    private final Map<UUID, WalletHold> holdTable = new HashMap<>();
+    private final List<WalletTransaction> transactionTable = new ArrayList<>();
+
+    private WalletHoldServiceImpl walletHoldService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        WalletRepository walletRepository = mock(WalletRepository.class);
+        when(walletRepository.findById(wallet.getId())).thenReturn(Optional.of(wallet));
+        when(walletRepository.findByUserId(userId)).thenReturn(Optional.of(wallet));
+        when(walletRepository.reserveFunds(any(), any(), any())).thenAnswer(invocation -> {
+            BigDecimal amount = invocation.getArgument(1);
+            if (available().compareTo(amount) < 0) {
+                return 0;
+            }
+            wallet.setHeldAmount(wallet.getHeldAmount().add(amount));
+            return 1;
+        });
+        when(walletRepository.releaseFunds(any(), any(), any())).thenAnswer(invocation -> {
+            wallet.setHeldAmount(wallet.getHeldAmount().subtract(invocation.getArgument(1)));
+            return 1;
+        });
+        when(walletRepository.captureFunds(any(), any(), any(), any())).thenAnswer(invocation -> {
+            BigDecimal amount = invocation.getArgument(1);
+            BigDecimal heldAmount = invocation.getArgument(2);
+            if (available().add(heldAmount).compareTo(amount) < 0) {
+                return 0;
+            }
+            wallet.setBalance(wallet.getBalance().subtract(amount));
+            wallet.setHeldAmount(wallet.getHeldAmount().subtract(heldAmount));
+            return 1;
+        });
+
+        WalletHoldRepository holdRepository = mock(WalletHoldRepository.class);
+        when(holdRepository.findForUpdate(any()))
+                .thenAnswer(invocation -> Optional.ofNullable(holdTable.get((UUID) invocation.getArgument(0))));
+        when(holdRepository.insertIfAbsent(any(), any(), any())).thenAnswer(invocation -> {
+            UUID sessionId = invocation.getArgument(0);
+            if (holdTable.containsKey(sessionId)) {
+                return 0;
+            }
+            holdTable.put(sessionId, WalletHold.builder()
+                    .sessionId(sessionId)
+                    .walletId(invocation.getArgument(1))
+                    .amount(BigDecimal.ZERO)
+                    .status(WalletHold.HoldStatus.HELD)
+                    .createdAt(invocation.getArgument(2))
+                    .updatedAt(invocation.getArgument(2))
+                    .build());
+            return 1;
+        });
+        when(holdRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(holdRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(holdRepository.findSessionIdsByStatusAndUpdatedAtBefore(any(), any(), any())).thenAnswer(invocation ->
+                holdTable.values().stream()
+                        .filter(hold -> hold.getStatus() == invocation.getArgument(0))
+                        .filter(hold -> hold.getUpdatedAt().isBefore(invocation.getArgument(1)))
+                        .map(WalletHold::getSessionId)
+                        .collect(Collectors.toList()));
+
+        WalletTransactionRepository transactionRepository = mock(WalletTransactionRepository.class);
+        when(transactionRepository.save(any())).thenAnswer(invocation -> {
+            WalletTransaction transaction = invocation.getArgument(0);
+            transaction.setId(UUID.randomUUID());
+            transactionTable.add(transaction);
+            return transaction;
+        });
+        when(transactionRepository.existsByReferenceIdAndTransactionType(any(), any())).thenAnswer(invocation ->
+                transactionTable.stream().anyMatch(transaction ->
+                        transaction.getReferenceId().equals(invocation.getArgument(0))
+                                && transaction.getTransactionType() == invocation.getArgument(1)));
+
+        walletHoldService = new WalletHoldServiceImpl(walletRepository, holdRepository, transactionRepository,
+                mock(KafkaProducerService.class));
+        ReflectionTestUtils.setField(walletHoldService, "ratePerKwh", new BigDecimal("0.50"));
+        ReflectionTestUtils.setField(walletHoldService, "initialKwh", new BigDecimal("20"));
+        ReflectionTestUtils.setField(walletHoldService, "headroomKwh", new BigDecimal("5"));
+        ReflectionTestUtils.setField(walletHoldService, "expiryHours", 24L);
+    }
+
+    @Test
+    void sessionStartReservesTheInitialEstimate() {
+        UUID sessionId = UUID.randomUUID();
+
+        assertThat(walletHoldService.authorizeSessionStart(sessionId, userId)).isTrue();
+
+        assertThat(holdTable.get(sessionId).getAmount()).isEqualByComparingTo("10.00");
+        assertThat(wallet.getHeldAmount()).isEqualByComparingTo("10.00");
+        assertThat(wallet.getBalance()).isEqualByComparingTo("100.00");
+    }
+
+    @Test
+    void holdGrowsAheadOfTheMeterButNotPastTheAvailableBalance() {
+        UUID sessionId = UUID.randomUUID();
+        walletHoldService.authorizeSessionStart(sessionId, userId);
+
+        assertThat(walletHoldService.authorizeEnergy(sessionId, userId, new BigDecimal("30"))).isTrue();
+        assertThat(holdTable.get(sessionId).getAmount()).isEqualByComparingTo("17.50");
+        assertThat(wallet.getHeldAmount()).isEqualByComparingTo("17.50");
+
+        // Another session of the user cannot reserve the funds this one holds
+        UUID otherSessionId = UUID.randomUUID();
+        assertThat(walletHoldService.authorizeEnergy(otherSessionId, userId, new BigDecimal("200"))).isFalse();
+        assertThat(wallet.getHeldAmount()).isEqualByComparingTo("17.50");
+    }
+
+    @Test
+    void invoiceIsCapturedFromTheHoldOnce() {
+        UUID sessionId = UUID.randomUUID();
+        UUID invoiceId = UUID.randomUUID();
+        walletHoldService.authorizeSessionStart(sessionId, userId);
+
+        assertThat(walletHoldService.payInvoice(invoiceId, "INV-1", List.of(sessionId), new BigDecimal("7.88"))).isTrue();
+        // A redelivered invoice event does not charge the wallet again
+        assertThat(walletHoldService.payInvoice(invoiceId, "INV-1", List.of(sessionId), new BigDecimal("7.88"))).isFalse();
+
+        WalletHold hold = holdTable.get(sessionId);
+        assertThat(hold.getStatus()).isEqualTo(WalletHold.HoldStatus.CAPTURED);
+        assertThat(hold.getCapturedAmount()).isEqualByComparingTo("7.88");
+        assertThat(wallet.getBalance()).isEqualByComparingTo("92.12");
+        assertThat(wallet.getHeldAmount()).isEqualByComparingTo("0");
+        assertThat(transactionTable).singleElement()
+                .satisfies(transaction -> assertThat(transaction.getReferenceId()).isEqualTo(invoiceId));
+    }
+
+    @Test
+    void consolidatedInvoiceIsSplitAcrossItsSessionHolds() {
+        UUID firstSessionId = UUID.randomUUID();
+        UUID secondSessionId = UUID.randomUUID();
+        walletHoldService.authorizeSessionStart(firstSessionId, userId);
+        walletHoldService.authorizeSessionStart(secondSessionId, userId);
+
+        assertThat(walletHoldService.payInvoice(UUID.randomUUID(), "INV-2",
+                List.of(firstSessionId, secondSessionId), new BigDecimal("12.00"))).isTrue();
+
+        assertThat(holdTable.values()).allSatisfy(hold ->
+                assertThat(hold.getStatus()).isEqualTo(WalletHold.HoldStatus.CAPTURED));
+        assertThat(holdTable.values().stream().map(WalletHold::getCapturedAmount).reduce(BigDecimal.ZERO, BigDecimal::add))
+                .isEqualByComparingTo("12.00");
+        assertThat(wallet.getBalance()).isEqualByComparingTo("88.00");
+        assertThat(wallet.getHeldAmount()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void invoiceTheWalletCannotCoverReleasesTheHold() {
+        wallet.setBalance(new BigDecimal("12.00"));
+        UUID sessionId = UUID.randomUUID();
+        walletHoldService.authorizeSessionStart(sessionId, userId);
+
+        assertThat(walletHoldService.payInvoice(UUID.randomUUID(), "INV-3", List.of(sessionId), new BigDecimal("15.00")))
+                .isFalse();
+
+        assertThat(holdTable.get(sessionId).getStatus()).isEqualTo(WalletHold.HoldStatus.RELEASED);
+        assertThat(wallet.getBalance()).isEqualByComparingTo("12.00");
+        assertThat(wallet.getHeldAmount()).isEqualByComparingTo("0");
+        assertThat(transactionTable).isEmpty();
+    }
+
+    @Test
+    void releasedSessionReturnsItsFunds() {
+        UUID sessionId = UUID.randomUUID();
+        walletHoldService.authorizeSessionStart(sessionId, userId);
+
+        walletHoldService.releaseSession(sessionId);
+
+        assertThat(holdTable.get(sessionId).getStatus()).isEqualTo(WalletHold.HoldStatus.RELEASED);
+        assertThat(wallet.getHeldAmount()).isEqualByComparingTo("0");
+        assertThat(wallet.getBalance()).isEqualByComparingTo("100.00");
+    }
+
+    @Test
+    void expiredHoldsAreReleasedAndALateInvoiceIsPaidFromTheBalance() {
+        UUID expiredSessionId = UUID.randomUUID();
+        UUID activeSessionId = UUID.randomUUID();
+        walletHoldService.authorizeSessionStart(expiredSessionId, userId);
+        walletHoldService.authorizeSessionStart(activeSessionId, userId);
+        holdTable.get(expiredSessionId).setUpdatedAt(LocalDateTime.now().minusHours(25));
+
+        assertThat(walletHoldService.releaseExpiredHolds()).isEqualTo(1);
+        assertThat(holdTable.get(expiredSessionId).getStatus()).isEqualTo(WalletHold.HoldStatus.RELEASED);
+        assertThat(holdTable.get(activeSessionId).getStatus()).isEqualTo(WalletHold.HoldStatus.HELD);
+        assertThat(wallet.getHeldAmount()).isEqualByComparingTo("10.00");
+
+        // The invoice issued after the expiry is paid without touching the other session's hold
+        assertThat(walletHoldService.payInvoice(UUID.randomUUID(), "INV-4", List.of(expiredSessionId),
+                new BigDecimal("6.00"))).isTrue();
+        assertThat(wallet.getBalance()).isEqualByComparingTo("94.00");
+        assertThat(wallet.getHeldAmount()).isEqualByComparingTo("10.00");
+    }
+
+    private BigDecimal available() {
+        return wallet.getBalance().subtract(wallet.getHeldAmount());
+    }
+}